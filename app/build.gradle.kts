@@ -52,6 +52,11 @@ android {
             }
     }
 
+    buildFeatures {
+        // Schnittstelle des gebundenen Service, siehe src/main/aidl
+        aidl = true
+    }
+
     compileOptions {
         sourceCompatibility = JavaVersion.VERSION_11
         targetCompatibility = JavaVersion.VERSION_11
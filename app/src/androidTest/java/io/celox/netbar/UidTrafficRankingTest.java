@@ -0,0 +1,119 @@
+/*
+ * Copyright (C) 2025 Martin Pfeffer
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.celox.netbar;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/**
+ * Reihenfolge der {@link UidTrafficRanking} im Vergleich zu einer vollständigen Sortierung.
+ * Läuft auf dem Gerät, weil die Rangliste {@link android.util.SparseIntArray} verwendet.
+ */
+@RunWith(AndroidJUnit4.class)
+public class UidTrafficRankingTest {
+    @Test
+    public void staysSortedUnderIncrementalUpdates() {
+        Random random = new Random(13);
+        UidTrafficRanking ranking = new UidTrafficRanking();
+        Map<Integer, long[]> expected = new HashMap<>();
+        for (int n = 0; n < 20_000; n++) {
+            int uid = 10_000 + random.nextInt(200);
+            long[] totals = expected.get(uid);
+            long tx;
+            long rx;
+            if (totals != null && random.nextInt(4) == 0) {
+                // Abgelaufenen Verkehr abziehen, höchstens bis auf 0
+                tx = -random.nextInt((int) Math.min(totals[0], 10_000) + 1);
+                rx = -random.nextInt((int) Math.min(totals[1], 10_000) + 1);
+            } else {
+                tx = random.nextInt(10_000);
+                rx = random.nextInt(10_000);
+            }
+            ranking.add(uid, tx, rx);
+            if (totals == null) {
+                totals = new long[2];
+            }
+            totals[0] += tx;
+            totals[1] += rx;
+            if (totals[0] + totals[1] > 0) {
+                expected.put(uid, totals);
+            } else {
+                expected.remove(uid);
+            }
+        }
+
+        assertEquals(expected.size(), ranking.size());
+        UidUsage[] top = ranking.top(Integer.MAX_VALUE);
+        for (int i = 0; i < top.length; i++) {
+            long[] totals = expected.get(top[i].getUid());
+            assertNotNull(totals);
+            assertEquals(totals[0], top[i].getTxBytes());
+            assertEquals(totals[1], top[i].getRxBytes());
+            if (i > 0) {
+                assertTrue(top[i - 1].getTotalBytes() >= top[i].getTotalBytes());
+            }
+        }
+    }
+
+    @Test
+    public void uidWithoutTrafficIsRemoved() {
+        UidTrafficRanking ranking = new UidTrafficRanking();
+        ranking.add(1, 100, 0);
+        ranking.add(2, 50, 0);
+        ranking.add(3, 0, 0);
+        assertEquals(2, ranking.size());
+
+        ranking.add(1, -100, 0);
+        assertEquals(1, ranking.size());
+        assertEquals(2, ranking.top(5)[0].getUid());
+
+        // Eine entfernte UID kann wieder aufgenommen werden
+        ranking.add(1, 10, 70);
+        List<Integer> order = new ArrayList<>();
+        for (UidUsage usage : ranking.top(5)) {
+            order.add(usage.getUid());
+        }
+        assertEquals(Arrays.asList(1, 2), order);
+    }
+
+    @Test
+    public void topIsLimitedAndDetached() {
+        UidTrafficRanking ranking = new UidTrafficRanking();
+        for (int uid = 1; uid <= 100; uid++) {
+            ranking.add(uid, uid, 0);
+        }
+        UidUsage[] top = ranking.top(3);
+        assertEquals(3, top.length);
+        assertEquals(100, top[0].getUid());
+        assertEquals(98, top[2].getUid());
+
+        ranking.add(1, 1000, 0);
+        assertEquals(100, top[0].getUid());
+        assertEquals(1, ranking.top(1)[0].getUid());
+    }
+}
@@ -0,0 +1,138 @@
+/*
+ * Copyright (C) 2025 Martin Pfeffer
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.celox.netbar;
+
+import com.github.mikephil.charting.data.Entry;
+
+import java.util.AbstractList;
+import java.util.RandomAccess;
+
+/**
+ * Gleitendes Fenster von Chart-Einträgen mit aufsteigenden X-Werten, das direkt als
+ * Werteliste eines Datensatzes dient.
+ * <p>
+ * Die Einträge liegen in einem Ringpuffer fester Kapazität: Anhängen am Ende und Entfernen
+ * am Anfang sind O(1), ein verdrängter Eintrag wird für den nächsten wiederverwendet. Minimum
+ * und Maximum der Y-Werte werden über monotone Warteschlangen mitgeführt und stehen ebenfalls
+ * in O(1) (amortisiert) bereit, ohne das Fenster zu durchlaufen.
+ * <p>
+ * Nicht threadsicher, wird nur im UI-Thread verwendet. Änderungen über die {@link java.util.List}-
+ * Schnittstelle werden nicht unterstützt.
+ */
+final class ChartEntryWindow extends AbstractList<Entry> implements RandomAccess {
+    private final Entry[] entries;
+    private long head; // Sequenznummer des ältesten Eintrags
+    private long tail; // Sequenznummer des nächsten Eintrags
+
+    // Sequenznummern der Kandidaten für Maximum bzw. Minimum, Y-Werte monoton fallend bzw. steigend
+    private final long[] maxCandidates;
+    private final long[] minCandidates;
+    private long maxHead;
+    private long maxTail;
+    private long minHead;
+    private long minTail;
+
+    ChartEntryWindow(int capacity) {
+        entries = new Entry[capacity];
+        maxCandidates = new long[capacity];
+        minCandidates = new long[capacity];
+    }
+
+    /**
+     * Hängt einen Eintrag an; ist das Fenster voll, wird der älteste verdrängt. {@code x} darf
+     * nicht kleiner als der X-Wert des letzten Eintrags sein.
+     */
+    void append(float x, float y) {
+        if (tail - head == entries.length) {
+            removeFirst();
+        }
+        int index = slot(tail);
+        Entry entry = entries[index];
+        if (entry == null) {
+            entries[index] = new Entry(x, y);
+        } else {
+            // Verdrängter Eintrag gehört nicht mehr zum Datensatz
+            entry.setX(x);
+            entry.setY(y);
+        }
+
+        while (maxTail > maxHead && yAt(maxCandidates[slot(maxTail - 1)]) <= y) {
+            maxTail--;
+        }
+        maxCandidates[slot(maxTail++)] = tail;
+        while (minTail > minHead && yAt(minCandidates[slot(minTail - 1)]) >= y) {
+            minTail--;
+        }
+        minCandidates[slot(minTail++)] = tail;
+        tail++;
+    }
+
+    /**
+     * Entfernt alle Einträge vom Anfang, deren X-Wert kleiner als {@code x} ist.
+     */
+    void removeBefore(float x) {
+        while (head < tail && entries[slot(head)].getX() < x) {
+            removeFirst();
+        }
+    }
+
+    void removeFirst() {
+        if (maxCandidates[slot(maxHead)] == head) {
+            maxHead++;
+        }
+        if (minCandidates[slot(minHead)] == head) {
+            minHead++;
+        }
+        head++;
+    }
+
+    @Override
+    public void clear() {
+        head = tail;
+        maxHead = maxTail;
+        minHead = minTail;
+    }
+
+    float getYMax() {
+        return yAt(maxCandidates[slot(maxHead)]);
+    }
+
+    float getYMin() {
+        return yAt(minCandidates[slot(minHead)]);
+    }
+
+    @Override
+    public Entry get(int index) {
+        if (index < 0 || index >= tail - head) {
+            throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size());
+        }
+        return entries[slot(head + index)];
+    }
+
+    @Override
+    public int size() {
+        return (int) (tail - head);
+    }
+
+    private float yAt(long sequence) {
+        return entries[slot(sequence)].getY();
+    }
+
+    private int slot(long sequence) {
+        return (int) (sequence % entries.length);
+    }
+}
@@ -0,0 +1,63 @@
+/*
+ * Copyright (C) 2025 Martin Pfeffer
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.celox.netbar;
+
+import android.os.Bundle;
+import android.os.Handler;
+import android.os.Looper;
+import android.widget.TextView;
+
+import androidx.appcompat.app.AppCompatActivity;
+
+/**
+ * Zeigt die Messwerte über den Aufwand der Überwachung an und aktualisiert sie jede Sekunde,
+ * solange die Ansicht sichtbar ist.
+ */
+public class DiagnosticsActivity extends AppCompatActivity {
+    private static final int REFRESH_INTERVAL = 1000;
+
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+    private final Runnable refreshRunnable = this::refresh;
+    private TrafficDiagnostics diagnostics;
+    private TextView diagnosticsText;
+
+    @Override
+    protected void onCreate(Bundle savedInstanceState) {
+        super.onCreate(savedInstanceState);
+        setContentView(R.layout.activity_diagnostics);
+
+        diagnostics = NetworkTrafficManager.getInstance(this).getDiagnostics();
+        diagnosticsText = findViewById(R.id.diagnostics_text);
+    }
+
+    @Override
+    protected void onResume() {
+        super.onResume();
+        refresh();
+    }
+
+    @Override
+    protected void onPause() {
+        super.onPause();
+        mainHandler.removeCallbacks(refreshRunnable);
+    }
+
+    private void refresh() {
+        diagnosticsText.setText(diagnostics.toString());
+        mainHandler.postDelayed(refreshRunnable, REFRESH_INTERVAL);
+    }
+}
@@ -0,0 +1,137 @@
+/*
+ * Copyright (C) 2025 Martin Pfeffer
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.celox.netbar;
+
+/**
+ * Chartdaten des Live-Modus: die Sekundenwerte eines gleitenden Zeitfensters in KB/s.
+ * <p>
+ * Neue Sekundenwerte werden angehängt und herausgefallene am Anfang entfernt, beides in O(1);
+ * die Werte liegen in {@link ChartEntryWindow}s, die direkt als Werte der Datensätze dienen.
+ * Eine Reduktion per LTTB entfällt, das Fenster umfasst höchstens
+ * {@link #MAX_WINDOW_MS} / 1 s Datenpunkte.
+ * <p>
+ * Nicht threadsicher, wird nur im UI-Thread verwendet.
+ */
+final class LiveTrafficChartData {
+    /** Aufbewahrungsdauer der Sekundenwerte, länger reicht das Fenster nicht zurück. */
+    static final long MAX_WINDOW_MS = 15 * 60 * 1000;
+    static final long RESOLUTION_MS = 1000;
+
+    private static final float BYTES_PER_KB = 1024f;
+
+    private final long windowMs;
+    private final ChartEntryWindow txEntries;
+    private final ChartEntryWindow rxEntries;
+    private final ChartEntryWindow mobileTxEntries;
+    private final ChartEntryWindow mobileRxEntries;
+    private long baseTime;
+    private long lastTimestamp = Long.MIN_VALUE;
+    private boolean hasMobile;
+
+    /**
+     * @param windowMs Länge des Zeitfensters, höchstens {@link #MAX_WINDOW_MS}
+     */
+    LiveTrafficChartData(long windowMs) {
+        this.windowMs = Math.min(windowMs, MAX_WINDOW_MS);
+        int capacity = (int) (this.windowMs / RESOLUTION_MS) + 1;
+        txEntries = new ChartEntryWindow(capacity);
+        rxEntries = new ChartEntryWindow(capacity);
+        mobileTxEntries = new ChartEntryWindow(capacity);
+        mobileRxEntries = new ChartEntryWindow(capacity);
+    }
+
+    long getWindowMs() {
+        return windowMs;
+    }
+
+    /**
+     * Füllt das Fenster mit den bereits gespeicherten Sekundenwerten.
+     */
+    void reset(TrafficSeries data) {
+        txEntries.clear();
+        rxEntries.clear();
+        mobileTxEntries.clear();
+        mobileRxEntries.clear();
+        lastTimestamp = Long.MIN_VALUE;
+        hasMobile = false;
+
+        baseTime = data.isEmpty() ? System.currentTimeMillis() : data.getTimestamp(0);
+        for (int i = 0; i < data.size(); i++) {
+            append(data.getTimestamp(i), data.getTxBytes(i), data.getRxBytes(i),
+                    data.getMobileTxBytes(i), data.getMobileRxBytes(i));
+        }
+    }
+
+    /**
+     * Hängt einen Sekundenwert an und entfernt, was aus dem Zeitfenster fällt.
+     *
+     * @return {@code false}, wenn der Wert nicht neuer als der letzte ist und verworfen wurde
+     */
+    boolean append(long timestamp, long txBytes, long rxBytes, long mobileTxBytes, long mobileRxBytes) {
+        if (timestamp <= lastTimestamp) {
+            // Bereits über den Snapshot übernommen
+            return false;
+        }
+        lastTimestamp = timestamp;
+
+        // X-Werte in Sekunden ab dem Beginn, damit float genügt
+        float x = (float) ((double) (timestamp - baseTime) / RESOLUTION_MS);
+        txEntries.append(x, txBytes / BYTES_PER_KB);
+        rxEntries.append(x, rxBytes / BYTES_PER_KB);
+        mobileTxEntries.append(x, mobileTxBytes / BYTES_PER_KB);
+        mobileRxEntries.append(x, mobileRxBytes / BYTES_PER_KB);
+        hasMobile |= mobileTxBytes > 0 || mobileRxBytes > 0;
+
+        float cutoff = (float) ((double) (timestamp - windowMs - baseTime) / RESOLUTION_MS);
+        txEntries.removeBefore(cutoff);
+        rxEntries.removeBefore(cutoff);
+        mobileTxEntries.removeBefore(cutoff);
+        mobileRxEntries.removeBefore(cutoff);
+        return true;
+    }
+
+    boolean isEmpty() {
+        return txEntries.isEmpty();
+    }
+
+    /**
+     * Zeitstempel, ab dem die X-Werte in Sekunden zählen.
+     */
+    long getBaseTime() {
+        return baseTime;
+    }
+
+    boolean hasMobile() {
+        return hasMobile;
+    }
+
+    ChartEntryWindow getUploadEntries() {
+        return txEntries;
+    }
+
+    ChartEntryWindow getDownloadEntries() {
+        return rxEntries;
+    }
+
+    ChartEntryWindow getMobileUploadEntries() {
+        return mobileTxEntries;
+    }
+
+    ChartEntryWindow getMobileDownloadEntries() {
+        return mobileRxEntries;
+    }
+}
@@ -0,0 +1,125 @@
+/*
+ * Copyright (C) 2025 Martin Pfeffer
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.celox.netbar;
+
+import android.view.Choreographer;
+
+/**
+ * Reicht neue Sekundenwerte vom Sampler-Thread an {@link LiveTrafficChartData} im UI-Thread
+ * weiter, höchstens einmal pro Frame.
+ * <p>
+ * Eingehende Werte landen in einem Zwischenpuffer fester Größe, und es wird ein Frame-Callback
+ * angemeldet, sofern noch keiner aussteht. Im Frame werden alle gesammelten Werte auf einmal
+ * übernommen und der Chart genau einmal aktualisiert; auch viele nachgeholte Sekunden (z. B.
+ * nach ausgeschaltetem Display) lösen so nur einen Neuaufbau aus.
+ */
+final class LiveTrafficFeed implements NetworkTrafficManager.TrafficListener, Choreographer.FrameCallback {
+    private static final int PENDING_CAPACITY = 1024;
+    private static final int FIELDS = 5;
+
+    private final Choreographer choreographer;
+    private final LiveTrafficChartData chartData;
+    private final Runnable onChanged;
+
+    // Geschützt durch this
+    private final long[] pending = new long[PENDING_CAPACITY * FIELDS];
+    private int pendingStart;
+    private int pendingCount;
+    private boolean frameScheduled;
+    private boolean active;
+
+    /**
+     * Muss im UI-Thread erzeugt werden.
+     *
+     * @param onChanged wird im UI-Thread aufgerufen, nachdem neue Werte übernommen wurden
+     */
+    LiveTrafficFeed(LiveTrafficChartData chartData, Runnable onChanged) {
+        this.choreographer = Choreographer.getInstance();
+        this.chartData = chartData;
+        this.onChanged = onChanged;
+    }
+
+    /**
+     * Nimmt ab jetzt Werte an. Vor dem Anmelden beim {@link NetworkTrafficManager} aufrufen;
+     * danach erst den Snapshot laden, doppelte Werte verwirft {@link LiveTrafficChartData}.
+     */
+    synchronized void start() {
+        active = true;
+    }
+
+    /**
+     * Verwirft ausstehende Werte und nimmt keine mehr an. Nur im UI-Thread.
+     */
+    synchronized void stop() {
+        active = false;
+        pendingCount = 0;
+        if (frameScheduled) {
+            choreographer.removeFrameCallback(this);
+            frameScheduled = false;
+        }
+    }
+
+    /**
+     * Läuft auf dem Sampler-Thread.
+     */
+    @Override
+    public synchronized void onTrafficSample(long timestamp, long txBytes, long rxBytes,
+                                             long mobileTxBytes, long mobileRxBytes) {
+        if (!active) {
+            return;
+        }
+        if (pendingCount == PENDING_CAPACITY) {
+            // UI-Thread kommt nicht nach: ältesten Wert verwerfen
+            pendingStart = (pendingStart + 1) % PENDING_CAPACITY;
+            pendingCount--;
+        }
+        int offset = ((pendingStart + pendingCount) % PENDING_CAPACITY) * FIELDS;
+        pending[offset] = timestamp;
+        pending[offset + 1] = txBytes;
+        pending[offset + 2] = rxBytes;
+        pending[offset + 3] = mobileTxBytes;
+        pending[offset + 4] = mobileRxBytes;
+        pendingCount++;
+
+        if (!frameScheduled) {
+            // Der Choreographer plant auch von fremden Threads aus im UI-Thread ein
+            frameScheduled = true;
+            choreographer.postFrameCallback(this);
+        }
+    }
+
+    @Override
+    public void doFrame(long frameTimeNanos) {
+        boolean changed = false;
+        synchronized (this) {
+            frameScheduled = false;
+            if (!active) {
+                return;
+            }
+            for (int i = 0; i < pendingCount; i++) {
+                int offset = ((pendingStart + i) % PENDING_CAPACITY) * FIELDS;
+                changed |= chartData.append(pending[offset], pending[offset + 1], pending[offset + 2],
+                        pending[offset + 3], pending[offset + 4]);
+            }
+            pendingStart = 0;
+            pendingCount = 0;
+        }
+        if (changed) {
+            onChanged.run();
+        }
+    }
+}
@@ -0,0 +1,152 @@
+/*
+ * Copyright (C) 2025 Martin Pfeffer
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.celox.netbar;
+
+import androidx.annotation.NonNull;
+
+import java.util.Arrays;
+
+/**
+ * Der aktuelle Stand für Anzeigen außerhalb der App (Widget, Schnelleinstellung): Raten des
+ * letzten Ticks und die heutigen Summen. Der Service veröffentlicht ihn nach jedem Tick aus
+ * den Werten, die er ohnehin erhebt; die Anzeigen fragen {@code TrafficStats} nie selbst ab.
+ * <p>
+ * Es gibt genau einen Schreiber (den Sampler-Thread) und beliebig viele Leser. Wie in
+ * {@link TrafficRingBuffer} werden die Werte über ein Versions-Seqlock veröffentlicht, pro
+ * Tick wird also nichts angelegt. Angemeldete {@link Listener} werden nur benachrichtigt, wenn
+ * sich der Inhalt geändert hat; wie oft eine Anzeige daraufhin neu zeichnet, entscheidet sie
+ * selbst (siehe {@link TrafficSurface}).
+ */
+final class LiveTrafficSnapshot {
+    /**
+     * Läuft auf dem Sampler-Thread und muss sofort zurückkehren.
+     */
+    interface Listener {
+        void onSnapshotChanged();
+    }
+
+    // Version ist ungerade, während der Schreiber die Werte ändert
+    private volatile long version;
+    private volatile long timestamp;
+    private volatile long txRate;
+    private volatile long rxRate;
+    private volatile long todayTxBytes;
+    private volatile long todayRxBytes;
+    private volatile boolean running;
+    private volatile boolean interactive;
+    private volatile Listener[] listeners = new Listener[0]; // Copy-on-write
+
+    /**
+     * Veröffentlicht den Stand eines Ticks. Nur vom Sampler-Thread.
+     *
+     * @param todayTxBytes heutiger Upload oder {@code -1}, solange er noch nicht bekannt ist
+     * @param interactive  ob das Display eingeschaltet ist
+     */
+    void publish(long timestamp, long txRate, long rxRate, long todayTxBytes, long todayRxBytes,
+                 boolean interactive) {
+        boolean changed = !running || this.interactive != interactive
+                || this.txRate != txRate || this.rxRate != rxRate
+                || this.todayTxBytes != todayTxBytes || this.todayRxBytes != todayRxBytes;
+        // Einziger Schreiber: die Inkremente müssen nicht atomar sein
+        version++;
+        this.timestamp = timestamp;
+        this.txRate = txRate;
+        this.rxRate = rxRate;
+        this.todayTxBytes = todayTxBytes;
+        this.todayRxBytes = todayRxBytes;
+        this.running = true;
+        this.interactive = interactive;
+        version++;
+        if (changed) {
+            dispatch();
+        }
+    }
+
+    /**
+     * Markiert den Stand als veraltet, weil die Überwachung beendet wurde. Die letzten Summen
+     * bleiben lesbar.
+     */
+    void publishStopped() {
+        if (!running) {
+            return;
+        }
+        version++;
+        running = false;
+        txRate = 0;
+        rxRate = 0;
+        version++;
+        dispatch();
+    }
+
+    /**
+     * Kopiert einen konsistenten Stand in {@code out}. Darf von jedem Thread aufgerufen werden.
+     */
+    void read(@NonNull Values out) {
+        long currentVersion;
+        do {
+            currentVersion = version;
+            out.timestamp = timestamp;
+            out.txRate = txRate;
+            out.rxRate = rxRate;
+            out.todayTxBytes = todayTxBytes;
+            out.todayRxBytes = todayRxBytes;
+            out.running = running;
+            out.interactive = interactive;
+        } while ((currentVersion & 1) != 0 || currentVersion != version);
+    }
+
+    synchronized void addListener(@NonNull Listener listener) {
+        Listener[] current = listeners;
+        Listener[] updated = Arrays.copyOf(current, current.length + 1);
+        updated[current.length] = listener;
+        listeners = updated;
+    }
+
+    synchronized void removeListener(@NonNull Listener listener) {
+        Listener[] current = listeners;
+        for (int i = 0; i < current.length; i++) {
+            if (current[i] == listener) {
+                Listener[] updated = new Listener[current.length - 1];
+                System.arraycopy(current, 0, updated, 0, i);
+                System.arraycopy(current, i + 1, updated, i, current.length - i - 1);
+                listeners = updated;
+                return;
+            }
+        }
+    }
+
+    private void dispatch() {
+        // Ohne Iterator, damit pro Tick nichts angelegt wird
+        Listener[] current = listeners;
+        for (Listener listener : current) {
+            listener.onSnapshotChanged();
+        }
+    }
+
+    /**
+     * Veränderlicher Träger eines gelesenen Stands, wird von den Anzeigen wiederverwendet.
+     */
+    static final class Values {
+        long timestamp;
+        long txRate;
+        long rxRate;
+        long todayTxBytes; // -1, solange unbekannt
+        long todayRxBytes;
+        boolean running;
+        boolean interactive;
+    }
+}
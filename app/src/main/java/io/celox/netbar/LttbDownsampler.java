@@ -0,0 +1,92 @@
+/*
+ * Copyright (C) 2025 Martin Pfeffer
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.celox.netbar;
+
+/**
+ * Reduziert eine Messreihe mit dem Largest-Triangle-Three-Buckets-Verfahren auf eine
+ * vorgegebene Anzahl von Punkten.
+ * <p>
+ * Erster und letzter Punkt bleiben erhalten, dazwischen wird die Reihe in gleich große Buckets
+ * geteilt. Aus jedem Bucket wird der Punkt gewählt, der mit dem zuletzt gewählten Punkt und dem
+ * Mittelwert des nächsten Buckets das größte Dreieck bildet. Dadurch bleiben Spitzen sichtbar,
+ * die eine einfache Mittelung glätten würde.
+ */
+final class LttbDownsampler {
+
+    private LttbDownsampler() {
+    }
+
+    /**
+     * Wählt höchstens {@code threshold} Punkte aus den ersten {@code size} Werten.
+     *
+     * @param xs         X-Werte in aufsteigender Reihenfolge
+     * @param ys         Y-Werte
+     * @param threshold  gewünschte Anzahl von Punkten; unter 3 wird nicht reduziert
+     * @param outIndices nimmt die Indizes der gewählten Punkte auf, mindestens
+     *                   {@code min(size, threshold)} groß
+     * @return Anzahl der gewählten Punkte
+     */
+    static int downsample(float[] xs, float[] ys, int size, int threshold, int[] outIndices) {
+        if (threshold < 3 || size <= threshold) {
+            for (int i = 0; i < size; i++) {
+                outIndices[i] = i;
+            }
+            return size;
+        }
+
+        // Der erste und letzte Punkt liegen außerhalb der Buckets
+        double bucketSize = (double) (size - 2) / (threshold - 2);
+        int selected = 0;
+        int previous = 0;
+        outIndices[selected++] = previous;
+
+        for (int bucket = 0; bucket < threshold - 2; bucket++) {
+            // Mittelwert des nächsten Buckets als dritte Ecke
+            int nextStart = (int) ((bucket + 1) * bucketSize) + 1;
+            int nextEnd = Math.min((int) ((bucket + 2) * bucketSize) + 1, size);
+            float avgX = 0;
+            float avgY = 0;
+            for (int i = nextStart; i < nextEnd; i++) {
+                avgX += xs[i];
+                avgY += ys[i];
+            }
+            int nextCount = nextEnd - nextStart;
+            avgX /= nextCount;
+            avgY /= nextCount;
+
+            int start = (int) (bucket * bucketSize) + 1;
+            int end = (int) ((bucket + 1) * bucketSize) + 1;
+            float prevX = xs[previous];
+            float prevY = ys[previous];
+            float maxArea = -1;
+            int maxIndex = start;
+            for (int i = start; i < end; i++) {
+                // Doppelte Dreiecksfläche genügt zum Vergleich
+                float area = Math.abs((prevX - avgX) * (ys[i] - prevY) - (prevX - xs[i]) * (avgY - prevY));
+                if (area > maxArea) {
+                    maxArea = area;
+                    maxIndex = i;
+                }
+            }
+            outIndices[selected++] = maxIndex;
+            previous = maxIndex;
+        }
+
+        outIndices[selected++] = size - 1;
+        return selected;
+    }
+}
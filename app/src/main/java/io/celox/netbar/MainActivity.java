@@ -17,14 +17,19 @@
 package io.celox.netbar;
 
 import android.Manifest;
+import android.content.ComponentName;
 import android.content.Intent;
+import android.content.ServiceConnection;
 import android.content.SharedPreferences;
 import android.content.pm.PackageManager;
 import android.os.Build;
 import android.os.Bundle;
+import android.os.IBinder;
 import android.preference.PreferenceManager;
+import android.provider.Settings;
 import android.widget.Button;
 import android.widget.CheckBox;
+import android.widget.EditText;
 import android.widget.Toast;
 
 import androidx.activity.result.ActivityResultLauncher;
@@ -32,13 +37,35 @@ import androidx.activity.result.contract.ActivityResultContracts;
 import androidx.appcompat.app.AppCompatActivity;
 import androidx.core.content.ContextCompat;
 
+import java.util.ArrayList;
+import java.util.List;
+
 public class MainActivity extends AppCompatActivity {
     private static final int PERMISSION_REQUEST_CODE = 100;
     private CheckBox showUpCheckBox;
     private CheckBox showDownCheckBox;
+    private CheckBox perAppCheckBox;
+    private CheckBox dynamicIconCheckBox;
+    private EditText budgetText;
     private Button startButton;
     private Button stopButton;
+    private Button diagnosticsButton;
     private SharedPreferences prefs;
+    private boolean serviceRunning; // Aus der Bindung an den Service
+
+    // Ohne BIND_AUTO_CREATE: verbunden ist nur, solange der Service tatsächlich läuft. Ohne
+    // Aktion liefert er den lokalen Binder, der Live-Datenstrom bleibt aus
+    private final ServiceConnection serviceConnection = new ServiceConnection() {
+        @Override
+        public void onServiceConnected(ComponentName name, IBinder binder) {
+            serviceRunning = ((NetworkTrafficService.LocalBinder) binder).isMonitoring();
+        }
+
+        @Override
+        public void onServiceDisconnected(ComponentName name) {
+            serviceRunning = false;
+        }
+    };
 
     // ActivityResultLauncher for notification permission request
     private final ActivityResultLauncher<String> requestPermissionLauncher =
@@ -59,12 +86,19 @@ public class MainActivity extends AppCompatActivity {
 
         showUpCheckBox = findViewById(R.id.show_up_checkbox);
         showDownCheckBox = findViewById(R.id.show_down_checkbox);
+        perAppCheckBox = findViewById(R.id.per_app_checkbox);
+        dynamicIconCheckBox = findViewById(R.id.dynamic_icon_checkbox);
+        budgetText = findViewById(R.id.budget_text);
         startButton = findViewById(R.id.start_button);
         stopButton = findViewById(R.id.stop_button);
+        diagnosticsButton = findViewById(R.id.diagnostics_button);
 
         // Initialize checkboxes from saved preferences
         showUpCheckBox.setChecked(prefs.getBoolean("show_up", true));
         showDownCheckBox.setChecked(prefs.getBoolean("show_down", true));
+        perAppCheckBox.setChecked(prefs.getBoolean("per_app_accounting", false));
+        dynamicIconCheckBox.setChecked(prefs.getBoolean("dynamic_icon", false));
+        budgetText.setText(prefs.getString("budget_rules", ""));
 
         showUpCheckBox.setOnCheckedChangeListener((buttonView, isChecked) -> {
             savePreferences();
@@ -76,9 +110,57 @@ public class MainActivity extends AppCompatActivity {
             updateService();
         });
 
+        // Der Service liest diese Einstellung selbst nach, ein Neustart ist nicht nötig
+        perAppCheckBox.setOnCheckedChangeListener((buttonView, isChecked) -> {
+            savePreferences();
+            if (isChecked && !UidTrafficReader.hasUsageAccess(this)) {
+                Toast.makeText(this, "Allow usage access to see traffic of all apps", Toast.LENGTH_LONG).show();
+                startActivity(new Intent(Settings.ACTION_USAGE_ACCESS_SETTINGS));
+            }
+        });
+
+        // Gilt ab der nächsten Änderung der Rate
+        dynamicIconCheckBox.setOnCheckedChangeListener((buttonView, isChecked) -> savePreferences());
+
         startButton.setOnClickListener(v -> checkAndRequestPermissions());
 
         stopButton.setOnClickListener(v -> stopService());
+
+        diagnosticsButton.setOnClickListener(v -> startActivity(new Intent(this, DiagnosticsActivity.class)));
+    }
+
+    @Override
+    protected void onStart() {
+        super.onStart();
+        bindService(new Intent(this, NetworkTrafficService.class), serviceConnection, 0);
+    }
+
+    @Override
+    protected void onStop() {
+        unbindService(serviceConnection);
+        super.onStop();
+    }
+
+    @Override
+    protected void onPause() {
+        super.onPause();
+        saveBudgetRules();
+    }
+
+    /**
+     * Der Service übernimmt geänderte Regeln selbst, ihr bisheriger Verbrauch bleibt erhalten.
+     */
+    private void saveBudgetRules() {
+        String rules = budgetText.getText().toString();
+        if (rules.equals(prefs.getString("budget_rules", ""))) {
+            return;
+        }
+        List<String> invalidLines = new ArrayList<>();
+        TrafficBudgetRule.parseAll(rules, invalidLines);
+        if (!invalidLines.isEmpty()) {
+            Toast.makeText(this, "Ignoring invalid budget rule: " + invalidLines.get(0), Toast.LENGTH_LONG).show();
+        }
+        prefs.edit().putString("budget_rules", rules).apply();
     }
 
     private void checkAndRequestPermissions() {
@@ -98,6 +180,8 @@ public class MainActivity extends AppCompatActivity {
         SharedPreferences.Editor editor = prefs.edit();
         editor.putBoolean("show_up", showUpCheckBox.isChecked());
         editor.putBoolean("show_down", showDownCheckBox.isChecked());
+        editor.putBoolean("per_app_accounting", perAppCheckBox.isChecked());
+        editor.putBoolean("dynamic_icon", dynamicIconCheckBox.isChecked());
         editor.apply();
     }
 
@@ -110,25 +194,18 @@ public class MainActivity extends AppCompatActivity {
     }
 
     private boolean isServiceRunning() {
-        // Simple check - in a real app you might want to use ActivityManager
-        return prefs.getBoolean("service_running", false);
+        return serviceRunning;
     }
 
     private void startService() {
         Intent serviceIntent = new Intent(this, NetworkTrafficService.class);
         ContextCompat.startForegroundService(this, serviceIntent);
-
-        SharedPreferences.Editor editor = prefs.edit();
-        editor.putBoolean("service_running", true);
-        editor.apply();
+        serviceRunning = true;
     }
 
     private void stopService() {
         Intent serviceIntent = new Intent(this, NetworkTrafficService.class);
         stopService(serviceIntent);
-
-        SharedPreferences.Editor editor = prefs.edit();
-        editor.putBoolean("service_running", false);
-        editor.apply();
+        serviceRunning = false;
     }
 }
\ No newline at end of file
@@ -0,0 +1,143 @@
+/*
+ * Copyright (C) 2025 Martin Pfeffer
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.celox.netbar;
+
+import java.io.PrintWriter;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Histogramm fester Größe für nicht negative Messwerte (Dauern, Bytes).
+ * <p>
+ * Werte unter 16 erhalten einen eigenen Bucket, darüber wird jede Zweierpotenz in 8 gleich
+ * breite Buckets geteilt. Der relative Fehler der Quantile liegt damit unter 12,5 %, und
+ * der Speicherbedarf bleibt unabhängig von der Anzahl der Messwerte konstant. Werte ab
+ * 2^40 landen im letzten Bucket.
+ * <p>
+ * {@link #record(long)} legt keine Objekte an und darf von mehreren Threads gleichzeitig
+ * aufgerufen werden; Leser sehen einen nicht zwingend atomaren, aber stets plausiblen Stand.
+ */
+final class MetricHistogram {
+    private static final int SUB_BUCKET_BITS = 3;
+    private static final int SUB_BUCKET_COUNT = 1 << SUB_BUCKET_BITS;
+    private static final int MAX_EXPONENT = 40;
+    static final int BUCKET_COUNT = (MAX_EXPONENT - SUB_BUCKET_BITS + 1) * SUB_BUCKET_COUNT;
+
+    private final String name;
+    private final String unit;
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKET_COUNT);
+    private final AtomicLong count = new AtomicLong();
+    private final AtomicLong sum = new AtomicLong();
+    private final AtomicLong max = new AtomicLong();
+
+    /**
+     * @param name Bezeichnung in der Ausgabe
+     * @param unit Einheit der Messwerte, z. B. "µs" oder "B"
+     */
+    MetricHistogram(String name, String unit) {
+        this.name = name;
+        this.unit = unit;
+    }
+
+    void record(long value) {
+        if (value < 0) {
+            value = 0;
+        }
+        counts.incrementAndGet(bucketOf(value));
+        count.incrementAndGet();
+        sum.addAndGet(value);
+        long currentMax = max.get();
+        while (value > currentMax && !max.compareAndSet(currentMax, value)) {
+            currentMax = max.get();
+        }
+    }
+
+    long getCount() {
+        return count.get();
+    }
+
+    long getMax() {
+        return max.get();
+    }
+
+    double getMean() {
+        long n = count.get();
+        return n == 0 ? 0 : sum.get() / (double) n;
+    }
+
+    /**
+     * Schätzt das Quantil {@code q} (0 bis 1) als Mitte des Buckets, in den es fällt.
+     */
+    long getQuantile(double q) {
+        long n = count.get();
+        if (n == 0) {
+            return 0;
+        }
+        long rank = Math.max(1, (long) Math.ceil(q * n));
+        long seen = 0;
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            seen += counts.get(i);
+            if (seen >= rank) {
+                long lower = lowerBoundOf(i);
+                long width = lowerBoundOf(i + 1) - lower;
+                return Math.min(lower + width / 2, max.get());
+            }
+        }
+        return max.get();
+    }
+
+    void reset() {
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            counts.set(i, 0);
+        }
+        count.set(0);
+        sum.set(0);
+        max.set(0);
+    }
+
+    /**
+     * Schreibt eine Zeile mit Anzahl, Mittelwert, Quantilen und Maximum.
+     */
+    void dump(PrintWriter writer) {
+        writer.printf("%-18s n=%-7d mean=%.1f p50=%d p90=%d p99=%d max=%d %s%n",
+                name, getCount(), getMean(), getQuantile(0.5), getQuantile(0.9),
+                getQuantile(0.99), getMax(), unit);
+    }
+
+    /**
+     * Bucket eines nicht negativen Werts; auch für andere Histogramme mit gleicher Einteilung.
+     */
+    static int bucketOf(long value) {
+        if (value < 2 * SUB_BUCKET_COUNT) {
+            return (int) value;
+        }
+        int exponent = 63 - Long.numberOfLeadingZeros(value);
+        if (exponent >= MAX_EXPONENT) {
+            return BUCKET_COUNT - 1;
+        }
+        int shift = exponent - SUB_BUCKET_BITS;
+        return shift * SUB_BUCKET_COUNT + (int) (value >>> shift);
+    }
+
+    static long lowerBoundOf(int bucket) {
+        if (bucket < 2 * SUB_BUCKET_COUNT) {
+            return bucket;
+        }
+        long subBucket = (bucket % SUB_BUCKET_COUNT) + SUB_BUCKET_COUNT;
+        return subBucket << (bucket / SUB_BUCKET_COUNT - 1);
+    }
+}
@@ -19,31 +19,87 @@ package io.celox.netbar;
 import android.content.Context;
 
 import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
 
-import java.io.FileInputStream;
-import java.io.FileOutputStream;
+import java.io.File;
 import java.io.IOException;
-import java.io.ObjectInputStream;
-import java.io.ObjectOutputStream;
-import java.util.ArrayList;
-import java.util.List;
+import java.nio.file.Files;
+import java.util.Arrays;
 import java.util.concurrent.TimeUnit;
 
 /**
  * Verwaltet die Erfassung und Speicherung von Netzwerkverkehrsdaten.
+ * <p>
+ * Die Historie ist in Auflösungsstufen gegliedert: pro Sekunde für die letzten 15 Minuten
+ * (nur im Speicher), pro Minute für 24 Stunden, pro Stunde für 90 Tage und pro Tag für
+ * 10 Jahre. Jede Stufe wird beim Eintreffen neuer Datenpunkte inkrementell fortgeschrieben.
+ * Minutenwerte älter als 24 Stunden werden zusätzlich für 90 Tage komprimiert archiviert.
+ * <p>
+ * Die gespeicherte Historie wird nach dem Erzeugen im Hintergrund geladen. Bis dahin
+ * eintreffende Daten werden gesammelt und anschließend eingerechnet.
+ * <p>
+ * Schreibzugriffe kommen vom Sampler-Thread und werden untereinander serialisiert. Abfragen
+ * sind von jedem Thread aus ohne Sperre möglich: Sie erhalten unveränderliche, versionierte
+ * Sichten, die die Ringpuffer nach jeder Änderung atomar veröffentlichen.
  */
 public class NetworkTrafficManager {
-    private static final String FILE_NAME = "network_traffic_data.dat";
-    private static final long MAX_DATA_AGE_MS = TimeUnit.HOURS.toMillis(24); // 24 Stunden speichern
-    private static final int MAX_DATA_POINTS = 1440; // Maximal 1440 Datenpunkte (1 pro Minute für 24h)
+    /**
+     * Empfänger neuer Sekundenwerte, z. B. für einen Live-Chart.
+     */
+    public interface TrafficListener {
+        /**
+         * Eine Sekunde ist abgeschlossen und gespeichert. Läuft auf dem Thread, der die Daten
+         * erfasst (in der Regel dem Sampler-Thread), und muss sofort zurückkehren.
+         */
+        void onTrafficSample(long timestamp, long txBytes, long rxBytes, long mobileTxBytes, long mobileRxBytes);
+    }
+    
+    private static final String FILE_NAME = "network_traffic_history.bin"; // Minuten-Stufe
+    private static final String HOUR_FILE_NAME = "network_traffic_history_hour.bin";
+    private static final String DAY_FILE_NAME = "network_traffic_history_day.bin";
+    private static final String MINUTE_ARCHIVE_FILE_NAME = "network_traffic_archive_minute.bin";
+    private static final String EVENT_LOG_FILE_NAME = "traffic_events.bin";
+    private static final String LEGACY_FILE_NAME = "network_traffic_data.dat";
+    private static final int MIN_QUERY_POINTS = 60; // Gröbere Stufen nur, wenn sie genug Datenpunkte liefern
+    private static final int PENDING_FIELDS = 6; // Parameter eines addTrafficData-Aufrufs
     
     private static NetworkTrafficManager instance;
     private final Context context;
-    private final List<NetworkTrafficData> trafficDataList;
+    private final TrafficTier[] tiers; // Von fein nach grob
+    private final TrafficDiagnostics diagnostics = new TrafficDiagnostics();
+    private final TrafficWriter writer = new TrafficWriter(TrafficWriter.FlushPolicy.DEFAULT, diagnostics);
+    private volatile UidTrafficAccounting uidAccounting; // Erst bei Bedarf, nur im Speicher
+    private volatile TrafficListener[] listeners = new TrafficListener[0]; // Copy-on-write
+    private final LiveTrafficSnapshot liveSnapshot = new LiveTrafficSnapshot();
+    private final TrafficEventLog eventLog = new TrafficEventLog();
+    
+    // Bis die Historie geladen ist, werden neue Daten hier gesammelt; geschützt durch this
+    private boolean historyLoaded;
+    private long[] pendingData = new long[64 * PENDING_FIELDS];
+    private int pendingDataCount;
     
-    private NetworkTrafficManager(Context context) {
+    NetworkTrafficManager(Context context) {
         this.context = context.getApplicationContext();
-        this.trafficDataList = loadTrafficData();
+        
+        File dir = this.context.getFilesDir();
+        TrafficTier dayTier = new TrafficTier(TimeUnit.DAYS.toMillis(1), TimeUnit.DAYS.toMillis(3650),
+                new File(dir, DAY_FILE_NAME), null, null, writer);
+        TrafficTier hourTier = new TrafficTier(TimeUnit.HOURS.toMillis(1), TimeUnit.DAYS.toMillis(90),
+                new File(dir, HOUR_FILE_NAME), null, dayTier, writer);
+        TrafficTier minuteTier = new TrafficTier(TimeUnit.MINUTES.toMillis(1), TimeUnit.HOURS.toMillis(24),
+                new File(dir, FILE_NAME),
+                new TrafficArchive(new File(dir, MINUTE_ARCHIVE_FILE_NAME), TimeUnit.DAYS.toMillis(90)),
+                hourTier, writer);
+        TrafficTier secondTier = new TrafficTier(TimeUnit.SECONDS.toMillis(1), TimeUnit.MINUTES.toMillis(15),
+                null, null, minuteTier, writer);
+        this.tiers = new TrafficTier[] {secondTier, minuteTier, hourTier, dayTier};
+        secondTier.setBucketListener(this::dispatchSample);
+        
+        // Die Historie wird im Hintergrund geladen, damit der erste Zugriff (meist im
+        // UI-Thread) nicht von ihrer Größe abhängt
+        Thread loader = new Thread(this::loadTrafficData, "TrafficHistoryLoader");
+        loader.setDaemon(true);
+        loader.start();
     }
     
     public static synchronized NetworkTrafficManager getInstance(Context context) {
@@ -53,64 +109,375 @@ public class NetworkTrafficManager {
         return instance;
     }
     
-    public void addTrafficData(long txBytes, long rxBytes) {
-        long currentTime = System.currentTimeMillis();
-        
-        // Alte Daten entfernen
-        long expiryTime = currentTime - MAX_DATA_AGE_MS;
-        trafficDataList.removeIf(data -> data.getTimestamp() < expiryTime);
-        
-        // Neuen Datenpunkt hinzufügen
-        trafficDataList.add(new NetworkTrafficData(currentTime, txBytes, rxBytes));
-        
-        // Begrenze die Anzahl der Datenpunkte
-        while (trafficDataList.size() > MAX_DATA_POINTS) {
-            trafficDataList.remove(0);
+    /**
+     * Erfasst den Verkehr des Zeitraums ab {@code startTime}, davon {@code mobileTxBytes} und
+     * {@code mobileRxBytes} über Mobilfunk. Im Normalfall wird jede Sekunde aufgerufen; längere
+     * Zeiträume (z. B. bei ausgeschaltetem Display) werden gleichmäßig auf die enthaltenen
+     * Sekunden verteilt, sodass alle Stufen exakt dieselben Summen erhalten.
+     * <p>
+     * Solange die Historie noch geladen wird, werden die Daten gesammelt und danach in
+     * derselben Reihenfolge eingerechnet.
+     */
+    public synchronized void addTrafficData(long startTime, long durationMs, long txBytes, long rxBytes,
+                                            long mobileTxBytes, long mobileRxBytes) {
+        if (!historyLoaded) {
+            addPendingData(startTime, durationMs, txBytes, rxBytes, mobileTxBytes, mobileRxBytes);
+            return;
+        }
+        addToTiers(startTime, durationMs, txBytes, rxBytes, mobileTxBytes, mobileRxBytes);
+    }
+    
+    private void addToTiers(long startTime, long durationMs, long txBytes, long rxBytes,
+                            long mobileTxBytes, long mobileRxBytes) {
+        TrafficTier secondTier = tiers[0];
+        long seconds = Math.max(1, (durationMs + 500) / 1000);
+        if (seconds == 1) {
+            secondTier.addSample(startTime, txBytes, rxBytes, mobileTxBytes, mobileRxBytes);
+            return;
         }
         
-        // Speichere die Daten
-        saveTrafficData();
+        long txPerSecond = txBytes / seconds;
+        long rxPerSecond = rxBytes / seconds;
+        long mobileTxPerSecond = mobileTxBytes / seconds;
+        long mobileRxPerSecond = mobileRxBytes / seconds;
+        for (long i = 0; i < seconds - 1; i++) {
+            secondTier.addSample(startTime + i * 1000, txPerSecond, rxPerSecond,
+                    mobileTxPerSecond, mobileRxPerSecond);
+        }
+        // Rest der Division in der letzten Sekunde, damit die Summe exakt bleibt
+        long rest = seconds - 1;
+        secondTier.addSample(startTime + rest * 1000,
+                txBytes - txPerSecond * rest, rxBytes - rxPerSecond * rest,
+                mobileTxBytes - mobileTxPerSecond * rest, mobileRxBytes - mobileRxPerSecond * rest);
     }
     
+    /**
+     * Liefert die Datenpunkte der letzten {@code timeRangeMs} Millisekunden als
+     * unveränderliche Sicht, ohne sie zu kopieren. Verwendet wird die gröbste Stufe, die den
+     * Zeitraum abdeckt und noch mindestens {@link #MIN_QUERY_POINTS} Datenpunkte liefert.
+     */
     @NonNull
-    public List<NetworkTrafficData> getTrafficData(long timeRangeMs) {
+    public TrafficSeries getTrafficData(long timeRangeMs) {
+        TrafficTier tier = selectTier(timeRangeMs);
         long cutoffTime = System.currentTimeMillis() - timeRangeMs;
-        List<NetworkTrafficData> filteredData = new ArrayList<>();
+        return tier.getBuffer().snapshot(cutoffTime, tier.getResolutionMs());
+    }
+    
+    @NonNull
+    public TrafficSeries getAllTrafficData() {
+        TrafficTier tier = tiers[tiers.length - 1];
+        return tier.getBuffer().snapshot(Long.MIN_VALUE, tier.getResolutionMs());
+    }
+    
+    /**
+     * Summen, Spitzen, Durchschnitte und Quantile der Datenpunkte von {@code series}. Die
+     * Kennzahlen werden beim Einfügen fortgeschrieben; die Abfrage liest nur Blocksummen und
+     * die Ränder statt aller Datenpunkte.
+     *
+     * @return {@code null}, wenn die Sicht leer oder nicht mehr gültig ist
+     */
+    @Nullable
+    public TrafficSummary getTrafficSummary(@NonNull TrafficSeries series) {
+        TrafficTier tier = findTier(series.getResolutionMs());
+        TrafficSummary summary = new TrafficSummary();
+        if (tier == null
+                || !tier.getAggregates().query(series.getFirstSequence(), series.size(), summary)) {
+            return null;
+        }
+        return summary;
+    }
+    
+    /**
+     * Liefert eine Sicht auf die Datenpunkte der Stufe mit der Auflösung {@code resolutionMs}
+     * ab {@code fromTime} oder {@code null}, wenn es keine solche Stufe gibt.
+     */
+    @Nullable
+    TrafficSeries getTierData(long resolutionMs, long fromTime) {
+        TrafficTier tier = findTier(resolutionMs);
+        return tier != null ? tier.getBuffer().snapshot(fromTime, resolutionMs) : null;
+    }
+    
+    /**
+     * Übergibt alle Datenpunkte der Stufe mit der Auflösung {@code resolutionMs} im Zeitraum
+     * {@code [fromTime, toTime)} in aufsteigender Reihenfolge. Bei der Minuten-Stufe gehören
+     * dazu auch die archivierten Werte, ohne Lücke oder Doppelte. {@code consumer} erhält ein
+     * wiederverwendetes Objekt. Liest Dateien, also nicht im UI-Thread aufrufen.
+     *
+     * @return {@code false}, wenn es keine Stufe mit dieser Auflösung gibt
+     */
+    boolean readHistory(long resolutionMs, long fromTime, long toTime,
+                        @NonNull TrafficHistoryLog.RecordConsumer consumer) throws IOException {
+        TrafficTier tier = findTier(resolutionMs);
+        if (tier == null) {
+            return false;
+        }
+        awaitHistoryLoaded();
+        // Zuerst die Sicht: Was danach aus dem Ringpuffer fällt, ist bereits archiviert
+        TrafficSeries recent = tier.getBuffer().snapshot(fromTime, resolutionMs);
+        TrafficArchive archive = tier.getArchive();
+        if (archive != null) {
+            long archiveEnd = recent.isEmpty() ? toTime : Math.min(toTime, recent.getTimestamp(0));
+            archive.read(fromTime, archiveEnd, consumer);
+        }
         
-        for (NetworkTrafficData data : trafficDataList) {
-            if (data.getTimestamp() >= cutoffTime) {
-                filteredData.add(data);
+        TrafficBucket record = new TrafficBucket();
+        for (int i = 0; i < recent.size() && recent.getTimestamp(i) < toTime; i++) {
+            record.set(recent.getTimestamp(i), recent.getTxBytes(i), recent.getRxBytes(i),
+                    recent.getTxMinRate(i), recent.getTxMaxRate(i),
+                    recent.getRxMinRate(i), recent.getRxMaxRate(i),
+                    recent.getMobileTxBytes(i), recent.getMobileRxBytes(i));
+            consumer.accept(record);
+        }
+        if (!recent.isValid()) {
+            throw new IOException("History changed while reading");
+        }
+        return true;
+    }
+    
+    /**
+     * Meldet {@code listener} für jede künftig abgeschlossene Sekunde an.
+     */
+    public synchronized void addTrafficListener(@NonNull TrafficListener listener) {
+        TrafficListener[] current = listeners;
+        TrafficListener[] updated = Arrays.copyOf(current, current.length + 1);
+        updated[current.length] = listener;
+        listeners = updated;
+    }
+    
+    public synchronized void removeTrafficListener(@NonNull TrafficListener listener) {
+        TrafficListener[] current = listeners;
+        for (int i = 0; i < current.length; i++) {
+            if (current[i] == listener) {
+                TrafficListener[] updated = new TrafficListener[current.length - 1];
+                System.arraycopy(current, 0, updated, 0, i);
+                System.arraycopy(current, i + 1, updated, i, current.length - i - 1);
+                listeners = updated;
+                return;
+            }
+        }
+    }
+    
+    private void dispatchSample(TrafficBucket bucket) {
+        // Ohne Iterator, damit pro Sekunde nichts angelegt wird
+        TrafficListener[] current = listeners;
+        for (TrafficListener listener : current) {
+            listener.onTrafficSample(bucket.start, bucket.txBytes, bucket.rxBytes,
+                    bucket.mobileTxBytes, bucket.mobileRxBytes);
+        }
+    }
+    
+    /**
+     * Summiert den Verkehr seit Mitternacht (lokale Zeit) in {@code out}, ohne die Historie zu
+     * lesen. Jede Stufe enthält im offenen Bucket alle seit dessen Beginn abgeschlossenen
+     * Buckets der feineren Stufe, die Summe der heute begonnenen offenen Buckets ist also der
+     * heutige Verkehr. Nur auf dem Thread aufrufen, der die Daten erfasst.
+     *
+     * @return {@code false}, solange die Historie noch geladen wird
+     */
+    synchronized boolean getTodayTotals(long now, @NonNull TrafficBucket out) {
+        if (!historyLoaded) {
+            return false;
+        }
+        long dayStart = tiers[tiers.length - 1].bucketStartOf(now);
+        out.reset(dayStart);
+        for (TrafficTier tier : tiers) {
+            TrafficBucket open = tier.getOpenBucket();
+            if (open.start >= dayStart && !open.isEmpty()) {
+                out.addBucket(open);
+            }
+        }
+        return true;
+    }
+    
+    /**
+     * Gemeinsamer Stand für Widget und Schnelleinstellung, den der Service nach jedem Tick
+     * veröffentlicht.
+     */
+    @NonNull
+    LiveTrafficSnapshot getLiveSnapshot() {
+        return liveSnapshot;
+    }
+    
+    /**
+     * Auffällige Verkehrsereignisse, z. B. für Markierungen im Chart. Darf von jedem Thread
+     * gelesen werden.
+     */
+    @NonNull
+    TrafficEventLog getEventLog() {
+        return eventLog;
+    }
+    
+    /**
+     * Sichert das Ereignisprotokoll über den Schreib-Thread, nach jeder Änderung.
+     */
+    void saveEventLog() {
+        saveStateFile(EVENT_LOG_FILE_NAME, eventLog.save());
+    }
+    
+    /**
+     * Verbucht den Verkehr je App seit dem letzten Aufruf. Wird vom Service im Abstand von
+     * {@link UidTrafficAccounting#SAMPLE_INTERVAL_MS} aufgerufen, solange die Erfassung pro App
+     * aktiviert ist.
+     */
+    public void sampleUidTraffic(long now) {
+        UidTrafficAccounting accounting = uidAccounting;
+        if (accounting == null) {
+            accounting = new UidTrafficAccounting(context, now);
+            uidAccounting = accounting;
+        }
+        // Die Abfrage beim System läuft außerhalb der Sperre, nur das Verbuchen nicht
+        int source = accounting.read(now);
+        synchronized (this) {
+            accounting.update(source, now);
+        }
+    }
+    
+    /**
+     * Die Apps mit dem meisten Verkehr der letzten 24 Stunden, absteigend sortiert. Leer, wenn
+     * die Erfassung pro App nicht aktiv ist.
+     */
+    @NonNull
+    public UidUsage[] getTopApps() {
+        UidTrafficAccounting accounting = uidAccounting;
+        return accounting != null ? accounting.getTopApps() : new UidUsage[0];
+    }
+    
+    /**
+     * Messwerte über den Aufwand der Überwachung, gemeinsam für Service und Schreib-Thread.
+     */
+    @NonNull
+    TrafficDiagnostics getDiagnostics() {
+        return diagnostics;
+    }
+    
+    @Nullable
+    private TrafficTier findTier(long resolutionMs) {
+        for (TrafficTier tier : tiers) {
+            if (tier.getResolutionMs() == resolutionMs) {
+                return tier;
+            }
+        }
+        return null;
+    }
+    
+    private TrafficTier selectTier(long timeRangeMs) {
+        for (int i = tiers.length - 1; i >= 0; i--) {
+            TrafficTier tier = tiers[i];
+            if (tier.getRetentionMs() >= timeRangeMs
+                    && timeRangeMs / tier.getResolutionMs() >= MIN_QUERY_POINTS) {
+                return tier;
             }
         }
         
-        return filteredData;
+        // Kein Treffer: feinste Stufe, die den Zeitraum abdeckt
+        for (TrafficTier tier : tiers) {
+            if (tier.getRetentionMs() >= timeRangeMs) {
+                return tier;
+            }
+        }
+        return tiers[tiers.length - 1];
     }
     
-    public List<NetworkTrafficData> getAllTrafficData() {
-        return new ArrayList<>(trafficDataList);
+    private void addPendingData(long startTime, long durationMs, long txBytes, long rxBytes,
+                                long mobileTxBytes, long mobileRxBytes) {
+        int offset = pendingDataCount * PENDING_FIELDS;
+        if (offset == pendingData.length) {
+            pendingData = Arrays.copyOf(pendingData, pendingData.length * 2);
+        }
+        pendingData[offset] = startTime;
+        pendingData[offset + 1] = durationMs;
+        pendingData[offset + 2] = txBytes;
+        pendingData[offset + 3] = rxBytes;
+        pendingData[offset + 4] = mobileTxBytes;
+        pendingData[offset + 5] = mobileRxBytes;
+        pendingDataCount++;
     }
     
-    private void saveTrafficData() {
-        try (FileOutputStream fos = context.openFileOutput(FILE_NAME, Context.MODE_PRIVATE);
-             ObjectOutputStream oos = new ObjectOutputStream(fos)) {
-            oos.writeObject(trafficDataList);
-        } catch (IOException e) {
-            e.printStackTrace();
+    /**
+     * Läuft auf dem Lade-Thread. Die Stufen werden ohne Sperre gefüllt: bis historyLoaded
+     * gesetzt ist, ändert sie niemand sonst, und Leser sehen über die Snapshots stets einen
+     * konsistenten, wachsenden Stand.
+     */
+    private void loadTrafficData() {
+        // Altes ObjectOutputStream-Format wurde nie erfolgreich geschrieben
+        context.deleteFile(LEGACY_FILE_NAME);
+        
+        long currentTime = System.currentTimeMillis();
+        for (TrafficTier tier : tiers) {
+            tier.load(currentTime);
+        }
+        
+        File eventLogFile = new File(context.getFilesDir(), EVENT_LOG_FILE_NAME);
+        if (eventLogFile.exists()) {
+            try {
+                eventLog.restore(Files.readAllBytes(eventLogFile.toPath()));
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+        }
+        
+        // Offene Buckets der gröberen Stufen aus den feineren wiederherstellen
+        for (int i = tiers.length - 2; i >= 0; i--) {
+            tiers[i].replayIntoNext();
+        }
+        
+        synchronized (this) {
+            // Inzwischen gesammelte Daten nachtragen, sie sind jünger als die Historie
+            for (int i = 0; i < pendingDataCount; i++) {
+                int offset = i * PENDING_FIELDS;
+                addToTiers(pendingData[offset], pendingData[offset + 1], pendingData[offset + 2],
+                        pendingData[offset + 3], pendingData[offset + 4], pendingData[offset + 5]);
+            }
+            pendingData = null;
+            pendingDataCount = 0;
+            historyLoaded = true;
+            notifyAll();
         }
     }
     
-    @SuppressWarnings("unchecked")
-    private List<NetworkTrafficData> loadTrafficData() {
-        try (FileInputStream fis = context.openFileInput(FILE_NAME);
-             ObjectInputStream ois = new ObjectInputStream(fis)) {
-            return (List<NetworkTrafficData>) ois.readObject();
-        } catch (IOException | ClassNotFoundException e) {
-            return new ArrayList<>();
+    synchronized boolean isHistoryLoaded() {
+        return historyLoaded;
+    }
+    
+    /**
+     * Wartet, bis die Historie geladen ist. Nicht im UI-Thread aufrufen.
+     */
+    synchronized void awaitHistoryLoaded() {
+        boolean interrupted = false;
+        while (!historyLoaded) {
+            try {
+                wait();
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
         }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+    
+    /**
+     * Ersetzt eine kleine Zustandsdatei im App-Verzeichnis über den Schreib-Thread, ohne
+     * darauf zu warten.
+     */
+    void saveStateFile(@NonNull String name, @NonNull byte[] content) {
+        writer.replaceFile(new File(context.getFilesDir(), name), content);
+    }
+    
+    /**
+     * Veranlasst das Schreiben aller noch gesammelten Datensätze, ohne darauf zu warten.
+     */
+    public void flush() {
+        writer.flush();
     }
     
-    public void clearData() {
-        trafficDataList.clear();
-        saveTrafficData();
+    /**
+     * Schreibt alle gesammelten Datensätze und wartet darauf, höchstens {@code timeoutMs}
+     * Millisekunden. Für das Beenden des Service.
+     *
+     * @return ob alles innerhalb der Zeit geschrieben wurde
+     */
+    public boolean flushAndWait(long timeoutMs) {
+        return writer.flushAndWait(timeoutMs);
     }
 }
@@ -21,63 +21,264 @@ import android.app.NotificationChannel;
 import android.app.NotificationManager;
 import android.app.PendingIntent;
 import android.app.Service;
+import android.content.BroadcastReceiver;
 import android.content.Context;
 import android.content.Intent;
+import android.content.IntentFilter;
 import android.content.SharedPreferences;
 import android.net.TrafficStats;
+import android.os.Binder;
 import android.os.Build;
 import android.os.Handler;
+import android.os.HandlerThread;
 import android.os.IBinder;
+import android.os.PowerManager;
+import android.os.Process;
+import android.os.SystemClock;
 import android.preference.PreferenceManager;
+import android.system.ErrnoException;
 
 import androidx.annotation.Nullable;
 import androidx.core.app.NotificationCompat;
 
+import java.io.File;
+import java.io.FileDescriptor;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.nio.file.Files;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
 public class NetworkTrafficService extends Service {
+    /**
+     * Nur Bindungen mit dieser Aktion erhalten den Live-Datenstrom ({@link ITrafficStream});
+     * alle anderen den {@link LocalBinder}.
+     */
+    public static final String ACTION_BIND_STREAM = "io.celox.netbar.action.BIND_TRAFFIC_STREAM";
     private static final String NOTIFICATION_CHANNEL_ID = "network_monitor_channel";
+    private static final String BUDGET_CHANNEL_ID = "budget_alert_channel";
     private static final int NOTIFICATION_ID = 1;
+    private static final int BUDGET_NOTIFICATION_ID = 100; // Plus Index der Regel
+    private static final String BUDGET_STATE_FILE_NAME = "budget_state.bin";
+    private static final long BUDGET_SAVE_INTERVAL = 60000; // Zustand höchstens minütlich sichern
     private static final int UPDATE_INTERVAL = 1000; // 1 Sekunde
-    private static final int DATA_SAVE_INTERVAL = 60000; // 1 Minute
+    private static final int IDLE_UPDATE_INTERVAL = 5000; // Ohne Verkehr alle 5 Sekunden
+    private static final int SCREEN_OFF_UPDATE_INTERVAL = 60000; // Display aus: 1 Minute
+    private static final int IDLE_TICKS_BEFORE_BACKOFF = 10; // Ticks ohne Verkehr bis zum Idle-Modus
+    private static final int TICK_TOLERANCE = 100; // Etwas zu früh ausgelöste Ticks zählen zur Grenze
+    private static final long ANOMALY_BASELINE_DAYS = 28; // Stunden-Rollups für die Tageszeit-Baselines
+    private static final int CLOCK_JUMP_TOLERANCE = 2000; // Größere Abweichung von der Laufzeit: Uhr verstellt
+    private static final long SHUTDOWN_FLUSH_TIMEOUT = 2000; // Längstens so lange blockiert onDestroy
 
-    private Handler handler;
-    private Runnable updateRunnable;
-    private long lastTxBytes = 0;
-    private long lastRxBytes = 0;
-    private long lastSaveTime = 0;
+    /**
+     * Binder für die eigene App, z. B. um festzustellen, ob der Service erfasst. Startet den
+     * Live-Datenstrom nicht.
+     */
+    final class LocalBinder extends Binder {
+        boolean isMonitoring() {
+            return monitoring;
+        }
+    }
+
+    // Abtastung läuft auf einem eigenen Thread, nicht auf dem Main-Looper
+    private HandlerThread samplerThread;
+    private Handler samplerHandler;
+    private final Runnable tickRunnable = this::tick;
+    private final TrafficRateEngine rateEngine = new TrafficRateEngine();
+    private long lastTickTime = 0;
+    private int idleTicks = 0;
+    private long lastUidSampleTime = 0;
+    private long scheduledTickUptime = 0; // Geplanter Zeitpunkt des nächsten Ticks
+    private volatile boolean screenOn = true;
     private NetworkTrafficManager trafficManager;
+    private TrafficDiagnostics diagnostics;
+    // Nur im Sampler-Thread
+    private final TrafficBudgetEngine budgetEngine = new TrafficBudgetEngine(this::showBudgetAlert);
+    private long lastBudgetSaveTime = 0;
+    private final TrafficBucket todayTotals = new TrafficBucket();
+    private TrafficAnomalyDetector anomalyDetector; // Nur im Sampler-Thread
+    private volatile TrafficStream trafficStream; // Erst beim ersten Binden
+    private boolean monitoring; // Nur im UI-Thread
+    private final LocalBinder localBinder = new LocalBinder();
+
+    private final BroadcastReceiver screenReceiver = new BroadcastReceiver() {
+        @Override
+        public void onReceive(Context context, Intent intent) {
+            screenOn = Intent.ACTION_SCREEN_ON.equals(intent.getAction());
+            if (screenOn) {
+                // Sofort nachholen und zurück in den Sekundentakt
+                idleTicks = 0;
+                samplerHandler.removeCallbacks(tickRunnable);
+                samplerHandler.post(tickRunnable);
+            }
+        }
+    };
+
+    // Wiederverwendete Objekte für die Aktualisierung im Sekundentakt
+    private NotificationManager notificationManager;
+    private NotificationCompat.Builder notificationBuilder;
+    private final TrafficFormatter trafficFormatter = new TrafficFormatter();
+    private SharedPreferences prefs;
+    // Anzeigeeinstellungen, nach dem Start nur im Sampler-Thread geschrieben und gelesen
+    private boolean showUp;
+    private boolean showDown;
+    private boolean perAppAccounting;
+    private boolean dynamicIcon;
+    private TrafficSpeedIcon speedIcon; // Erst bei Bedarf, nur im Sampler-Thread
+
+    // Starke Referenz halten, SharedPreferences speichert Listener nur schwach
+    private final SharedPreferences.OnSharedPreferenceChangeListener prefsListener =
+            (sharedPreferences, key) -> {
+                samplerHandler.post(this::readDisplayPreferences);
+                if ("budget_rules".equals(key)) {
+                    samplerHandler.post(this::readBudgetRules);
+                }
+            };
 
     @Override
     public void onCreate() {
         super.onCreate();
         createNotificationChannel();
         trafficManager = NetworkTrafficManager.getInstance(this);
-        handler = new Handler();
-        updateRunnable = new Runnable() {
-            @Override
-            public void run() {
-                updateTrafficInfo();
-                handler.postDelayed(this, UPDATE_INTERVAL);
-            }
-        };
+        diagnostics = trafficManager.getDiagnostics();
+        anomalyDetector = new TrafficAnomalyDetector(trafficManager.getEventLog());
+        notificationManager = (NotificationManager) getSystemService(Context.NOTIFICATION_SERVICE);
+        notificationBuilder = createNotificationBuilder();
+
+        prefs = PreferenceManager.getDefaultSharedPreferences(this);
+        prefs.registerOnSharedPreferenceChangeListener(prefsListener);
+        readDisplayPreferences();
+
+        samplerThread = new HandlerThread("TrafficSampler", Process.THREAD_PRIORITY_BACKGROUND);
+        samplerThread.start();
+        samplerHandler = new Handler(samplerThread.getLooper());
+        samplerHandler.post(this::loadBudgets);
+
+        PowerManager powerManager = (PowerManager) getSystemService(Context.POWER_SERVICE);
+        screenOn = powerManager.isInteractive();
+        IntentFilter screenFilter = new IntentFilter(Intent.ACTION_SCREEN_ON);
+        screenFilter.addAction(Intent.ACTION_SCREEN_OFF);
+        registerReceiver(screenReceiver, screenFilter, null, samplerHandler);
+
+        // Der Prozess kann seit dem letzten Widget-Update neu gestartet worden sein
+        TrafficWidgetProvider.updateRegistration(this);
     }
 
     @Override
     public int onStartCommand(Intent intent, int flags, int startId) {
-        startForeground(NOTIFICATION_ID, createNotification("Starting..."));
-        handler.post(updateRunnable);
+        startForeground(NOTIFICATION_ID, createNotificationBuilder().setContentText("Starting...").build());
+        monitoring = true;
+        if (trafficStream != null) {
+            trafficStream.setMonitoring(true);
+        }
+        samplerHandler.removeCallbacks(tickRunnable);
+        samplerHandler.post(tickRunnable);
         return START_STICKY;
     }
 
     @Override
     public void onDestroy() {
-        handler.removeCallbacks(updateRunnable);
+        // Erst alle Quellen neuer Aufgaben für den Sampler-Thread abmelden
+        prefs.unregisterOnSharedPreferenceChangeListener(prefsListener);
+        unregisterReceiver(screenReceiver);
+        samplerHandler.removeCallbacks(tickRunnable);
+        samplerHandler.post(this::saveBudgetState);
+        samplerHandler.post(trafficManager.getLiveSnapshot()::publishStopped);
+        stopSampler();
+        // Danach ist alles eingereiht, auch der Budget-Zustand; warten, bis es geschrieben ist
+        trafficManager.flushAndWait(SHUTDOWN_FLUSH_TIMEOUT);
+        if (trafficStream != null) {
+            // Der Sampler-Thread ist beendet und schreibt nicht mehr in den Ringpuffer
+            trafficStream.setMonitoring(false);
+            trafficStream.close();
+        }
         super.onDestroy();
     }
 
+    /**
+     * Arbeitet die noch eingereihten Aufgaben ab und wartet auf das Ende des Sampler-Threads.
+     */
+    private void stopSampler() {
+        samplerThread.quitSafely();
+        boolean interrupted = false;
+        while (samplerThread.isAlive()) {
+            try {
+                samplerThread.join();
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    @Override
+    public void onTrimMemory(int level) {
+        super.onTrimMemory(level);
+        // Gesammelte Datensätze sichern, bevor der Prozess beendet werden könnte
+        samplerHandler.post(this::saveBudgetState);
+        trafficManager.flush();
+    }
+
+    /**
+     * Liefert für {@link #ACTION_BIND_STREAM} den Live-Datenstrom ({@link ITrafficStream}),
+     * sonst den {@link LocalBinder}. Werte werden nur geschrieben, solange Clients des
+     * Datenstroms gebunden sind.
+     */
     @Nullable
     @Override
     public IBinder onBind(Intent intent) {
-        return null;
+        if (!ACTION_BIND_STREAM.equals(intent.getAction())) {
+            return localBinder;
+        }
+        if (trafficStream == null) {
+            try {
+                trafficStream = new TrafficStream(trafficManager);
+            } catch (ErrnoException e) {
+                e.printStackTrace();
+                return null;
+            }
+            trafficStream.setMonitoring(monitoring);
+        }
+        trafficStream.attach();
+        return trafficStream;
+    }
+
+    @Override
+    public void onRebind(Intent intent) {
+        if (ACTION_BIND_STREAM.equals(intent.getAction()) && trafficStream != null) {
+            trafficStream.attach();
+        }
+    }
+
+    @Override
+    public boolean onUnbind(Intent intent) {
+        if (!ACTION_BIND_STREAM.equals(intent.getAction())) {
+            return false;
+        }
+        if (trafficStream != null) {
+            trafficStream.detach();
+        }
+        // Beim nächsten Binden onRebind aufrufen, damit wieder geschrieben wird
+        return true;
+    }
+
+    /**
+     * Ausgabe über {@code adb shell dumpsys activity service io.celox.netbar/.NetworkTrafficService};
+     * mit dem Argument {@code reset} werden die Messwerte zurückgesetzt.
+     */
+    @Override
+    protected void dump(FileDescriptor fd, PrintWriter writer, String[] args) {
+        if (args != null && args.length > 0 && "reset".equals(args[0])) {
+            diagnostics.reset();
+            writer.println("NetBar diagnostics reset");
+            return;
+        }
+        diagnostics.dump(writer);
+        writer.println("counter resets=" + rateEngine.getResetCount() + " wraps=" + rateEngine.getWrapCount());
+        budgetEngine.dump(writer);
+        anomalyDetector.dump(writer);
     }
 
     private void createNotificationChannel() {
@@ -90,10 +291,21 @@ public class NetworkTrafficService extends Service {
             channel.setDescription("Shows network traffic information");
             NotificationManager notificationManager = getSystemService(NotificationManager.class);
             notificationManager.createNotificationChannel(channel);
+
+            NotificationChannel budgetChannel = new NotificationChannel(
+                    BUDGET_CHANNEL_ID,
+                    "Data Budget Alerts",
+                    NotificationManager.IMPORTANCE_DEFAULT
+            );
+            budgetChannel.setDescription("Warns when a data budget or rate threshold is reached");
+            notificationManager.createNotificationChannel(budgetChannel);
         }
     }
 
-    private Notification createNotification(String content) {
+    /**
+     * Erstellt den Builder einmalig; danach wird nur noch der Text ausgetauscht.
+     */
+    private NotificationCompat.Builder createNotificationBuilder() {
         // Intent für Klick auf Notification erstellen
         Intent detailIntent = new Intent(this, TrafficDetailActivity.class);
         PendingIntent pendingIntent = PendingIntent.getActivity(
@@ -103,71 +315,211 @@ public class NetworkTrafficService extends Service {
                 PendingIntent.FLAG_UPDATE_CURRENT | PendingIntent.FLAG_IMMUTABLE
         );
 
-        NotificationCompat.Builder builder = new NotificationCompat.Builder(this, NOTIFICATION_CHANNEL_ID)
+        return new NotificationCompat.Builder(this, NOTIFICATION_CHANNEL_ID)
                 .setSmallIcon(R.drawable.ic_network)
                 .setContentTitle("Network Traffic")
-                .setContentText(content)
                 .setPriority(NotificationCompat.PRIORITY_LOW)
                 .setOngoing(true)
+                .setOnlyAlertOnce(true)
+                .setShowWhen(false)
                 .setContentIntent(pendingIntent); // Hier wird der PendingIntent hinzugefügt
+    }
 
-        return builder.build();
+    /**
+     * @param iconRate angezeigte Rate für das dynamische Icon, in Bytes pro Sekunde
+     */
+    private Notification createNotification(String content, long iconRate) {
+        if (dynamicIcon) {
+            if (speedIcon == null) {
+                speedIcon = new TrafficSpeedIcon(getResources().getDisplayMetrics().density);
+            }
+            long iconStart = System.nanoTime();
+            notificationBuilder.setSmallIcon(speedIcon.render(iconRate));
+            diagnostics.iconRender.record(TrafficDiagnostics.nanosToMicros(System.nanoTime() - iconStart));
+        } else {
+            notificationBuilder.setSmallIcon(R.drawable.ic_network);
+        }
+        return notificationBuilder.setContentText(content).build();
     }
 
-    private void updateTrafficInfo() {
-        long currentTxBytes = TrafficStats.getTotalTxBytes();
-        long currentRxBytes = TrafficStats.getTotalRxBytes();
+    /**
+     * Ein Abtastschritt auf dem Sampler-Thread. Der nächste Tick wird an der nächsten
+     * Intervallgrenze der Uhrzeit ausgerichtet, sodass sich keine Verzögerung aufsummiert.
+     */
+    private void tick() {
+        // Vorgezogene Ticks (Display an, Neustart) laufen vor dem geplanten Zeitpunkt und
+        // zählen nicht zur Verspätung
+        long lateMs = SystemClock.uptimeMillis() - scheduledTickUptime;
+        if (scheduledTickUptime != 0 && lateMs >= 0) {
+            diagnostics.tickJitter.record(lateMs * 1000);
+        }
 
-        long txDiff = currentTxBytes - lastTxBytes;
-        long rxDiff = currentRxBytes - lastRxBytes;
+        long startNanos = System.nanoTime();
+        long heapBefore = TrafficDiagnostics.usedHeapBytes();
+        long now = System.currentTimeMillis();
+        long tickTime = Math.round(now / (double) UPDATE_INTERVAL) * UPDATE_INTERVAL;
+        updateTrafficInfo(tickTime);
+        diagnostics.updateTime.record(TrafficDiagnostics.nanosToMicros(System.nanoTime() - startNanos));
+        long allocated = TrafficDiagnostics.usedHeapBytes() - heapBefore;
+        if (allocated >= 0) {
+            // Negativ, wenn zwischendurch eine Garbage Collection lief
+            diagnostics.tickAllocation.record(allocated);
+        }
 
-        lastTxBytes = currentTxBytes;
-        lastRxBytes = currentRxBytes;
+        long interval = getCurrentInterval();
+        long nextTickTime = ((now + TICK_TOLERANCE) / interval + 1) * interval;
+        long delay = nextTickTime - now;
+        scheduledTickUptime = SystemClock.uptimeMillis() + delay;
+        samplerHandler.postDelayed(tickRunnable, delay);
+    }
 
-        SharedPreferences prefs = PreferenceManager.getDefaultSharedPreferences(this);
-        boolean showUp = prefs.getBoolean("show_up", true);
-        boolean showDown = prefs.getBoolean("show_down", true);
+    private long getCurrentInterval() {
+        if (!screenOn) {
+            return SCREEN_OFF_UPDATE_INTERVAL;
+        } else if (idleTicks >= IDLE_TICKS_BEFORE_BACKOFF) {
+            return IDLE_UPDATE_INTERVAL;
+        }
+        return UPDATE_INTERVAL;
+    }
 
-        String notification = formatTrafficInfo(txDiff, rxDiff, showUp, showDown);
+    private void readDisplayPreferences() {
+        showUp = prefs.getBoolean("show_up", true);
+        showDown = prefs.getBoolean("show_down", true);
+        perAppAccounting = prefs.getBoolean("per_app_accounting", false);
+        dynamicIcon = prefs.getBoolean("dynamic_icon", false);
+    }
 
-        NotificationManager notificationManager = (NotificationManager) getSystemService(Context.NOTIFICATION_SERVICE);
-        notificationManager.notify(NOTIFICATION_ID, createNotification(notification));
+    private void updateTrafficInfo(long tickTime) {
+        boolean hasDelta = rateEngine.update(SystemClock.elapsedRealtimeNanos(),
+                TrafficStats.getTotalTxBytes(), TrafficStats.getTotalRxBytes(),
+                TrafficStats.getMobileTxBytes(), TrafficStats.getMobileRxBytes());
+        long startTime = lastTickTime;
+        lastTickTime = tickTime;
 
-        // Datenpunkte periodisch speichern (alle 60 Sekunden)
-        long currentTime = System.currentTimeMillis();
-        if (currentTime - lastSaveTime >= DATA_SAVE_INTERVAL) {
-            trafficManager.addTrafficData(txDiff, rxDiff);
-            lastSaveTime = currentTime;
+        // Erster Tick legt nur die Basis fest, ebenso der erste nach nicht verfügbaren Zählern
+        if (!hasDelta) {
+            return;
         }
-    }
+        long txDiff = rateEngine.getTxBytes();
+        long rxDiff = rateEngine.getRxBytes();
 
-    private String formatTrafficInfo(long txBytes, long rxBytes, boolean showUp, boolean showDown) {
-        StringBuilder sb = new StringBuilder();
+        // Die Uhrzeit ordnet den Verkehr den Buckets zu. Wurde sie verstellt, zählt die
+        // tatsächlich vergangene Zeit bis zum aktuellen Tick.
+        long durationMs = tickTime - startTime;
+        long elapsedMs = rateEngine.getElapsedMillis();
+        if (Math.abs(durationMs - elapsedMs) > CLOCK_JUMP_TOLERANCE) {
+            durationMs = Math.max(1, elapsedMs);
+            startTime = tickTime - durationMs;
+        }
+
+        idleTicks = txDiff == 0 && rxDiff == 0 ? idleTicks + 1 : 0;
 
-        if (showUp) {
-            sb.append("↑ ").append(formatBytes(txBytes)).append("/s");
+        // Budgets aus denselben Differenzen, ohne die Historie zu lesen
+        if (budgetEngine.getRuleCount() > 0) {
+            budgetEngine.update(tickTime, elapsedMs, txDiff, rxDiff,
+                    rateEngine.getMobileTxBytes(), rateEngine.getMobileRxBytes());
+            if (budgetEngine.isDirty() && tickTime - lastBudgetSaveTime >= BUDGET_SAVE_INTERVAL) {
+                lastBudgetSaveTime = tickTime;
+                saveBudgetState();
+            }
         }
 
-        if (showUp && showDown) {
-            sb.append(" | ");
+        // Notification nur bei eingeschaltetem Display und geändertem Text aktualisieren
+        if (screenOn) {
+            if (trafficFormatter.render(rateEngine.getTxRate(), rateEngine.getRxRate(), showUp, showDown)) {
+                long notifyStart = System.nanoTime();
+                long iconRate = (showUp ? rateEngine.getTxRate() : 0) + (showDown ? rateEngine.getRxRate() : 0);
+                notificationManager.notify(NOTIFICATION_ID, createNotification(trafficFormatter.toString(), iconRate));
+                diagnostics.notifyLatency.record(TrafficDiagnostics.nanosToMicros(System.nanoTime() - notifyStart));
+            }
         }
 
-        if (showDown) {
-            sb.append("↓ ").append(formatBytes(rxBytes)).append("/s");
+        // Auch nach längeren Intervallen geht kein Byte verloren, der Manager verteilt die
+        // Differenz auf die enthaltenen Sekunden
+        trafficManager.addTrafficData(startTime, durationMs, txDiff, rxDiff,
+                rateEngine.getMobileTxBytes(), rateEngine.getMobileRxBytes());
+
+        // Zuordnung zu Apps in größeren Abständen, die Systemabfrage ist deutlich teurer
+        if (perAppAccounting && tickTime - lastUidSampleTime >= UidTrafficAccounting.SAMPLE_INTERVAL_MS) {
+            lastUidSampleTime = tickTime;
+            trafficManager.sampleUidTraffic(tickTime);
+        }
+
+        // Auffälligkeiten aus denselben Differenzen; die Baselines einmalig aus den
+        // Stunden-Rollups, sobald die Historie geladen ist
+        if (!anomalyDetector.isSeeded() && trafficManager.isHistoryLoaded()) {
+            anomalyDetector.seedBaseline(trafficManager.getTierData(TimeUnit.HOURS.toMillis(1),
+                    tickTime - TimeUnit.DAYS.toMillis(ANOMALY_BASELINE_DAYS)));
+        }
+        if (anomalyDetector.update(tickTime, elapsedMs, txDiff, rxDiff)) {
+            trafficManager.saveEventLog();
+        }
+
+        // Ein gemeinsamer Stand für Widget und Schnelleinstellung; weitere Anzeigen kosten
+        // keine zusätzliche Abfrage
+        boolean todayKnown = trafficManager.getTodayTotals(tickTime, todayTotals);
+        trafficManager.getLiveSnapshot().publish(tickTime, rateEngine.getTxRate(), rateEngine.getRxRate(),
+                todayKnown ? todayTotals.txBytes : -1, todayKnown ? todayTotals.rxBytes : -1, screenOn);
+
+        TrafficStream stream = trafficStream;
+        if (stream != null) {
+            stream.signal();
+        }
+    }
+
+    /**
+     * Läuft im Sampler-Thread: liest die Regeln und den zuletzt gespeicherten Zustand. Die
+     * Datei ist nur einige hundert Byte groß.
+     */
+    private void loadBudgets() {
+        readBudgetRules();
+        File stateFile = new File(getFilesDir(), BUDGET_STATE_FILE_NAME);
+        if (stateFile.exists()) {
+            try {
+                budgetEngine.restoreState(Files.readAllBytes(stateFile.toPath()));
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
         }
+    }
 
-        return sb.toString();
+    private void readBudgetRules() {
+        List<TrafficBudgetRule> rules = TrafficBudgetRule.parseAll(prefs.getString("budget_rules", ""), null);
+        budgetEngine.setRules(rules);
     }
 
-    private String formatBytes(long bytes) {
-        if (bytes < 1024) {
-            return bytes + " B";
-        } else if (bytes < 1024 * 1024) {
-            return String.format("%.1f KB", bytes / 1024.0);
-        } else if (bytes < 1024 * 1024 * 1024) {
-            return String.format("%.1f MB", bytes / (1024.0 * 1024));
+    private void saveBudgetState() {
+        if (budgetEngine.isDirty()) {
+            trafficManager.saveStateFile(BUDGET_STATE_FILE_NAME, budgetEngine.saveState());
+        }
+    }
+
+    /**
+     * Läuft im Sampler-Thread, nur beim Erreichen einer neuen Alarmstufe.
+     */
+    private void showBudgetAlert(int ruleIndex, TrafficBudgetRule rule, int level, long value) {
+        String title;
+        String text;
+        if (!rule.isQuota()) {
+            title = "Traffic rate alert";
+            text = rule.label + ": " + TrafficFormatter.formatBytes(value) + "/s";
         } else {
-            return String.format("%.1f GB", bytes / (1024.0 * 1024 * 1024));
+            title = level == TrafficBudgetEngine.LEVEL_WARNING
+                    ? "Data budget at " + TrafficBudgetEngine.WARNING_PERCENT + " %" : "Data budget exceeded";
+            text = rule.label + ": " + TrafficFormatter.formatBytes(value)
+                    + " of " + TrafficFormatter.formatBytes(rule.limit);
         }
+
+        Intent detailIntent = new Intent(this, TrafficDetailActivity.class);
+        PendingIntent pendingIntent = PendingIntent.getActivity(this, 0, detailIntent,
+                PendingIntent.FLAG_UPDATE_CURRENT | PendingIntent.FLAG_IMMUTABLE);
+        Notification notification = new NotificationCompat.Builder(this, BUDGET_CHANNEL_ID)
+                .setSmallIcon(R.drawable.ic_network)
+                .setContentTitle(title)
+                .setContentText(text)
+                .setAutoCancel(true)
+                .setContentIntent(pendingIntent)
+                .build();
+        notificationManager.notify(BUDGET_NOTIFICATION_ID + ruleIndex, notification);
     }
-}
\ No newline at end of file
+}
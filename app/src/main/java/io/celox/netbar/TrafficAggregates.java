@@ -0,0 +1,197 @@
+/*
+ * Copyright (C) 2025 Martin Pfeffer
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.celox.netbar;
+
+import java.util.Arrays;
+
+/**
+ * Inkrementell gepflegte Kennzahlen für beliebige Bereiche eines {@link TrafficRingBuffer}s.
+ * <p>
+ * Die Datenpunkte werden über dieselben Sequenznummern wie im Ringpuffer adressiert. Für die
+ * Summen wird zu jedem Datenpunkt die Summe aller vorherigen gespeichert, sodass jede
+ * Bereichssumme eine Subtraktion ist. Für Spitzenwerte und Quantile sind die Datenpunkte in
+ * Blöcke zu {@link #BLOCK_SIZE} geteilt; jeder Block führt sein Maximum und ein Histogramm der
+ * Raten mit der Einteilung von {@link MetricHistogram}. Das Maximum stammt aus den
+ * Sekundenraten der Buckets; von ihnen sind nur Minimum und Maximum bekannt, das Histogramm
+ * enthält daher die Durchschnittsrate jedes Datenpunkts. Histogramme lassen sich addieren, eine
+ * Abfrage verbindet also die vollständig enthaltenen Blöcke und rechnet nur die höchstens
+ * {@code 2 * BLOCK_SIZE} Datenpunkte an den Rändern einzeln ein, statt alle Datenpunkte zu
+ * lesen. Beim Einfügen fällt nur konstante Arbeit an.
+ * <p>
+ * Einfügen und Abfragen sind über {@code this} synchronisiert; es gibt einen Schreiber, und
+ * Abfragen sind selten.
+ */
+final class TrafficAggregates {
+    static final int BLOCK_SIZE = 64; // Zählerstände passen so in ein Byte
+    private static final int BINS = MetricHistogram.BUCKET_COUNT;
+
+    private final long resolutionMs;
+    private final int length;
+    private final long[] txBefore; // Summe aller älteren Datenpunkte
+    private final long[] rxBefore;
+    private final long[] txPeaks;
+    private final long[] rxPeaks;
+    private final short[] txBins;
+    private final short[] rxBins;
+    private final long[] blockTxPeaks;
+    private final long[] blockRxPeaks;
+    private final byte[] blockTxCounts; // BINS Zähler je Block
+    private final byte[] blockRxCounts;
+    private long tail; // Sequenznummer des nächsten Datenpunkts
+    private long txTotal;
+    private long rxTotal;
+
+    // Nur für Abfragen
+    private final int[] txCounts = new int[BINS];
+    private final int[] rxCounts = new int[BINS];
+
+    /**
+     * @param minLength Anzahl der Datenpunkte, die mindestens abfragbar bleiben; mindestens so
+     *                  groß wie die Arrays des zugehörigen Ringpuffers
+     */
+    TrafficAggregates(long resolutionMs, int minLength) {
+        this.resolutionMs = resolutionMs;
+        int blockCount = (minLength + BLOCK_SIZE - 1) / BLOCK_SIZE;
+        this.length = blockCount * BLOCK_SIZE;
+        this.txBefore = new long[length];
+        this.rxBefore = new long[length];
+        this.txPeaks = new long[length];
+        this.rxPeaks = new long[length];
+        this.txBins = new short[length];
+        this.rxBins = new short[length];
+        this.blockTxPeaks = new long[blockCount];
+        this.blockRxPeaks = new long[blockCount];
+        this.blockTxCounts = new byte[blockCount * BINS];
+        this.blockRxCounts = new byte[blockCount * BINS];
+    }
+
+    /**
+     * Nimmt den nächsten Datenpunkt auf. Muss vor dem Einfügen in den Ringpuffer aufgerufen
+     * werden, damit jede Sicht auf den Puffer hier bereits abgedeckt ist.
+     */
+    synchronized void add(TrafficBucket bucket) {
+        int slot = slot(tail);
+        int block = slot / BLOCK_SIZE;
+        if (slot % BLOCK_SIZE == 0) {
+            // Block wird wiederverwendet
+            blockTxPeaks[block] = 0;
+            blockRxPeaks[block] = 0;
+            Arrays.fill(blockTxCounts, block * BINS, (block + 1) * BINS, (byte) 0);
+            Arrays.fill(blockRxCounts, block * BINS, (block + 1) * BINS, (byte) 0);
+        }
+
+        txBefore[slot] = txTotal;
+        rxBefore[slot] = rxTotal;
+        txTotal += bucket.txBytes;
+        rxTotal += bucket.rxBytes;
+
+        txPeaks[slot] = bucket.txMaxRate;
+        rxPeaks[slot] = bucket.rxMaxRate;
+        blockTxPeaks[block] = Math.max(blockTxPeaks[block], bucket.txMaxRate);
+        blockRxPeaks[block] = Math.max(blockRxPeaks[block], bucket.rxMaxRate);
+
+        int txBin = MetricHistogram.bucketOf(rateOf(bucket.txBytes));
+        int rxBin = MetricHistogram.bucketOf(rateOf(bucket.rxBytes));
+        txBins[slot] = (short) txBin;
+        rxBins[slot] = (short) rxBin;
+        blockTxCounts[block * BINS + txBin]++;
+        blockRxCounts[block * BINS + rxBin]++;
+        tail++;
+    }
+
+    /**
+     * Berechnet die Kennzahlen der {@code count} Datenpunkte ab {@code firstSequence}.
+     *
+     * @return {@code false}, wenn der Bereich nicht mehr (oder noch nicht) abgedeckt ist
+     */
+    synchronized boolean query(long firstSequence, int count, TrafficSummary out) {
+        long end = firstSequence + count;
+        if (count <= 0 || end > tail || tail - firstSequence > length) {
+            return false;
+        }
+
+        out.pointCount = count;
+        out.durationMs = count * resolutionMs;
+        out.rateIntervalMs = resolutionMs;
+        out.txBytes = (end == tail ? txTotal : txBefore[slot(end)]) - txBefore[slot(firstSequence)];
+        out.rxBytes = (end == tail ? rxTotal : rxBefore[slot(end)]) - rxBefore[slot(firstSequence)];
+
+        long txPeak = 0;
+        long rxPeak = 0;
+        Arrays.fill(txCounts, 0);
+        Arrays.fill(rxCounts, 0);
+        long sequence = firstSequence;
+        while (sequence < end) {
+            int slot = slot(sequence);
+            if (slot % BLOCK_SIZE == 0 && sequence + BLOCK_SIZE <= end) {
+                // Vollständig enthaltener Block
+                int block = slot / BLOCK_SIZE;
+                txPeak = Math.max(txPeak, blockTxPeaks[block]);
+                rxPeak = Math.max(rxPeak, blockRxPeaks[block]);
+                int offset = block * BINS;
+                for (int bin = 0; bin < BINS; bin++) {
+                    txCounts[bin] += blockTxCounts[offset + bin];
+                    rxCounts[bin] += blockRxCounts[offset + bin];
+                }
+                sequence += BLOCK_SIZE;
+            } else {
+                txPeak = Math.max(txPeak, txPeaks[slot]);
+                rxPeak = Math.max(rxPeak, rxPeaks[slot]);
+                txCounts[txBins[slot]]++;
+                rxCounts[rxBins[slot]]++;
+                sequence++;
+            }
+        }
+
+        out.txPeakRate = txPeak;
+        out.rxPeakRate = rxPeak;
+        out.txRateP50 = quantile(txCounts, count, 0.5);
+        out.txRateP95 = quantile(txCounts, count, 0.95);
+        out.txRateP99 = quantile(txCounts, count, 0.99);
+        out.rxRateP50 = quantile(rxCounts, count, 0.5);
+        out.rxRateP95 = quantile(rxCounts, count, 0.95);
+        out.rxRateP99 = quantile(rxCounts, count, 0.99);
+        return true;
+    }
+
+    /**
+     * Durchschnittliche Rate eines Datenpunkts in Bytes pro Sekunde.
+     */
+    private long rateOf(long bytes) {
+        return bytes * 1000 / resolutionMs;
+    }
+
+    /**
+     * Mitte des Buckets, in den das Quantil {@code q} fällt, wie in {@link MetricHistogram}.
+     */
+    private static long quantile(int[] counts, int total, double q) {
+        long rank = Math.max(1, (long) Math.ceil(q * total));
+        long seen = 0;
+        for (int bin = 0; bin < BINS; bin++) {
+            seen += counts[bin];
+            if (seen >= rank) {
+                long lower = MetricHistogram.lowerBoundOf(bin);
+                return lower + (MetricHistogram.lowerBoundOf(bin + 1) - lower) / 2;
+            }
+        }
+        return 0;
+    }
+
+    private int slot(long sequence) {
+        return (int) (sequence % length);
+    }
+}
@@ -0,0 +1,283 @@
+/*
+ * Copyright (C) 2025 Martin Pfeffer
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.celox.netbar;
+
+import java.io.PrintWriter;
+import java.util.TimeZone;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Erkennt ungewöhnlichen Verkehr im laufenden Datenstrom, getrennt für Upload und Download.
+ * <p>
+ * Gerechnet wird mit {@code log(1 + Rate)}, da Raten über Größenordnungen schwanken.
+ * <ul>
+ * <li>Burst: Die Rate eines Ticks liegt mindestens {@link #BURST_Z} Standardabweichungen über
+ * dem exponentiell gleitenden Mittel (EWMA) der letzten etwa {@link #SLOW_TAU_MS} ms. Während
+ * eines Bursts wird das Mittel nicht nachgeführt, damit er sich nicht selbst zur Norm macht.
+ * Bewertet werden nur Ticks von höchstens {@link #MAX_BURST_TICK_MS} ms: Längere Ticks (ohne
+ * Verkehr oder bei ausgeschaltetem Display) mitteln über viele Sekunden, ihr Wert ist mit den
+ * Sekundenraten des Mittels nicht vergleichbar. Sie beenden einen laufenden Burst.</li>
+ * <li>Anhaltend: Das kurzfristige EWMA liegt mindestens {@link #SUSTAINED_SIGMA}
+ * Standardabweichungen über dem Üblichen für diese Stunde des Tages, und das seit
+ * {@link #SUSTAINED_MIN_MS} ms. Die 24 Stundenbaselines werden beim Start einmalig aus der
+ * Stunden-Rollup-Stufe gebildet und danach aus den selbst aufsummierten Stunden fortgeführt.</li>
+ * </ul>
+ * Jeder Tick kostet pro Richtung einige Rechenoperationen und legt keine Objekte an, der
+ * Speicherbedarf ist konstant. Erkannte Ereignisse landen im {@link TrafficEventLog}. Nur vom
+ * Sampler-Thread verwenden.
+ */
+final class TrafficAnomalyDetector {
+    private static final long SLOW_TAU_MS = TimeUnit.MINUTES.toMillis(30);
+    private static final long FAST_TAU_MS = TimeUnit.MINUTES.toMillis(1);
+    private static final long WARMUP_MS = TimeUnit.MINUTES.toMillis(5);
+    private static final double BURST_Z = 4.0;
+    private static final double BURST_END_Z = 2.0; // Hysterese für das Ende eines Bursts
+    private static final long MAX_BURST_MS = TimeUnit.MINUTES.toMillis(10); // Danach gilt es als neue Norm
+    private static final long MIN_BURST_RATE = 128 * 1024; // Kleinere Spitzen sind uninteressant
+    private static final long MAX_BURST_TICK_MS = 1500; // Sekundentakt samt Verspätung
+    private static final double SUSTAINED_SIGMA = 3.0;
+    private static final long SUSTAINED_MIN_MS = TimeUnit.MINUTES.toMillis(5);
+    private static final long MIN_SUSTAINED_RATE = 32 * 1024;
+    private static final double MIN_VARIANCE = 0.25; // Entspricht Faktor 1.65 pro Standardabweichung
+    private static final double BASELINE_ALPHA = 0.1; // Gewicht einer neuen Stunde, etwa 10 Tage Gedächtnis
+    private static final int BASELINE_MIN_HOURS = 3; // Stunden pro Slot, bevor er gilt
+    private static final long HOUR_MS = TimeUnit.HOURS.toMillis(1);
+    private static final long NONE = -1;
+
+    private final TrafficEventLog log;
+    private final TimeZone timeZone = TimeZone.getDefault();
+
+    // Pro Richtung (TrafficEventLog.DIRECTION_UP/DOWN)
+    private final double[] slowMean = new double[2];
+    private final double[] slowVariance = new double[2];
+    private final double[] fastMean = new double[2];
+    private final long[] burstEvent = {NONE, NONE};
+    private final long[] burstStart = new long[2];
+    private final long[] burstPeak = new long[2];
+    private final long[] burstBytes = new long[2];
+    private final long[] sustainedSince = {NONE, NONE};
+    private final long[] sustainedEvent = {NONE, NONE};
+    private final long[] sustainedPeak = new long[2];
+    private final long[] sustainedBytes = new long[2];
+
+    // Baseline je Richtung und Stunde des Tages
+    private final double[][] baselineMean = new double[2][24];
+    private final double[][] baselineVariance = new double[2][24];
+    private final int[] baselineHours = new int[24];
+
+    // Eigener Stunden-Rollup
+    private long hourStart = NONE;
+    private int hourOfDay;
+    private long hourElapsedMs;
+    private final long[] hourBytes = new long[2];
+
+    private long observedMs;
+    private boolean seeded;
+    private int eventsDetected;
+
+    TrafficAnomalyDetector(TrafficEventLog log) {
+        this.log = log;
+    }
+
+    boolean isSeeded() {
+        return seeded;
+    }
+
+    /**
+     * Bildet die Stundenbaselines aus gespeicherten Stunden-Buckets. Einmalig, sobald die
+     * Historie geladen ist; bis dahin erkennt {@link #update} nichts.
+     *
+     * @param hours Stunden-Buckets oder {@code null}, wenn es keine gibt
+     */
+    void seedBaseline(TrafficSeries hours) {
+        seeded = true;
+        if (hours == null) {
+            return;
+        }
+        for (int i = 0; i < hours.size(); i++) {
+            addBaselineHour(hours.getTimestamp(i), HOUR_MS, hours.getTxBytes(i), hours.getRxBytes(i));
+        }
+    }
+
+    /**
+     * Wertet den Verkehr eines Ticks aus.
+     *
+     * @param now       Uhrzeit am Ende des Ticks
+     * @param elapsedMs Dauer des Ticks
+     * @return {@code true}, wenn sich das Ereignisprotokoll geändert hat
+     */
+    boolean update(long now, long elapsedMs, long txBytes, long rxBytes) {
+        if (!seeded) {
+            return false;
+        }
+        elapsedMs = Math.max(1, elapsedMs);
+        advanceHour(now, elapsedMs, txBytes, rxBytes);
+
+        boolean changed = update(TrafficEventLog.DIRECTION_UP, now, elapsedMs, txBytes);
+        changed |= update(TrafficEventLog.DIRECTION_DOWN, now, elapsedMs, rxBytes);
+        observedMs += elapsedMs;
+        return changed;
+    }
+
+    private boolean update(int direction, long now, long elapsedMs, long bytes) {
+        long rate = bytes * 1000 / elapsedMs;
+        double x = Math.log1p(rate);
+        boolean changed = false;
+
+        if (observedMs == 0) {
+            slowMean[direction] = x;
+            fastMean[direction] = x;
+        }
+
+        // Burst gegenüber dem gleitenden Mittel, bevor es den neuen Wert enthält
+        double z = (x - slowMean[direction]) / Math.sqrt(Math.max(slowVariance[direction], MIN_VARIANCE));
+        boolean secondTick = elapsedMs <= MAX_BURST_TICK_MS;
+        if (burstEvent[direction] != NONE) {
+            if (!secondTick) {
+                log.finish(burstEvent[direction], now - elapsedMs, burstPeak[direction], burstBytes[direction]);
+                burstEvent[direction] = NONE;
+                changed = true;
+            } else if (z < BURST_END_Z || now - burstStart[direction] >= MAX_BURST_MS) {
+                log.finish(burstEvent[direction], now - elapsedMs, burstPeak[direction], burstBytes[direction]);
+                burstEvent[direction] = NONE;
+                changed = true;
+                if (z >= BURST_END_Z) {
+                    // Zu lang für einen Burst: das Niveau als neue Norm übernehmen, sonst
+                    // löste sofort der nächste aus. Anhaltender Verkehr fällt unter TYPE_SUSTAINED.
+                    slowMean[direction] = x;
+                }
+            } else {
+                burstPeak[direction] = Math.max(burstPeak[direction], rate);
+                burstBytes[direction] += bytes;
+            }
+        } else if (secondTick && observedMs >= WARMUP_MS && z >= BURST_Z && rate >= MIN_BURST_RATE) {
+            burstStart[direction] = now - elapsedMs;
+            burstEvent[direction] = log.begin(burstStart[direction], TrafficEventLog.TYPE_BURST, direction);
+            burstPeak[direction] = rate;
+            burstBytes[direction] = bytes;
+            eventsDetected++;
+            changed = true;
+        }
+        if (burstEvent[direction] == NONE) {
+            double alpha = alpha(elapsedMs, SLOW_TAU_MS);
+            double diff = x - slowMean[direction];
+            slowMean[direction] += alpha * diff;
+            slowVariance[direction] = (1 - alpha) * (slowVariance[direction] + alpha * diff * diff);
+        }
+
+        // Anhaltend erhöht gegenüber der Baseline dieser Tageszeit
+        fastMean[direction] += alpha(elapsedMs, FAST_TAU_MS) * (x - fastMean[direction]);
+        boolean elevated = false;
+        if (baselineHours[hourOfDay] >= BASELINE_MIN_HOURS
+                && Math.expm1(fastMean[direction]) >= MIN_SUSTAINED_RATE) {
+            double threshold = baselineMean[direction][hourOfDay] + SUSTAINED_SIGMA
+                    * Math.sqrt(Math.max(baselineVariance[direction][hourOfDay], MIN_VARIANCE));
+            elevated = fastMean[direction] > threshold;
+        }
+        if (elevated) {
+            if (sustainedSince[direction] == NONE) {
+                sustainedSince[direction] = now - elapsedMs;
+                sustainedPeak[direction] = 0;
+                sustainedBytes[direction] = 0;
+            }
+            sustainedPeak[direction] = Math.max(sustainedPeak[direction], rate);
+            sustainedBytes[direction] += bytes;
+            if (sustainedEvent[direction] == NONE && now - sustainedSince[direction] >= SUSTAINED_MIN_MS) {
+                sustainedEvent[direction] = log.begin(sustainedSince[direction],
+                        TrafficEventLog.TYPE_SUSTAINED, direction);
+                eventsDetected++;
+                changed = true;
+            }
+        } else if (sustainedSince[direction] != NONE) {
+            if (sustainedEvent[direction] != NONE) {
+                log.finish(sustainedEvent[direction], now - elapsedMs,
+                        sustainedPeak[direction], sustainedBytes[direction]);
+                sustainedEvent[direction] = NONE;
+                changed = true;
+            }
+            sustainedSince[direction] = NONE;
+        }
+        return changed;
+    }
+
+    /**
+     * Summiert den Verkehr der laufenden Stunde und übernimmt abgeschlossene Stunden in die
+     * Baseline. Die Stundengrenze wird nur beim Überschreiten neu berechnet.
+     */
+    private void advanceHour(long now, long elapsedMs, long txBytes, long rxBytes) {
+        if (hourStart == NONE || now >= hourStart + HOUR_MS || now < hourStart) {
+            if (hourStart != NONE && hourElapsedMs >= HOUR_MS / 2) {
+                // Nur ausreichend erfasste Stunden, sonst verzerrt ein später Start die Baseline
+                addBaselineHour(hourStart, hourElapsedMs, hourBytes[0], hourBytes[1]);
+            }
+            long offset = timeZone.getOffset(now);
+            long localHours = Math.floorDiv(now + offset, HOUR_MS);
+            hourStart = localHours * HOUR_MS - offset;
+            hourOfDay = (int) Math.floorMod(localHours, 24L);
+            hourElapsedMs = 0;
+            hourBytes[0] = 0;
+            hourBytes[1] = 0;
+        }
+        hourElapsedMs += elapsedMs;
+        hourBytes[0] += txBytes;
+        hourBytes[1] += rxBytes;
+    }
+
+    private void addBaselineHour(long start, long durationMs, long txBytes, long rxBytes) {
+        long offset = timeZone.getOffset(start);
+        int hour = (int) Math.floorMod(Math.floorDiv(start + offset, HOUR_MS), 24L);
+        for (int direction = 0; direction < 2; direction++) {
+            long bytes = direction == TrafficEventLog.DIRECTION_UP ? txBytes : rxBytes;
+            double x = Math.log1p(bytes * 1000 / durationMs);
+            if (baselineHours[hour] == 0) {
+                baselineMean[direction][hour] = x;
+                baselineVariance[direction][hour] = 0;
+            } else {
+                double diff = x - baselineMean[direction][hour];
+                baselineMean[direction][hour] += BASELINE_ALPHA * diff;
+                baselineVariance[direction][hour] = (1 - BASELINE_ALPHA)
+                        * (baselineVariance[direction][hour] + BASELINE_ALPHA * diff * diff);
+            }
+        }
+        baselineHours[hour]++;
+    }
+
+    /**
+     * Gewicht eines Werts über {@code elapsedMs} bei der Zeitkonstante {@code tauMs}, damit
+     * längere Ticks (z. B. bei ausgeschaltetem Display) entsprechend mehr zählen.
+     */
+    private static double alpha(long elapsedMs, long tauMs) {
+        return -Math.expm1(-(double) elapsedMs / tauMs);
+    }
+
+    /**
+     * Darf von anderen Threads aufgerufen werden; zeigt dann einen nicht zwingend
+     * konsistenten Stand.
+     */
+    void dump(PrintWriter writer) {
+        int readyHours = 0;
+        for (int hours : baselineHours) {
+            if (hours >= BASELINE_MIN_HOURS) {
+                readyHours++;
+            }
+        }
+        writer.printf("anomaly seeded=%b baseline hours ready=%d/24 detected=%d logged=%d%n",
+                seeded, readyHours, eventsDetected, log.size());
+        writer.printf("anomaly up mean=%.0f B/s down mean=%.0f B/s%n",
+                Math.expm1(slowMean[0]), Math.expm1(slowMean[1]));
+    }
+}
@@ -0,0 +1,334 @@
+/*
+ * Copyright (C) 2025 Martin Pfeffer
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.celox.netbar;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+
+/**
+ * Komprimiertes Archiv für abgeschlossene Datenpunkte, die aus dem Ringpuffer einer Stufe
+ * herausfallen, z. B. Minutenwerte älter als 24 Stunden.
+ * <p>
+ * Die Datei beginnt mit einem 8 Byte großen Header (Magic + Version), danach folgen Blöcke im
+ * Format des {@link TrafficBlockCodec}. Die Blockheader mit erstem und letztem Zeitstempel
+ * werden beim Laden in einen kleinen Index im Speicher gelesen; eine Bereichsabfrage liest
+ * und dekodiert nur die Blöcke, die den Zeitraum berühren. Ein beim Absturz unvollständig
+ * geschriebener letzter Block wird beim Laden abgeschnitten. Abgelaufene Blöcke werden
+ * gelegentlich entfernt, indem die übrigen unverändert in eine neue Datei kopiert werden.
+ * <p>
+ * Geschrieben wird nach dem Laden nur vom {@link TrafficWriter}-Thread, gelesen von
+ * beliebigen Threads.
+ */
+class TrafficArchive {
+    private static final int MAGIC = 0x4E424152; // "NBAR"
+    private static final int VERSION = 1;
+    private static final int HEADER_SIZE = 8;
+    private static final int MIN_EXPIRED_BLOCKS_TO_COMPACT = 32;
+
+    /**
+     * Unveränderlicher Blockindex; wird bei jeder Änderung ersetzt.
+     */
+    private static final class BlockIndex {
+        static final BlockIndex EMPTY = new BlockIndex(new long[0], new int[0], new long[0], new long[0], 0);
+
+        final long[] offsets;
+        final int[] lengths; // Inklusive Header
+        final long[] firstTimestamps;
+        final long[] lastTimestamps;
+        final int size;
+
+        BlockIndex(long[] offsets, int[] lengths, long[] firstTimestamps, long[] lastTimestamps, int size) {
+            this.offsets = offsets;
+            this.lengths = lengths;
+            this.firstTimestamps = firstTimestamps;
+            this.lastTimestamps = lastTimestamps;
+            this.size = size;
+        }
+
+        /**
+         * Liefert einen Index mit einem zusätzlichen Block. Die Arrays werden geteilt, solange
+         * Platz ist; ältere Indizes sehen die neuen Einträge jenseits ihrer Größe nicht.
+         */
+        BlockIndex append(long offset, int length, long firstTimestamp, long lastTimestamp) {
+            BlockIndex index;
+            if (size < offsets.length) {
+                index = new BlockIndex(offsets, lengths, firstTimestamps, lastTimestamps, size + 1);
+            } else {
+                int capacity = Math.max(16, size * 2);
+                index = new BlockIndex(Arrays.copyOf(offsets, capacity), Arrays.copyOf(lengths, capacity),
+                        Arrays.copyOf(firstTimestamps, capacity), Arrays.copyOf(lastTimestamps, capacity), size + 1);
+            }
+            index.offsets[size] = offset;
+            index.lengths[size] = length;
+            index.firstTimestamps[size] = firstTimestamp;
+            index.lastTimestamps[size] = lastTimestamp;
+            return index;
+        }
+
+        long getEnd() {
+            return size == 0 ? HEADER_SIZE : offsets[size - 1] + lengths[size - 1];
+        }
+
+        /**
+         * Erster Block, dessen letzter Zeitstempel {@code >= timestamp} ist.
+         */
+        int firstBlockEndingAtOrAfter(long timestamp) {
+            int low = 0;
+            int high = size;
+            while (low < high) {
+                int mid = (low + high) >>> 1;
+                if (lastTimestamps[mid] < timestamp) {
+                    low = mid + 1;
+                } else {
+                    high = mid;
+                }
+            }
+            return low;
+        }
+    }
+
+    private final File file;
+    private final long retentionMs;
+    private volatile BlockIndex index = BlockIndex.EMPTY;
+    private RandomAccessFile appendFile;
+
+    /**
+     * @param retentionMs wie lange Datenpunkte im Archiv bleiben
+     */
+    TrafficArchive(File file, long retentionMs) {
+        this.file = file;
+        this.retentionMs = retentionMs;
+    }
+
+    /**
+     * Liest den Blockindex und öffnet die Datei zum Anhängen. Eine Datei mit ungültigem Header
+     * wird verworfen und neu angelegt. Ab dem ersten unvollständigen oder ungültigen Block wird
+     * die Datei abgeschnitten, wie bei abgebrochenen Datensätzen in {@link TrafficHistoryLog}.
+     */
+    void load() throws IOException {
+        close();
+        if (!file.exists()) {
+            synchronized (this) {
+                reset();
+            }
+            return;
+        }
+        BlockIndex loaded = BlockIndex.EMPTY;
+        try (RandomAccessFile in = new RandomAccessFile(file, "r")) {
+            long length = in.length();
+            if (length < HEADER_SIZE || in.readInt() != MAGIC || in.readInt() != VERSION) {
+                loaded = null;
+            }
+            ByteBuffer header = ByteBuffer.allocate(TrafficBlockCodec.HEADER_SIZE);
+            FileChannel channel = in.getChannel();
+            long offset = HEADER_SIZE;
+            while (loaded != null && offset + TrafficBlockCodec.HEADER_SIZE <= length) {
+                header.clear();
+                readFully(channel, header, offset);
+                header.flip();
+                int payloadLength = header.getInt();
+                header.getInt(); // Anzahl
+                long firstTimestamp = header.getLong();
+                long lastTimestamp = header.getLong();
+                if (payloadLength <= 0 || offset + TrafficBlockCodec.HEADER_SIZE + payloadLength > length) {
+                    // Abgebrochener oder beschädigter Block am Ende: wird unten abgeschnitten
+                    break;
+                }
+                int blockLength = TrafficBlockCodec.HEADER_SIZE + payloadLength;
+                loaded = loaded.append(offset, blockLength, firstTimestamp, lastTimestamp);
+                offset += blockLength;
+            }
+        }
+        if (loaded == null) {
+            synchronized (this) {
+                reset();
+            }
+            return;
+        }
+        index = loaded;
+        appendFile = new RandomAccessFile(file, "rw");
+        appendFile.setLength(loaded.getEnd());
+        appendFile.seek(loaded.getEnd());
+    }
+
+    /**
+     * Zeitstempel des jüngsten archivierten Datenpunkts oder {@link Long#MIN_VALUE}. Darf von
+     * jedem Thread aufgerufen werden.
+     */
+    long getLastTimestamp() {
+        BlockIndex current = index;
+        return current.size == 0 ? Long.MIN_VALUE : current.lastTimestamps[current.size - 1];
+    }
+
+    /**
+     * Hängt einen mit {@link TrafficBlockCodec#encode} erzeugten Block an und entfernt
+     * gelegentlich abgelaufene Blöcke.
+     */
+    void append(byte[] block, boolean fsync) throws IOException {
+        if (appendFile == null) {
+            load();
+        }
+        ByteBuffer header = ByteBuffer.wrap(block);
+        header.getInt(); // Länge der Nutzdaten
+        header.getInt(); // Anzahl
+        long firstTimestamp = header.getLong();
+        long lastTimestamp = header.getLong();
+
+        BlockIndex current = index;
+        long offset = current.getEnd();
+        FileChannel channel = appendFile.getChannel();
+        ByteBuffer content = ByteBuffer.wrap(block);
+        while (content.hasRemaining()) {
+            channel.write(content);
+        }
+        if (fsync) {
+            channel.force(false);
+        }
+        index = current.append(offset, block.length, firstTimestamp, lastTimestamp);
+
+        compactIfNeeded(lastTimestamp - retentionMs);
+    }
+
+    /**
+     * Übergibt alle archivierten Datenpunkte im Zeitraum {@code [fromTime, toTime)} in
+     * aufsteigender Reihenfolge. Dekodiert werden nur die Blöcke, die den Zeitraum berühren.
+     * Darf von jedem Thread aufgerufen werden.
+     */
+    void read(long fromTime, long toTime, TrafficHistoryLog.RecordConsumer consumer) throws IOException {
+        BlockIndex current;
+        RandomAccessFile in;
+        synchronized (this) {
+            // Index und Datei gemeinsam festhalten; eine später ersetzte Datei bleibt offen lesbar
+            current = index;
+            if (current.size == 0 || !file.exists()) {
+                return;
+            }
+            in = new RandomAccessFile(file, "r");
+        }
+        try {
+            FileChannel channel = in.getChannel();
+            TrafficBucket record = new TrafficBucket();
+            ByteBuffer block = null;
+            for (int i = current.firstBlockEndingAtOrAfter(fromTime);
+                 i < current.size && current.firstTimestamps[i] < toTime; i++) {
+                int length = current.lengths[i];
+                if (block == null || block.capacity() < length) {
+                    block = ByteBuffer.allocate(length);
+                }
+                block.clear();
+                block.limit(length);
+                readFully(channel, block, current.offsets[i]);
+                block.flip();
+                block.getInt(); // Länge der Nutzdaten
+                int count = block.getInt();
+                long firstTimestamp = block.getLong();
+                block.getLong(); // Letzter Zeitstempel
+                TrafficBlockCodec.decode(block, count, firstTimestamp, fromTime, toTime, record, consumer);
+            }
+        } finally {
+            in.close();
+        }
+    }
+
+    /**
+     * Größe der Datei in Bytes, z. B. für die Diagnose.
+     */
+    long getSize() {
+        return index.getEnd();
+    }
+
+    void close() {
+        if (appendFile != null) {
+            try {
+                appendFile.close();
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+            appendFile = null;
+        }
+    }
+
+    /**
+     * Entfernt alle Blöcke, die vollständig vor {@code expiryTime} liegen, sobald es genug sind.
+     * Die verbleibenden Blöcke werden unverändert kopiert.
+     */
+    private void compactIfNeeded(long expiryTime) throws IOException {
+        BlockIndex current = index;
+        int expired = current.firstBlockEndingAtOrAfter(expiryTime);
+        if (expired < MIN_EXPIRED_BLOCKS_TO_COMPACT) {
+            return;
+        }
+
+        long start = current.offsets[expired];
+        long end = current.getEnd();
+        ByteBuffer content = ByteBuffer.allocate(HEADER_SIZE + (int) (end - start));
+        content.putInt(MAGIC).putInt(VERSION);
+        readFully(appendFile.getChannel(), content, start);
+        content.flip();
+
+        BlockIndex compacted = BlockIndex.EMPTY;
+        for (int i = expired; i < current.size; i++) {
+            compacted = compacted.append(current.offsets[i] - start + HEADER_SIZE, current.lengths[i],
+                    current.firstTimestamps[i], current.lastTimestamps[i]);
+        }
+
+        close();
+        File tempFile = new File(file.getPath() + ".tmp");
+        try (RandomAccessFile out = new RandomAccessFile(tempFile, "rw")) {
+            out.setLength(0);
+            FileChannel channel = out.getChannel();
+            while (content.hasRemaining()) {
+                channel.write(content);
+            }
+            channel.force(false);
+        }
+        synchronized (this) {
+            if (!tempFile.renameTo(file)) {
+                throw new IOException("Could not replace " + file);
+            }
+            index = compacted;
+        }
+        appendFile = new RandomAccessFile(file, "rw");
+        appendFile.seek(compacted.getEnd());
+    }
+
+    private void reset() throws IOException {
+        // Neue Datei statt Kürzen, damit laufende Leser ihre geöffnete Datei behalten
+        if (file.exists() && !file.delete()) {
+            throw new IOException("Could not delete " + file);
+        }
+        appendFile = new RandomAccessFile(file, "rw");
+        appendFile.setLength(0);
+        appendFile.writeInt(MAGIC);
+        appendFile.writeInt(VERSION);
+        index = BlockIndex.EMPTY;
+    }
+
+    private static void readFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            int read = channel.read(buffer, position);
+            if (read < 0) {
+                throw new IOException("Unexpected end of archive");
+            }
+            position += read;
+        }
+    }
+}
@@ -0,0 +1,151 @@
+/*
+ * Copyright (C) 2025 Martin Pfeffer
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.celox.netbar;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * Kompaktes Blockformat für abgeschlossene Datenpunkte des {@link TrafficArchive}.
+ * <p>
+ * Ein Block besteht aus einem Header fester Größe (Länge der Nutzdaten, Anzahl, erster und
+ * letzter Zeitstempel) und den Nutzdaten. Die Zeitstempel sind nahezu periodisch und werden
+ * als Differenz der Differenzen (Delta-of-Delta) gespeichert, im Regelfall also als 0. Die
+ * übrigen Felder werden als Differenz zum Vorgänger gespeichert. Alle Werte sind
+ * Zig-Zag-kodierte Varints, kleine Beträge belegen damit ein Byte, ein Datenpunkt ohne
+ * Verkehr insgesamt 9 statt 72 Byte. Jeder Block ist ohne seine Vorgänger dekodierbar.
+ * <p>
+ * Eine Instanz hält einen wiederverwendeten Puffer für das Kodieren und darf nur von einem
+ * Thread verwendet werden; {@link #decode} ist zustandslos.
+ */
+final class TrafficBlockCodec {
+    static final int HEADER_SIZE = 24;
+    private static final int FIELDS = 8; // Alle Felder außer dem Zeitstempel
+    private static final int MAX_VARINT_SIZE = 10;
+
+    private byte[] buffer = new byte[4096];
+    private int length;
+    private final long[] previous = new long[FIELDS];
+    private final TrafficBucket record = new TrafficBucket();
+
+    /**
+     * Kodiert {@code count} Datenpunkte ab dem logischen Index {@code from} in einen Block.
+     *
+     * @return der vollständige Block inklusive Header
+     */
+    byte[] encode(TrafficRingBuffer data, int from, int count) {
+        length = HEADER_SIZE;
+        Arrays.fill(previous, 0);
+        long firstTimestamp = data.getTimestamp(from);
+        long previousTimestamp = firstTimestamp;
+        long previousDelta = 0;
+
+        for (int i = 0; i < count; i++) {
+            data.get(from + i, record);
+            if (i > 0) {
+                long delta = record.start - previousTimestamp;
+                writeVarint(zigZag(delta - previousDelta));
+                previousDelta = delta;
+                previousTimestamp = record.start;
+            }
+            writeField(0, record.txBytes);
+            writeField(1, record.rxBytes);
+            writeField(2, record.txMinRate);
+            writeField(3, record.txMaxRate);
+            writeField(4, record.rxMinRate);
+            writeField(5, record.rxMaxRate);
+            writeField(6, record.mobileTxBytes);
+            writeField(7, record.mobileRxBytes);
+        }
+
+        ByteBuffer.wrap(buffer, 0, HEADER_SIZE)
+                .putInt(length - HEADER_SIZE)
+                .putInt(count)
+                .putLong(firstTimestamp)
+                .putLong(previousTimestamp);
+        return Arrays.copyOf(buffer, length);
+    }
+
+    /**
+     * Dekodiert die Nutzdaten eines Blocks und übergibt alle Datenpunkte im Zeitraum
+     * {@code [fromTime, toTime)}.
+     *
+     * @param payload        Nutzdaten ab der aktuellen Position
+     * @param count          Anzahl der Datenpunkte laut Header
+     * @param firstTimestamp erster Zeitstempel laut Header
+     * @param out            wird für jeden Datenpunkt wiederverwendet
+     */
+    static void decode(ByteBuffer payload, int count, long firstTimestamp, long fromTime, long toTime,
+                       TrafficBucket out, TrafficHistoryLog.RecordConsumer consumer) {
+        long timestamp = firstTimestamp;
+        long delta = 0;
+        long[] values = new long[FIELDS];
+        for (int i = 0; i < count; i++) {
+            if (i > 0) {
+                delta += unZigZag(readVarint(payload));
+                timestamp += delta;
+            }
+            for (int field = 0; field < FIELDS; field++) {
+                values[field] += unZigZag(readVarint(payload));
+            }
+            if (timestamp >= toTime) {
+                return;
+            }
+            if (timestamp >= fromTime) {
+                out.set(timestamp, values[0], values[1], values[2], values[3],
+                        values[4], values[5], values[6], values[7]);
+                consumer.accept(out);
+            }
+        }
+    }
+
+    private void writeField(int field, long value) {
+        writeVarint(zigZag(value - previous[field]));
+        previous[field] = value;
+    }
+
+    private void writeVarint(long value) {
+        if (length + MAX_VARINT_SIZE > buffer.length) {
+            buffer = Arrays.copyOf(buffer, buffer.length * 2);
+        }
+        while ((value & ~0x7FL) != 0) {
+            buffer[length++] = (byte) ((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        buffer[length++] = (byte) value;
+    }
+
+    private static long readVarint(ByteBuffer in) {
+        long value = 0;
+        int shift = 0;
+        byte b;
+        do {
+            b = in.get();
+            value |= (long) (b & 0x7F) << shift;
+            shift += 7;
+        } while (b < 0);
+        return value;
+    }
+
+    private static long zigZag(long value) {
+        return (value << 1) ^ (value >> 63);
+    }
+
+    private static long unZigZag(long value) {
+        return (value >>> 1) ^ -(value & 1);
+    }
+}
@@ -0,0 +1,119 @@
+/*
+ * Copyright (C) 2025 Martin Pfeffer
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.celox.netbar;
+
+/**
+ * Summiert den Verkehr eines Zeitabschnitts auf und merkt sich dabei die kleinste und größte
+ * Sekundenrate. Die durchschnittliche Rate ergibt sich aus der Summe geteilt durch die Dauer.
+ * Der Anteil über Mobilfunk wird getrennt mitgezählt; WLAN und andere Verbindungen ergeben sich
+ * als Differenz zur Gesamtsumme.
+ * <p>
+ * Instanzen sind veränderlich und werden wiederverwendet, sowohl als offener Bucket einer
+ * Auflösungsstufe als auch als Träger eines gelesenen Datensatzes.
+ */
+final class TrafficBucket {
+    long start;
+    long txBytes;
+    long rxBytes;
+    long txMinRate;
+    long txMaxRate;
+    long rxMinRate;
+    long rxMaxRate;
+    long mobileTxBytes;
+    long mobileRxBytes;
+    private boolean empty = true;
+
+    /**
+     * Beginnt einen neuen, leeren Bucket.
+     */
+    void reset(long start) {
+        this.start = start;
+        txBytes = 0;
+        rxBytes = 0;
+        txMinRate = 0;
+        txMaxRate = 0;
+        rxMinRate = 0;
+        rxMaxRate = 0;
+        mobileTxBytes = 0;
+        mobileRxBytes = 0;
+        empty = true;
+    }
+
+    /**
+     * Setzt alle Werte auf einmal, z. B. beim Lesen eines gespeicherten Datensatzes.
+     */
+    void set(long start, long txBytes, long rxBytes,
+             long txMinRate, long txMaxRate, long rxMinRate, long rxMaxRate,
+             long mobileTxBytes, long mobileRxBytes) {
+        this.start = start;
+        this.txBytes = txBytes;
+        this.rxBytes = rxBytes;
+        this.txMinRate = txMinRate;
+        this.txMaxRate = txMaxRate;
+        this.rxMinRate = rxMinRate;
+        this.rxMaxRate = rxMaxRate;
+        this.mobileTxBytes = mobileTxBytes;
+        this.mobileRxBytes = mobileRxBytes;
+        empty = false;
+    }
+
+    void set(TrafficBucket other) {
+        set(other.start, other.txBytes, other.rxBytes,
+                other.txMinRate, other.txMaxRate, other.rxMinRate, other.rxMaxRate,
+                other.mobileTxBytes, other.mobileRxBytes);
+    }
+
+    /**
+     * Rechnet einen Sekundenwert ein; er ist zugleich Summand und Rate.
+     */
+    void addSample(long txBytes, long rxBytes, long mobileTxBytes, long mobileRxBytes) {
+        merge(txBytes, rxBytes, txBytes, txBytes, rxBytes, rxBytes);
+        this.mobileTxBytes += mobileTxBytes;
+        this.mobileRxBytes += mobileRxBytes;
+    }
+
+    /**
+     * Rechnet einen abgeschlossenen Bucket einer feineren Stufe ein.
+     */
+    void addBucket(TrafficBucket other) {
+        merge(other.txBytes, other.rxBytes,
+                other.txMinRate, other.txMaxRate, other.rxMinRate, other.rxMaxRate);
+        mobileTxBytes += other.mobileTxBytes;
+        mobileRxBytes += other.mobileRxBytes;
+    }
+
+    boolean isEmpty() {
+        return empty;
+    }
+
+    private void merge(long tx, long rx, long txMin, long txMax, long rxMin, long rxMax) {
+        txBytes += tx;
+        rxBytes += rx;
+        if (empty) {
+            txMinRate = txMin;
+            txMaxRate = txMax;
+            rxMinRate = rxMin;
+            rxMaxRate = rxMax;
+            empty = false;
+        } else {
+            txMinRate = Math.min(txMinRate, txMin);
+            txMaxRate = Math.max(txMaxRate, txMax);
+            rxMinRate = Math.min(rxMinRate, rxMin);
+            rxMaxRate = Math.max(rxMaxRate, rxMax);
+        }
+    }
+}
@@ -0,0 +1,347 @@
+/*
+ * Copyright (C) 2025 Martin Pfeffer
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.celox.netbar;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.Calendar;
+import java.util.List;
+
+/**
+ * Wertet {@link TrafficBudgetRule}s inkrementell bei jedem Tick aus.
+ * <p>
+ * Jede Regel hat einen festen Zustand in parallelen Arrays: Verbrauch im laufenden Zeitraum,
+ * dessen Grenzen und die bereits gemeldete Alarmstufe. Kalenderzeiträume werden nur an ihren
+ * Grenzen neu berechnet. Gleitende Fenster sind in {@link #WINDOW_SLOTS} Abschnitte geteilt,
+ * deren Summen beim Weiterrücken abgezogen werden; das Fenster ist damit auf einen Abschnitt
+ * genau. Raten-Alarme merken sich, seit wann die Schwelle überschritten ist. Ein Tick kostet
+ * so pro Regel einige Vergleiche und Additionen, unabhängig von der Historie, und legt keine
+ * Objekte an.
+ * <p>
+ * Der Zustand lässt sich kompakt speichern und wiederherstellen; Regeln werden dabei über
+ * ihre normalisierte Schreibweise zugeordnet. Nur vom Sampler-Thread verwenden.
+ */
+final class TrafficBudgetEngine {
+    /**
+     * Wird im Sampler-Thread aufgerufen, wenn eine Regel eine neue Alarmstufe erreicht.
+     */
+    interface AlertListener {
+        /**
+         * @param value Verbrauch im Zeitraum bzw. aktuelle Rate
+         */
+        void onBudgetAlert(int ruleIndex, TrafficBudgetRule rule, int level, long value);
+    }
+
+    static final int LEVEL_NONE = 0;
+    static final int LEVEL_WARNING = 1; // Kontingent zu WARNING_PERCENT verbraucht
+    static final int LEVEL_EXCEEDED = 2; // Kontingent verbraucht bzw. Rate überschritten
+
+    static final int WARNING_PERCENT = 80;
+    private static final int RATE_REARM_PERCENT = 90; // Hysterese, bevor ein Raten-Alarm erneut auslöst
+    static final int WINDOW_SLOTS = 60;
+    private static final int MAGIC = 0x4E424244; // "NBBD"
+    private static final int VERSION = 1;
+
+    private final AlertListener listener;
+    private TrafficBudgetRule[] rules = new TrafficBudgetRule[0];
+    private long[] used = new long[0];
+    private long[] periodStart = new long[0]; // Bei ROLLING Beginn des aktuellen Abschnitts
+    private long[] periodEnd = new long[0];
+    private long[] overSince = new long[0]; // Nur RATE: Beginn der Überschreitung oder -1
+    private int[] levels = new int[0];
+    private long[][] windowSlots = new long[0][]; // Nur ROLLING
+    private boolean dirty;
+
+    TrafficBudgetEngine(AlertListener listener) {
+        this.listener = listener;
+    }
+
+    /**
+     * Ersetzt die Regeln. Der Zustand unveränderter Regeln bleibt erhalten.
+     */
+    void setRules(List<TrafficBudgetRule> newRules) {
+        byte[] state = saveState();
+        rules = newRules.toArray(new TrafficBudgetRule[0]);
+        int count = rules.length;
+        used = new long[count];
+        periodStart = new long[count];
+        periodEnd = new long[count];
+        overSince = new long[count];
+        levels = new int[count];
+        windowSlots = new long[count][];
+        for (int i = 0; i < count; i++) {
+            resetRule(i);
+        }
+        restoreState(state);
+        dirty = true;
+    }
+
+    int getRuleCount() {
+        return rules.length;
+    }
+
+    /**
+     * Rechnet den Verkehr eines Ticks ein.
+     *
+     * @param now       Uhrzeit am Ende des Ticks
+     * @param elapsedMs Dauer des Ticks, für Raten
+     */
+    void update(long now, long elapsedMs, long txBytes, long rxBytes, long mobileTxBytes, long mobileRxBytes) {
+        for (int i = 0; i < rules.length; i++) {
+            TrafficBudgetRule rule = rules[i];
+            long bytes = rule.select(txBytes, rxBytes, mobileTxBytes, mobileRxBytes);
+            switch (rule.type) {
+                case TrafficBudgetRule.DAILY:
+                case TrafficBudgetRule.MONTHLY:
+                    if (now >= periodEnd[i] || now < periodStart[i]) {
+                        startCalendarPeriod(i, now);
+                    }
+                    addToQuota(i, rule, bytes);
+                    break;
+                case TrafficBudgetRule.ROLLING:
+                    advanceWindow(i, rule, now);
+                    windowSlots[i][slotOf(rule, periodStart[i])] += bytes;
+                    addToQuota(i, rule, bytes);
+                    break;
+                case TrafficBudgetRule.RATE:
+                    updateRate(i, rule, now, bytes * 1000 / Math.max(1, elapsedMs), elapsedMs);
+                    break;
+            }
+        }
+    }
+
+    boolean isDirty() {
+        return dirty;
+    }
+
+    /**
+     * Serialisiert den Zustand aller Regeln, einige Dutzend Bytes pro Regel.
+     */
+    byte[] saveState() {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeInt(rules.length);
+            for (int i = 0; i < rules.length; i++) {
+                out.writeUTF(rules[i].spec);
+                out.writeLong(used[i]);
+                out.writeLong(periodStart[i]);
+                out.writeLong(periodEnd[i]);
+                out.writeLong(overSince[i]);
+                out.writeByte(levels[i]);
+                long[] slots = windowSlots[i];
+                out.writeShort(slots != null ? slots.length : 0);
+                if (slots != null) {
+                    for (long slot : slots) {
+                        out.writeLong(slot);
+                    }
+                }
+            }
+        } catch (IOException e) {
+            // Nicht möglich beim Schreiben in den Speicher
+            throw new IllegalStateException(e);
+        }
+        dirty = false;
+        return bytes.toByteArray();
+    }
+
+    /**
+     * Übernimmt den gespeicherten Zustand aller Regeln, die es noch gibt. Ungültige Daten
+     * werden ignoriert.
+     */
+    void restoreState(byte[] state) {
+        try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(state))) {
+            if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+                return;
+            }
+            int count = in.readInt();
+            for (int n = 0; n < count; n++) {
+                String spec = in.readUTF();
+                long savedUsed = in.readLong();
+                long savedStart = in.readLong();
+                long savedEnd = in.readLong();
+                long savedOverSince = in.readLong();
+                int savedLevel = in.readByte();
+                long[] savedSlots = new long[in.readShort()];
+                for (int k = 0; k < savedSlots.length; k++) {
+                    savedSlots[k] = in.readLong();
+                }
+
+                int i = indexOf(spec);
+                if (i < 0 || (windowSlots[i] != null && windowSlots[i].length != savedSlots.length)) {
+                    continue;
+                }
+                used[i] = savedUsed;
+                periodStart[i] = savedStart;
+                periodEnd[i] = savedEnd;
+                overSince[i] = savedOverSince;
+                levels[i] = savedLevel;
+                if (windowSlots[i] != null) {
+                    System.arraycopy(savedSlots, 0, windowSlots[i], 0, savedSlots.length);
+                }
+            }
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * Darf von anderen Threads aufgerufen werden; zeigt dann einen nicht zwingend
+     * konsistenten Stand.
+     */
+    void dump(PrintWriter writer) {
+        TrafficBudgetRule[] currentRules = rules;
+        long[] currentUsed = used;
+        int[] currentLevels = levels;
+        int count = Math.min(currentRules.length, Math.min(currentUsed.length, currentLevels.length));
+        for (int i = 0; i < count; i++) {
+            TrafficBudgetRule rule = currentRules[i];
+            if (rule.isQuota()) {
+                writer.printf("budget %-40s used=%d (%d%%) level=%d%n", rule.spec, currentUsed[i],
+                        currentUsed[i] * 100 / rule.limit, currentLevels[i]);
+            } else {
+                writer.printf("budget %-40s level=%d%n", rule.spec, currentLevels[i]);
+            }
+        }
+    }
+
+    private void addToQuota(int i, TrafficBudgetRule rule, long bytes) {
+        if (bytes == 0) {
+            return;
+        }
+        used[i] += bytes;
+        dirty = true;
+        if (levels[i] < LEVEL_EXCEEDED && used[i] >= rule.limit) {
+            levels[i] = LEVEL_EXCEEDED;
+            listener.onBudgetAlert(i, rule, LEVEL_EXCEEDED, used[i]);
+        } else if (levels[i] < LEVEL_WARNING && used[i] * 100 >= rule.limit * WARNING_PERCENT) {
+            levels[i] = LEVEL_WARNING;
+            listener.onBudgetAlert(i, rule, LEVEL_WARNING, used[i]);
+        }
+    }
+
+    private void startCalendarPeriod(int i, long now) {
+        // Nur an Periodengrenzen, Calendar legt Objekte an
+        Calendar calendar = Calendar.getInstance();
+        calendar.setTimeInMillis(now);
+        calendar.set(Calendar.HOUR_OF_DAY, 0);
+        calendar.set(Calendar.MINUTE, 0);
+        calendar.set(Calendar.SECOND, 0);
+        calendar.set(Calendar.MILLISECOND, 0);
+        int field = Calendar.DAY_OF_MONTH;
+        if (rules[i].type == TrafficBudgetRule.MONTHLY) {
+            calendar.set(Calendar.DAY_OF_MONTH, 1);
+            field = Calendar.MONTH;
+        }
+        long start = calendar.getTimeInMillis();
+        calendar.add(field, 1);
+        if (start != periodStart[i]) {
+            used[i] = 0;
+            levels[i] = LEVEL_NONE;
+        }
+        periodStart[i] = start;
+        periodEnd[i] = calendar.getTimeInMillis();
+        dirty = true;
+    }
+
+    /**
+     * Rückt das gleitende Fenster bis {@code now} vor und zieht dabei die herausfallenden
+     * Abschnitte ab. Läuft die Uhr zurück, bleibt der aktuelle Abschnitt bestehen.
+     */
+    private void advanceWindow(int i, TrafficBudgetRule rule, long now) {
+        if (now < periodEnd[i]) {
+            return;
+        }
+        long slotMs = slotLength(rule);
+        long start = Math.floorDiv(now, slotMs) * slotMs;
+        long passed = Math.min(WINDOW_SLOTS, (start - periodStart[i]) / slotMs);
+        long[] slots = windowSlots[i];
+        int slot = slotOf(rule, periodStart[i]);
+        for (int k = 0; k < passed; k++) {
+            slot = (slot + 1) % WINDOW_SLOTS;
+            used[i] -= slots[slot];
+            slots[slot] = 0;
+        }
+        periodStart[i] = start;
+        periodEnd[i] = start + slotMs;
+        dirty = true;
+
+        // Wieder unter der Warnschwelle: künftige Überschreitungen erneut melden
+        if (used[i] * 100 < rule.limit * WARNING_PERCENT) {
+            levels[i] = LEVEL_NONE;
+        } else if (used[i] < rule.limit) {
+            levels[i] = Math.min(levels[i], LEVEL_WARNING);
+        }
+    }
+
+    private void updateRate(int i, TrafficBudgetRule rule, long now, long rate, long elapsedMs) {
+        if (rate >= rule.limit) {
+            if (overSince[i] < 0) {
+                overSince[i] = now - elapsedMs;
+            }
+            if (levels[i] == LEVEL_NONE && now - overSince[i] >= rule.windowMs) {
+                levels[i] = LEVEL_EXCEEDED;
+                dirty = true;
+                listener.onBudgetAlert(i, rule, LEVEL_EXCEEDED, rate);
+            }
+        } else {
+            overSince[i] = -1;
+            if (levels[i] != LEVEL_NONE && rate * 100 < rule.limit * RATE_REARM_PERCENT) {
+                levels[i] = LEVEL_NONE;
+                dirty = true;
+            }
+        }
+    }
+
+    private void resetRule(int i) {
+        TrafficBudgetRule rule = rules[i];
+        used[i] = 0;
+        periodStart[i] = Long.MIN_VALUE;
+        periodEnd[i] = Long.MIN_VALUE;
+        overSince[i] = -1;
+        levels[i] = LEVEL_NONE;
+        if (rule.type == TrafficBudgetRule.ROLLING) {
+            windowSlots[i] = new long[WINDOW_SLOTS];
+            // Erster Tick beginnt ohne Abzug einen neuen Abschnitt
+            periodStart[i] = 0;
+            periodEnd[i] = 0;
+        }
+    }
+
+    private int indexOf(String spec) {
+        for (int i = 0; i < rules.length; i++) {
+            if (rules[i].spec.equals(spec)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private static long slotLength(TrafficBudgetRule rule) {
+        // Kürzere Fenster weist TrafficBudgetRule.parse zurück
+        return rule.windowMs / WINDOW_SLOTS;
+    }
+
+    private static int slotOf(TrafficBudgetRule rule, long slotStart) {
+        return (int) Math.floorMod(slotStart / slotLength(rule), (long) WINDOW_SLOTS);
+    }
+}
@@ -0,0 +1,217 @@
+/*
+ * Copyright (C) 2025 Martin Pfeffer
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.celox.netbar;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Eine Budget- oder Alarmregel, z. B. "monthly mobile both 10G".
+ * <p>
+ * Regeln werden zeilenweise als Text konfiguriert:
+ * <pre>
+ * daily   &lt;verbindung&gt; &lt;richtung&gt; &lt;limit&gt;            # Kalendertag
+ * monthly &lt;verbindung&gt; &lt;richtung&gt; &lt;limit&gt;            # Kalendermonat
+ * rolling &lt;fenster&gt; &lt;verbindung&gt; &lt;richtung&gt; &lt;limit&gt;  # gleitendes Zeitfenster
+ * rate    &lt;verbindung&gt; &lt;richtung&gt; &lt;rate&gt; [&lt;dauer&gt;] # Rate pro Sekunde, anhaltend
+ * </pre>
+ * Verbindung ist {@code all}, {@code mobile} oder {@code wifi} (alles außer Mobilfunk),
+ * Richtung {@code up}, {@code down} oder {@code both}. Größen verstehen die Suffixe K, M und G
+ * (Basis 1024), Dauern s, m, h und d. Gleitende Fenster sind mindestens
+ * {@link #MIN_ROLLING_WINDOW_MS} lang. Leere Zeilen und Text ab {@code #} werden ignoriert.
+ */
+final class TrafficBudgetRule {
+    static final int DAILY = 0;
+    static final int MONTHLY = 1;
+    static final int ROLLING = 2;
+    static final int RATE = 3;
+
+    static final int ALL = 0;
+    static final int MOBILE = 1;
+    static final int WIFI = 2;
+
+    static final int BOTH = 0;
+    static final int UP = 1;
+    static final int DOWN = 2;
+
+    // Ein Abschnitt des gleitenden Fensters dauert mindestens eine Sekunde, siehe TrafficBudgetEngine
+    static final long MIN_ROLLING_WINDOW_MS = TrafficBudgetEngine.WINDOW_SLOTS * 1000L;
+
+    private static final String[] TYPE_NAMES = {"daily", "monthly", "rolling", "rate"};
+    private static final String[] TRANSPORT_NAMES = {"all", "mobile", "wifi"};
+    private static final String[] DIRECTION_NAMES = {"both", "up", "down"};
+
+    final int type;
+    final int transport;
+    final int direction;
+    final long limit; // Bytes, bei RATE Bytes pro Sekunde
+    final long windowMs; // Fenster bei ROLLING, Mindestdauer bei RATE, sonst 0
+    final String spec; // Normalisierte Schreibweise, identifiziert den gespeicherten Zustand
+    final String label; // Kurzbeschreibung ohne Limit, z. B. "monthly mobile both"
+
+    private TrafficBudgetRule(int type, int transport, int direction, long limit, long windowMs,
+                              String spec, String label) {
+        this.type = type;
+        this.transport = transport;
+        this.direction = direction;
+        this.limit = limit;
+        this.windowMs = windowMs;
+        this.spec = spec;
+        this.label = label;
+    }
+
+    /**
+     * Der für die Regel relevante Anteil des Verkehrs.
+     */
+    long select(long txBytes, long rxBytes, long mobileTxBytes, long mobileRxBytes) {
+        long tx;
+        long rx;
+        switch (transport) {
+            case MOBILE:
+                tx = mobileTxBytes;
+                rx = mobileRxBytes;
+                break;
+            case WIFI:
+                tx = txBytes - mobileTxBytes;
+                rx = rxBytes - mobileRxBytes;
+                break;
+            default:
+                tx = txBytes;
+                rx = rxBytes;
+                break;
+        }
+        switch (direction) {
+            case UP:
+                return tx;
+            case DOWN:
+                return rx;
+            default:
+                return tx + rx;
+        }
+    }
+
+    boolean isQuota() {
+        return type != RATE;
+    }
+
+    @Override
+    public String toString() {
+        return spec;
+    }
+
+    /**
+     * Liest alle Regeln aus {@code text}. Ungültige Zeilen werden übersprungen und, falls
+     * {@code invalidLines} nicht {@code null} ist, dort gesammelt.
+     */
+    static List<TrafficBudgetRule> parseAll(String text, List<String> invalidLines) {
+        List<TrafficBudgetRule> rules = new ArrayList<>();
+        if (text == null) {
+            return rules;
+        }
+        for (String line : text.split("\n")) {
+            int comment = line.indexOf('#');
+            String content = (comment >= 0 ? line.substring(0, comment) : line).trim();
+            if (content.isEmpty()) {
+                continue;
+            }
+            try {
+                rules.add(parse(content));
+            } catch (IllegalArgumentException e) {
+                if (invalidLines != null) {
+                    invalidLines.add(line.trim());
+                }
+            }
+        }
+        return rules;
+    }
+
+    /**
+     * @throws IllegalArgumentException wenn die Zeile keine gültige Regel ist
+     */
+    static TrafficBudgetRule parse(String line) {
+        String[] tokens = line.trim().toLowerCase(Locale.ROOT).split("\\s+");
+        int type = indexOf(TYPE_NAMES, tokens[0]);
+        int position = 1;
+        long windowMs = 0;
+        if (type == ROLLING) {
+            windowMs = parseDuration(token(tokens, position++));
+        }
+        int transport = indexOf(TRANSPORT_NAMES, token(tokens, position++));
+        int direction = indexOf(DIRECTION_NAMES, token(tokens, position++));
+        String limitToken = token(tokens, position++);
+        if (type == RATE && limitToken.endsWith("/s")) {
+            limitToken = limitToken.substring(0, limitToken.length() - 2);
+        }
+        long limit = parseSize(limitToken);
+        if (type == RATE && position < tokens.length) {
+            windowMs = parseDuration(tokens[position++]);
+        }
+        if (position != tokens.length || type < 0 || transport < 0 || direction < 0 || limit <= 0 || windowMs < 0
+                || (type == ROLLING && windowMs <= 0)) {
+            throw new IllegalArgumentException("Invalid budget rule: " + line);
+        }
+        if (type == ROLLING && windowMs < MIN_ROLLING_WINDOW_MS) {
+            throw new IllegalArgumentException("Rolling window must be at least "
+                    + MIN_ROLLING_WINDOW_MS / 1000 + "s: " + line);
+        }
+
+        StringBuilder label = new StringBuilder(TYPE_NAMES[type]);
+        if (type == ROLLING) {
+            label.append(' ').append(windowMs / 1000).append('s');
+        }
+        label.append(' ').append(TRANSPORT_NAMES[transport])
+                .append(' ').append(DIRECTION_NAMES[direction]);
+        String spec = label + " " + limit + (type == RATE ? " " + windowMs / 1000 + "s" : "");
+        return new TrafficBudgetRule(type, transport, direction, limit, windowMs, spec, label.toString());
+    }
+
+    private static String token(String[] tokens, int index) {
+        if (index >= tokens.length) {
+            throw new IllegalArgumentException("Incomplete budget rule");
+        }
+        return tokens[index];
+    }
+
+    private static int indexOf(String[] names, String name) {
+        for (int i = 0; i < names.length; i++) {
+            if (names[i].equals(name)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private static long parseSize(String token) {
+        return parseNumber(token, "bkmg", new long[] {1, 1024, 1024 * 1024, 1024 * 1024 * 1024});
+    }
+
+    private static long parseDuration(String token) {
+        return parseNumber(token, "smhd", new long[] {1000, 60_000, 3_600_000, 86_400_000});
+    }
+
+    private static long parseNumber(String token, String suffixes, long[] factors) {
+        int unit = suffixes.indexOf(token.charAt(token.length() - 1));
+        String number = unit >= 0 ? token.substring(0, token.length() - 1) : token;
+        long factor = unit >= 0 ? factors[unit] : factors[0];
+        try {
+            return Math.round(Double.parseDouble(number) * factor);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Invalid number: " + token);
+        }
+    }
+}
@@ -0,0 +1,134 @@
+/*
+ * Copyright (C) 2025 Martin Pfeffer
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.celox.netbar;
+
+import com.github.mikephil.charting.data.Entry;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Bereitet eine {@link TrafficSeries} für das Diagramm auf: Umrechnung in KB/s, Reduktion per
+ * {@link LttbDownsampler} und Aufbau der Chart-Einträge.
+ * <p>
+ * Die Arbeitsarrays werden wiederverwendet und nur bei Bedarf vergrößert. Eine Instanz darf
+ * daher nur von einem Thread verwendet werden.
+ */
+final class TrafficChartData {
+    private float[] xValues = new float[0];
+    private float[] txValues = new float[0];
+    private float[] rxValues = new float[0];
+    private float[] mobileTxValues = new float[0];
+    private float[] mobileRxValues = new float[0];
+    private int[] txIndices = new int[0];
+    private int[] rxIndices = new int[0];
+    private int size;
+    private int txCount;
+    private int rxCount;
+    private long baseTime;
+    private long resolutionMs;
+    private boolean hasMobile;
+
+    /**
+     * Übernimmt die Datenpunkte und reduziert Upload und Download auf höchstens
+     * {@code maxPoints} Punkte.
+     */
+    void prepare(TrafficSeries data, int maxPoints) {
+        size = data.size();
+        ensureCapacity(size);
+
+        // Datenpunkte sind über die Auflösung aufsummiert, für KB/s durch deren Sekunden teilen
+        resolutionMs = data.getResolutionMs();
+        float bytesPerKbPerSecond = 1024f * resolutionMs / 1000f;
+
+        // X-Werte in Vielfachen der Auflösung ab dem ersten Datenpunkt, damit float genügt
+        baseTime = size > 0 ? data.getTimestamp(0) : 0;
+        hasMobile = false;
+        for (int i = 0; i < size; i++) {
+            xValues[i] = (float) ((double) (data.getTimestamp(i) - baseTime) / resolutionMs);
+            txValues[i] = data.getTxBytes(i) / bytesPerKbPerSecond; // KB/s
+            rxValues[i] = data.getRxBytes(i) / bytesPerKbPerSecond; // KB/s
+            mobileTxValues[i] = data.getMobileTxBytes(i) / bytesPerKbPerSecond;
+            mobileRxValues[i] = data.getMobileRxBytes(i) / bytesPerKbPerSecond;
+            hasMobile |= mobileTxValues[i] > 0 || mobileRxValues[i] > 0;
+        }
+
+        // Beide Reihen getrennt reduzieren, damit jede ihre eigenen Spitzen behält
+        txCount = LttbDownsampler.downsample(xValues, txValues, size, maxPoints, txIndices);
+        rxCount = LttbDownsampler.downsample(xValues, rxValues, size, maxPoints, rxIndices);
+    }
+
+    int size() {
+        return size;
+    }
+
+    /**
+     * Zeitstempel des ersten Datenpunkts; X-Werte zählen in Auflösungsschritten ab hier.
+     */
+    long getBaseTime() {
+        return baseTime;
+    }
+
+    long getResolutionMs() {
+        return resolutionMs;
+    }
+
+    boolean hasMobile() {
+        return hasMobile;
+    }
+
+    List<Entry> createUploadEntries() {
+        return createEntries(txValues, txIndices, txCount);
+    }
+
+    List<Entry> createDownloadEntries() {
+        return createEntries(rxValues, rxIndices, rxCount);
+    }
+
+    /**
+     * Mobilfunk-Anteile an denselben Punkten wie die Gesamtreihe, damit sie gestapelt an
+     * jedem Punkt unterhalb der Summe bleiben.
+     */
+    List<Entry> createMobileUploadEntries() {
+        return createEntries(mobileTxValues, txIndices, txCount);
+    }
+
+    List<Entry> createMobileDownloadEntries() {
+        return createEntries(mobileRxValues, rxIndices, rxCount);
+    }
+
+    private List<Entry> createEntries(float[] values, int[] indices, int count) {
+        List<Entry> entries = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            int index = indices[i];
+            entries.add(new Entry(xValues[index], values[index]));
+        }
+        return entries;
+    }
+
+    private void ensureCapacity(int size) {
+        if (xValues.length < size) {
+            xValues = new float[size];
+            txValues = new float[size];
+            rxValues = new float[size];
+            mobileTxValues = new float[size];
+            mobileRxValues = new float[size];
+            txIndices = new int[size];
+            rxIndices = new int[size];
+        }
+    }
+}
@@ -16,10 +16,18 @@
 
 package io.celox.netbar;
 
+import android.content.pm.ApplicationInfo;
+import android.content.pm.PackageManager;
 import android.os.Bundle;
+import android.os.Handler;
+import android.os.HandlerThread;
+import android.os.Looper;
+import android.os.Process;
+import android.util.SparseArray;
 import android.view.View;
 import android.widget.AdapterView;
 import android.widget.ArrayAdapter;
+import android.widget.CompoundButton;
 import android.widget.Spinner;
 import android.widget.TextView;
 
@@ -27,15 +35,18 @@ import androidx.appcompat.app.AppCompatActivity;
 import androidx.core.content.ContextCompat;
 
 import com.github.mikephil.charting.charts.LineChart;
+import com.github.mikephil.charting.components.AxisBase;
+import com.github.mikephil.charting.components.LimitLine;
 import com.github.mikephil.charting.components.XAxis;
 import com.github.mikephil.charting.components.YAxis;
 import com.github.mikephil.charting.data.Entry;
 import com.github.mikephil.charting.data.LineData;
 import com.github.mikephil.charting.data.LineDataSet;
-import com.github.mikephil.charting.formatter.IndexAxisValueFormatter;
+import com.github.mikephil.charting.formatter.ValueFormatter;
 
 import java.text.SimpleDateFormat;
 import java.util.ArrayList;
+import java.util.Date;
 import java.util.List;
 import java.util.Locale;
 import java.util.concurrent.TimeUnit;
@@ -43,8 +54,28 @@ import java.util.concurrent.TimeUnit;
 public class TrafficDetailActivity extends AppCompatActivity {
     private LineChart chart;
     private NetworkTrafficManager trafficManager;
+    private static final int MIN_CHART_POINTS = 100;
+    private static final int TOP_APPS_SHOWN = 5;
+
     private long selectedTimeRange = TimeUnit.MINUTES.toMillis(30); // Standard: 30 Minuten
 
+    // Chartdaten werden auf einem eigenen Thread aufbereitet, nur setData läuft im UI-Thread
+    private HandlerThread chartThread;
+    private Handler chartHandler;
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+    private int chartRequest; // Nur im UI-Thread; verwirft Ergebnisse veralteter Anfragen
+
+    private final TrafficChartData chartData = new TrafficChartData(); // Nur im Chart-Thread
+    private final SparseArray<String> appLabels = new SparseArray<>(); // UID -> Name, nur im Chart-Thread
+
+    // Live-Modus: neue Sekundenwerte werden angehängt statt den Chart neu aufzubauen
+    private boolean liveMode;
+    private LiveTrafficChartData liveData;
+    private LiveTrafficFeed liveFeed;
+    private LineData liveLineData;
+    private LineDataSet[] liveMobileDataSets;
+    private boolean liveChartShown;
+
     @Override
     protected void onCreate(Bundle savedInstanceState) {
         super.onCreate(savedInstanceState);
@@ -52,6 +83,10 @@ public class TrafficDetailActivity extends AppCompatActivity {
 
         trafficManager = NetworkTrafficManager.getInstance(this);
 
+        chartThread = new HandlerThread("ChartPreparation", Process.THREAD_PRIORITY_BACKGROUND);
+        chartThread.start();
+        chartHandler = new Handler(chartThread.getLooper());
+
         // Chart initialisieren
         chart = findViewById(R.id.traffic_chart);
         setupChart();
@@ -59,6 +94,9 @@ public class TrafficDetailActivity extends AppCompatActivity {
         // Spinner für Zeitraumauswahl einrichten
         setupTimeRangeSpinner();
 
+        CompoundButton liveSwitch = findViewById(R.id.live_switch);
+        liveSwitch.setOnCheckedChangeListener((buttonView, isChecked) -> setLiveMode(isChecked));
+
         // Daten initial laden
         updateChartData();
     }
@@ -87,6 +125,7 @@ public class TrafficDetailActivity extends AppCompatActivity {
         xAxis.setTextSize(10f);
         xAxis.setLabelCount(5);
         xAxis.setAvoidFirstLastClipping(true);
+        xAxis.setDrawLimitLinesBehindData(true);
 
         // Y-Achse konfigurieren
         YAxis leftAxis = chart.getAxisLeft();
@@ -121,7 +160,11 @@ public class TrafficDetailActivity extends AppCompatActivity {
                 "Letzte 3 Stunden",
                 "Letzte 6 Stunden",
                 "Letzte 12 Stunden",
-                "Letzte 24 Stunden"
+                "Letzte 24 Stunden",
+                "Letzte 7 Tage",
+                "Letzte 30 Tage",
+                "Letzte 90 Tage",
+                "Letztes Jahr"
         };
 
         ArrayAdapter<String> adapter = new ArrayAdapter<>(
@@ -160,8 +203,24 @@ public class TrafficDetailActivity extends AppCompatActivity {
                     case 7: // 24 h
                         selectedTimeRange = TimeUnit.HOURS.toMillis(24);
                         break;
+                    case 8: // 7 d
+                        selectedTimeRange = TimeUnit.DAYS.toMillis(7);
+                        break;
+                    case 9: // 30 d
+                        selectedTimeRange = TimeUnit.DAYS.toMillis(30);
+                        break;
+                    case 10: // 90 d
+                        selectedTimeRange = TimeUnit.DAYS.toMillis(90);
+                        break;
+                    case 11: // 1 Jahr
+                        selectedTimeRange = TimeUnit.DAYS.toMillis(365);
+                        break;
+                }
+                if (liveMode) {
+                    startLive();
+                } else {
+                    updateChartData();
                 }
-                updateChartData();
             }
 
             @Override
@@ -171,79 +230,458 @@ public class TrafficDetailActivity extends AppCompatActivity {
         });
     }
 
-    private void updateChartData() {
-        List<NetworkTrafficData> data = trafficManager.getTrafficData(selectedTimeRange);
+    @Override
+    protected void onResume() {
+        super.onResume();
+        if (liveMode) {
+            startLive();
+        }
+    }
 
-        if (data.isEmpty()) {
-            // Keine Daten verfügbar
-            TextView noDataText = findViewById(R.id.no_data_text);
-            noDataText.setVisibility(View.VISIBLE);
-            chart.setVisibility(View.GONE);
-            return;
+    @Override
+    protected void onPause() {
+        super.onPause();
+        if (liveMode) {
+            stopLive();
         }
+    }
 
-        TextView noDataText = findViewById(R.id.no_data_text);
-        noDataText.setVisibility(View.GONE);
-        chart.setVisibility(View.VISIBLE);
+    @Override
+    protected void onDestroy() {
+        super.onDestroy();
+        mainHandler.removeCallbacksAndMessages(null);
+        chartThread.quitSafely();
+    }
 
-        List<Entry> uploadEntries = new ArrayList<>();
-        List<Entry> downloadEntries = new ArrayList<>();
-        List<String> labels = new ArrayList<>();
+    /**
+     * Stößt die Aufbereitung der Chartdaten für den gewählten Zeitraum an. Das Ergebnis wird
+     * nur übernommen, wenn inzwischen keine neuere Anfrage gestellt wurde.
+     */
+    private void updateChartData() {
+        int request = ++chartRequest;
+        long timeRange = selectedTimeRange;
+        int maxPoints = getMaxChartPoints();
+        chartHandler.post(() -> prepareChartData(request, timeRange, maxPoints));
+        chartHandler.post(() -> prepareAppBreakdown(request));
+    }
+
+    /**
+     * Etwa ein Datenpunkt pro Pixel; mehr kann der Chart ohnehin nicht darstellen.
+     */
+    private int getMaxChartPoints() {
+        int width = chart.getWidth();
+        if (width == 0) {
+            // Vor dem ersten Layout
+            width = getResources().getDisplayMetrics().widthPixels;
+        }
+        return Math.max(MIN_CHART_POINTS, width);
+    }
 
-        SimpleDateFormat sdf = new SimpleDateFormat("HH:mm", Locale.getDefault());
+    /**
+     * Läuft im Chart-Thread: liest die Daten, reduziert sie per LTTB auf {@code maxPoints} und
+     * baut die Datensätze. Nur das Setzen der Daten wird an den UI-Thread übergeben.
+     */
+    private void prepareChartData(int request, long timeRange, int maxPoints) {
+        // Direkt nach dem Prozessstart kann die Historie noch laden; hier darf gewartet werden
+        trafficManager.awaitHistoryLoaded();
+        TrafficSeries data = trafficManager.getTrafficData(timeRange);
 
-        for (int i = 0; i < data.size(); i++) {
-            NetworkTrafficData point = data.get(i);
-            uploadEntries.add(new Entry(i, point.getTxBytes() / 1024f)); // KB/s
-            downloadEntries.add(new Entry(i, point.getRxBytes() / 1024f)); // KB/s
-            labels.add(sdf.format(point.getDate()));
+        if (data.isEmpty()) {
+            // Keine Daten verfügbar
+            mainHandler.post(() -> {
+                if (request == chartRequest) {
+                    showNoData();
+                    showStats(null);
+                }
+            });
+            return;
         }
 
+        // Aus den mitgeführten Kennzahlen, ohne die Datenpunkte erneut zu durchlaufen
+        TrafficSummary summary = trafficManager.getTrafficSummary(data);
+        chartData.prepare(data, maxPoints);
+        List<Entry> uploadEntries = chartData.createUploadEntries();
+        List<Entry> downloadEntries = chartData.createDownloadEntries();
+
         // Einstellung für Datensatzgröße
-        int dataPoints = data.size();
-        boolean showDataPoints = dataPoints <= 30; // Zeige Datenpunkte nur bei wenigen Daten
+        boolean showDataPoints = chartData.size() <= 30; // Zeige Datenpunkte nur bei wenigen Daten
 
-        // Upload-Linie
+        // Upload- und Download-Linie; linear, da Bézierkurven über die gewählten Spitzen hinausschwingen
         LineDataSet uploadDataSet = new LineDataSet(uploadEntries, "Upload (KB/s)");
-        uploadDataSet.setColor(getResources().getColor(R.color.upload_color, null));
-        uploadDataSet.setCircleColor(getResources().getColor(R.color.upload_color, null));
-        uploadDataSet.setCircleRadius(2f);
-        uploadDataSet.setDrawCircles(showDataPoints);
-        uploadDataSet.setDrawCircleHole(false);
-        uploadDataSet.setLineWidth(2f);
-        uploadDataSet.setValueTextSize(9f);
-        uploadDataSet.setDrawValues(false);
-        uploadDataSet.setDrawFilled(true);
-        uploadDataSet.setFillColor(getResources().getColor(R.color.upload_color_transparent, null));
-        uploadDataSet.setMode(LineDataSet.Mode.CUBIC_BEZIER);
-
-        // Download-Linie
+        styleTotalDataSet(uploadDataSet, R.color.upload_color, R.color.upload_color_transparent, showDataPoints);
         LineDataSet downloadDataSet = new LineDataSet(downloadEntries, "Download (KB/s)");
-        downloadDataSet.setColor(getResources().getColor(R.color.download_color, null));
-        downloadDataSet.setCircleColor(getResources().getColor(R.color.download_color, null));
-        downloadDataSet.setCircleRadius(2f);
-        downloadDataSet.setDrawCircles(showDataPoints);
-        downloadDataSet.setDrawCircleHole(false);
-        downloadDataSet.setLineWidth(2f);
-        downloadDataSet.setValueTextSize(9f);
-        downloadDataSet.setDrawValues(false);
-        downloadDataSet.setDrawFilled(true);
-        downloadDataSet.setFillColor(getResources().getColor(R.color.download_color_transparent, null));
-        downloadDataSet.setMode(LineDataSet.Mode.CUBIC_BEZIER);
+        styleTotalDataSet(downloadDataSet, R.color.download_color, R.color.download_color_transparent, showDataPoints);
 
-        // X-Achsenbeschriftung
-        chart.getXAxis().setValueFormatter(new IndexAxisValueFormatter(labels));
+        LineData lineData = new LineData(uploadDataSet, downloadDataSet);
+
+        if (chartData.hasMobile()) {
+            // Mobilfunk-Anteile gestapelt: ihre Flächen liegen unten über der Gesamtfläche, der
+            // sichtbare Rest darüber ist WLAN und andere Verbindungen
+            lineData.addDataSet(createMobileDataSet(chartData.createMobileUploadEntries(),
+                    "Upload mobil (KB/s)", R.color.mobile_upload_color,
+                    R.color.mobile_upload_color_transparent));
+            lineData.addDataSet(createMobileDataSet(chartData.createMobileDownloadEntries(),
+                    "Download mobil (KB/s)", R.color.mobile_download_color,
+                    R.color.mobile_download_color_transparent));
+        }
+        ValueFormatter axisFormatter = new TimeAxisValueFormatter(chartData.getBaseTime(),
+                chartData.getResolutionMs(), getLabelPattern(chartData.getResolutionMs()));
 
         // Anpassen der angezeigten Labels abhängig von der Datenmenge
-        int labelCount = Math.min(5, labels.size());
-        if (labelCount == 0) labelCount = 1;
+        int labelCount = Math.max(1, Math.min(5, chartData.size()));
+        List<LimitLine> eventMarkers = createEventMarkers(data, chartData.getBaseTime(), chartData.getResolutionMs());
+
+        mainHandler.post(() -> {
+            if (request == chartRequest) {
+                showChart(lineData, axisFormatter, labelCount, eventMarkers);
+                showStats(summary);
+            }
+        });
+    }
+
+    /**
+     * Läuft im Chart-Thread: eine senkrechte Linie am Beginn jedes erkannten Ereignisses im
+     * dargestellten Zeitraum, in denselben X-Einheiten wie die Datenpunkte.
+     */
+    private List<LimitLine> createEventMarkers(TrafficSeries data, long baseTime, long resolutionMs) {
+        long from = data.getTimestamp(0);
+        long to = data.getTimestamp(data.size() - 1) + resolutionMs;
+        int color = ContextCompat.getColor(this, R.color.anomaly_color);
+        List<LimitLine> markers = new ArrayList<>();
+        for (TrafficEventLog.Event event : trafficManager.getEventLog().getEvents(from, to)) {
+            float x = (float) ((double) (Math.max(event.start, from) - baseTime) / resolutionMs);
+            String label = (event.direction == TrafficEventLog.DIRECTION_UP ? "↑ " : "↓ ")
+                    + (event.type == TrafficEventLog.TYPE_BURST ? "Burst" : "Sustained");
+            LimitLine marker = new LimitLine(x, label);
+            marker.setLineColor(color);
+            marker.setLineWidth(1f);
+            marker.enableDashedLine(10f, 6f, 0f);
+            marker.setTextColor(color);
+            marker.setTextSize(9f);
+            marker.setLabelPosition(LimitLine.LimitLabelPosition.RIGHT_TOP);
+            markers.add(marker);
+        }
+        return markers;
+    }
+
+    /**
+     * Läuft im Chart-Thread: liest die fertig sortierte Top-Liste und löst die App-Namen auf.
+     */
+    private void prepareAppBreakdown(int request) {
+        UidUsage[] topApps = trafficManager.getTopApps();
+        int count = Math.min(TOP_APPS_SHOWN, topApps.length);
+
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; i < count; i++) {
+            UidUsage usage = topApps[i];
+            if (i > 0) {
+                text.append('\n');
+            }
+            text.append(getAppLabel(usage.getUid()))
+                    .append("\n  ↑ ").append(formatBytes(usage.getTxBytes()))
+                    .append("  ↓ ").append(formatBytes(usage.getRxBytes()));
+        }
+
+        mainHandler.post(() -> {
+            if (request == chartRequest) {
+                showAppBreakdown(count > 0 ? text.toString() : null);
+            }
+        });
+    }
+
+    private String getAppLabel(int uid) {
+        String label = appLabels.get(uid);
+        if (label == null) {
+            label = loadAppLabel(uid);
+            appLabels.put(uid, label);
+        }
+        return label;
+    }
+
+    private String loadAppLabel(int uid) {
+        PackageManager packageManager = getPackageManager();
+        String[] packages = packageManager.getPackagesForUid(uid);
+        if (packages != null && packages.length > 0) {
+            try {
+                ApplicationInfo info = packageManager.getApplicationInfo(packages[0], 0);
+                return packageManager.getApplicationLabel(info).toString();
+            } catch (PackageManager.NameNotFoundException e) {
+                e.printStackTrace();
+            }
+        }
+        // Systemdienste, entfernte Apps oder Tethering haben kein Paket
+        String name = packageManager.getNameForUid(uid);
+        return name != null ? name : "UID " + uid;
+    }
+
+    private static String formatBytes(long bytes) {
+        return TrafficFormatter.formatBytes(bytes);
+    }
+
+    private void showAppBreakdown(String text) {
+        View card = findViewById(R.id.app_breakdown_card);
+        if (text == null) {
+            card.setVisibility(View.GONE);
+            return;
+        }
+        TextView breakdownText = findViewById(R.id.app_breakdown_text);
+        breakdownText.setText(text);
+        card.setVisibility(View.VISIBLE);
+    }
+
+    private void showStats(TrafficSummary summary) {
+        View card = findViewById(R.id.stats_card);
+        if (summary == null) {
+            card.setVisibility(View.GONE);
+            return;
+        }
+        setText(R.id.stats_total_up, "↑ " + formatBytes(summary.getTxBytes()));
+        setText(R.id.stats_total_down, "↓ " + formatBytes(summary.getRxBytes()));
+        setText(R.id.stats_peak_up, "↑ " + formatBytes(summary.getTxPeakRate()) + "/s");
+        setText(R.id.stats_peak_down, "↓ " + formatBytes(summary.getRxPeakRate()) + "/s");
+        setText(R.id.stats_avg_up, "↑ " + formatBytes(summary.getTxAverageRate()) + "/s");
+        setText(R.id.stats_avg_down, "↓ " + formatBytes(summary.getRxAverageRate()) + "/s");
+        // Die Spitze ist eine Sekundenrate, die Quantile sind über die Auflösung gemittelt
+        setText(R.id.stats_percentiles_label,
+                getString(R.string.rate_percentiles, formatRateInterval(summary.getRateIntervalMs())));
+        setText(R.id.stats_percentiles,
+                formatPercentileRow("p50", summary.getTxRateP50(), summary.getRxRateP50()) + "\n"
+                        + formatPercentileRow("p95", summary.getTxRateP95(), summary.getRxRateP95()) + "\n"
+                        + formatPercentileRow("p99", summary.getTxRateP99(), summary.getRxRateP99()));
+        card.setVisibility(View.VISIBLE);
+    }
+
+    private String formatRateInterval(long intervalMs) {
+        if (intervalMs <= TimeUnit.SECONDS.toMillis(1)) {
+            return getString(R.string.per_second);
+        }
+        String interval;
+        if (intervalMs >= TimeUnit.DAYS.toMillis(1)) {
+            interval = intervalMs / TimeUnit.DAYS.toMillis(1) + " d";
+        } else if (intervalMs >= TimeUnit.HOURS.toMillis(1)) {
+            interval = intervalMs / TimeUnit.HOURS.toMillis(1) + " h";
+        } else if (intervalMs >= TimeUnit.MINUTES.toMillis(1)) {
+            interval = intervalMs / TimeUnit.MINUTES.toMillis(1) + " min";
+        } else {
+            interval = intervalMs / TimeUnit.SECONDS.toMillis(1) + " s";
+        }
+        return getString(R.string.average_over, interval);
+    }
+
+    private static String formatPercentileRow(String label, long txRate, long rxRate) {
+        return String.format(Locale.getDefault(), "%s  ↑ %-12s ↓ %s",
+                label, formatBytes(txRate) + "/s", formatBytes(rxRate) + "/s");
+    }
+
+    private void setText(int viewId, String text) {
+        TextView view = findViewById(viewId);
+        view.setText(text);
+    }
+
+    private void styleTotalDataSet(LineDataSet dataSet, int colorRes, int fillColorRes, boolean showDataPoints) {
+        dataSet.setColor(getResources().getColor(colorRes, null));
+        dataSet.setCircleColor(getResources().getColor(colorRes, null));
+        dataSet.setCircleRadius(2f);
+        dataSet.setDrawCircles(showDataPoints);
+        dataSet.setDrawCircleHole(false);
+        dataSet.setLineWidth(2f);
+        dataSet.setValueTextSize(9f);
+        dataSet.setDrawValues(false);
+        dataSet.setDrawFilled(true);
+        dataSet.setFillColor(getResources().getColor(fillColorRes, null));
+        dataSet.setMode(LineDataSet.Mode.LINEAR);
+    }
+
+    private LineDataSet createMobileDataSet(List<Entry> entries, String label, int colorRes, int fillColorRes) {
+        LineDataSet dataSet = new LineDataSet(entries, label);
+        styleMobileDataSet(dataSet, colorRes, fillColorRes);
+        return dataSet;
+    }
+
+    private void styleMobileDataSet(LineDataSet dataSet, int colorRes, int fillColorRes) {
+        dataSet.setColor(getResources().getColor(colorRes, null));
+        dataSet.setDrawCircles(false);
+        dataSet.setLineWidth(1f);
+        dataSet.setDrawValues(false);
+        dataSet.setDrawFilled(true);
+        dataSet.setFillColor(getResources().getColor(fillColorRes, null));
+        dataSet.setMode(LineDataSet.Mode.LINEAR);
+    }
+
+    private void setLiveMode(boolean enabled) {
+        if (enabled == liveMode) {
+            return;
+        }
+        liveMode = enabled;
+        if (enabled) {
+            startLive();
+        } else {
+            stopLive();
+            updateChartData();
+        }
+    }
+
+    /**
+     * Lädt die Sekundenwerte des gewählten Zeitraums (höchstens 15 Minuten) einmalig und hängt
+     * danach jede neue Sekunde an. Bei höchstens 900 Werten ist das direkt im UI-Thread billig.
+     */
+    private void startLive() {
+        stopLive();
+
+        // Noch laufende Aufbereitungen für den normalen Chart verwerfen, die App-Liste bleibt
+        int request = ++chartRequest;
+        chartHandler.post(() -> prepareAppBreakdown(request));
+
+        liveData = new LiveTrafficChartData(selectedTimeRange);
+        liveFeed = new LiveTrafficFeed(liveData, this::onLiveDataChanged);
+        liveFeed.start();
+        trafficManager.addTrafficListener(liveFeed);
+        liveData.reset(trafficManager.getTrafficData(liveData.getWindowMs()));
+
+        LineDataSet uploadDataSet = new LiveLineDataSet(liveData.getUploadEntries(), "Upload (KB/s)");
+        styleTotalDataSet(uploadDataSet, R.color.upload_color, R.color.upload_color_transparent, false);
+        LineDataSet downloadDataSet = new LiveLineDataSet(liveData.getDownloadEntries(), "Download (KB/s)");
+        styleTotalDataSet(downloadDataSet, R.color.download_color, R.color.download_color_transparent, false);
+        LineDataSet mobileUploadDataSet = new LiveLineDataSet(liveData.getMobileUploadEntries(), "Upload mobil (KB/s)");
+        styleMobileDataSet(mobileUploadDataSet, R.color.mobile_upload_color, R.color.mobile_upload_color_transparent);
+        LineDataSet mobileDownloadDataSet = new LiveLineDataSet(liveData.getMobileDownloadEntries(), "Download mobil (KB/s)");
+        styleMobileDataSet(mobileDownloadDataSet, R.color.mobile_download_color, R.color.mobile_download_color_transparent);
+
+        liveLineData = new LineData(uploadDataSet, downloadDataSet);
+        liveMobileDataSets = new LineDataSet[] {mobileUploadDataSet, mobileDownloadDataSet};
+        liveChartShown = false;
+        onLiveDataChanged();
+    }
+
+    private void stopLive() {
+        if (liveFeed == null) {
+            return;
+        }
+        trafficManager.removeTrafficListener(liveFeed);
+        liveFeed.stop();
+        liveFeed = null;
+    }
+
+    /**
+     * Läuft im UI-Thread, höchstens einmal pro Frame. Aktualisiert nur Minimum und Maximum der
+     * Datensätze (O(1)) und zeichnet neu; Datensätze und Beschriftungen bleiben erhalten.
+     */
+    private void onLiveDataChanged() {
+        if (liveData.isEmpty()) {
+            showNoData();
+            return;
+        }
+        if (liveMobileDataSets != null && liveData.hasMobile()) {
+            // Mobilfunk-Linien erst, wenn es Mobilfunkverkehr gibt
+            for (LineDataSet dataSet : liveMobileDataSets) {
+                liveLineData.addDataSet(dataSet);
+            }
+            liveMobileDataSets = null;
+        }
+        if (!liveChartShown) {
+            liveChartShown = true;
+            showChart(liveLineData, new TimeAxisValueFormatter(liveData.getBaseTime(),
+                    LiveTrafficChartData.RESOLUTION_MS, "HH:mm:ss"), 5, null);
+            return;
+        }
+        for (int i = 0; i < liveLineData.getDataSetCount(); i++) {
+            liveLineData.getDataSetByIndex(i).notifyDataSetChanged();
+        }
+        liveLineData.notifyDataChanged();
+        chart.notifyDataSetChanged();
+        chart.invalidate();
+    }
+
+    private void showNoData() {
+        TextView noDataText = findViewById(R.id.no_data_text);
+        noDataText.setVisibility(View.VISIBLE);
+        chart.setVisibility(View.GONE);
+    }
+
+    /**
+     * @param eventMarkers Markierungen erkannter Ereignisse oder {@code null} für keine
+     */
+    private void showChart(LineData lineData, ValueFormatter axisFormatter, int labelCount,
+                           List<LimitLine> eventMarkers) {
+        TextView noDataText = findViewById(R.id.no_data_text);
+        noDataText.setVisibility(View.GONE);
+        chart.setVisibility(View.VISIBLE);
+
+        // X-Achsenbeschriftung
+        chart.getXAxis().setValueFormatter(axisFormatter);
         chart.getXAxis().setLabelCount(labelCount, true);
+        chart.getXAxis().removeAllLimitLines();
+        if (eventMarkers != null) {
+            for (LimitLine marker : eventMarkers) {
+                chart.getXAxis().addLimitLine(marker);
+            }
+        }
 
         // Daten zum Chart hinzufügen
-        LineData lineData = new LineData(uploadDataSet, downloadDataSet);
         chart.setData(lineData);
 
         // Chart aktualisieren
         chart.invalidate();
     }
-}
\ No newline at end of file
+
+    private String getLabelPattern(long resolutionMs) {
+        if (resolutionMs >= TimeUnit.DAYS.toMillis(1)) {
+            return "dd.MM.yy";
+        } else if (resolutionMs >= TimeUnit.HOURS.toMillis(1)) {
+            return "dd.MM. HH:mm";
+        } else if (resolutionMs < TimeUnit.MINUTES.toMillis(1)) {
+            return "HH:mm:ss";
+        }
+        return "HH:mm";
+    }
+
+    /**
+     * Datensatz des Live-Modus, dessen Minimum und Maximum aus dem {@link ChartEntryWindow} in
+     * O(1) gelesen statt bei jeder Änderung über alle Einträge berechnet werden.
+     */
+    private static final class LiveLineDataSet extends LineDataSet {
+        LiveLineDataSet(ChartEntryWindow entries, String label) {
+            super(entries, label);
+        }
+
+        @Override
+        public void calcMinMax() {
+            // Wird schon im Konstruktor der Basisklasse aufgerufen, daher über getValues()
+            ChartEntryWindow entries = (ChartEntryWindow) getValues();
+            if (entries == null || entries.isEmpty()) {
+                mYMax = -Float.MAX_VALUE;
+                mYMin = Float.MAX_VALUE;
+                mXMax = -Float.MAX_VALUE;
+                mXMin = Float.MAX_VALUE;
+                return;
+            }
+            mYMax = entries.getYMax();
+            mYMin = entries.getYMin();
+            mXMin = entries.get(0).getX();
+            mXMax = entries.get(entries.size() - 1).getX();
+        }
+    }
+
+    /**
+     * Beschriftet die X-Achse mit Uhrzeit bzw. Datum. Formatiert wird nur für die wenigen
+     * sichtbaren Achsenbeschriftungen, nicht für jeden Datenpunkt.
+     */
+    private static final class TimeAxisValueFormatter extends ValueFormatter {
+        private final long baseTime;
+        private final long resolutionMs;
+        private final SimpleDateFormat dateFormat;
+        private final Date date = new Date();
+
+        TimeAxisValueFormatter(long baseTime, long resolutionMs, String pattern) {
+            this.baseTime = baseTime;
+            this.resolutionMs = resolutionMs;
+            this.dateFormat = new SimpleDateFormat(pattern, Locale.getDefault());
+        }
+
+        @Override
+        public String getAxisLabel(float value, AxisBase axis) {
+            date.setTime(baseTime + (long) ((double) value * resolutionMs));
+            return dateFormat.format(date);
+        }
+    }
+}
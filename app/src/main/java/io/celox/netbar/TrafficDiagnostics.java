@@ -0,0 +1,87 @@
+/*
+ * Copyright (C) 2025 Martin Pfeffer
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.celox.netbar;
+
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Messwerte über den Aufwand der Überwachung selbst.
+ * <p>
+ * Der Service und der Schreib-Thread tragen ihre Messungen in Histogramme fester Größe ein;
+ * die Diagnoseansicht und {@code adb shell dumpsys activity service
+ * io.celox.netbar/.NetworkTrafficService} geben sie aus. Die Erfassung kostet pro Tick nur
+ * wenige atomare Inkremente und legt keine Objekte an.
+ */
+final class TrafficDiagnostics {
+    /** Verspätung eines Ticks gegenüber seinem geplanten Zeitpunkt. */
+    final MetricHistogram tickJitter = new MetricHistogram("tick jitter", "µs");
+    /** Dauer eines Abtastschritts (Zähler lesen, Notification, Historie). */
+    final MetricHistogram updateTime = new MetricHistogram("update time", "µs");
+    /** Dauer, um die Notification zu erstellen und mit {@code notify} zu veröffentlichen. */
+    final MetricHistogram notifyLatency = new MetricHistogram("notify latency", "µs");
+    /** Dauer, um das dynamische Statusleisten-Icon zu liefern (meist aus dem Cache). */
+    final MetricHistogram iconRender = new MetricHistogram("icon render", "µs");
+    /** Dauer eines Schreibvorgangs des {@link TrafficWriter}. */
+    final MetricHistogram saveDuration = new MetricHistogram("save duration", "µs");
+    /** Geschriebene Bytes je Schreibvorgang. */
+    final MetricHistogram saveBytes = new MetricHistogram("save size", "B");
+    /** Zuwachs des belegten Heaps während eines Abtastschritts. */
+    final MetricHistogram tickAllocation = new MetricHistogram("heap per tick", "B");
+
+    private final MetricHistogram[] histograms = {
+            tickJitter, updateTime, notifyLatency, iconRender, saveDuration, saveBytes, tickAllocation
+    };
+    private volatile long resetTime = System.currentTimeMillis();
+
+    static long nanosToMicros(long nanos) {
+        return TimeUnit.NANOSECONDS.toMicros(nanos);
+    }
+
+    /**
+     * Belegter Heap des Prozesses. Die Differenz zweier Werte ist eine Näherung für die
+     * Allokationen dazwischen, solange keine Garbage Collection lief.
+     */
+    static long usedHeapBytes() {
+        Runtime runtime = Runtime.getRuntime();
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+
+    void reset() {
+        for (MetricHistogram histogram : histograms) {
+            histogram.reset();
+        }
+        resetTime = System.currentTimeMillis();
+    }
+
+    void dump(PrintWriter writer) {
+        long seconds = TimeUnit.MILLISECONDS.toSeconds(System.currentTimeMillis() - resetTime);
+        writer.println("NetBar diagnostics (last " + seconds + " s)");
+        for (MetricHistogram histogram : histograms) {
+            histogram.dump(writer);
+        }
+        writer.flush();
+    }
+
+    @Override
+    public String toString() {
+        StringWriter text = new StringWriter();
+        dump(new PrintWriter(text));
+        return text.toString();
+    }
+}
@@ -0,0 +1,178 @@
+/*
+ * Copyright (C) 2025 Martin Pfeffer
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.celox.netbar;
+
+import androidx.annotation.NonNull;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Protokoll auffälliger Verkehrsereignisse, die {@link TrafficAnomalyDetector} erkennt.
+ * <p>
+ * Die letzten {@link #CAPACITY} Ereignisse liegen in parallelen Arrays eines Ringpuffers;
+ * ältere werden überschrieben. Ein Ereignis wird schon bei seinem Beginn eingetragen, damit
+ * es sofort sichtbar ist, und bei seinem Ende vervollständigt. Geschrieben wird nur vom
+ * Sampler-Thread, gelesen (selten) vom UI; beides ist durch {@code this} geschützt.
+ */
+final class TrafficEventLog {
+    static final int TYPE_BURST = 0; // Kurzer, steiler Anstieg gegenüber dem gleitenden Mittel
+    static final int TYPE_SUSTAINED = 1; // Anhaltend über dem Üblichen für diese Tageszeit
+    static final int DIRECTION_UP = 0;
+    static final int DIRECTION_DOWN = 1;
+    static final long ONGOING = Long.MAX_VALUE; // Ende eines noch laufenden Ereignisses
+
+    static final int CAPACITY = 256;
+    private static final int MAGIC = 0x4E424556; // "NBEV"
+    private static final int VERSION = 1;
+
+    /**
+     * Unveränderliche Kopie eines Ereignisses für die Anzeige.
+     */
+    static final class Event {
+        final long start;
+        final long end;
+        final int type;
+        final int direction;
+        final long peakRate;
+        final long bytes;
+
+        Event(long start, long end, int type, int direction, long peakRate, long bytes) {
+            this.start = start;
+            this.end = end;
+            this.type = type;
+            this.direction = direction;
+            this.peakRate = peakRate;
+            this.bytes = bytes;
+        }
+
+        boolean isOngoing() {
+            return end == ONGOING;
+        }
+    }
+
+    private final long[] starts = new long[CAPACITY];
+    private final long[] ends = new long[CAPACITY];
+    private final long[] peakRates = new long[CAPACITY];
+    private final long[] totalBytes = new long[CAPACITY];
+    private final byte[] kinds = new byte[CAPACITY]; // type << 1 | direction
+    private long count; // Bisher eingetragene Ereignisse; Nummer n liegt im Slot n % CAPACITY
+
+    /**
+     * Trägt ein beginnendes Ereignis ein.
+     *
+     * @return Nummer des Ereignisses für {@link #finish}
+     */
+    synchronized long begin(long start, int type, int direction) {
+        long id = count++;
+        int slot = (int) (id % CAPACITY);
+        starts[slot] = start;
+        ends[slot] = ONGOING;
+        peakRates[slot] = 0;
+        totalBytes[slot] = 0;
+        kinds[slot] = (byte) (type << 1 | direction);
+        return id;
+    }
+
+    /**
+     * Schließt ein Ereignis ab; ist es inzwischen überschrieben, passiert nichts.
+     */
+    synchronized void finish(long id, long end, long peakRate, long bytes) {
+        if (id < 0 || id >= count || count - id > CAPACITY) {
+            return;
+        }
+        int slot = (int) (id % CAPACITY);
+        ends[slot] = end;
+        peakRates[slot] = peakRate;
+        totalBytes[slot] = bytes;
+    }
+
+    /**
+     * Ereignisse, die sich mit {@code [from, to)} überschneiden, nach Beginn sortiert.
+     */
+    @NonNull
+    synchronized List<Event> getEvents(long from, long to) {
+        List<Event> events = new ArrayList<>();
+        for (long id = Math.max(0, count - CAPACITY); id < count; id++) {
+            int slot = (int) (id % CAPACITY);
+            if (starts[slot] < to && ends[slot] >= from) {
+                events.add(new Event(starts[slot], ends[slot], kinds[slot] >> 1, kinds[slot] & 1,
+                        peakRates[slot], totalBytes[slot]));
+            }
+        }
+        return events;
+    }
+
+    synchronized int size() {
+        return (int) Math.min(count, CAPACITY);
+    }
+
+    /**
+     * Kompakte Form für die Zustandsdatei, 33 Byte pro Ereignis.
+     */
+    synchronized byte[] save() {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeInt(size());
+            for (long id = Math.max(0, count - CAPACITY); id < count; id++) {
+                int slot = (int) (id % CAPACITY);
+                out.writeLong(starts[slot]);
+                out.writeLong(ends[slot]);
+                out.writeLong(peakRates[slot]);
+                out.writeLong(totalBytes[slot]);
+                out.writeByte(kinds[slot]);
+            }
+        } catch (IOException e) {
+            // Nicht möglich beim Schreiben in den Speicher
+            throw new IllegalStateException(e);
+        }
+        return bytes.toByteArray();
+    }
+
+    /**
+     * Ersetzt den Inhalt durch gespeicherte Ereignisse. Noch laufende Ereignisse gelten als
+     * beendet, da der Erkenner seinen Zustand nicht behält. Ungültige Daten werden ignoriert.
+     */
+    synchronized void restore(byte[] state) {
+        try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(state))) {
+            if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+                return;
+            }
+            int saved = Math.min(in.readInt(), CAPACITY);
+            count = 0;
+            for (int i = 0; i < saved; i++) {
+                int slot = (int) (count % CAPACITY);
+                starts[slot] = in.readLong();
+                long end = in.readLong();
+                ends[slot] = end == ONGOING ? starts[slot] : end;
+                peakRates[slot] = in.readLong();
+                totalBytes[slot] = in.readLong();
+                kinds[slot] = in.readByte();
+                count++;
+            }
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+}
@@ -0,0 +1,170 @@
+/*
+ * Copyright (C) 2025 Martin Pfeffer
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.celox.netbar;
+
+import java.text.DecimalFormatSymbols;
+import java.util.Locale;
+
+/**
+ * Formatiert die Verkehrsanzeige ("↑ 1.2 KB/s | ↓ 3.4 MB/s") ohne Allokationen in einen
+ * wiederverwendeten {@code char}-Puffer.
+ * <p>
+ * Zusätzlich wird der zuletzt gerenderte Text vorgehalten, sodass ein unveränderter Text
+ * erkannt werden kann, ohne einen {@link String} zu erzeugen.
+ */
+final class TrafficFormatter {
+    private static final int BUFFER_SIZE = 64;
+    private static final long KB = 1024;
+    private static final long MB = KB * 1024;
+    private static final long GB = MB * 1024;
+
+    private final char decimalSeparator = DecimalFormatSymbols.getInstance().getDecimalSeparator();
+    private final char[] digits = new char[20];
+    private char[] buffer = new char[BUFFER_SIZE];
+    private char[] previous = new char[BUFFER_SIZE];
+    private int length;
+    private int previousLength = -1;
+
+    /**
+     * Rendert die Anzeige in den internen Puffer.
+     *
+     * @return {@code true}, wenn sich der Text vom zuletzt gerenderten unterscheidet
+     */
+    boolean render(long txBytes, long rxBytes, boolean showUp, boolean showDown) {
+        // Puffer tauschen, damit der vorherige Text zum Vergleich erhalten bleibt
+        char[] swap = previous;
+        previous = buffer;
+        buffer = swap;
+        previousLength = length;
+        length = 0;
+
+        if (showUp) {
+            append('↑');
+            append(' ');
+            appendBytes(txBytes);
+            append('/');
+            append('s');
+        }
+
+        if (showUp && showDown) {
+            append(' ');
+            append('|');
+            append(' ');
+        }
+
+        if (showDown) {
+            append('↓');
+            append(' ');
+            appendBytes(rxBytes);
+            append('/');
+            append('s');
+        }
+
+        return !isSameAsPrevious();
+    }
+
+    /**
+     * Erzeugt einen {@link String} aus dem zuletzt gerenderten Text. Sollte nur aufgerufen
+     * werden, wenn sich der Text geändert hat.
+     */
+    @Override
+    public String toString() {
+        return new String(buffer, 0, length);
+    }
+
+    /**
+     * Formatiert eine Bytezahl mit passender Einheit, z. B. "1.5 MB". Legt Objekte an, nur
+     * für seltene Ausgaben außerhalb der Statusleiste.
+     */
+    static String formatBytes(long bytes) {
+        if (bytes < KB) {
+            return bytes + " B";
+        } else if (bytes < MB) {
+            return String.format(Locale.getDefault(), "%.1f KB", bytes / (float) KB);
+        } else if (bytes < GB) {
+            return String.format(Locale.getDefault(), "%.1f MB", bytes / (float) MB);
+        }
+        return String.format(Locale.getDefault(), "%.1f GB", bytes / (float) GB);
+    }
+
+    /**
+     * Hängt eine Bytezahl mit passender Einheit und einer Nachkommastelle an, z. B. "1.5 MB".
+     */
+    private void appendBytes(long bytes) {
+        if (bytes < KB) {
+            appendNumber(bytes);
+            append(' ');
+            append('B');
+            return;
+        }
+
+        long unit;
+        char prefix;
+        if (bytes < MB) {
+            unit = KB;
+            prefix = 'K';
+        } else if (bytes < GB) {
+            unit = MB;
+            prefix = 'M';
+        } else {
+            unit = GB;
+            prefix = 'G';
+        }
+
+        // Auf eine Nachkommastelle runden (kaufmännisch, wie String.format)
+        long tenths = (bytes * 10 + unit / 2) / unit;
+        appendNumber(tenths / 10);
+        append(decimalSeparator);
+        append((char) ('0' + tenths % 10));
+        append(' ');
+        append(prefix);
+        append('B');
+    }
+
+    private void appendNumber(long value) {
+        if (value < 0) {
+            append('-');
+            value = -value;
+        }
+        int count = 0;
+        do {
+            digits[count++] = (char) ('0' + value % 10);
+            value /= 10;
+        } while (value > 0);
+        while (count > 0) {
+            append(digits[--count]);
+        }
+    }
+
+    private void append(char c) {
+        if (length < buffer.length) {
+            buffer[length++] = c;
+        }
+    }
+
+    private boolean isSameAsPrevious() {
+        if (length != previousLength) {
+            return false;
+        }
+        for (int i = 0; i < length; i++) {
+            if (buffer[i] != previous[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
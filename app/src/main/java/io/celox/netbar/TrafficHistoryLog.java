@@ -0,0 +1,232 @@
+/*
+ * Copyright (C) 2025 Martin Pfeffer
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.celox.netbar;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.List;
+
+/**
+ * Append-only Binärlog für Datenpunkte der Netzwerkauslastung.
+ * <p>
+ * Die Datei beginnt mit einem 8 Byte großen Header (Magic + Version), danach folgen
+ * Datensätze fester Breite aus Zeitstempel, TX- und RX-Bytes, minimaler und maximaler
+ * TX- und RX-Sekundenrate sowie den TX- und RX-Bytes über Mobilfunk (je 8 Byte, Big Endian).
+ * Neue Datenpunkte werden angehängt, statt die komplette Liste neu zu schreiben. Ein beim
+ * Absturz nur teilweise geschriebener letzter Datensatz wird beim Laden abgeschnitten.
+ * <p>
+ * Nach dem Laden wird das Log nur noch vom {@link TrafficWriter}-Thread verwendet.
+ */
+class TrafficHistoryLog {
+    private static final int MAGIC = 0x4E42484C; // "NBHL"
+    private static final int VERSION = 1;
+    static final int HEADER_SIZE = 8;
+    static final int RECORD_SIZE = 72;
+
+    /**
+     * Empfängt die beim Laden gelesenen Datensätze. Das übergebene Objekt wird für jeden
+     * Datensatz wiederverwendet.
+     */
+    interface RecordConsumer {
+        void accept(TrafficBucket record);
+    }
+
+    private final File file;
+    private ByteBuffer batchBuffer = ByteBuffer.allocate(16 * RECORD_SIZE);
+    private final TrafficBucket readRecord = new TrafficBucket();
+    private RandomAccessFile appendFile;
+    private int recordCount;
+
+    TrafficHistoryLog(File file) {
+        this.file = file;
+    }
+
+    /**
+     * Liest alle vollständigen Datensätze und öffnet die Datei anschließend zum Anhängen.
+     * Eine Datei mit ungültigem Header wird verworfen und neu angelegt.
+     */
+    void load(RecordConsumer consumer) throws IOException {
+        close();
+        recordCount = 0;
+
+        long length = file.length();
+        if (length < HEADER_SIZE || !hasValidHeader()) {
+            reset();
+            return;
+        }
+
+        // Abgerissenen Datensatz am Dateiende verwerfen
+        int completeRecords = (int) ((length - HEADER_SIZE) / RECORD_SIZE);
+        long validLength = HEADER_SIZE + (long) completeRecords * RECORD_SIZE;
+
+        try (DataInputStream in = new DataInputStream(
+                new BufferedInputStream(new FileInputStream(file)))) {
+            in.skipBytes(HEADER_SIZE);
+            for (int i = 0; i < completeRecords; i++) {
+                readRecord.set(in.readLong(), in.readLong(), in.readLong(),
+                        in.readLong(), in.readLong(), in.readLong(), in.readLong(),
+                        in.readLong(), in.readLong());
+                consumer.accept(readRecord);
+            }
+        }
+
+        openForAppend(validLength);
+        recordCount = completeRecords;
+    }
+
+    /**
+     * Hängt mehrere Datensätze mit einem einzigen Schreibzugriff an das Log an.
+     *
+     * @param fsync ob anschließend bis auf den Datenträger synchronisiert wird
+     * @return Anzahl der geschriebenen Bytes
+     */
+    int appendAll(List<TrafficBucket> records, boolean fsync) throws IOException {
+        if (appendFile == null) {
+            open();
+        }
+        if (batchBuffer.capacity() < records.size() * RECORD_SIZE) {
+            batchBuffer = ByteBuffer.allocate(records.size() * RECORD_SIZE);
+        }
+        batchBuffer.clear();
+        for (TrafficBucket record : records) {
+            putRecord(batchBuffer, record);
+        }
+        batchBuffer.flip();
+        FileChannel channel = appendFile.getChannel();
+        while (batchBuffer.hasRemaining()) {
+            channel.write(batchBuffer);
+        }
+        if (fsync) {
+            channel.force(false);
+        }
+        recordCount += records.size();
+        return records.size() * RECORD_SIZE;
+    }
+
+    /**
+     * Schreibt das Log mit den übergebenen Datenpunkten neu (Kompaktierung). Die neue Datei
+     * wird zunächst daneben geschrieben und dann per Rename ersetzt, sodass bei einem Absturz
+     * immer eine vollständige Version vorhanden ist.
+     *
+     * @return Anzahl der geschriebenen Bytes
+     */
+    int rewrite(TrafficRingBuffer data) throws IOException {
+        close();
+        File tempFile = new File(file.getPath() + ".tmp");
+        int bytes;
+        try (RandomAccessFile out = new RandomAccessFile(tempFile, "rw")) {
+            out.setLength(0);
+            ByteBuffer buffer = ByteBuffer.allocate(HEADER_SIZE + data.size() * RECORD_SIZE);
+            buffer.putInt(MAGIC).putInt(VERSION);
+            for (int i = 0; i < data.size(); i++) {
+                data.get(i, readRecord);
+                putRecord(buffer, readRecord);
+            }
+            buffer.flip();
+            bytes = buffer.remaining();
+            FileChannel channel = out.getChannel();
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            channel.force(false);
+        }
+        if (!tempFile.renameTo(file)) {
+            throw new IOException("Could not replace " + file);
+        }
+        openForAppend(file.length());
+        recordCount = data.size();
+        return bytes;
+    }
+
+    /**
+     * Verwirft alle Datensätze.
+     */
+    void clear() throws IOException {
+        close();
+        reset();
+    }
+
+    /**
+     * Anzahl der Datensätze in der Datei, inklusive bereits abgelaufener.
+     */
+    int getRecordCount() {
+        return recordCount;
+    }
+
+    void close() {
+        if (appendFile != null) {
+            try {
+                appendFile.close();
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+            appendFile = null;
+        }
+    }
+
+    /**
+     * Öffnet die Datei zum Anhängen, ohne die Datensätze zu lesen.
+     */
+    private void open() throws IOException {
+        long length = file.length();
+        if (length < HEADER_SIZE || !hasValidHeader()) {
+            reset();
+            return;
+        }
+        int completeRecords = (int) ((length - HEADER_SIZE) / RECORD_SIZE);
+        openForAppend(HEADER_SIZE + (long) completeRecords * RECORD_SIZE);
+        recordCount = completeRecords;
+    }
+
+    private boolean hasValidHeader() throws IOException {
+        try (DataInputStream in = new DataInputStream(new FileInputStream(file))) {
+            return in.readInt() == MAGIC && in.readInt() == VERSION;
+        }
+    }
+
+    private static void putRecord(ByteBuffer buffer, TrafficBucket record) {
+        buffer.putLong(record.start)
+                .putLong(record.txBytes)
+                .putLong(record.rxBytes)
+                .putLong(record.txMinRate)
+                .putLong(record.txMaxRate)
+                .putLong(record.rxMinRate)
+                .putLong(record.rxMaxRate)
+                .putLong(record.mobileTxBytes)
+                .putLong(record.mobileRxBytes);
+    }
+
+    private void reset() throws IOException {
+        appendFile = new RandomAccessFile(file, "rw");
+        appendFile.setLength(0);
+        appendFile.writeInt(MAGIC);
+        appendFile.writeInt(VERSION);
+        recordCount = 0;
+    }
+
+    private void openForAppend(long length) throws IOException {
+        appendFile = new RandomAccessFile(file, "rw");
+        appendFile.setLength(length);
+        appendFile.seek(length);
+    }
+}
@@ -0,0 +1,317 @@
+/*
+ * Copyright (C) 2025 Martin Pfeffer
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.celox.netbar;
+
+import android.content.ContentProvider;
+import android.content.ContentValues;
+import android.content.UriMatcher;
+import android.database.Cursor;
+import android.net.Uri;
+import android.os.ParcelFileDescriptor;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Stellt die Verkehrshistorie anderen Apps und Werkzeugen zur Verfügung.
+ * <p>
+ * {@code content://io.celox.netbar.history/history/<auflösung>} liefert einen Cursor über die
+ * im Speicher gehaltene Stufe ({@code second}, {@code minute}, {@code hour} oder {@code day}),
+ * optional eingeschränkt auf {@code from} und {@code to} (Millisekunden, {@code to} exklusiv)
+ * und auf die Spalten der Projektion. Der Cursor liest direkt aus dem Ringpuffer.
+ * <p>
+ * {@code content://io.celox.netbar.history/export/<auflösung>.csv} bzw. {@code .bin} liefert
+ * über {@link #openFile} einen Stream aller gespeicherten Datenpunkte des Zeitraums, bei
+ * {@code minute} inklusive Archiv. Er wird auf einem eigenen Thread direkt aus dem Speicher
+ * geschrieben, ohne das Ergebnis vorher zu sammeln. Das Binärformat besteht aus Datensätzen
+ * wie im {@link TrafficHistoryLog}: neun Werte zu je 8 Byte, Big Endian, ohne Header.
+ */
+public class TrafficHistoryProvider extends ContentProvider {
+    public static final String AUTHORITY = "io.celox.netbar.history";
+    public static final String PARAM_FROM = "from";
+    public static final String PARAM_TO = "to";
+
+    public static final String COLUMN_TIMESTAMP = "timestamp";
+    public static final String COLUMN_TX_BYTES = "tx_bytes";
+    public static final String COLUMN_RX_BYTES = "rx_bytes";
+    public static final String COLUMN_TX_MIN_RATE = "tx_min_rate";
+    public static final String COLUMN_TX_MAX_RATE = "tx_max_rate";
+    public static final String COLUMN_RX_MIN_RATE = "rx_min_rate";
+    public static final String COLUMN_RX_MAX_RATE = "rx_max_rate";
+    public static final String COLUMN_MOBILE_TX_BYTES = "mobile_tx_bytes";
+    public static final String COLUMN_MOBILE_RX_BYTES = "mobile_rx_bytes";
+
+    // Reihenfolge wie in TrafficBucket und im Binärformat
+    static final String[] COLUMNS = {
+            COLUMN_TIMESTAMP, COLUMN_TX_BYTES, COLUMN_RX_BYTES,
+            COLUMN_TX_MIN_RATE, COLUMN_TX_MAX_RATE, COLUMN_RX_MIN_RATE, COLUMN_RX_MAX_RATE,
+            COLUMN_MOBILE_TX_BYTES, COLUMN_MOBILE_RX_BYTES
+    };
+    static final int FIELD_TIMESTAMP = 0;
+    static final int FIELD_TX_BYTES = 1;
+    static final int FIELD_RX_BYTES = 2;
+    static final int FIELD_TX_MIN_RATE = 3;
+    static final int FIELD_TX_MAX_RATE = 4;
+    static final int FIELD_RX_MIN_RATE = 5;
+    static final int FIELD_RX_MAX_RATE = 6;
+    static final int FIELD_MOBILE_TX_BYTES = 7;
+    static final int FIELD_MOBILE_RX_BYTES = 8;
+
+    private static final String TYPE_HISTORY = "vnd.android.cursor.dir/vnd.io.celox.netbar.traffic";
+    private static final String TYPE_CSV = "text/csv";
+    private static final String TYPE_BINARY = "application/octet-stream";
+    private static final String EXTENSION_CSV = ".csv";
+    private static final String EXTENSION_BINARY = ".bin";
+    private static final int EXPORT_BUFFER_SIZE = 64 * 1024;
+
+    private static final int MATCH_HISTORY = 1;
+    private static final int MATCH_EXPORT = 2;
+    private static final UriMatcher MATCHER = new UriMatcher(UriMatcher.NO_MATCH);
+
+    static {
+        MATCHER.addURI(AUTHORITY, "history/*", MATCH_HISTORY);
+        MATCHER.addURI(AUTHORITY, "export/*", MATCH_EXPORT);
+    }
+
+    @Override
+    public boolean onCreate() {
+        // Der Manager wird erst bei der ersten Anfrage erzeugt
+        return true;
+    }
+
+    @Nullable
+    @Override
+    public Cursor query(@NonNull Uri uri, @Nullable String[] projection, @Nullable String selection,
+                        @Nullable String[] selectionArgs, @Nullable String sortOrder) {
+        if (MATCHER.match(uri) != MATCH_HISTORY) {
+            throw new IllegalArgumentException("Unknown URI: " + uri);
+        }
+        if (selection != null) {
+            throw new IllegalArgumentException("Selection is not supported, use the "
+                    + PARAM_FROM + " and " + PARAM_TO + " parameters");
+        }
+        long resolutionMs = parseResolution(uri.getLastPathSegment());
+        long fromTime = parseTime(uri, PARAM_FROM, Long.MIN_VALUE);
+        long toTime = parseTime(uri, PARAM_TO, Long.MAX_VALUE);
+
+        NetworkTrafficManager manager = getManager();
+        manager.awaitHistoryLoaded();
+        TrafficSeries series = manager.getTierData(resolutionMs, fromTime);
+        if (series == null) {
+            throw new IllegalArgumentException("Unknown resolution: " + uri);
+        }
+        int count = indexOfFirstAtOrAfter(series, toTime);
+        return new TrafficSeriesCursor(series, count, projection != null ? projection : COLUMNS);
+    }
+
+    @Nullable
+    @Override
+    public String getType(@NonNull Uri uri) {
+        switch (MATCHER.match(uri)) {
+            case MATCH_HISTORY:
+                return TYPE_HISTORY;
+            case MATCH_EXPORT:
+                String name = uri.getLastPathSegment();
+                if (name != null && name.endsWith(EXTENSION_CSV)) {
+                    return TYPE_CSV;
+                }
+                return name != null && name.endsWith(EXTENSION_BINARY) ? TYPE_BINARY : null;
+            default:
+                return null;
+        }
+    }
+
+    @Nullable
+    @Override
+    public ParcelFileDescriptor openFile(@NonNull Uri uri, @NonNull String mode) throws FileNotFoundException {
+        String name = uri.getLastPathSegment();
+        if (MATCHER.match(uri) != MATCH_EXPORT || name == null) {
+            throw new FileNotFoundException("Unknown URI: " + uri);
+        }
+        if (!"r".equals(mode)) {
+            throw new FileNotFoundException("Export is read-only: " + uri);
+        }
+        boolean csv = name.endsWith(EXTENSION_CSV);
+        if (!csv && !name.endsWith(EXTENSION_BINARY)) {
+            throw new FileNotFoundException("Unknown export format: " + uri);
+        }
+        long resolutionMs;
+        long fromTime;
+        long toTime;
+        try {
+            resolutionMs = parseResolution(name.substring(0, name.lastIndexOf('.')));
+            fromTime = parseTime(uri, PARAM_FROM, Long.MIN_VALUE);
+            toTime = parseTime(uri, PARAM_TO, Long.MAX_VALUE);
+        } catch (IllegalArgumentException e) {
+            throw new FileNotFoundException(e.getMessage());
+        }
+
+        ParcelFileDescriptor[] pipe;
+        try {
+            pipe = ParcelFileDescriptor.createPipe();
+        } catch (IOException e) {
+            throw new FileNotFoundException(e.getMessage());
+        }
+        NetworkTrafficManager manager = getManager();
+        ParcelFileDescriptor output = pipe[1];
+        // Der Leser bestimmt das Tempo; das Schreiben blockiert, solange die Pipe voll ist
+        Thread exporter = new Thread(() -> export(manager, output, resolutionMs, fromTime, toTime, csv),
+                "TrafficHistoryExport");
+        exporter.setDaemon(true);
+        exporter.start();
+        return pipe[0];
+    }
+
+    @Nullable
+    @Override
+    public Uri insert(@NonNull Uri uri, @Nullable ContentValues values) {
+        throw new UnsupportedOperationException("Traffic history is read-only");
+    }
+
+    @Override
+    public int delete(@NonNull Uri uri, @Nullable String selection, @Nullable String[] selectionArgs) {
+        throw new UnsupportedOperationException("Traffic history is read-only");
+    }
+
+    @Override
+    public int update(@NonNull Uri uri, @Nullable ContentValues values, @Nullable String selection,
+                      @Nullable String[] selectionArgs) {
+        throw new UnsupportedOperationException("Traffic history is read-only");
+    }
+
+    /**
+     * Index der Spalte in {@link #COLUMNS} oder -1.
+     */
+    static int fieldOf(String column) {
+        for (int i = 0; i < COLUMNS.length; i++) {
+            if (COLUMNS[i].equals(column)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private NetworkTrafficManager getManager() {
+        return NetworkTrafficManager.getInstance(getContext());
+    }
+
+    private static void export(NetworkTrafficManager manager, ParcelFileDescriptor output,
+                               long resolutionMs, long fromTime, long toTime, boolean csv) {
+        try (OutputStream stream = new BufferedOutputStream(
+                new ParcelFileDescriptor.AutoCloseOutputStream(output), EXPORT_BUFFER_SIZE)) {
+            TrafficHistoryLog.RecordConsumer consumer;
+            if (csv) {
+                stream.write(String.join(",", COLUMNS).getBytes(StandardCharsets.US_ASCII));
+                stream.write('\n');
+                StringBuilder line = new StringBuilder();
+                consumer = record -> {
+                    line.setLength(0);
+                    line.append(record.start).append(',')
+                            .append(record.txBytes).append(',')
+                            .append(record.rxBytes).append(',')
+                            .append(record.txMinRate).append(',')
+                            .append(record.txMaxRate).append(',')
+                            .append(record.rxMinRate).append(',')
+                            .append(record.rxMaxRate).append(',')
+                            .append(record.mobileTxBytes).append(',')
+                            .append(record.mobileRxBytes).append('\n');
+                    try {
+                        for (int i = 0; i < line.length(); i++) {
+                            stream.write(line.charAt(i));
+                        }
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                };
+            } else {
+                DataOutputStream data = new DataOutputStream(stream);
+                consumer = record -> {
+                    try {
+                        data.writeLong(record.start);
+                        data.writeLong(record.txBytes);
+                        data.writeLong(record.rxBytes);
+                        data.writeLong(record.txMinRate);
+                        data.writeLong(record.txMaxRate);
+                        data.writeLong(record.rxMinRate);
+                        data.writeLong(record.rxMaxRate);
+                        data.writeLong(record.mobileTxBytes);
+                        data.writeLong(record.mobileRxBytes);
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                };
+            }
+            manager.readHistory(resolutionMs, fromTime, toTime, consumer);
+        } catch (IOException e) {
+            e.printStackTrace();
+        } catch (UncheckedIOException e) {
+            // Meist hat der Leser die Pipe vorzeitig geschlossen
+            e.getCause().printStackTrace();
+        }
+    }
+
+    private static long parseResolution(@Nullable String name) {
+        if (name != null) {
+            switch (name) {
+                case "second":
+                    return TimeUnit.SECONDS.toMillis(1);
+                case "minute":
+                    return TimeUnit.MINUTES.toMillis(1);
+                case "hour":
+                    return TimeUnit.HOURS.toMillis(1);
+                case "day":
+                    return TimeUnit.DAYS.toMillis(1);
+            }
+        }
+        throw new IllegalArgumentException("Unknown resolution: " + name);
+    }
+
+    private static long parseTime(Uri uri, String parameter, long defaultValue) {
+        String value = uri.getQueryParameter(parameter);
+        if (value == null) {
+            return defaultValue;
+        }
+        try {
+            return Long.parseLong(value);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Invalid " + parameter + ": " + value);
+        }
+    }
+
+    private static int indexOfFirstAtOrAfter(TrafficSeries series, long timestamp) {
+        int low = 0;
+        int high = series.size();
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (series.getTimestamp(mid) < timestamp) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+}
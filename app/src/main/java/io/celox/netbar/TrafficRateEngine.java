@@ -0,0 +1,159 @@
+/*
+ * Copyright (C) 2025 Martin Pfeffer
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.celox.netbar;
+
+import android.net.TrafficStats;
+
+/**
+ * Bildet aus aufeinanderfolgenden Ständen der {@link TrafficStats}-Zähler die übertragenen
+ * Bytes und die Raten pro Sekunde.
+ * <p>
+ * Die Raten werden durch die tatsächlich vergangene Zeit ({@code elapsedRealtimeNanos})
+ * geteilt, nicht durch das geplante Tick-Intervall; verspätete Ticks verfälschen sie daher
+ * nicht. Der erste Stand legt nur die Basis fest. Fallen die Gesamtzähler weg
+ * ({@link TrafficStats#UNSUPPORTED}), wird die Basis verworfen und mit dem nächsten gültigen
+ * Stand neu gesetzt. Läuft ein Zähler zurück, wird das als Überlauf eines 32-Bit-Zählers
+ * gewertet, wenn er dafür weit genug zurückspringt, sonst als Zurücksetzen (z. B. beim
+ * Wegfall einer Schnittstelle); für diesen Zähler zählt das Intervall dann als 0 Bytes.
+ * <p>
+ * Nicht threadsicher, wird nur vom Sampler-Thread verwendet.
+ */
+final class TrafficRateEngine {
+    private static final int TX = 0;
+    private static final int RX = 1;
+    private static final int MOBILE_TX = 2;
+    private static final int MOBILE_RX = 3;
+
+    private static final long WRAP_32 = 1L << 32;
+    private static final long NANOS_PER_SECOND = 1_000_000_000L;
+
+    private final long[] lastValues = new long[4];
+    private final long[] deltas = new long[4];
+    private long lastElapsedNanos;
+    private boolean hasBaseline;
+    private long elapsedNanos;
+
+    // Nur vom Sampler-Thread geschrieben, für die Diagnose lesbar
+    private volatile int resetCount;
+    private volatile int wrapCount;
+
+    /**
+     * Übernimmt den aktuellen Stand der Zähler.
+     *
+     * @param nowNanos Zeitpunkt des Stands nach {@code SystemClock.elapsedRealtimeNanos()}
+     * @return {@code true}, wenn seit dem letzten Stand gültige Differenzen vorliegen;
+     *         {@code false}, wenn nur die Basis gesetzt wurde
+     */
+    boolean update(long nowNanos, long txBytes, long rxBytes, long mobileTxBytes, long mobileRxBytes) {
+        if (txBytes < 0 || rxBytes < 0) {
+            // Gesamtzähler nicht verfügbar: ohne sie gibt es keine verlässliche Differenz
+            hasBaseline = false;
+            return false;
+        }
+        if (!hasBaseline || nowNanos <= lastElapsedNanos) {
+            seed(nowNanos, txBytes, rxBytes, mobileTxBytes, mobileRxBytes);
+            return false;
+        }
+
+        elapsedNanos = nowNanos - lastElapsedNanos;
+        lastElapsedNanos = nowNanos;
+        deltas[TX] = delta(TX, txBytes);
+        deltas[RX] = delta(RX, rxBytes);
+        // Ohne Mobilfunk liefert TrafficStats UNSUPPORTED, das zählt als 0. Der Anteil kann
+        // nie größer als der Gesamtverkehr sein.
+        deltas[MOBILE_TX] = Math.min(delta(MOBILE_TX, mobileTxBytes), deltas[TX]);
+        deltas[MOBILE_RX] = Math.min(delta(MOBILE_RX, mobileRxBytes), deltas[RX]);
+        return true;
+    }
+
+    long getTxBytes() {
+        return deltas[TX];
+    }
+
+    long getRxBytes() {
+        return deltas[RX];
+    }
+
+    long getMobileTxBytes() {
+        return deltas[MOBILE_TX];
+    }
+
+    long getMobileRxBytes() {
+        return deltas[MOBILE_RX];
+    }
+
+    /**
+     * Tatsächlich vergangene Zeit seit dem vorherigen Stand in Millisekunden.
+     */
+    long getElapsedMillis() {
+        return elapsedNanos / 1_000_000L;
+    }
+
+    /**
+     * Senderate in Bytes pro Sekunde über das letzte Intervall.
+     */
+    long getTxRate() {
+        return rate(deltas[TX]);
+    }
+
+    /**
+     * Empfangsrate in Bytes pro Sekunde über das letzte Intervall.
+     */
+    long getRxRate() {
+        return rate(deltas[RX]);
+    }
+
+    int getResetCount() {
+        return resetCount;
+    }
+
+    int getWrapCount() {
+        return wrapCount;
+    }
+
+    private void seed(long nowNanos, long txBytes, long rxBytes, long mobileTxBytes, long mobileRxBytes) {
+        lastElapsedNanos = nowNanos;
+        lastValues[TX] = txBytes;
+        lastValues[RX] = rxBytes;
+        lastValues[MOBILE_TX] = mobileTxBytes;
+        lastValues[MOBILE_RX] = mobileRxBytes;
+        hasBaseline = true;
+    }
+
+    private long delta(int counter, long value) {
+        long previous = lastValues[counter];
+        lastValues[counter] = value;
+        if (value < 0 || previous < 0) {
+            // Zähler nicht (mehr) verfügbar oder gerade erst aufgetaucht: neue Basis
+            return 0;
+        }
+        if (value >= previous) {
+            return value - previous;
+        }
+        if (previous < WRAP_32 && previous - value > WRAP_32 / 2) {
+            wrapCount++;
+            return value + WRAP_32 - previous;
+        }
+        resetCount++;
+        return 0;
+    }
+
+    private long rate(long bytes) {
+        // In double gerechnet, bytes * 10^9 liefe schon ab etwa 9 GB pro Intervall über
+        return (long) (bytes * (double) NANOS_PER_SECOND / elapsedNanos);
+    }
+}
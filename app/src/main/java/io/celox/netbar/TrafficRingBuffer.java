@@ -0,0 +1,267 @@
+/*
+ * Copyright (C) 2025 Martin Pfeffer
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.celox.netbar;
+
+/**
+ * Ringpuffer fester Kapazität für Datenpunkte der Netzwerkauslastung.
+ * <p>
+ * Zeitstempel, TX- und RX-Bytes, die minimalen und maximalen Sekundenraten sowie die
+ * Mobilfunk-Anteile liegen spaltenweise in parallelen {@code long}-Arrays, es werden also
+ * keine Objekte pro Datenpunkt angelegt. Einfügen am Ende und Entfernen am Anfang sind O(1);
+ * ist der Puffer voll, wird der älteste Datenpunkt verworfen. Die Datenpunkte müssen in
+ * aufsteigender Zeitstempel-Reihenfolge eingefügt werden.
+ * <p>
+ * Der Puffer hat genau einen Schreiber, aber beliebig viele Leser auf anderen Threads. Jeder
+ * Datenpunkt erhält eine fortlaufende Sequenznummer; nach jeder Änderung veröffentlicht der
+ * Schreiber den gültigen Sequenzbereich atomar über ein Versions-Seqlock. Leser erhalten mit
+ * {@link #snapshot(long, long)} ohne Sperre eine unveränderliche Sicht auf diesen Bereich.
+ * Die Arrays sind um {@code slack} Plätze größer als die Kapazität, sodass ein verworfener
+ * Datenpunkt erst nach {@code slack} weiteren Einfügungen physisch überschrieben wird. So
+ * lange bleibt jede Sicht garantiert unverändert.
+ */
+class TrafficRingBuffer {
+    private final int capacity;
+    private final long[] timestamps;
+    private final long[] txBytes;
+    private final long[] rxBytes;
+    private final long[] txMinRates;
+    private final long[] txMaxRates;
+    private final long[] rxMinRates;
+    private final long[] rxMaxRates;
+    private final long[] mobileTxBytes;
+    private final long[] mobileRxBytes;
+
+    // Zustand des Schreibers
+    private long head; // Sequenznummer des ältesten Datenpunkts
+    private long tail; // Sequenznummer des nächsten Datenpunkts
+
+    // Veröffentlichter Zustand für Leser; version ist ungerade, während er geändert wird
+    private volatile long version;
+    private volatile long publishedHead;
+    private volatile long publishedTail;
+
+    /**
+     * @param capacity maximale Anzahl gleichzeitig gehaltener Datenpunkte
+     * @param slack    zusätzliche Plätze, die verworfene Datenpunkte für Leser erhalten
+     */
+    TrafficRingBuffer(int capacity, int slack) {
+        if (slack < 1) {
+            throw new IllegalArgumentException("slack must be positive: " + slack);
+        }
+        this.capacity = capacity;
+        int length = capacity + slack;
+        this.timestamps = new long[length];
+        this.txBytes = new long[length];
+        this.rxBytes = new long[length];
+        this.txMinRates = new long[length];
+        this.txMaxRates = new long[length];
+        this.rxMinRates = new long[length];
+        this.rxMaxRates = new long[length];
+        this.mobileTxBytes = new long[length];
+        this.mobileRxBytes = new long[length];
+    }
+
+    void add(TrafficBucket bucket) {
+        if (tail - head == capacity) {
+            // Voll: ältesten Datenpunkt verwerfen
+            head++;
+        }
+        int index = slot(tail);
+        timestamps[index] = bucket.start;
+        txBytes[index] = bucket.txBytes;
+        rxBytes[index] = bucket.rxBytes;
+        txMinRates[index] = bucket.txMinRate;
+        txMaxRates[index] = bucket.txMaxRate;
+        rxMinRates[index] = bucket.rxMinRate;
+        rxMaxRates[index] = bucket.rxMaxRate;
+        mobileTxBytes[index] = bucket.mobileTxBytes;
+        mobileRxBytes[index] = bucket.mobileRxBytes;
+        tail++;
+        publish();
+    }
+
+    /**
+     * Entfernt alle Datenpunkte vom Anfang, deren Zeitstempel vor {@code cutoffTime} liegt.
+     */
+    void removeOlderThan(long cutoffTime) {
+        long oldHead = head;
+        while (head < tail && timestamps[slot(head)] < cutoffTime) {
+            head++;
+        }
+        if (head != oldHead) {
+            publish();
+        }
+    }
+
+    /**
+     * Liefert ohne Sperre eine unveränderliche Sicht auf alle veröffentlichten Datenpunkte
+     * mit einem Zeitstempel {@code >= fromTimestamp}. Darf von jedem Thread aufgerufen werden.
+     */
+    TrafficSeries snapshot(long fromTimestamp, long resolutionMs) {
+        long currentVersion;
+        long first;
+        long end;
+        do {
+            currentVersion = version;
+            first = publishedHead;
+            end = publishedTail;
+        } while ((currentVersion & 1) != 0 || currentVersion != version);
+
+        long start = sequenceOfFirstAtOrAfter(first, end, fromTimestamp);
+        return new TrafficSeries(this, start, (int) (end - start), resolutionMs, currentVersion >>> 1);
+    }
+
+    /**
+     * Prüft, ob der Datenpunkt mit der Sequenznummer {@code sequence} noch nicht überschrieben
+     * wurde. Darf von jedem Thread aufgerufen werden.
+     */
+    boolean isRetained(long sequence) {
+        // Der Schreiber überschreibt als Nächstes den Platz von publishedTail - length
+        return publishedTail - sequence < timestamps.length;
+    }
+
+    /**
+     * Erstellt eine unabhängige Kopie, z. B. für das Schreiben auf einem anderen Thread.
+     */
+    TrafficRingBuffer copy() {
+        TrafficRingBuffer copy = new TrafficRingBuffer(capacity, timestamps.length - capacity);
+        System.arraycopy(timestamps, 0, copy.timestamps, 0, timestamps.length);
+        System.arraycopy(txBytes, 0, copy.txBytes, 0, txBytes.length);
+        System.arraycopy(rxBytes, 0, copy.rxBytes, 0, rxBytes.length);
+        System.arraycopy(txMinRates, 0, copy.txMinRates, 0, txMinRates.length);
+        System.arraycopy(txMaxRates, 0, copy.txMaxRates, 0, txMaxRates.length);
+        System.arraycopy(rxMinRates, 0, copy.rxMinRates, 0, rxMinRates.length);
+        System.arraycopy(rxMaxRates, 0, copy.rxMaxRates, 0, rxMaxRates.length);
+        System.arraycopy(mobileTxBytes, 0, copy.mobileTxBytes, 0, mobileTxBytes.length);
+        System.arraycopy(mobileRxBytes, 0, copy.mobileRxBytes, 0, mobileRxBytes.length);
+        copy.head = head;
+        copy.tail = tail;
+        copy.publish();
+        return copy;
+    }
+
+    /**
+     * Verwirft alle Datenpunkte. Die Sequenznummern laufen weiter, damit bestehende Sichten
+     * gültig bleiben.
+     */
+    void clear() {
+        head = tail;
+        publish();
+    }
+
+    int size() {
+        return (int) (tail - head);
+    }
+
+    int capacity() {
+        return capacity;
+    }
+
+    boolean isEmpty() {
+        return tail == head;
+    }
+
+    /**
+     * Zugriff des Schreibers auf seinen aktuellen Stand.
+     *
+     * @param index logischer Index, 0 ist der älteste Datenpunkt
+     */
+    long getTimestamp(int index) {
+        return timestamps[physicalIndex(index)];
+    }
+
+    /**
+     * Kopiert einen Datenpunkt in {@code out}, ohne ein neues Objekt anzulegen. Nur für den
+     * Schreiber.
+     */
+    void get(int index, TrafficBucket out) {
+        int i = physicalIndex(index);
+        out.set(timestamps[i], txBytes[i], rxBytes[i],
+                txMinRates[i], txMaxRates[i], rxMinRates[i], rxMaxRates[i],
+                mobileTxBytes[i], mobileRxBytes[i]);
+    }
+
+    /**
+     * Lesezugriff über die Sequenznummer; die Grenzen prüft die aufrufende Sicht.
+     */
+    long getTimestampAt(long sequence) {
+        return timestamps[slot(sequence)];
+    }
+
+    long getTxBytesAt(long sequence) {
+        return txBytes[slot(sequence)];
+    }
+
+    long getRxBytesAt(long sequence) {
+        return rxBytes[slot(sequence)];
+    }
+
+    long getTxMinRateAt(long sequence) {
+        return txMinRates[slot(sequence)];
+    }
+
+    long getTxMaxRateAt(long sequence) {
+        return txMaxRates[slot(sequence)];
+    }
+
+    long getRxMinRateAt(long sequence) {
+        return rxMinRates[slot(sequence)];
+    }
+
+    long getRxMaxRateAt(long sequence) {
+        return rxMaxRates[slot(sequence)];
+    }
+
+    long getMobileTxBytesAt(long sequence) {
+        return mobileTxBytes[slot(sequence)];
+    }
+
+    long getMobileRxBytesAt(long sequence) {
+        return mobileRxBytes[slot(sequence)];
+    }
+
+    private void publish() {
+        // Einziger Schreiber: die Inkremente müssen nicht atomar sein
+        version++;
+        publishedHead = head;
+        publishedTail = tail;
+        version++;
+    }
+
+    private long sequenceOfFirstAtOrAfter(long low, long high, long timestamp) {
+        while (low < high) {
+            long mid = (low + high) >>> 1;
+            if (timestamps[slot(mid)] < timestamp) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    private int physicalIndex(int index) {
+        if (index < 0 || index >= tail - head) {
+            throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size());
+        }
+        return slot(head + index);
+    }
+
+    private int slot(long sequence) {
+        return (int) (sequence % timestamps.length);
+    }
+}
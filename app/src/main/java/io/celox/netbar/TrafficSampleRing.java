@@ -0,0 +1,191 @@
+/*
+ * Copyright (C) 2025 Martin Pfeffer
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.celox.netbar;
+
+import android.os.Build;
+
+import java.lang.invoke.VarHandle;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * Ringpuffer der letzten Sekundenwerte in einem gemeinsamen Speicherbereich, den Clients des
+ * gebundenen Service ({@link ITrafficStream}) nur lesend einblenden. So erhalten sie jeden
+ * Wert ohne Parcel und ohne Binder-Aufruf pro Datenpunkt.
+ * <p>
+ * Format (Little Endian): ein Kopf von {@link #HEADER_SIZE} Byte mit Magic "NBSR", Version,
+ * Kapazität, Slotgröße, der Anzahl bisher geschriebener Werte ({@code writeSequence}) und
+ * einem Flag, ob der Service erfasst. Danach folgen {@link #CAPACITY} Slots mit je
+ * {@link #SLOT_SIZE} Byte: Stempel, Zeitstempel, TX, RX, Mobilfunk-TX, Mobilfunk-RX als
+ * {@code long}. Der Wert mit der Sequenznummer {@code n} liegt im Slot {@code n % CAPACITY}.
+ * <p>
+ * Es gibt genau einen Schreiber. Vor dem Überschreiben eines Slots setzt er dessen Stempel auf
+ * 0, danach auf {@code n + 1}; erst dann erhöht er {@code writeSequence}. Ein Leser übernimmt
+ * einen Slot nur, wenn der Stempel vor und nach dem Lesen {@code n + 1} ist.
+ * <p>
+ * Die Zugriffe auf den Puffer selbst sind gewöhnliche Speicherzugriffe, die Reihenfolge
+ * erzwingen explizite Barrieren: Der Schreiber trennt den Stempel 0 von den Nutzdaten durch
+ * eine Store-Store-Barriere und die Nutzdaten vom endgültigen Stempel (und diesen von
+ * {@code writeSequence}) durch eine Release-Barriere. Der Leser setzt nach dem Lesen von
+ * {@code writeSequence}, nach dem ersten Stempel und vor der Nachprüfung je eine
+ * Load-Load-Barriere. Ab Android 13 sind das die Barrieren von {@link VarHandle}; davor
+ * ersetzt sie ein Schreiben mit anschließendem Lesen eines {@code volatile}-Felds. Das wirkt
+ * als vollständige Barriere, weil ein Acquire-Load unter ARMv8 nicht vor einen
+ * vorausgehenden Release-Store gezogen werden darf und ART auf ARMv7 und x86 beide Zugriffe
+ * ohnehin mit vollständigen Barrieren umsetzt. Ein einzelner {@code volatile}-Zugriff
+ * genügt dagegen nicht, da {@code stlr} und {@code ldar} nur in eine Richtung ordnen.
+ */
+final class TrafficSampleRing {
+    static final int MAGIC = 0x4E425352; // "NBSR"
+    static final int VERSION = 1;
+    static final int CAPACITY = 900; // 15 Minuten bei einem Wert pro Sekunde
+    static final int HEADER_SIZE = 64;
+    static final int SLOT_SIZE = 48;
+    static final int SIZE = HEADER_SIZE + CAPACITY * SLOT_SIZE;
+
+    private static final int OFFSET_MAGIC = 0;
+    private static final int OFFSET_VERSION = 4;
+    private static final int OFFSET_CAPACITY = 8;
+    private static final int OFFSET_SLOT_SIZE = 12;
+    private static final int OFFSET_WRITE_SEQUENCE = 16;
+    private static final int OFFSET_MONITORING = 24;
+
+    /**
+     * Empfänger gelesener Werte, siehe {@link #read}.
+     */
+    interface SampleConsumer {
+        void accept(long sequence, long timestamp, long txBytes, long rxBytes,
+                    long mobileTxBytes, long mobileRxBytes);
+    }
+
+    private static volatile int barrier;
+
+    private final ByteBuffer buffer;
+    private long writeSequence;
+
+    /**
+     * @param buffer beschreibbare Einblendung von mindestens {@link #SIZE} Byte
+     */
+    TrafficSampleRing(ByteBuffer buffer) {
+        this.buffer = buffer.order(ByteOrder.LITTLE_ENDIAN);
+        buffer.putInt(OFFSET_MAGIC, MAGIC);
+        buffer.putInt(OFFSET_VERSION, VERSION);
+        buffer.putInt(OFFSET_CAPACITY, CAPACITY);
+        buffer.putInt(OFFSET_SLOT_SIZE, SLOT_SIZE);
+        buffer.putLong(OFFSET_WRITE_SEQUENCE, 0);
+        releaseFence();
+    }
+
+    /**
+     * Hängt einen Wert an. Nur vom Schreiber.
+     */
+    void append(long timestamp, long txBytes, long rxBytes, long mobileTxBytes, long mobileRxBytes) {
+        long sequence = writeSequence;
+        int offset = slotOffset(sequence);
+        buffer.putLong(offset, 0);
+        storeStoreFence();
+        buffer.putLong(offset + 8, timestamp);
+        buffer.putLong(offset + 16, txBytes);
+        buffer.putLong(offset + 24, rxBytes);
+        buffer.putLong(offset + 32, mobileTxBytes);
+        buffer.putLong(offset + 40, mobileRxBytes);
+        releaseFence();
+        buffer.putLong(offset, sequence + 1);
+        releaseFence();
+        writeSequence = sequence + 1;
+        buffer.putLong(OFFSET_WRITE_SEQUENCE, writeSequence);
+    }
+
+    long getWriteSequence() {
+        return writeSequence;
+    }
+
+    void setMonitoring(boolean monitoring) {
+        buffer.putInt(OFFSET_MONITORING, monitoring ? 1 : 0);
+    }
+
+    /**
+     * Liest alle noch vorhandenen Werte ab {@code fromSequence} aus einer (auch nur lesenden)
+     * Einblendung. Überschriebene Werte werden übersprungen.
+     *
+     * @return Sequenznummer, ab der beim nächsten Mal gelesen wird
+     */
+    static long read(ByteBuffer ring, long fromSequence, SampleConsumer consumer) {
+        ByteBuffer buffer = ring.order(ByteOrder.LITTLE_ENDIAN);
+        if (buffer.getInt(OFFSET_MAGIC) != MAGIC || buffer.getInt(OFFSET_VERSION) != VERSION) {
+            throw new IllegalArgumentException("Not a NetBar sample ring");
+        }
+        long end = buffer.getLong(OFFSET_WRITE_SEQUENCE);
+        loadLoadFence();
+        long sequence = Math.max(fromSequence, end - CAPACITY);
+        for (; sequence < end; sequence++) {
+            int offset = slotOffset(sequence);
+            if (buffer.getLong(offset) != sequence + 1) {
+                continue;
+            }
+            loadLoadFence();
+            long timestamp = buffer.getLong(offset + 8);
+            long txBytes = buffer.getLong(offset + 16);
+            long rxBytes = buffer.getLong(offset + 24);
+            long mobileTxBytes = buffer.getLong(offset + 32);
+            long mobileRxBytes = buffer.getLong(offset + 40);
+            loadLoadFence();
+            if (buffer.getLong(offset) != sequence + 1) {
+                // Während des Lesens überschrieben
+                continue;
+            }
+            consumer.accept(sequence, timestamp, txBytes, rxBytes, mobileTxBytes, mobileRxBytes);
+        }
+        return end;
+    }
+
+    private static int slotOffset(long sequence) {
+        return HEADER_SIZE + (int) (sequence % CAPACITY) * SLOT_SIZE;
+    }
+
+    private static void storeStoreFence() {
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.TIRAMISU) {
+            VarHandle.storeStoreFence();
+        } else {
+            fullFence();
+        }
+    }
+
+    private static void releaseFence() {
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.TIRAMISU) {
+            VarHandle.releaseFence();
+        } else {
+            fullFence();
+        }
+    }
+
+    private static void loadLoadFence() {
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.TIRAMISU) {
+            VarHandle.loadLoadFence();
+        } else {
+            fullFence();
+        }
+    }
+
+    /**
+     * Vollständige Barriere für Android-Versionen ohne {@link VarHandle}, siehe Klassenbeschreibung.
+     */
+    private static void fullFence() {
+        barrier = 0;
+        int ignored = barrier;
+    }
+}
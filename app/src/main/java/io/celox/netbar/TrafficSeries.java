@@ -0,0 +1,132 @@
+/*
+ * Copyright (C) 2025 Martin Pfeffer
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.celox.netbar;
+
+/**
+ * Unveränderliche Sicht auf einen zusammenhängenden Zeitbereich im Ringpuffer.
+ * <p>
+ * Es werden keine Daten kopiert; die Sicht liest direkt aus dem zugrunde liegenden Puffer.
+ * Neue Datenpunkte erscheinen darin nicht, und verworfene bleiben lesbar, bis der Puffer ihre
+ * Plätze wiederverwendet. Das geschieht frühestens nach dem Reservebereich des Puffers (bei
+ * der Sekundenstufe zehn Minuten); wer eine Sicht länger hält, prüft {@link #isValid()} oder
+ * fragt neu an. Jeder Datenpunkt enthält die über {@link #getResolutionMs()} aufsummierten
+ * Bytes.
+ */
+public final class TrafficSeries {
+    private final TrafficRingBuffer buffer;
+    private final long firstSequence;
+    private final int size;
+    private final long resolutionMs;
+    private final long version;
+
+    TrafficSeries(TrafficRingBuffer buffer, long firstSequence, int size, long resolutionMs, long version) {
+        this.buffer = buffer;
+        this.firstSequence = firstSequence;
+        this.size = size;
+        this.resolutionMs = resolutionMs;
+        this.version = version;
+    }
+
+    /**
+     * Zeitspanne, über die jeder Datenpunkt aufsummiert ist.
+     */
+    public long getResolutionMs() {
+        return resolutionMs;
+    }
+
+    /**
+     * Stand des Puffers zum Zeitpunkt der Abfrage. Steigt mit jeder Änderung, sodass Leser
+     * erkennen können, ob sich eine erneute Abfrage lohnt.
+     */
+    public long getVersion() {
+        return version;
+    }
+
+    /**
+     * Ob alle Datenpunkte der Sicht noch unverändert im Puffer liegen.
+     */
+    public boolean isValid() {
+        return buffer.isRetained(firstSequence);
+    }
+
+    /**
+     * Sequenznummer des ersten Datenpunkts im Puffer, z. B. für {@link TrafficAggregates}.
+     */
+    long getFirstSequence() {
+        return firstSequence;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    public long getTimestamp(int index) {
+        return buffer.getTimestampAt(sequence(index));
+    }
+
+    public long getTxBytes(int index) {
+        return buffer.getTxBytesAt(sequence(index));
+    }
+
+    public long getRxBytes(int index) {
+        return buffer.getRxBytesAt(sequence(index));
+    }
+
+    /**
+     * Kleinste TX-Rate einer einzelnen Sekunde innerhalb des Datenpunkts in Bytes pro Sekunde.
+     */
+    public long getTxMinRate(int index) {
+        return buffer.getTxMinRateAt(sequence(index));
+    }
+
+    /**
+     * Größte TX-Rate einer einzelnen Sekunde innerhalb des Datenpunkts in Bytes pro Sekunde.
+     */
+    public long getTxMaxRate(int index) {
+        return buffer.getTxMaxRateAt(sequence(index));
+    }
+
+    public long getRxMinRate(int index) {
+        return buffer.getRxMinRateAt(sequence(index));
+    }
+
+    public long getRxMaxRate(int index) {
+        return buffer.getRxMaxRateAt(sequence(index));
+    }
+
+    /**
+     * Anteil der TX-Bytes über Mobilfunk; der Rest lief über WLAN oder andere Verbindungen.
+     */
+    public long getMobileTxBytes(int index) {
+        return buffer.getMobileTxBytesAt(sequence(index));
+    }
+
+    public long getMobileRxBytes(int index) {
+        return buffer.getMobileRxBytesAt(sequence(index));
+    }
+
+    private long sequence(int index) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+        }
+        return firstSequence + index;
+    }
+}
@@ -0,0 +1,138 @@
+/*
+ * Copyright (C) 2025 Martin Pfeffer
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.celox.netbar;
+
+import android.database.AbstractCursor;
+import android.database.StaleDataException;
+
+/**
+ * {@link android.database.Cursor} direkt über einer {@link TrafficSeries}, ohne die Datenpunkte
+ * zu kopieren. Über Prozessgrenzen füllt das Framework daraus nacheinander begrenzte
+ * {@link android.database.CursorWindow}s, sodass auch große Bereiche nie vollständig im
+ * Speicher liegen.
+ * <p>
+ * Die Sicht bleibt nur eine begrenzte Zeit gültig; wird ein bereits überschriebener Wert
+ * gelesen, wirft der Cursor eine {@link StaleDataException}.
+ */
+class TrafficSeriesCursor extends AbstractCursor {
+    private final TrafficSeries series;
+    private final int count;
+    private final String[] columnNames;
+    private final int[] fields;
+
+    /**
+     * @param count   Anzahl der Datenpunkte ab dem Anfang von {@code series}
+     * @param columns Spalten aus {@link TrafficHistoryProvider#COLUMNS}
+     */
+    TrafficSeriesCursor(TrafficSeries series, int count, String[] columns) {
+        this.series = series;
+        this.count = count;
+        this.columnNames = columns;
+        this.fields = new int[columns.length];
+        for (int i = 0; i < columns.length; i++) {
+            fields[i] = TrafficHistoryProvider.fieldOf(columns[i]);
+            if (fields[i] < 0) {
+                throw new IllegalArgumentException("Unknown column: " + columns[i]);
+            }
+        }
+    }
+
+    @Override
+    public int getCount() {
+        return count;
+    }
+
+    @Override
+    public String[] getColumnNames() {
+        return columnNames;
+    }
+
+    @Override
+    public long getLong(int column) {
+        int index = getPosition();
+        long value;
+        switch (fields[column]) {
+            case TrafficHistoryProvider.FIELD_TIMESTAMP:
+                value = series.getTimestamp(index);
+                break;
+            case TrafficHistoryProvider.FIELD_TX_BYTES:
+                value = series.getTxBytes(index);
+                break;
+            case TrafficHistoryProvider.FIELD_RX_BYTES:
+                value = series.getRxBytes(index);
+                break;
+            case TrafficHistoryProvider.FIELD_TX_MIN_RATE:
+                value = series.getTxMinRate(index);
+                break;
+            case TrafficHistoryProvider.FIELD_TX_MAX_RATE:
+                value = series.getTxMaxRate(index);
+                break;
+            case TrafficHistoryProvider.FIELD_RX_MIN_RATE:
+                value = series.getRxMinRate(index);
+                break;
+            case TrafficHistoryProvider.FIELD_RX_MAX_RATE:
+                value = series.getRxMaxRate(index);
+                break;
+            case TrafficHistoryProvider.FIELD_MOBILE_TX_BYTES:
+                value = series.getMobileTxBytes(index);
+                break;
+            default:
+                value = series.getMobileRxBytes(index);
+                break;
+        }
+        // Erst nach dem Lesen prüfen, sonst könnte der Wert danach überschrieben worden sein
+        if (!series.isValid()) {
+            throw new StaleDataException("Traffic history snapshot expired");
+        }
+        return value;
+    }
+
+    @Override
+    public int getType(int column) {
+        return FIELD_TYPE_INTEGER;
+    }
+
+    @Override
+    public String getString(int column) {
+        return Long.toString(getLong(column));
+    }
+
+    @Override
+    public short getShort(int column) {
+        return (short) getLong(column);
+    }
+
+    @Override
+    public int getInt(int column) {
+        return (int) getLong(column);
+    }
+
+    @Override
+    public float getFloat(int column) {
+        return getLong(column);
+    }
+
+    @Override
+    public double getDouble(int column) {
+        return getLong(column);
+    }
+
+    @Override
+    public boolean isNull(int column) {
+        return false;
+    }
+}
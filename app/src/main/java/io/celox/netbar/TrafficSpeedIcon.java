@@ -0,0 +1,223 @@
+/*
+ * Copyright (C) 2025 Martin Pfeffer
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.celox.netbar;
+
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.Color;
+import android.graphics.Paint;
+import android.graphics.PorterDuff;
+import android.graphics.Rect;
+import android.graphics.Typeface;
+
+import androidx.core.graphics.drawable.IconCompat;
+
+import java.text.DecimalFormatSymbols;
+
+/**
+ * Rendert die aktuelle Rate als kleines Notification-Icon, z. B. "1.2" über "MB/s", damit
+ * sie direkt in der Statusleiste sichtbar ist.
+ * <p>
+ * Ziffern, Dezimaltrennzeichen und Einheiten werden einmalig in einen Glyphen-Atlas
+ * gerastert; ein Icon entsteht danach nur durch Kopieren weniger Rechtecke. Die Icons liegen
+ * in einem kleinen Pool vorab angelegter Bitmaps, der zugleich als LRU-Cache dient: Ein
+ * bereits gerenderter Wert liefert dasselbe {@link IconCompat}, ohne neu zu zeichnen. Nach
+ * dem Konstruktor werden keine Objekte mehr angelegt. Nur von einem Thread verwenden.
+ */
+final class TrafficSpeedIcon {
+    private static final int ICON_SIZE_DP = 24;
+    private static final int CACHE_SIZE = 8;
+    private static final int MAX_DIGITS = 4;
+    private static final long KB = 1024;
+    private static final long MB = KB * 1024;
+    private static final long GB = MB * 1024;
+    private static final String[] UNITS = {"B/s", "KB/s", "MB/s", "GB/s"};
+    private static final int SEPARATOR = 10; // Glyphen 0 bis 9 sind die Ziffern
+
+    private final int size;
+    private final Bitmap atlas;
+    private final int[] glyphLeft = new int[SEPARATOR + 1];
+    private final int[] glyphWidth = new int[SEPARATOR + 1];
+    private final int[] unitLeft = new int[UNITS.length];
+    private final int[] unitWidth = new int[UNITS.length];
+    private final int digitHeight;
+    private final int unitHeight;
+    private final Paint paint = new Paint(Paint.ANTI_ALIAS_FLAG);
+    private final Rect src = new Rect();
+    private final Rect dst = new Rect();
+    private final int[] glyphs = new int[MAX_DIGITS];
+
+    // Pool und Cache, alle Arrays über denselben Index
+    private final Bitmap[] bitmaps = new Bitmap[CACHE_SIZE];
+    private final Canvas[] canvases = new Canvas[CACHE_SIZE];
+    private final IconCompat[] icons = new IconCompat[CACHE_SIZE];
+    private final long[] keys = new long[CACHE_SIZE];
+    private final long[] lastUse = new long[CACHE_SIZE];
+    private long useCounter;
+
+    /**
+     * @param density Bildschirmdichte, siehe {@code DisplayMetrics#density}
+     */
+    TrafficSpeedIcon(float density) {
+        size = Math.max(16, Math.round(ICON_SIZE_DP * density));
+        // Zwei Drittel für die Zahl, der Rest für die Einheit
+        digitHeight = size * 2 / 3;
+        unitHeight = size - digitHeight;
+
+        Paint digitPaint = new Paint(Paint.ANTI_ALIAS_FLAG);
+        digitPaint.setColor(Color.WHITE);
+        digitPaint.setTypeface(Typeface.DEFAULT_BOLD);
+        digitPaint.setTextSize(digitHeight);
+        Paint unitPaint = new Paint(Paint.ANTI_ALIAS_FLAG);
+        unitPaint.setColor(Color.WHITE);
+        unitPaint.setTypeface(Typeface.DEFAULT_BOLD);
+        unitPaint.setTextSize(unitHeight);
+
+        // Obere Zeile des Atlas: Ziffern und Trennzeichen, untere Zeile: Einheiten
+        String separator = String.valueOf(DecimalFormatSymbols.getInstance().getDecimalSeparator());
+        int digitsWidth = 0;
+        for (int i = 0; i <= SEPARATOR; i++) {
+            glyphLeft[i] = digitsWidth;
+            glyphWidth[i] = (int) Math.ceil(digitPaint.measureText(i < SEPARATOR ? String.valueOf(i) : separator));
+            digitsWidth += glyphWidth[i];
+        }
+        int unitsWidth = 0;
+        for (int i = 0; i < UNITS.length; i++) {
+            unitLeft[i] = unitsWidth;
+            unitWidth[i] = (int) Math.ceil(unitPaint.measureText(UNITS[i]));
+            unitsWidth += unitWidth[i];
+        }
+        atlas = Bitmap.createBitmap(Math.max(1, Math.max(digitsWidth, unitsWidth)), size, Bitmap.Config.ALPHA_8);
+        Canvas atlasCanvas = new Canvas(atlas);
+        float digitBaseline = digitHeight - digitPaint.descent();
+        for (int i = 0; i <= SEPARATOR; i++) {
+            atlasCanvas.drawText(i < SEPARATOR ? String.valueOf(i) : separator,
+                    glyphLeft[i], digitBaseline, digitPaint);
+        }
+        float unitBaseline = size - unitPaint.descent();
+        for (int i = 0; i < UNITS.length; i++) {
+            atlasCanvas.drawText(UNITS[i], unitLeft[i], unitBaseline, unitPaint);
+        }
+
+        // Ein ALPHA_8-Atlas wird in der Farbe des Paint gezeichnet
+        paint.setColor(Color.WHITE);
+        for (int i = 0; i < CACHE_SIZE; i++) {
+            bitmaps[i] = Bitmap.createBitmap(size, size, Bitmap.Config.ARGB_8888);
+            canvases[i] = new Canvas(bitmaps[i]);
+            icons[i] = IconCompat.createWithBitmap(bitmaps[i]);
+            keys[i] = -1;
+        }
+    }
+
+    /**
+     * Liefert das Icon für {@code bytesPerSecond}. Das Ergebnis bleibt gültig, bis es aus dem
+     * Cache verdrängt wird; eine Notification kopiert die Bitmap beim Veröffentlichen.
+     */
+    IconCompat render(long bytesPerSecond) {
+        int unit = layout(Math.max(0, bytesPerSecond));
+        long key = unit;
+        for (int i = 0; i < MAX_DIGITS; i++) {
+            key = key * 16 + (glyphs[i] + 1);
+        }
+
+        int slot = 0;
+        for (int i = 0; i < CACHE_SIZE; i++) {
+            if (keys[i] == key) {
+                lastUse[i] = ++useCounter;
+                return icons[i];
+            }
+            if (lastUse[i] < lastUse[slot]) {
+                slot = i;
+            }
+        }
+
+        draw(canvases[slot], unit);
+        keys[slot] = key;
+        lastUse[slot] = ++useCounter;
+        return icons[slot];
+    }
+
+    /**
+     * Zerlegt die Rate in Glyphen der oberen Zeile ({@code -1} für unbenutzt) und liefert den
+     * Index der Einheit. Höchstens drei Stellen, unter 10 mit einer Nachkommastelle.
+     */
+    private int layout(long bytes) {
+        int unit;
+        long divisor;
+        if (bytes < 1000) {
+            unit = 0;
+            divisor = 1;
+        } else if (bytes < 1000 * KB) {
+            unit = 1;
+            divisor = KB;
+        } else if (bytes < 1000 * MB) {
+            unit = 2;
+            divisor = MB;
+        } else {
+            unit = 3;
+            divisor = GB;
+        }
+
+        for (int i = 0; i < MAX_DIGITS; i++) {
+            glyphs[i] = -1;
+        }
+        long tenths = (bytes * 10 + divisor / 2) / divisor;
+        if (unit > 0 && tenths < 100) {
+            glyphs[0] = (int) (tenths / 10);
+            glyphs[1] = SEPARATOR;
+            glyphs[2] = (int) (tenths % 10);
+            return unit;
+        }
+        long value = Math.min(999, (bytes + divisor / 2) / divisor);
+        int count = value >= 100 ? 3 : value >= 10 ? 2 : 1;
+        for (int i = count - 1; i >= 0; i--) {
+            glyphs[i] = (int) (value % 10);
+            value /= 10;
+        }
+        return unit;
+    }
+
+    private void draw(Canvas canvas, int unit) {
+        canvas.drawColor(Color.TRANSPARENT, PorterDuff.Mode.CLEAR);
+
+        int width = 0;
+        for (int glyph : glyphs) {
+            if (glyph >= 0) {
+                width += glyphWidth[glyph];
+            }
+        }
+        // Zu breite Zahlen horizontal stauchen, die Höhe bleibt
+        float scale = width > size ? size / (float) width : 1f;
+        float x = (size - width * scale) / 2;
+        for (int glyph : glyphs) {
+            if (glyph < 0) {
+                continue;
+            }
+            float glyphScaled = glyphWidth[glyph] * scale;
+            src.set(glyphLeft[glyph], 0, glyphLeft[glyph] + glyphWidth[glyph], digitHeight);
+            dst.set(Math.round(x), 0, Math.round(x + glyphScaled), digitHeight);
+            canvas.drawBitmap(atlas, src, dst, paint);
+            x += glyphScaled;
+        }
+
+        int unitW = Math.min(size, unitWidth[unit]);
+        int left = (size - unitW) / 2;
+        src.set(unitLeft[unit], digitHeight, unitLeft[unit] + unitWidth[unit], size);
+        dst.set(left, digitHeight, left + unitW, size);
+        canvas.drawBitmap(atlas, src, dst, paint);
+    }
+}
@@ -0,0 +1,142 @@
+/*
+ * Copyright (C) 2025 Martin Pfeffer
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.celox.netbar;
+
+import android.os.RemoteCallbackList;
+import android.os.RemoteException;
+import android.os.SharedMemory;
+import android.system.ErrnoException;
+import android.system.OsConstants;
+
+import androidx.annotation.NonNull;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Binder des gebundenen {@link NetworkTrafficService}: stellt die Sekundenwerte in einem
+ * {@link TrafficSampleRing} im gemeinsamen Speicher bereit und signalisiert neue Werte über
+ * {@link ITrafficStreamCallback}.
+ * <p>
+ * Die Werte kommen als {@link NetworkTrafficManager.TrafficListener} vom Manager, solange
+ * mindestens ein Client gebunden ist ({@link #attach()}/{@link #detach()}); ohne Clients kostet
+ * der Strom nichts. {@link #signal()} ruft der Service einmal pro Tick auf, sodass auch viele
+ * nachgeholte Sekunden nur einen Binder-Aufruf je Client auslösen.
+ */
+final class TrafficStream extends ITrafficStream.Stub implements NetworkTrafficManager.TrafficListener {
+    private final NetworkTrafficManager manager;
+    private final SharedMemory memory;
+    private final ByteBuffer mapping; // Eigene, beschreibbare Einblendung
+    private final TrafficSampleRing ring; // Werte schreibt nur der Sampler-Thread
+    private final RemoteCallbackList<ITrafficStreamCallback> callbacks = new RemoteCallbackList<>();
+    private volatile boolean monitoring;
+    private long signaledSequence; // Nur im Sampler-Thread
+    private boolean attached; // Nur im UI-Thread
+
+    TrafficStream(NetworkTrafficManager manager) throws ErrnoException {
+        this.manager = manager;
+        memory = SharedMemory.create("netbar-samples", TrafficSampleRing.SIZE);
+        mapping = memory.mapReadWrite();
+        ring = new TrafficSampleRing(mapping);
+        // Die eigene Einblendung bleibt beschreibbar, alle weiteren sind nur lesbar
+        memory.setProtect(OsConstants.PROT_READ);
+    }
+
+    /**
+     * Beginnt, Werte in den Ringpuffer zu schreiben. Im UI-Thread, beim Binden.
+     */
+    void attach() {
+        if (!attached) {
+            attached = true;
+            manager.addTrafficListener(this);
+        }
+    }
+
+    /**
+     * Der letzte Client hat sich gelöst. Im UI-Thread.
+     */
+    void detach() {
+        if (attached) {
+            attached = false;
+            manager.removeTrafficListener(this);
+        }
+    }
+
+    void setMonitoring(boolean monitoring) {
+        this.monitoring = monitoring;
+        ring.setMonitoring(monitoring);
+    }
+
+    /**
+     * Läuft auf dem Sampler-Thread.
+     */
+    @Override
+    public void onTrafficSample(long timestamp, long txBytes, long rxBytes, long mobileTxBytes, long mobileRxBytes) {
+        ring.append(timestamp, txBytes, rxBytes, mobileTxBytes, mobileRxBytes);
+    }
+
+    /**
+     * Benachrichtigt die Clients, falls seit dem letzten Aufruf Werte hinzugekommen sind. Im
+     * Sampler-Thread nach jedem Tick.
+     */
+    void signal() {
+        long sequence = ring.getWriteSequence();
+        if (sequence == signaledSequence) {
+            return;
+        }
+        signaledSequence = sequence;
+        int count = callbacks.beginBroadcast();
+        for (int i = 0; i < count; i++) {
+            try {
+                callbacks.getBroadcastItem(i).onSamplesAvailable(sequence);
+            } catch (RemoteException e) {
+                // Beendete Clients entfernt die RemoteCallbackList selbst
+            }
+        }
+        callbacks.finishBroadcast();
+    }
+
+    /**
+     * Gibt Einblendung und Speicher frei. Im UI-Thread, erst wenn der Sampler-Thread beendet ist;
+     * sonst könnte er noch in den Ringpuffer schreiben.
+     */
+    void close() {
+        detach();
+        callbacks.kill();
+        SharedMemory.unmap(mapping);
+        memory.close();
+    }
+
+    @Override
+    public SharedMemory getSampleRing() {
+        return memory;
+    }
+
+    @Override
+    public boolean isMonitoring() {
+        return monitoring;
+    }
+
+    @Override
+    public void registerCallback(@NonNull ITrafficStreamCallback callback) {
+        callbacks.register(callback);
+    }
+
+    @Override
+    public void unregisterCallback(@NonNull ITrafficStreamCallback callback) {
+        callbacks.unregister(callback);
+    }
+}
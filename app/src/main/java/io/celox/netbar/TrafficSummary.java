@@ -0,0 +1,115 @@
+/*
+ * Copyright (C) 2025 Martin Pfeffer
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.celox.netbar;
+
+/**
+ * Kennzahlen eines Zeitbereichs: Summen, Spitzen- und Durchschnittsraten sowie Quantile der
+ * Durchschnittsraten der einzelnen Datenpunkte. Alle Raten in Bytes pro Sekunde.
+ * <p>
+ * Die Spitze ist immer die höchste Rate einer Sekunde. Die Quantile sind dagegen über die
+ * Auflösung der Datenpunkte gemittelt ({@link #getRateIntervalMs()}), bei Minuten, Stunden
+ * oder Tagen also Durchschnitte, die weit unter der Spitze liegen können. Sie stammen aus
+ * Histogrammen mit der Einteilung von {@link MetricHistogram} und haben einen relativen Fehler
+ * unter 12,5 %; alle anderen Werte sind exakt.
+ */
+public final class TrafficSummary {
+    int pointCount;
+    long durationMs;
+    long rateIntervalMs;
+    long txBytes;
+    long rxBytes;
+    long txPeakRate;
+    long rxPeakRate;
+    long txRateP50;
+    long txRateP95;
+    long txRateP99;
+    long rxRateP50;
+    long rxRateP95;
+    long rxRateP99;
+
+    /**
+     * Anzahl der Datenpunkte, über die die Kennzahlen gebildet sind.
+     */
+    public int getPointCount() {
+        return pointCount;
+    }
+
+    /**
+     * Erfasste Zeit: Anzahl der Datenpunkte mal Auflösung. Lücken ohne Erfassung zählen nicht.
+     */
+    public long getDurationMs() {
+        return durationMs;
+    }
+
+    /**
+     * Zeitraum, über den die Raten der Quantile gemittelt sind: die Auflösung der Datenpunkte.
+     */
+    public long getRateIntervalMs() {
+        return rateIntervalMs;
+    }
+
+    public long getTxBytes() {
+        return txBytes;
+    }
+
+    public long getRxBytes() {
+        return rxBytes;
+    }
+
+    /**
+     * Höchste Rate einer einzelnen Sekunde im Bereich.
+     */
+    public long getTxPeakRate() {
+        return txPeakRate;
+    }
+
+    public long getRxPeakRate() {
+        return rxPeakRate;
+    }
+
+    public long getTxAverageRate() {
+        return durationMs > 0 ? txBytes * 1000 / durationMs : 0;
+    }
+
+    public long getRxAverageRate() {
+        return durationMs > 0 ? rxBytes * 1000 / durationMs : 0;
+    }
+
+    public long getTxRateP50() {
+        return txRateP50;
+    }
+
+    public long getTxRateP95() {
+        return txRateP95;
+    }
+
+    public long getTxRateP99() {
+        return txRateP99;
+    }
+
+    public long getRxRateP50() {
+        return rxRateP50;
+    }
+
+    public long getRxRateP95() {
+        return rxRateP95;
+    }
+
+    public long getRxRateP99() {
+        return rxRateP99;
+    }
+}
@@ -0,0 +1,117 @@
+/*
+ * Copyright (C) 2025 Martin Pfeffer
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.celox.netbar;
+
+import android.os.Handler;
+import android.os.Looper;
+import android.os.SystemClock;
+
+/**
+ * Eine Anzeige außerhalb der App, die aus dem {@link LiveTrafficSnapshot} gespeist wird.
+ * <p>
+ * Änderungen werden zusammengefasst und höchstens alle {@code minIntervalMs} Millisekunden im
+ * UI-Thread an {@link #update} übergeben: Die erste Änderung nach einer Pause wird sofort
+ * gezeichnet, weitere innerhalb des Intervalls lösen genau eine Aktualisierung am Ende des
+ * Intervalls mit dem dann aktuellen Stand aus. Solange die Anzeige nicht sichtbar ist
+ * ({@link #stop()}), ist sie abgemeldet und verursacht keinerlei Aufwand.
+ */
+abstract class TrafficSurface implements LiveTrafficSnapshot.Listener {
+    private final LiveTrafficSnapshot source;
+    private final long minIntervalMs;
+    private final Handler handler = new Handler(Looper.getMainLooper());
+    private final Runnable updateRunnable = this::runUpdate;
+    private final LiveTrafficSnapshot.Values values = new LiveTrafficSnapshot.Values(); // Nur im UI-Thread
+
+    // Geschützt durch this
+    private boolean visible;
+    private boolean scheduled;
+    private long lastUpdateUptime;
+
+    TrafficSurface(LiveTrafficSnapshot source, long minIntervalMs) {
+        this.source = source;
+        this.minIntervalMs = minIntervalMs;
+    }
+
+    /**
+     * Die Anzeige ist sichtbar geworden: anmelden und den aktuellen Stand sofort zeichnen.
+     */
+    final void start() {
+        synchronized (this) {
+            if (visible) {
+                return;
+            }
+            visible = true;
+            lastUpdateUptime = 0;
+        }
+        source.addListener(this);
+        onSnapshotChanged();
+    }
+
+    /**
+     * Die Anzeige ist nicht mehr sichtbar: abmelden und ausstehende Aktualisierungen verwerfen.
+     */
+    final void stop() {
+        source.removeListener(this);
+        synchronized (this) {
+            visible = false;
+            scheduled = false;
+        }
+        handler.removeCallbacks(updateRunnable);
+    }
+
+    /**
+     * Läuft auf dem Sampler-Thread oder beim Start im UI-Thread.
+     */
+    @Override
+    public final synchronized void onSnapshotChanged() {
+        if (!visible || scheduled) {
+            // Eine ausstehende Aktualisierung liest ohnehin den neuesten Stand
+            return;
+        }
+        scheduled = true;
+        long delay = lastUpdateUptime + minIntervalMs - SystemClock.uptimeMillis();
+        handler.postDelayed(updateRunnable, Math.max(0, delay));
+    }
+
+    private void runUpdate() {
+        synchronized (this) {
+            scheduled = false;
+            if (!visible) {
+                return;
+            }
+            lastUpdateUptime = SystemClock.uptimeMillis();
+        }
+        source.read(values);
+        update(values);
+    }
+
+    /**
+     * Zeichnet den Stand; läuft im UI-Thread.
+     */
+    abstract void update(LiveTrafficSnapshot.Values values);
+
+    /**
+     * Heutiger Verkehr für Widget und Kachel, z. B. "Today ↑ 12.0 MB ↓ 1.1 GB".
+     */
+    static String formatToday(LiveTrafficSnapshot.Values values) {
+        if (values.todayTxBytes < 0) {
+            return values.running ? "Today …" : "Not monitoring";
+        }
+        return "Today ↑ " + TrafficFormatter.formatBytes(values.todayTxBytes)
+                + " ↓ " + TrafficFormatter.formatBytes(values.todayRxBytes);
+    }
+}
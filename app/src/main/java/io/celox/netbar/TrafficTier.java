@@ -0,0 +1,324 @@
+/*
+ * Copyright (C) 2025 Martin Pfeffer
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.celox.netbar;
+
+import androidx.annotation.Nullable;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Calendar;
+import java.util.TimeZone;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Eine Auflösungsstufe der Verkehrshistorie (z. B. pro Minute für 24 Stunden).
+ * <p>
+ * Eingehende Datenpunkte werden in einem offenen {@link TrafficBucket} aufsummiert, der auch
+ * die minimale und maximale Sekundenrate mitführt. Sobald ein Datenpunkt in einen späteren
+ * Bucket fällt, wird der offene Bucket abgeschlossen, im Ringpuffer und optional im Log
+ * gespeichert und an die nächst gröbere Stufe weitergereicht. So entstehen alle Rollups
+ * inkrementell, ohne Rohdaten erneut zu lesen.
+ * <p>
+ * Hat die Stufe ein {@link TrafficArchive}, werden abgelaufene Buckets nicht verworfen,
+ * sondern in Blöcken von {@link #ARCHIVE_BLOCK_RECORDS} komprimiert archiviert. Sie bleiben
+ * im Ringpuffer, bis das Archiv sie bestätigt, sodass Abfragen über beide keine Lücke sehen.
+ */
+class TrafficTier {
+    /**
+     * Wird für jeden abgeschlossenen Bucket aufgerufen, im Thread, der die Datenpunkte hinzufügt.
+     */
+    interface BucketListener {
+        void onBucketCompleted(TrafficBucket bucket);
+    }
+
+    private static final long NO_BUCKET = Long.MIN_VALUE;
+    private static final long SNAPSHOT_LIFETIME_MS = TimeUnit.MINUTES.toMillis(10);
+    private static final int MIN_SNAPSHOT_SLACK = 8;
+    private static final long DAY_MS = TimeUnit.DAYS.toMillis(1);
+    static final int ARCHIVE_BLOCK_RECORDS = 256;
+
+    private final long resolutionMs;
+    private final long retentionMs;
+    private final TrafficRingBuffer buffer;
+    private final TrafficAggregates aggregates;
+    @Nullable
+    private final TrafficHistoryLog log;
+    @Nullable
+    private final TrafficArchive archive;
+    @Nullable
+    private final TrafficBlockCodec codec;
+    @Nullable
+    private final TrafficTier next;
+    private final TrafficWriter writer;
+    @Nullable
+    private BucketListener listener;
+    private final TimeZone timeZone = TimeZone.getDefault();
+    private LocalDay currentDay; // Zuletzt berechneter lokaler Tag, nur bei Stufen ab einem Tag
+    private int logRecordCount; // Datensätze im Log, inklusive abgelaufener
+    private long archiveSubmittedUntil = Long.MIN_VALUE; // Ältere Buckets sind an das Archiv übergeben
+
+    private final TrafficBucket bucket = new TrafficBucket();
+    private final TrafficBucket scratch = new TrafficBucket();
+
+    /**
+     * @param file Logdatei der Stufe oder {@code null}, wenn sie nur im Speicher liegt
+     * @param archive Archiv für abgelaufene Buckets oder {@code null}, wenn sie verworfen werden
+     * @param next nächst gröbere Stufe, an die abgeschlossene Buckets weitergereicht werden
+     * @param writer Schreib-Thread, über den alle Änderungen am Log laufen
+     */
+    TrafficTier(long resolutionMs, long retentionMs, @Nullable File file, @Nullable TrafficArchive archive,
+                @Nullable TrafficTier next, TrafficWriter writer) {
+        this.resolutionMs = resolutionMs;
+        this.retentionMs = retentionMs;
+        // Reserve, damit Sichten von Lesern mindestens SNAPSHOT_LIFETIME_MS an Daten gültig bleiben
+        int slack = (int) Math.max(MIN_SNAPSHOT_SLACK, SNAPSHOT_LIFETIME_MS / resolutionMs);
+        int capacity = (int) (retentionMs / resolutionMs);
+        if (archive != null) {
+            // Platz für einen unvollständigen und einen noch nicht bestätigten Block
+            capacity += 2 * ARCHIVE_BLOCK_RECORDS;
+        }
+        this.buffer = new TrafficRingBuffer(capacity, slack);
+        this.aggregates = new TrafficAggregates(resolutionMs, capacity + slack);
+        this.log = file != null ? new TrafficHistoryLog(file) : null;
+        this.archive = archive;
+        this.codec = archive != null ? new TrafficBlockCodec() : null;
+        this.next = next;
+        this.writer = writer;
+        bucket.reset(NO_BUCKET);
+    }
+
+    long getResolutionMs() {
+        return resolutionMs;
+    }
+
+    long getRetentionMs() {
+        return retentionMs;
+    }
+
+    TrafficRingBuffer getBuffer() {
+        return buffer;
+    }
+
+    TrafficAggregates getAggregates() {
+        return aggregates;
+    }
+
+    @Nullable
+    TrafficArchive getArchive() {
+        return archive;
+    }
+
+    /**
+     * Der noch offene Bucket; nur für den Thread, der die Datenpunkte hinzufügt.
+     */
+    TrafficBucket getOpenBucket() {
+        return bucket;
+    }
+
+    void setBucketListener(@Nullable BucketListener listener) {
+        this.listener = listener;
+    }
+
+    /**
+     * Rechnet den Verkehr einer Sekunde in den offenen Bucket ein.
+     */
+    void addSample(long timestamp, long txBytes, long rxBytes, long mobileTxBytes, long mobileRxBytes) {
+        advanceTo(timestamp);
+        bucket.addSample(txBytes, rxBytes, mobileTxBytes, mobileRxBytes);
+    }
+
+    /**
+     * Rechnet einen abgeschlossenen Bucket der feineren Stufe in den offenen Bucket ein.
+     */
+    private void addBucket(TrafficBucket completed) {
+        advanceTo(completed.start);
+        bucket.addBucket(completed);
+    }
+
+    /**
+     * Schließt den offenen Bucket ab, falls {@code timestamp} in einen späteren Bucket fällt.
+     * Läuft die Uhr zurück, bleibt der offene Bucket bestehen, damit die Zeitstempel im
+     * Puffer aufsteigend bleiben.
+     */
+    private void advanceTo(long timestamp) {
+        long start = bucketStartOf(timestamp);
+        if (start > bucket.start) {
+            if (!bucket.isEmpty()) {
+                completeBucket();
+            }
+            bucket.reset(start);
+        }
+    }
+
+    /**
+     * Liest die gespeicherten Buckets aus dem Log, abgelaufene werden übersprungen. Hat die
+     * Stufe ein Archiv, bleiben abgelaufene, aber noch nicht archivierte Buckets erhalten und
+     * werden archiviert. Muss vor dem ersten Datenpunkt aufgerufen werden.
+     */
+    void load(long now) {
+        if (log == null) {
+            return;
+        }
+        long expiryTime = now - retentionMs;
+        long archivedUntil = Long.MIN_VALUE;
+        if (archive != null) {
+            try {
+                archive.load();
+                archivedUntil = archive.getLastTimestamp();
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+        }
+        long keepFrom = archive != null ? archivedUntil + 1 : expiryTime;
+        try {
+            log.load(record -> {
+                if (record.start >= keepFrom) {
+                    addToBuffer(record);
+                }
+            });
+            logRecordCount = log.getRecordCount();
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+        if (archive != null) {
+            archiveExpired(expiryTime);
+        }
+    }
+
+    /**
+     * Reicht die gespeicherten Buckets, die in der nächsten Stufe noch fehlen, erneut an diese
+     * weiter. Damit werden nach einem Neustart die offenen Buckets der gröberen Stufen
+     * wiederhergestellt. Muss von der gröbsten zur feinsten Stufe aufgerufen werden.
+     */
+    void replayIntoNext() {
+        if (next == null) {
+            return;
+        }
+        TrafficRingBuffer nextBuffer = next.buffer;
+        long lastNextBucket = nextBuffer.isEmpty()
+                ? NO_BUCKET : nextBuffer.getTimestamp(nextBuffer.size() - 1);
+        for (int i = 0; i < buffer.size(); i++) {
+            buffer.get(i, scratch);
+            if (next.bucketStartOf(scratch.start) > lastNextBucket) {
+                next.addBucket(scratch);
+            }
+        }
+    }
+
+    private void completeBucket() {
+        long expiryTime = bucket.start - retentionMs;
+        if (archive != null) {
+            archiveExpired(expiryTime);
+        } else {
+            buffer.removeOlderThan(expiryTime);
+        }
+        addToBuffer(bucket);
+        if (listener != null) {
+            listener.onBucketCompleted(bucket);
+        }
+
+        if (log != null) {
+            writer.append(log, bucket);
+            logRecordCount++;
+
+            // Abgelaufene Datensätze gelegentlich durch Neuschreiben entfernen
+            if (logRecordCount >= 2 * buffer.capacity()) {
+                writer.rewrite(log, buffer.copy());
+                logRecordCount = buffer.size();
+            }
+        }
+
+        if (next != null) {
+            next.addBucket(bucket);
+        }
+    }
+
+    private void addToBuffer(TrafficBucket completed) {
+        // Zuerst die Kennzahlen, damit jede Sicht auf den Puffer dort bereits enthalten ist
+        aggregates.add(completed);
+        buffer.add(completed);
+    }
+
+    /**
+     * Entfernt die vom Archiv bestätigten Buckets aus dem Ringpuffer und übergibt abgelaufene
+     * Buckets in vollen Blöcken an den Schreib-Thread. Ein unvollständiger Block bleibt im
+     * Ringpuffer, bis genug Buckets abgelaufen sind.
+     */
+    private void archiveExpired(long expiryTime) {
+        long archivedUntil = archive.getLastTimestamp();
+        if (archivedUntil != Long.MIN_VALUE) {
+            buffer.removeOlderThan(Math.min(expiryTime, archivedUntil + 1));
+        }
+
+        int size = buffer.size();
+        int from = 0;
+        while (from < size && buffer.getTimestamp(from) < archiveSubmittedUntil) {
+            from++;
+        }
+        int end = from;
+        while (end < size && buffer.getTimestamp(end) < expiryTime) {
+            end++;
+        }
+        while (end - from >= ARCHIVE_BLOCK_RECORDS) {
+            writer.archive(archive, codec.encode(buffer, from, ARCHIVE_BLOCK_RECORDS));
+            from += ARCHIVE_BLOCK_RECORDS;
+            archiveSubmittedUntil = buffer.getTimestamp(from - 1) + 1;
+        }
+    }
+
+    /**
+     * Beginn des Buckets, in den {@code timestamp} fällt. Buckets werden an der lokalen
+     * Zeitzone ausgerichtet, damit Tage um Mitternacht beginnen. Feinere Stufen rechnen mit dem
+     * Offset zum Zeitpunkt selbst; Stufen ab einem Tag beginnen an der lokalen Mitternacht, die
+     * über {@link Calendar} bestimmt wird, sodass ein Tag mit Zeitumstellung 23 oder 25 Stunden
+     * umfasst und nicht auf zwei Buckets verteilt wird.
+     */
+    long bucketStartOf(long timestamp) {
+        if (resolutionMs < DAY_MS) {
+            long offset = timeZone.getOffset(timestamp);
+            return Math.floorDiv(timestamp + offset, resolutionMs) * resolutionMs - offset;
+        }
+        LocalDay day = currentDay;
+        if (day == null || timestamp < day.start || timestamp >= day.end) {
+            // Nur bei einem Tageswechsel, Calendar legt Objekte an
+            day = new LocalDay(timestamp, timeZone);
+            currentDay = day;
+        }
+        return day.start;
+    }
+
+    /**
+     * Grenzen eines lokalen Kalendertags. Unveränderlich, damit auch ein anderer Thread, der
+     * {@link #bucketStartOf} aufruft, nur vollständige Tage sieht.
+     */
+    private static final class LocalDay {
+        final long start;
+        final long end;
+
+        LocalDay(long timestamp, TimeZone timeZone) {
+            Calendar calendar = Calendar.getInstance(timeZone);
+            calendar.setTimeInMillis(timestamp);
+            calendar.set(Calendar.HOUR_OF_DAY, 0);
+            calendar.set(Calendar.MINUTE, 0);
+            calendar.set(Calendar.SECOND, 0);
+            calendar.set(Calendar.MILLISECOND, 0);
+            start = calendar.getTimeInMillis();
+            calendar.add(Calendar.DAY_OF_MONTH, 1);
+            end = calendar.getTimeInMillis();
+        }
+    }
+}
@@ -0,0 +1,78 @@
+/*
+ * Copyright (C) 2025 Martin Pfeffer
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.celox.netbar;
+
+import android.os.Build;
+import android.service.quicksettings.Tile;
+import android.service.quicksettings.TileService;
+
+/**
+ * Kachel in den Schnelleinstellungen mit den aktuellen Raten und dem heutigen Verkehr.
+ * <p>
+ * Die Kachel liest nur den {@link LiveTrafficSnapshot} des Service und ist nur zwischen
+ * {@link #onStartListening()} und {@link #onStopListening()} angemeldet, also solange die
+ * Schnelleinstellungen geöffnet sind.
+ */
+public class TrafficTileService extends TileService {
+    private static final long UPDATE_INTERVAL_MS = 1000; // Wie der Takt des Service
+
+    private final TrafficFormatter formatter = new TrafficFormatter();
+    private TrafficSurface surface;
+
+    @Override
+    public void onCreate() {
+        super.onCreate();
+        LiveTrafficSnapshot snapshot = NetworkTrafficManager.getInstance(this).getLiveSnapshot();
+        surface = new TrafficSurface(snapshot, UPDATE_INTERVAL_MS) {
+            @Override
+            void update(LiveTrafficSnapshot.Values values) {
+                updateTile(values);
+            }
+        };
+    }
+
+    @Override
+    public void onStartListening() {
+        super.onStartListening();
+        surface.start();
+    }
+
+    @Override
+    public void onStopListening() {
+        surface.stop();
+        super.onStopListening();
+    }
+
+    private void updateTile(LiveTrafficSnapshot.Values values) {
+        Tile tile = getQsTile();
+        if (tile == null) {
+            return;
+        }
+        if (values.running) {
+            formatter.render(values.txRate, values.rxRate, true, true);
+            tile.setLabel(formatter.toString());
+            tile.setState(Tile.STATE_ACTIVE);
+        } else {
+            tile.setLabel(getString(R.string.app_name));
+            tile.setState(Tile.STATE_INACTIVE);
+        }
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.Q) {
+            tile.setSubtitle(TrafficSurface.formatToday(values));
+        }
+        tile.updateTile();
+    }
+}
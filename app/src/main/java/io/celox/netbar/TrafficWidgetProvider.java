@@ -0,0 +1,127 @@
+/*
+ * Copyright (C) 2025 Martin Pfeffer
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.celox.netbar;
+
+import android.app.PendingIntent;
+import android.appwidget.AppWidgetManager;
+import android.appwidget.AppWidgetProvider;
+import android.content.ComponentName;
+import android.content.Context;
+import android.content.Intent;
+import android.widget.RemoteViews;
+
+/**
+ * Home-Screen-Widget mit den aktuellen Raten und dem heutigen Verkehr.
+ * <p>
+ * Das Widget wird nicht über {@code updatePeriodMillis} abgefragt, sondern aus dem
+ * {@link LiveTrafficSnapshot} des Service gespeist. Eine gemeinsame {@link TrafficSurface}
+ * für alle Instanzen sendet höchstens alle {@link #UPDATE_INTERVAL_MS} ein
+ * {@link RemoteViews}-Update, nur bei geändertem Text und nicht bei ausgeschaltetem Display.
+ */
+public class TrafficWidgetProvider extends AppWidgetProvider {
+    private static final long UPDATE_INTERVAL_MS = 5000; // Jedes Update ist ein IPC zum Launcher
+
+    // Nur im UI-Thread; null, solange kein Widget existiert
+    private static WidgetSurface surface;
+
+    @Override
+    public void onUpdate(Context context, AppWidgetManager appWidgetManager, int[] appWidgetIds) {
+        updateRegistration(context);
+        if (surface != null) {
+            // Neue Instanzen sollen nicht auf die nächste Änderung warten
+            surface.forceUpdate();
+        }
+    }
+
+    @Override
+    public void onEnabled(Context context) {
+        updateRegistration(context);
+    }
+
+    @Override
+    public void onDisabled(Context context) {
+        if (surface != null) {
+            surface.stop();
+            surface = null;
+        }
+    }
+
+    /**
+     * Meldet das Widget beim Snapshot an, falls Instanzen existieren, sonst ab. Wird auch vom
+     * Service beim Start aufgerufen, da der Prozess seit dem letzten Update neu gestartet sein
+     * kann. Nur im UI-Thread.
+     */
+    static void updateRegistration(Context context) {
+        AppWidgetManager manager = AppWidgetManager.getInstance(context);
+        int[] ids = manager.getAppWidgetIds(new ComponentName(context, TrafficWidgetProvider.class));
+        boolean hasWidgets = ids != null && ids.length > 0;
+        if (hasWidgets && surface == null) {
+            surface = new WidgetSurface(context.getApplicationContext());
+            surface.start();
+        } else if (!hasWidgets && surface != null) {
+            surface.stop();
+            surface = null;
+        }
+    }
+
+    private static final class WidgetSurface extends TrafficSurface {
+        private final Context context;
+        private final ComponentName component;
+        private final TrafficFormatter upFormatter = new TrafficFormatter();
+        private final TrafficFormatter downFormatter = new TrafficFormatter();
+        private String lastToday;
+        private boolean force = true;
+
+        WidgetSurface(Context context) {
+            super(NetworkTrafficManager.getInstance(context).getLiveSnapshot(), UPDATE_INTERVAL_MS);
+            this.context = context;
+            this.component = new ComponentName(context, TrafficWidgetProvider.class);
+        }
+
+        void forceUpdate() {
+            force = true;
+            onSnapshotChanged();
+        }
+
+        @Override
+        void update(LiveTrafficSnapshot.Values values) {
+            if (values.running && !values.interactive && !force) {
+                // Bei ausgeschaltetem Display sieht niemand das Widget; nach dem Einschalten
+                // veröffentlicht der Service sofort einen neuen Stand
+                return;
+            }
+            boolean changed = upFormatter.render(values.txRate, 0, true, false);
+            changed |= downFormatter.render(0, values.rxRate, false, true);
+            String today = formatToday(values);
+            changed |= !today.equals(lastToday);
+            if (!changed && !force) {
+                return;
+            }
+            lastToday = today;
+            force = false;
+
+            RemoteViews views = new RemoteViews(context.getPackageName(), R.layout.widget_traffic);
+            views.setTextViewText(R.id.widget_up, upFormatter.toString());
+            views.setTextViewText(R.id.widget_down, downFormatter.toString());
+            views.setTextViewText(R.id.widget_today, today);
+            Intent detailIntent = new Intent(context, TrafficDetailActivity.class);
+            views.setOnClickPendingIntent(R.id.widget_root, PendingIntent.getActivity(context, 0, detailIntent,
+                    PendingIntent.FLAG_UPDATE_CURRENT | PendingIntent.FLAG_IMMUTABLE));
+            AppWidgetManager.getInstance(context).updateAppWidget(component, views);
+        }
+    }
+}
@@ -0,0 +1,322 @@
+/*
+ * Copyright (C) 2025 Martin Pfeffer
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.celox.netbar;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Einziger Schreib-Thread für alle {@link TrafficHistoryLog}s und {@link TrafficArchive}s.
+ * <p>
+ * Aufrufer legen Aufträge in eine begrenzte Warteschlange und kehren sofort zurück. Der
+ * Thread sammelt angehängte Datensätze je Log und schreibt sie gebündelt, sobald die
+ * {@link FlushPolicy} es verlangt oder {@link #flush()} aufgerufen wird. Dateizugriffe finden
+ * damit nie auf dem UI- oder Sampler-Thread statt. Nur {@link #flushAndWait(long)} wartet,
+ * beim Beenden des Service, auf das Ende des Schreibens.
+ */
+class TrafficWriter {
+    private static final int QUEUE_CAPACITY = 256;
+
+    /**
+     * Legt fest, wann gesammelte Datensätze geschrieben werden und wie dauerhaft.
+     */
+    static final class FlushPolicy {
+        static final FlushPolicy DEFAULT = new FlushPolicy(TimeUnit.MINUTES.toMillis(5), 16, true);
+
+        final long flushIntervalMs;
+        final int maxPendingRecords;
+        final boolean fsync;
+
+        /**
+         * @param flushIntervalMs   maximale Zeit, die ein Datensatz ungeschrieben bleibt
+         * @param maxPendingRecords Anzahl gesammelter Datensätze, ab der sofort geschrieben wird
+         * @param fsync             ob nach jedem Schreiben bis auf den Datenträger synchronisiert wird
+         */
+        FlushPolicy(long flushIntervalMs, int maxPendingRecords, boolean fsync) {
+            this.flushIntervalMs = flushIntervalMs;
+            this.maxPendingRecords = maxPendingRecords;
+            this.fsync = fsync;
+        }
+    }
+
+    private static final int APPEND = 0;
+    private static final int REWRITE = 1;
+    private static final int FLUSH = 2;
+    private static final int ARCHIVE_APPEND = 3;
+    private static final int REPLACE_FILE = 4;
+
+    private static final class Operation {
+        final int type;
+        final TrafficHistoryLog log;
+        final TrafficBucket record;
+        final TrafficRingBuffer snapshot;
+        final TrafficArchive archive;
+        final File file;
+        final byte[] block;
+        final CountDownLatch done; // Nur bei FLUSH, wenn der Aufrufer wartet
+
+        Operation(int type, TrafficHistoryLog log, TrafficBucket record, TrafficRingBuffer snapshot) {
+            this.type = type;
+            this.log = log;
+            this.record = record;
+            this.snapshot = snapshot;
+            this.archive = null;
+            this.file = null;
+            this.block = null;
+            this.done = null;
+        }
+
+        Operation(int type, TrafficArchive archive, File file, byte[] block) {
+            this.type = type;
+            this.log = null;
+            this.record = null;
+            this.snapshot = null;
+            this.archive = archive;
+            this.file = file;
+            this.block = block;
+            this.done = null;
+        }
+
+        Operation(CountDownLatch done) {
+            this.type = FLUSH;
+            this.log = null;
+            this.record = null;
+            this.snapshot = null;
+            this.archive = null;
+            this.file = null;
+            this.block = null;
+            this.done = done;
+        }
+    }
+
+    private final FlushPolicy policy;
+    private final TrafficDiagnostics diagnostics;
+    private final BlockingQueue<Operation> queue = new ArrayBlockingQueue<>(QUEUE_CAPACITY);
+    private final Map<TrafficHistoryLog, List<TrafficBucket>> pending = new LinkedHashMap<>();
+    private int pendingCount;
+    private long firstPendingTime;
+
+    /**
+     * @param diagnostics nimmt Dauer und Umfang jedes Schreibvorgangs auf
+     */
+    TrafficWriter(FlushPolicy policy, TrafficDiagnostics diagnostics) {
+        this.policy = policy;
+        this.diagnostics = diagnostics;
+        Thread thread = new Thread(this::run, "TrafficWriter");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * Hängt eine Kopie von {@code record} an das Log an.
+     */
+    void append(TrafficHistoryLog log, TrafficBucket record) {
+        TrafficBucket copy = new TrafficBucket();
+        copy.set(record);
+        enqueue(new Operation(APPEND, log, copy, null));
+    }
+
+    /**
+     * Schreibt das Log mit dem Inhalt von {@code snapshot} neu. Der Puffer darf danach nicht
+     * mehr verändert werden.
+     */
+    void rewrite(TrafficHistoryLog log, TrafficRingBuffer snapshot) {
+        enqueue(new Operation(REWRITE, log, null, snapshot));
+    }
+
+    /**
+     * Hängt einen mit {@link TrafficBlockCodec#encode} erzeugten Block sofort an das Archiv an.
+     */
+    void archive(TrafficArchive archive, byte[] block) {
+        enqueue(new Operation(ARCHIVE_APPEND, archive, null, block));
+    }
+
+    /**
+     * Ersetzt den Inhalt einer kleinen Zustandsdatei atomar durch {@code content}.
+     */
+    void replaceFile(File file, byte[] content) {
+        enqueue(new Operation(REPLACE_FILE, null, file, content));
+    }
+
+    /**
+     * Schreibt alle gesammelten Datensätze, ohne auf das Ende des Schreibens zu warten.
+     */
+    void flush() {
+        enqueue(new Operation(FLUSH, (TrafficHistoryLog) null, null, null));
+    }
+
+    /**
+     * Schreibt alle gesammelten Datensätze und wartet, bis der Schreib-Thread damit und mit
+     * allen zuvor eingereihten Aufträgen fertig ist, höchstens {@code timeoutMs} Millisekunden.
+     *
+     * @return ob alles innerhalb der Zeit geschrieben wurde
+     */
+    boolean flushAndWait(long timeoutMs) {
+        CountDownLatch done = new CountDownLatch(1);
+        enqueue(new Operation(done));
+        try {
+            return done.await(timeoutMs, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    private void enqueue(Operation operation) {
+        try {
+            // Ist die Warteschlange voll, bremst das den Erzeuger, verliert aber keine Daten
+            queue.put(operation);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void run() {
+        while (true) {
+            Operation operation;
+            try {
+                if (pendingCount == 0) {
+                    operation = queue.take();
+                } else {
+                    long delay = firstPendingTime + policy.flushIntervalMs - System.currentTimeMillis();
+                    operation = delay > 0 ? queue.poll(delay, TimeUnit.MILLISECONDS) : null;
+                }
+            } catch (InterruptedException e) {
+                flushPending();
+                return;
+            }
+
+            if (operation == null) {
+                // Flush-Intervall abgelaufen
+                flushPending();
+                continue;
+            }
+
+            try {
+                handle(operation);
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+        }
+    }
+
+    private void handle(Operation operation) throws IOException {
+        switch (operation.type) {
+            case APPEND:
+                List<TrafficBucket> records = pending.get(operation.log);
+                if (records == null) {
+                    records = new ArrayList<>();
+                    pending.put(operation.log, records);
+                }
+                if (pendingCount == 0) {
+                    firstPendingTime = System.currentTimeMillis();
+                }
+                records.add(operation.record);
+                pendingCount++;
+                if (pendingCount >= policy.maxPendingRecords) {
+                    flushPending();
+                }
+                break;
+            case REWRITE:
+                // Der Snapshot enthält bereits alle bis dahin gesammelten Datensätze
+                discardPending(operation.log);
+                long rewriteStart = System.nanoTime();
+                int bytes = operation.log.rewrite(operation.snapshot);
+                recordSave(rewriteStart, bytes);
+                break;
+            case FLUSH:
+                flushPending();
+                if (operation.done != null) {
+                    operation.done.countDown();
+                }
+                break;
+            case ARCHIVE_APPEND:
+                long archiveStart = System.nanoTime();
+                operation.archive.append(operation.block, policy.fsync);
+                recordSave(archiveStart, operation.block.length);
+                break;
+            case REPLACE_FILE:
+                long replaceStart = System.nanoTime();
+                replaceFile(operation.file, operation.block, policy.fsync);
+                recordSave(replaceStart, operation.block.length);
+                break;
+        }
+    }
+
+    private void flushPending() {
+        if (pendingCount == 0) {
+            return;
+        }
+        long start = System.nanoTime();
+        int bytes = 0;
+        for (Map.Entry<TrafficHistoryLog, List<TrafficBucket>> entry : pending.entrySet()) {
+            try {
+                bytes += entry.getKey().appendAll(entry.getValue(), policy.fsync);
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+        }
+        pending.clear();
+        pendingCount = 0;
+        recordSave(start, bytes);
+    }
+
+    /**
+     * Schreibt zunächst eine temporäre Datei und ersetzt die Zieldatei dann per Rename, sodass
+     * immer eine vollständige Version vorhanden ist.
+     */
+    private static void replaceFile(File file, byte[] content, boolean fsync) throws IOException {
+        File tempFile = new File(file.getPath() + ".tmp");
+        try (RandomAccessFile out = new RandomAccessFile(tempFile, "rw")) {
+            out.setLength(0);
+            FileChannel channel = out.getChannel();
+            ByteBuffer buffer = ByteBuffer.wrap(content);
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            if (fsync) {
+                channel.force(false);
+            }
+        }
+        if (!tempFile.renameTo(file)) {
+            throw new IOException("Could not replace " + file);
+        }
+    }
+
+    private void recordSave(long startNanos, int bytes) {
+        diagnostics.saveDuration.record(TrafficDiagnostics.nanosToMicros(System.nanoTime() - startNanos));
+        diagnostics.saveBytes.record(bytes);
+    }
+
+    private void discardPending(TrafficHistoryLog log) {
+        List<TrafficBucket> records = pending.remove(log);
+        if (records != null) {
+            pendingCount -= records.size();
+        }
+    }
+}
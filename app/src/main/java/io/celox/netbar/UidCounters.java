@@ -0,0 +1,91 @@
+/*
+ * Copyright (C) 2025 Martin Pfeffer
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.celox.netbar;
+
+import java.util.Arrays;
+
+/**
+ * Kompakte Tabelle von TX- und RX-Bytes je UID.
+ * <p>
+ * Die UIDs liegen sortiert in einem {@code int}-Array, die Werte in parallelen
+ * {@code long}-Arrays; gesucht wird binär. Es werden keine Objekte pro Eintrag angelegt, und
+ * die Arrays wachsen nur, wenn mehr UIDs als bisher auftreten.
+ */
+final class UidCounters {
+    private static final int INITIAL_CAPACITY = 64;
+
+    private int[] uids = new int[INITIAL_CAPACITY];
+    private long[] txBytes = new long[INITIAL_CAPACITY];
+    private long[] rxBytes = new long[INITIAL_CAPACITY];
+    private int size;
+
+    /**
+     * Addiert die Bytes zu den Werten von {@code uid}; fehlt die UID, wird sie eingefügt.
+     */
+    void add(int uid, long tx, long rx) {
+        int index = Arrays.binarySearch(uids, 0, size, uid);
+        if (index < 0) {
+            index = -index - 1;
+            insertAt(index, uid);
+        }
+        txBytes[index] += tx;
+        rxBytes[index] += rx;
+    }
+
+    /**
+     * @return Index von {@code uid} oder ein negativer Wert, wenn sie nicht enthalten ist
+     */
+    int indexOf(int uid) {
+        return Arrays.binarySearch(uids, 0, size, uid);
+    }
+
+    void clear() {
+        size = 0;
+    }
+
+    int size() {
+        return size;
+    }
+
+    int getUid(int index) {
+        return uids[index];
+    }
+
+    long getTxBytes(int index) {
+        return txBytes[index];
+    }
+
+    long getRxBytes(int index) {
+        return rxBytes[index];
+    }
+
+    private void insertAt(int index, int uid) {
+        if (size == uids.length) {
+            int capacity = uids.length * 2;
+            uids = Arrays.copyOf(uids, capacity);
+            txBytes = Arrays.copyOf(txBytes, capacity);
+            rxBytes = Arrays.copyOf(rxBytes, capacity);
+        }
+        System.arraycopy(uids, index, uids, index + 1, size - index);
+        System.arraycopy(txBytes, index, txBytes, index + 1, size - index);
+        System.arraycopy(rxBytes, index, rxBytes, index + 1, size - index);
+        uids[index] = uid;
+        txBytes[index] = 0;
+        rxBytes[index] = 0;
+        size++;
+    }
+}
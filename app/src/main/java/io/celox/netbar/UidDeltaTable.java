@@ -0,0 +1,135 @@
+/*
+ * Copyright (C) 2025 Martin Pfeffer
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.celox.netbar;
+
+/**
+ * Verlauf der Verkehrsdifferenzen je UID, gegliedert in Intervalle.
+ * <p>
+ * Je Intervall werden nur die UIDs gespeichert, die darin Verkehr hatten. Intervalle und
+ * Einträge liegen in zwei Ringpuffern aus parallelen Arrays; ein Intervall verweist auf einen
+ * zusammenhängenden Bereich von Einträgen. Neue Intervalle werden am Ende angehängt, die
+ * ältesten vom Anfang entfernt.
+ */
+class UidDeltaTable {
+    private final long[] intervalStarts;
+    private final long[] intervalFirstEntries; // Sequenznummer des ersten Eintrags
+    private final int[] intervalEntryCounts;
+    private long intervalHead;
+    private long intervalTail;
+
+    private final int[] uids;
+    private final long[] txBytes;
+    private final long[] rxBytes;
+    private long entryHead;
+    private long entryTail;
+
+    UidDeltaTable(int intervalCapacity, int entryCapacity) {
+        this.intervalStarts = new long[intervalCapacity];
+        this.intervalFirstEntries = new long[intervalCapacity];
+        this.intervalEntryCounts = new int[intervalCapacity];
+        this.uids = new int[entryCapacity];
+        this.txBytes = new long[entryCapacity];
+        this.rxBytes = new long[entryCapacity];
+    }
+
+    /**
+     * Ob ein weiteres Intervall mit {@code entryCount} Einträgen Platz hat. Andernfalls muss der
+     * Aufrufer zuerst die ältesten Intervalle entfernen.
+     */
+    boolean hasRoomFor(int entryCount) {
+        return intervalTail - intervalHead < intervalStarts.length
+                && entryTail - entryHead + entryCount <= uids.length;
+    }
+
+    /**
+     * Hängt ein Intervall mit allen UIDs aus {@code deltas} an, die Verkehr hatten.
+     */
+    void addInterval(long start, UidCounters deltas) {
+        int interval = intervalSlot(intervalTail);
+        intervalStarts[interval] = start;
+        intervalFirstEntries[interval] = entryTail;
+
+        int count = 0;
+        for (int i = 0; i < deltas.size(); i++) {
+            long tx = deltas.getTxBytes(i);
+            long rx = deltas.getRxBytes(i);
+            if (tx == 0 && rx == 0) {
+                continue;
+            }
+            int entry = entrySlot(entryTail);
+            uids[entry] = deltas.getUid(i);
+            txBytes[entry] = tx;
+            rxBytes[entry] = rx;
+            entryTail++;
+            count++;
+        }
+        intervalEntryCounts[interval] = count;
+        intervalTail++;
+    }
+
+    void removeOldest() {
+        entryHead += intervalEntryCounts[intervalSlot(intervalHead)];
+        intervalHead++;
+    }
+
+    void clear() {
+        intervalHead = intervalTail;
+        entryHead = entryTail;
+    }
+
+    boolean isEmpty() {
+        return intervalHead == intervalTail;
+    }
+
+    long getOldestStart() {
+        return intervalStarts[intervalSlot(intervalHead)];
+    }
+
+    /**
+     * Anzahl der Einträge im ältesten Intervall.
+     */
+    int getOldestEntryCount() {
+        return intervalEntryCounts[intervalSlot(intervalHead)];
+    }
+
+    /**
+     * @param index Index des Eintrags innerhalb des ältesten Intervalls
+     */
+    int getOldestUid(int index) {
+        return uids[oldestEntrySlot(index)];
+    }
+
+    long getOldestTxBytes(int index) {
+        return txBytes[oldestEntrySlot(index)];
+    }
+
+    long getOldestRxBytes(int index) {
+        return rxBytes[oldestEntrySlot(index)];
+    }
+
+    private int oldestEntrySlot(int index) {
+        return entrySlot(intervalFirstEntries[intervalSlot(intervalHead)] + index);
+    }
+
+    private int intervalSlot(long sequence) {
+        return (int) (sequence % intervalStarts.length);
+    }
+
+    private int entrySlot(long sequence) {
+        return (int) (sequence % uids.length);
+    }
+}
@@ -0,0 +1,147 @@
+/*
+ * Copyright (C) 2025 Martin Pfeffer
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.celox.netbar;
+
+import android.content.Context;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Ordnet den Verkehr den einzelnen Apps (UIDs) zu.
+ * <p>
+ * Bei jeder Abtastung werden die kumulierten Zähler je UID gelesen und mit der vorherigen
+ * Abtastung verglichen. Die Differenzen der aktiven UIDs landen als Intervall in der
+ * {@link UidDeltaTable} und werden zugleich in die {@link UidTrafficRanking} eingerechnet;
+ * abgelaufene Intervalle werden dort wieder abgezogen. Die Rangliste wird so nie aus allen
+ * UIDs neu berechnet. Nach jeder Abtastung wird eine unveränderliche Top-Liste veröffentlicht,
+ * die ohne Sperre von jedem Thread gelesen werden kann.
+ * <p>
+ * Eine Abtastung besteht aus {@link #read} und {@link #update}. Nur {@link #update} und
+ * {@link #clear} müssen gegeneinander gesperrt werden; die Abfrage beim System in
+ * {@link #read} betrifft allein den Zustand des schreibenden Threads.
+ */
+class UidTrafficAccounting {
+    static final long SAMPLE_INTERVAL_MS = TimeUnit.MINUTES.toMillis(1);
+    static final long WINDOW_MS = TimeUnit.HOURS.toMillis(24);
+    private static final long MAX_GAP_MS = TimeUnit.MINUTES.toMillis(5); // Längere Pausen: neue Basis
+    private static final int AVERAGE_ACTIVE_UIDS = 16; // Bemisst den Eintragspuffer
+    private static final int TOP_COUNT = 10;
+
+    private final UidTrafficReader reader;
+    private final UidDeltaTable table;
+    private final UidTrafficRanking ranking = new UidTrafficRanking();
+    private UidCounters previous = new UidCounters();
+    private UidCounters current = new UidCounters();
+    private final UidCounters deltas = new UidCounters();
+    private int previousSource = UidTrafficReader.SOURCE_NONE;
+    private long previousTime;
+
+    private volatile UidUsage[] topApps = new UidUsage[0];
+
+    UidTrafficAccounting(Context context, long now) {
+        this.reader = new UidTrafficReader(context, now);
+        int intervals = (int) (WINDOW_MS / SAMPLE_INTERVAL_MS);
+        this.table = new UidDeltaTable(intervals, intervals * AVERAGE_ACTIVE_UIDS);
+    }
+
+    /**
+     * Liest die aktuellen Zähler aller UIDs. Nur vom schreibenden Thread aufzurufen.
+     *
+     * @return Quelle der Zähler, an {@link #update} weiterzugeben
+     */
+    int read(long now) {
+        return reader.read(current, now);
+    }
+
+    /**
+     * Verbucht die Differenz der zuletzt gelesenen Zähler seit der vorherigen Abtastung und
+     * veröffentlicht die neue Top-Liste. Nur vom schreibenden Thread aufzurufen.
+     */
+    void update(int source, long now) {
+        boolean hasBaseline = source != UidTrafficReader.SOURCE_NONE
+                && source == previousSource
+                && now - previousTime <= MAX_GAP_MS;
+
+        if (hasBaseline) {
+            computeDeltas();
+            expire(now - WINDOW_MS);
+            if (deltas.size() > 0) {
+                while (!table.hasRoomFor(deltas.size()) && !table.isEmpty()) {
+                    // Ungewöhnlich viele aktive UIDs: ältere Intervalle vorzeitig verwerfen
+                    removeOldestInterval();
+                }
+                if (table.hasRoomFor(deltas.size())) {
+                    table.addInterval(previousTime, deltas);
+                    for (int i = 0; i < deltas.size(); i++) {
+                        ranking.add(deltas.getUid(i), deltas.getTxBytes(i), deltas.getRxBytes(i));
+                    }
+                }
+            }
+            topApps = ranking.top(TOP_COUNT);
+        }
+
+        // Aktuelle Zähler werden zur Basis der nächsten Abtastung
+        UidCounters swap = previous;
+        previous = current;
+        current = swap;
+        previousSource = source;
+        previousTime = now;
+    }
+
+    /**
+     * Die UIDs mit dem meisten Verkehr im Auswertungsfenster, absteigend sortiert.
+     */
+    UidUsage[] getTopApps() {
+        return topApps;
+    }
+
+    /**
+     * Berechnet die Differenzen aller UIDs mit neuem Verkehr. Sinkt ein Zähler (z. B. weil
+     * eine App neu installiert wurde), zählt der neue Stand als Differenz.
+     */
+    private void computeDeltas() {
+        deltas.clear();
+        for (int i = 0; i < current.size(); i++) {
+            int uid = current.getUid(i);
+            long tx = current.getTxBytes(i);
+            long rx = current.getRxBytes(i);
+            int index = previous.indexOf(uid);
+            if (index >= 0) {
+                long previousTx = previous.getTxBytes(index);
+                long previousRx = previous.getRxBytes(index);
+                tx = tx >= previousTx ? tx - previousTx : tx;
+                rx = rx >= previousRx ? rx - previousRx : rx;
+            }
+            if (tx != 0 || rx != 0) {
+                deltas.add(uid, tx, rx);
+            }
+        }
+    }
+
+    private void expire(long cutoffTime) {
+        while (!table.isEmpty() && table.getOldestStart() < cutoffTime) {
+            removeOldestInterval();
+        }
+    }
+
+    private void removeOldestInterval() {
+        for (int i = 0; i < table.getOldestEntryCount(); i++) {
+            ranking.add(table.getOldestUid(i), -table.getOldestTxBytes(i), -table.getOldestRxBytes(i));
+        }
+        table.removeOldest();
+    }
+}
@@ -0,0 +1,118 @@
+/*
+ * Copyright (C) 2025 Martin Pfeffer
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.celox.netbar;
+
+import android.util.SparseIntArray;
+
+import java.util.Arrays;
+
+/**
+ * Nach Gesamtverkehr absteigend sortierte Rangliste der UIDs.
+ * <p>
+ * Ändert sich der Verkehr einer UID, wird nur deren Position verschoben, bis die Reihenfolge
+ * wieder stimmt. Da sich pro Intervall nur wenige Werte ändern und sich Ränge kaum
+ * verschieben, ist das in der Regel O(1) je Änderung; die Rangliste wird nie neu sortiert.
+ * UIDs ohne Verkehr werden entfernt.
+ */
+class UidTrafficRanking {
+    private static final int INITIAL_CAPACITY = 64;
+
+    private int[] uids = new int[INITIAL_CAPACITY];
+    private long[] txBytes = new long[INITIAL_CAPACITY];
+    private long[] rxBytes = new long[INITIAL_CAPACITY];
+    private int size;
+    private final SparseIntArray positions = new SparseIntArray(); // UID -> Rang
+
+    /**
+     * Addiert die Bytes zum Verkehr von {@code uid}; negative Werte ziehen abgelaufenen Verkehr ab.
+     */
+    void add(int uid, long tx, long rx) {
+        int position = positions.get(uid, -1);
+        if (position < 0) {
+            if (tx <= 0 && rx <= 0) {
+                return;
+            }
+            position = append(uid);
+        }
+        txBytes[position] += tx;
+        rxBytes[position] += rx;
+
+        // Nach oben oder unten verschieben, bis die Nachbarn passen
+        while (position > 0 && total(position) > total(position - 1)) {
+            swap(position, position - 1);
+            position--;
+        }
+        while (position < size - 1 && total(position) < total(position + 1)) {
+            swap(position, position + 1);
+            position++;
+        }
+
+        if (total(position) <= 0) {
+            // Ohne Verkehr steht die UID bereits am Ende
+            positions.delete(uid);
+            size--;
+        }
+    }
+
+    int size() {
+        return size;
+    }
+
+    /**
+     * Kopiert die ersten {@code count} Ränge in ein neues, unveränderliches Array.
+     */
+    UidUsage[] top(int count) {
+        UidUsage[] result = new UidUsage[Math.min(count, size)];
+        for (int i = 0; i < result.length; i++) {
+            result[i] = new UidUsage(uids[i], txBytes[i], rxBytes[i]);
+        }
+        return result;
+    }
+
+    private long total(int position) {
+        return txBytes[position] + rxBytes[position];
+    }
+
+    private int append(int uid) {
+        if (size == uids.length) {
+            int capacity = uids.length * 2;
+            uids = Arrays.copyOf(uids, capacity);
+            txBytes = Arrays.copyOf(txBytes, capacity);
+            rxBytes = Arrays.copyOf(rxBytes, capacity);
+        }
+        int position = size++;
+        uids[position] = uid;
+        txBytes[position] = 0;
+        rxBytes[position] = 0;
+        positions.put(uid, position);
+        return position;
+    }
+
+    private void swap(int a, int b) {
+        int uid = uids[a];
+        long tx = txBytes[a];
+        long rx = rxBytes[a];
+        uids[a] = uids[b];
+        txBytes[a] = txBytes[b];
+        rxBytes[a] = rxBytes[b];
+        uids[b] = uid;
+        txBytes[b] = tx;
+        rxBytes[b] = rx;
+        positions.put(uids[a], a);
+        positions.put(uids[b], b);
+    }
+}
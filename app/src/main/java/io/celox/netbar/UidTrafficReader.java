@@ -0,0 +1,115 @@
+/*
+ * Copyright (C) 2025 Martin Pfeffer
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.celox.netbar;
+
+import android.app.AppOpsManager;
+import android.app.usage.NetworkStats;
+import android.app.usage.NetworkStatsManager;
+import android.content.Context;
+import android.net.ConnectivityManager;
+import android.net.TrafficStats;
+import android.os.Process;
+import android.os.RemoteException;
+
+/**
+ * Liest die seit einem festen Startzeitpunkt aufgelaufenen Bytes je UID.
+ * <p>
+ * Bevorzugt werden die Buckets des {@link NetworkStatsManager} (WLAN und Mobilfunk), die den
+ * Nutzungsdatenzugriff voraussetzen. Ohne diese Berechtigung wird auf
+ * {@link TrafficStats#getUidTxBytes(int)} zurückgegriffen; seit Android 7 liefert das nur
+ * noch Werte für die eigene UID.
+ */
+class UidTrafficReader {
+    static final int SOURCE_NONE = 0;
+    static final int SOURCE_NETWORK_STATS = 1;
+    static final int SOURCE_TRAFFIC_STATS = 2;
+
+    private static final int[] NETWORK_TYPES = {
+            ConnectivityManager.TYPE_WIFI,
+            ConnectivityManager.TYPE_MOBILE
+    };
+
+    private final Context context;
+    private final long since;
+    private final NetworkStats.Bucket bucket = new NetworkStats.Bucket();
+
+    /**
+     * @param since Beginn des Zeitraums, über den die Zähler aufsummiert werden
+     */
+    UidTrafficReader(Context context, long since) {
+        this.context = context.getApplicationContext();
+        this.since = since;
+    }
+
+    /**
+     * Prüft, ob der Nutzungsdatenzugriff für die App freigegeben ist.
+     */
+    static boolean hasUsageAccess(Context context) {
+        AppOpsManager appOps = (AppOpsManager) context.getSystemService(Context.APP_OPS_SERVICE);
+        int mode = appOps.checkOpNoThrow(AppOpsManager.OPSTR_GET_USAGE_STATS,
+                Process.myUid(), context.getPackageName());
+        return mode == AppOpsManager.MODE_ALLOWED;
+    }
+
+    /**
+     * Füllt {@code out} mit den kumulierten Bytes je UID.
+     *
+     * @return die verwendete Quelle; Zähler verschiedener Quellen sind nicht vergleichbar
+     */
+    int read(UidCounters out, long now) {
+        out.clear();
+        if (hasUsageAccess(context) && readNetworkStats(out, now)) {
+            return SOURCE_NETWORK_STATS;
+        }
+
+        out.clear();
+        int uid = Process.myUid();
+        long tx = TrafficStats.getUidTxBytes(uid);
+        long rx = TrafficStats.getUidRxBytes(uid);
+        if (tx == TrafficStats.UNSUPPORTED || rx == TrafficStats.UNSUPPORTED) {
+            return SOURCE_NONE;
+        }
+        out.add(uid, tx, rx);
+        return SOURCE_TRAFFIC_STATS;
+    }
+
+    private boolean readNetworkStats(UidCounters out, long now) {
+        NetworkStatsManager statsManager =
+                (NetworkStatsManager) context.getSystemService(Context.NETWORK_STATS_SERVICE);
+        if (statsManager == null) {
+            return false;
+        }
+        try {
+            for (int networkType : NETWORK_TYPES) {
+                try (NetworkStats stats = statsManager.querySummary(networkType, null, since, now)) {
+                    if (stats == null) {
+                        continue;
+                    }
+                    // Pro UID gibt es mehrere Buckets (Zustand, Tag, Roaming), sie werden summiert
+                    while (stats.hasNextBucket()) {
+                        stats.getNextBucket(bucket);
+                        out.add(bucket.getUid(), bucket.getTxBytes(), bucket.getRxBytes());
+                    }
+                }
+            }
+            return true;
+        } catch (RemoteException | SecurityException e) {
+            e.printStackTrace();
+            return false;
+        }
+    }
+}
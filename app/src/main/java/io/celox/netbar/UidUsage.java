@@ -16,28 +16,22 @@
 
 package io.celox.netbar;
 
-import java.util.Date;
-
 /**
- * Repräsentiert einen einzelnen Datenpunkt der Netzwerkauslastung.
+ * Unveränderlicher Verkehr einer UID über das Auswertungsfenster.
  */
-public class NetworkTrafficData {
-    private final long timestamp;
+public final class UidUsage {
+    private final int uid;
     private final long txBytes;
     private final long rxBytes;
 
-    public NetworkTrafficData(long timestamp, long txBytes, long rxBytes) {
-        this.timestamp = timestamp;
+    UidUsage(int uid, long txBytes, long rxBytes) {
+        this.uid = uid;
         this.txBytes = txBytes;
         this.rxBytes = rxBytes;
     }
 
-    public long getTimestamp() {
-        return timestamp;
-    }
-
-    public Date getDate() {
-        return new Date(timestamp);
+    public int getUid() {
+        return uid;
     }
 
     public long getTxBytes() {
@@ -47,4 +41,8 @@ public class NetworkTrafficData {
     public long getRxBytes() {
         return rxBytes;
     }
+
+    public long getTotalBytes() {
+        return txBytes + rxBytes;
+    }
 }
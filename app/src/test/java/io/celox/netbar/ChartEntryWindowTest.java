@@ -0,0 +1,104 @@
+/*
+ * Copyright (C) 2025 Martin Pfeffer
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.celox.netbar;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/**
+ * Minimum und Maximum des {@link ChartEntryWindow} nach Anhängen und Verdrängen, verglichen mit
+ * einem Durchlauf über alle Einträge.
+ */
+public class ChartEntryWindowTest {
+    @Test
+    public void minMaxFollowEviction() {
+        Random random = new Random(9);
+        ChartEntryWindow window = new ChartEntryWindow(50);
+        float x = 0;
+        for (int n = 0; n < 20_000; n++) {
+            int action = random.nextInt(10);
+            if (action == 0) {
+                window.removeBefore(x - random.nextInt(60));
+            } else if (action == 1 && !window.isEmpty()) {
+                window.removeFirst();
+            } else {
+                // Wenige verschiedene Werte, damit gleiche Minima und Maxima vorkommen
+                window.append(x++, random.nextInt(20) - 5);
+            }
+            if (!window.isEmpty()) {
+                assertMinMax(window);
+            }
+        }
+    }
+
+    @Test
+    public void monotonicSeriesEvictsExtremes() {
+        ChartEntryWindow window = new ChartEntryWindow(10);
+        for (int i = 0; i < 30; i++) {
+            window.append(i, i);
+            assertEquals(Math.max(0, i - 9), window.getYMin(), 0);
+            assertEquals(i, window.getYMax(), 0);
+        }
+        for (int i = 0; i < 30; i++) {
+            window.append(30 + i, -i);
+            assertMinMax(window);
+        }
+    }
+
+    @Test
+    public void removeBeforeAndClear() {
+        ChartEntryWindow window = new ChartEntryWindow(10);
+        for (int i = 0; i < 8; i++) {
+            window.append(i, i % 3 == 0 ? 100 : i);
+        }
+        window.removeBefore(4);
+        assertEquals(4, window.size());
+        assertEquals(4, window.get(0).getX(), 0);
+        assertEquals(100, window.getYMax(), 0);
+        assertEquals(4, window.getYMin(), 0);
+
+        window.clear();
+        assertTrue(window.isEmpty());
+        window.append(10, 7);
+        assertEquals(7, window.getYMin(), 0);
+        assertEquals(7, window.getYMax(), 0);
+    }
+
+    @Test(expected = IndexOutOfBoundsException.class)
+    public void indexBeyondSizeThrows() {
+        ChartEntryWindow window = new ChartEntryWindow(4);
+        window.append(0, 1);
+        window.get(1);
+    }
+
+    private static void assertMinMax(ChartEntryWindow window) {
+        float min = Float.MAX_VALUE;
+        float max = -Float.MAX_VALUE;
+        for (int i = 0; i < window.size(); i++) {
+            min = Math.min(min, window.get(i).getY());
+            max = Math.max(max, window.get(i).getY());
+            if (i > 0) {
+                assertTrue(window.get(i).getX() >= window.get(i - 1).getX());
+            }
+        }
+        assertEquals(min, window.getYMin(), 0);
+        assertEquals(max, window.getYMax(), 0);
+    }
+}
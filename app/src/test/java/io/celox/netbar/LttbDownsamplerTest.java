@@ -0,0 +1,92 @@
+/*
+ * Copyright (C) 2025 Martin Pfeffer
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.celox.netbar;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/**
+ * Auswahl der Punkte durch den {@link LttbDownsampler}.
+ */
+public class LttbDownsamplerTest {
+    @Test
+    public void shortSeriesIsKept() {
+        float[] xs = {0, 1, 2, 3};
+        float[] ys = {5, 1, 4, 2};
+        int[] indices = new int[4];
+        assertEquals(4, LttbDownsampler.downsample(xs, ys, 4, 10, indices));
+        assertArrayEquals(new int[] {0, 1, 2, 3}, indices);
+        // Unter drei Punkten wird nicht reduziert
+        assertEquals(4, LttbDownsampler.downsample(xs, ys, 4, 2, indices));
+        assertArrayEquals(new int[] {0, 1, 2, 3}, indices);
+    }
+
+    @Test
+    public void selectsOnePointPerBucket() {
+        Random random = new Random(7);
+        for (int round = 0; round < 200; round++) {
+            int size = 3 + random.nextInt(2000);
+            int threshold = 3 + random.nextInt(size);
+            float[] xs = new float[size];
+            float[] ys = new float[size];
+            for (int i = 0; i < size; i++) {
+                xs[i] = i * 1000f;
+                ys[i] = random.nextInt(100_000);
+            }
+            int[] indices = new int[Math.min(size, threshold)];
+            int count = LttbDownsampler.downsample(xs, ys, size, threshold, indices);
+
+            assertEquals(Math.min(size, threshold), count);
+            assertEquals(0, indices[0]);
+            assertEquals(size - 1, indices[count - 1]);
+            if (size > threshold) {
+                double bucketSize = (double) (size - 2) / (threshold - 2);
+                for (int bucket = 0; bucket < threshold - 2; bucket++) {
+                    int index = indices[bucket + 1];
+                    assertTrue(index >= (int) (bucket * bucketSize) + 1);
+                    assertTrue(index < (int) ((bucket + 1) * bucketSize) + 1);
+                }
+            }
+            for (int i = 1; i < count; i++) {
+                assertTrue(indices[i] > indices[i - 1]);
+            }
+        }
+    }
+
+    @Test
+    public void keepsIsolatedSpike() {
+        int size = 1000;
+        float[] xs = new float[size];
+        float[] ys = new float[size];
+        for (int i = 0; i < size; i++) {
+            xs[i] = i;
+            ys[i] = 10;
+        }
+        ys[437] = 5000;
+        int[] indices = new int[20];
+        int count = LttbDownsampler.downsample(xs, ys, size, 20, indices);
+
+        boolean found = false;
+        for (int i = 0; i < count; i++) {
+            found |= indices[i] == 437;
+        }
+        assertTrue("spike must survive downsampling", found);
+    }
+}
@@ -0,0 +1,100 @@
+/*
+ * Copyright (C) 2025 Martin Pfeffer
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.celox.netbar;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/**
+ * Bucket-Einteilung und Quantile des {@link MetricHistogram} im Vergleich zu den exakten Werten.
+ */
+public class MetricHistogramTest {
+    @Test
+    public void bucketBoundsContainValue() {
+        Random random = new Random(3);
+        for (int n = 0; n < 100_000; n++) {
+            long value = random.nextLong() >>> (24 + random.nextInt(40)); // Bis knapp 2^40
+            int bucket = MetricHistogram.bucketOf(value);
+            assertTrue(value + " below bucket " + bucket, MetricHistogram.lowerBoundOf(bucket) <= value);
+            assertTrue(value + " above bucket " + bucket, value < MetricHistogram.lowerBoundOf(bucket + 1));
+        }
+        for (long value = 0; value < 4096; value++) {
+            int bucket = MetricHistogram.bucketOf(value);
+            assertTrue(MetricHistogram.lowerBoundOf(bucket) <= value && value < MetricHistogram.lowerBoundOf(bucket + 1));
+        }
+        assertEquals(MetricHistogram.BUCKET_COUNT - 1, MetricHistogram.bucketOf(1L << 40));
+        assertEquals(MetricHistogram.BUCKET_COUNT - 1, MetricHistogram.bucketOf(Long.MAX_VALUE));
+    }
+
+    @Test
+    public void quantilesMatchBruteForce() {
+        Random random = new Random(11);
+        for (int round = 0; round < 50; round++) {
+            MetricHistogram histogram = new MetricHistogram("test", "µs");
+            int count = 1 + random.nextInt(5000);
+            long[] values = new long[count];
+            long sum = 0;
+            for (int i = 0; i < count; i++) {
+                // Log-normal verteilt wie typische Dauern
+                values[i] = (long) Math.exp(3 + random.nextGaussian() * 2);
+                histogram.record(values[i]);
+                sum += values[i];
+            }
+            Arrays.sort(values);
+
+            assertEquals(count, histogram.getCount());
+            assertEquals(values[count - 1], histogram.getMax());
+            assertEquals(sum / (double) count, histogram.getMean(), 1e-6);
+            for (double q : new double[] {0, 0.5, 0.9, 0.95, 0.99, 1}) {
+                long exact = values[(int) Math.max(1, (long) Math.ceil(q * count)) - 1];
+                long estimate = histogram.getQuantile(q);
+                int bucket = MetricHistogram.bucketOf(exact);
+                long lower = MetricHistogram.lowerBoundOf(bucket);
+                long expected = Math.min(lower + (MetricHistogram.lowerBoundOf(bucket + 1) - lower) / 2,
+                        values[count - 1]);
+                assertEquals("q=" + q, expected, estimate);
+                assertTrue("q=" + q, Math.abs(estimate - exact) <= exact * 0.125);
+            }
+        }
+    }
+
+    @Test
+    public void negativeValuesCountAsZero() {
+        MetricHistogram histogram = new MetricHistogram("test", "B");
+        histogram.record(-5);
+        assertEquals(1, histogram.getCount());
+        assertEquals(0, histogram.getMax());
+        assertEquals(0, histogram.getQuantile(0.5));
+    }
+
+    @Test
+    public void resetClearsEverything() {
+        MetricHistogram histogram = new MetricHistogram("test", "B");
+        for (int i = 0; i < 100; i++) {
+            histogram.record(i * 1000L);
+        }
+        histogram.reset();
+        assertEquals(0, histogram.getCount());
+        assertEquals(0, histogram.getMax());
+        assertEquals(0.0, histogram.getMean(), 0);
+        assertEquals(0, histogram.getQuantile(0.99));
+    }
+}
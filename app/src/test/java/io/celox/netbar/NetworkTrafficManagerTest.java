@@ -0,0 +1,165 @@
+/*
+ * Copyright (C) 2025 Martin Pfeffer
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.celox.netbar;
+
+import android.content.Context;
+import android.content.ContextWrapper;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.util.concurrent.CountDownLatch;
+
+import static org.junit.Assert.*;
+
+/**
+ * Verteilung längerer Messintervalle auf die Sekunden-Stufe des {@link NetworkTrafficManager}
+ * und Nachtragen der während des Ladens eingetroffenen Daten.
+ */
+public class NetworkTrafficManagerTest {
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void longIntervalIsSpreadEvenlyOverSeconds() {
+        NetworkTrafficManager manager = new NetworkTrafficManager(new FilesContext(folder.getRoot()));
+        long start = System.currentTimeMillis() / 1000 * 1000 - 30_000;
+        manager.addTrafficData(start, 5000, 10, 23, 5, 0);
+        // Schließt die letzte der fünf Sekunden ab
+        manager.addTrafficData(start + 5000, 1000, 0, 0, 0, 0);
+        manager.awaitHistoryLoaded();
+
+        TrafficSeries series = manager.getTrafficData(60_000);
+        assertEquals(1000, series.getResolutionMs());
+        assertEquals(5, series.size());
+        long[] expectedTx = {2, 2, 2, 2, 2};
+        long[] expectedRx = {4, 4, 4, 4, 7}; // Rest der Division in der letzten Sekunde
+        long[] expectedMobileTx = {1, 1, 1, 1, 1};
+        for (int i = 0; i < 5; i++) {
+            assertEquals(start + i * 1000, series.getTimestamp(i));
+            assertEquals(expectedTx[i], series.getTxBytes(i));
+            assertEquals(expectedRx[i], series.getRxBytes(i));
+            assertEquals(expectedRx[i], series.getRxMaxRate(i));
+            assertEquals(expectedMobileTx[i], series.getMobileTxBytes(i));
+        }
+    }
+
+    @Test
+    public void durationIsRoundedToWholeSeconds() {
+        NetworkTrafficManager manager = new NetworkTrafficManager(new FilesContext(folder.getRoot()));
+        long start = System.currentTimeMillis() / 1000 * 1000 - 30_000;
+        manager.addTrafficData(start, 1400, 100, 100, 0, 0);
+        manager.addTrafficData(start + 1000, 2600, 300, 30, 0, 0);
+        manager.addTrafficData(start + 4000, 1000, 0, 0, 0, 0);
+        manager.awaitHistoryLoaded();
+
+        TrafficSeries series = manager.getTrafficData(60_000);
+        assertEquals(4, series.size());
+        assertEquals(100, series.getTxBytes(0));
+        for (int i = 1; i < 4; i++) {
+            assertEquals(start + i * 1000, series.getTimestamp(i));
+            assertEquals(100, series.getTxBytes(i));
+            assertEquals(10, series.getRxBytes(i));
+        }
+    }
+
+    @Test
+    public void dataArrivingDuringLoadIsReplayedInOrder() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        FilesContext context = new FilesContext(folder.getRoot(), release);
+        NetworkTrafficManager manager = new NetworkTrafficManager(context);
+        long start = System.currentTimeMillis() / 1000 * 1000 - 30_000;
+        // Der Lade-Thread hängt noch, alles landet im Zwischenspeicher
+        for (int i = 0; i < 100; i++) {
+            manager.addTrafficData(start + i * 100, 100, i, 2 * i, 0, i);
+        }
+        manager.addTrafficData(start + 10_000, 3000, 30, 60, 0, 0);
+        manager.addTrafficData(start + 13_000, 1000, 0, 0, 0, 0);
+        assertEquals(0, manager.getTrafficData(60_000).size());
+
+        release.countDown();
+        manager.awaitHistoryLoaded();
+
+        TrafficSeries series = manager.getTrafficData(60_000);
+        assertEquals(1000, series.getResolutionMs());
+        // Zehn Zehntelsekunden je Sekunde, danach das auf drei Sekunden verteilte Intervall
+        assertEquals(13, series.size());
+        for (int second = 0; second < 10; second++) {
+            long tx = 0;
+            for (int i = second * 10; i < second * 10 + 10; i++) {
+                tx += i;
+            }
+            assertEquals(start + second * 1000, series.getTimestamp(second));
+            assertEquals(tx, series.getTxBytes(second));
+            assertEquals(2 * tx, series.getRxBytes(second));
+            assertEquals(tx, series.getMobileRxBytes(second));
+        }
+        for (int second = 10; second < 13; second++) {
+            assertEquals(start + second * 1000, series.getTimestamp(second));
+            assertEquals(10, series.getTxBytes(second));
+            assertEquals(20, series.getRxBytes(second));
+        }
+
+        // Nach dem Laden gehen neue Daten direkt in die Stufen
+        manager.addTrafficData(start + 14_000, 1000, 0, 0, 0, 0);
+        assertEquals(14, manager.getTrafficData(60_000).size());
+    }
+
+    /**
+     * Kontext, der nur das Dateiverzeichnis bereitstellt. Mit {@code release} hält er den
+     * Lade-Thread beim Löschen der Altdatei an, bis der Test ihn freigibt.
+     */
+    private static final class FilesContext extends ContextWrapper {
+        private final File filesDir;
+
+        private final CountDownLatch release;
+
+        FilesContext(File filesDir) {
+            this(filesDir, null);
+        }
+
+        FilesContext(File filesDir, CountDownLatch release) {
+            super(null);
+            this.filesDir = filesDir;
+            this.release = release;
+        }
+
+        @Override
+        public Context getApplicationContext() {
+            return this;
+        }
+
+        @Override
+        public File getFilesDir() {
+            return filesDir;
+        }
+
+        @Override
+        public boolean deleteFile(String name) {
+            if (release != null) {
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+            return new File(filesDir, name).delete();
+        }
+    }
+}
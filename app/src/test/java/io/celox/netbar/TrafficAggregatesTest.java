@@ -0,0 +1,142 @@
+/*
+ * Copyright (C) 2025 Martin Pfeffer
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.celox.netbar;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/**
+ * Bereichssummen, Spitzen und Quantile der {@link TrafficAggregates} im Vergleich zur
+ * direkten Berechnung über alle Datenpunkte.
+ */
+public class TrafficAggregatesTest {
+    private static final long RESOLUTION_MS = 60_000;
+
+    @Test
+    public void rangesMatchBruteForce() {
+        int length = 10 * TrafficAggregates.BLOCK_SIZE;
+        TrafficAggregates aggregates = new TrafficAggregates(RESOLUTION_MS, length);
+        Random random = new Random(7);
+        int total = 3 * length + 17; // Mehrfach umgelaufen
+        TrafficBucket[] buckets = new TrafficBucket[total];
+        for (int i = 0; i < total; i++) {
+            TrafficBucket bucket = new TrafficBucket();
+            // Raten über viele Größenordnungen, damit viele Histogramm-Buckets belegt sind
+            long tx = (long) Math.pow(10, random.nextDouble() * 9);
+            long rx = random.nextInt(4) == 0 ? 0 : (long) Math.pow(10, random.nextDouble() * 10);
+            bucket.set(i * RESOLUTION_MS, tx, rx, 0, random.nextInt(1 << 24), 0, random.nextInt(1 << 24), 0, 0);
+            buckets[i] = bucket;
+            aggregates.add(bucket);
+        }
+
+        TrafficSummary summary = new TrafficSummary();
+        for (int n = 0; n < 2000; n++) {
+            int count = 1 + random.nextInt(length);
+            long first = total - count - random.nextInt(length - count + 1);
+            assertTrue(aggregates.query(first, count, summary));
+            assertSummary(buckets, (int) first, count, summary);
+        }
+        // Randfälle: einzelner Datenpunkt, ganzer Bereich, Blockgrenzen
+        for (long first : new long[] {total - 1, total - length, total - TrafficAggregates.BLOCK_SIZE}) {
+            int count = (int) (total - first);
+            assertTrue(aggregates.query(first, count, summary));
+            assertSummary(buckets, (int) first, count, summary);
+        }
+    }
+
+    @Test
+    public void rangeOutsideCoverageIsRejected() {
+        int length = 2 * TrafficAggregates.BLOCK_SIZE;
+        TrafficAggregates aggregates = new TrafficAggregates(RESOLUTION_MS, length);
+        for (int i = 0; i < 3 * length; i++) {
+            TrafficBucket bucket = new TrafficBucket();
+            bucket.set(i * RESOLUTION_MS, i, i, i, i, i, i, 0, 0);
+            aggregates.add(bucket);
+        }
+        TrafficSummary summary = new TrafficSummary();
+        assertFalse(aggregates.query(3 * length - 5, 0, summary));
+        assertFalse(aggregates.query(3 * length - 5, 6, summary)); // Noch nicht vorhanden
+        assertFalse(aggregates.query(2 * length - 1, 10, summary)); // Bereits überschrieben
+        assertTrue(aggregates.query(2 * length, 10, summary));
+    }
+
+    @Test
+    public void percentilesAreBucketAveragesWhilePeakIsPerSecond() {
+        TrafficAggregates aggregates = new TrafficAggregates(RESOLUTION_MS, TrafficAggregates.BLOCK_SIZE);
+        for (int i = 0; i < 10; i++) {
+            // Eine Sekunde mit 6 MB, der Rest der Minute still: Durchschnitt 100 KB/s
+            TrafficBucket bucket = new TrafficBucket();
+            bucket.set(i * RESOLUTION_MS, 6_000_000, 0, 0, 6_000_000, 0, 0, 0, 0);
+            aggregates.add(bucket);
+        }
+        TrafficSummary summary = new TrafficSummary();
+        assertTrue(aggregates.query(0, 10, summary));
+
+        assertEquals(RESOLUTION_MS, summary.getRateIntervalMs());
+        assertEquals(6_000_000, summary.getTxPeakRate());
+        long p99 = summary.getTxRateP99();
+        assertTrue(p99 > 100_000 * 7 / 8 && p99 < 100_000 * 9 / 8);
+    }
+
+    private static void assertSummary(TrafficBucket[] buckets, int first, int count, TrafficSummary summary) {
+        long txBytes = 0;
+        long rxBytes = 0;
+        long txPeak = 0;
+        long rxPeak = 0;
+        int[] txBins = new int[count];
+        int[] rxBins = new int[count];
+        for (int i = 0; i < count; i++) {
+            TrafficBucket bucket = buckets[first + i];
+            txBytes += bucket.txBytes;
+            rxBytes += bucket.rxBytes;
+            txPeak = Math.max(txPeak, bucket.txMaxRate);
+            rxPeak = Math.max(rxPeak, bucket.rxMaxRate);
+            txBins[i] = MetricHistogram.bucketOf(bucket.txBytes * 1000 / RESOLUTION_MS);
+            rxBins[i] = MetricHistogram.bucketOf(bucket.rxBytes * 1000 / RESOLUTION_MS);
+        }
+        Arrays.sort(txBins);
+        Arrays.sort(rxBins);
+
+        String range = "range " + first + "+" + count;
+        assertEquals(range, count, summary.getPointCount());
+        assertEquals(range, count * RESOLUTION_MS, summary.getDurationMs());
+        assertEquals(range, txBytes, summary.getTxBytes());
+        assertEquals(range, rxBytes, summary.getRxBytes());
+        assertEquals(range, txPeak, summary.getTxPeakRate());
+        assertEquals(range, rxPeak, summary.getRxPeakRate());
+        assertEquals(range, quantile(txBins, 0.5), summary.txRateP50);
+        assertEquals(range, quantile(txBins, 0.95), summary.txRateP95);
+        assertEquals(range, quantile(txBins, 0.99), summary.txRateP99);
+        assertEquals(range, quantile(rxBins, 0.5), summary.rxRateP50);
+        assertEquals(range, quantile(rxBins, 0.95), summary.rxRateP95);
+        assertEquals(range, quantile(rxBins, 0.99), summary.rxRateP99);
+    }
+
+    /**
+     * Mitte des Histogramm-Buckets des Datenpunkts mit dem Rang {@code ceil(q * n)}.
+     */
+    private static long quantile(int[] sortedBins, double q) {
+        int rank = (int) Math.max(1, (long) Math.ceil(q * sortedBins.length));
+        int bin = sortedBins[rank - 1];
+        long lower = MetricHistogram.lowerBoundOf(bin);
+        return lower + (MetricHistogram.lowerBoundOf(bin + 1) - lower) / 2;
+    }
+}
@@ -0,0 +1,200 @@
+/*
+ * Copyright (C) 2025 Martin Pfeffer
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.celox.netbar;
+
+import org.junit.Test;
+
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+/**
+ * Bursts, anhaltend erhöhter Verkehr, die Sperre nach einem zu langen Burst und lange Ticks im
+ * {@link TrafficAnomalyDetector}.
+ */
+public class TrafficAnomalyDetectorTest {
+    private static final long START = 1_760_000_400_000L;
+    private static final long SECOND = 1000;
+    private static final long HOUR_MS = TimeUnit.HOURS.toMillis(1);
+    private static final long KB = 1024;
+    private static final long MB = 1024 * KB;
+
+    private final TrafficEventLog log = new TrafficEventLog();
+    private final TrafficAnomalyDetector detector = new TrafficAnomalyDetector(log);
+    private final Random random = new Random(17);
+    private long now = START;
+
+    @Test
+    public void nothingBeforeBaselineIsSeeded() {
+        assertFalse(detector.update(START + SECOND, SECOND, 50 * MB, 50 * MB));
+        assertEquals(0, log.size());
+    }
+
+    @Test
+    public void steadyTrafficRaisesNoEvents() {
+        detector.seedBaseline(hourlyBaseline(20 * KB));
+        run(TimeUnit.HOURS.toMillis(3), 20 * KB, 20 * KB);
+        assertEquals(0, log.size());
+    }
+
+    @Test
+    public void shortSpikeIsBurst() {
+        detector.seedBaseline(null);
+        run(TimeUnit.MINUTES.toMillis(10), KB, KB);
+        long spikeStart = now;
+        run(5 * SECOND, 5 * MB, KB);
+        run(TimeUnit.MINUTES.toMillis(1), KB, KB);
+
+        List<TrafficEventLog.Event> events = log.getEvents(START, now);
+        assertEquals(1, events.size());
+        TrafficEventLog.Event event = events.get(0);
+        assertEquals(TrafficEventLog.TYPE_BURST, event.type);
+        assertEquals(TrafficEventLog.DIRECTION_UP, event.direction);
+        assertEquals(spikeStart, event.start);
+        assertEquals(spikeStart + 5 * SECOND, event.end);
+        assertTrue(event.peakRate >= 5 * MB * 9 / 10);
+        assertTrue(event.bytes >= 25 * MB * 9 / 10);
+    }
+
+    @Test
+    public void spikeDuringWarmupIsIgnored() {
+        detector.seedBaseline(null);
+        run(TimeUnit.MINUTES.toMillis(2), KB, KB);
+        run(5 * SECOND, 5 * MB, 5 * MB);
+        assertEquals(0, log.size());
+    }
+
+    @Test
+    public void smallSpikeIsIgnored() {
+        detector.seedBaseline(null);
+        run(TimeUnit.MINUTES.toMillis(10), 100, 100);
+        run(5 * SECOND, 64 * KB, 64 * KB); // Steil, aber unter MIN_BURST_RATE
+        assertEquals(0, log.size());
+    }
+
+    @Test
+    public void longBurstBecomesNewNorm() {
+        detector.seedBaseline(null);
+        run(TimeUnit.MINUTES.toMillis(10), KB, KB);
+        long burstStart = now;
+        run(TimeUnit.MINUTES.toMillis(25), KB, 2 * MB);
+
+        // Nach der Höchstdauer endet der Burst, ohne dass sofort der nächste beginnt
+        List<TrafficEventLog.Event> events = log.getEvents(START, now);
+        assertEquals(1, events.size());
+        TrafficEventLog.Event event = events.get(0);
+        assertEquals(TrafficEventLog.DIRECTION_DOWN, event.direction);
+        assertFalse(event.isOngoing());
+        assertEquals(burstStart, event.start);
+        long duration = event.end - event.start;
+        assertTrue(duration > TimeUnit.MINUTES.toMillis(10) - 2 * SECOND
+                && duration <= TimeUnit.MINUTES.toMillis(10));
+    }
+
+    @Test
+    public void longTicksAreNotJudgedAsBursts() {
+        detector.seedBaseline(null);
+        run(TimeUnit.MINUTES.toMillis(10), KB, KB);
+        // Display aus: eine Minute pro Tick, im Schnitt weit über dem Mittel der Sekundenraten
+        run(TimeUnit.MINUTES.toMillis(5), TimeUnit.MINUTES.toMillis(1), MB, MB);
+        // Ohne Verkehr: Ticks alle fünf Sekunden
+        run(TimeUnit.MINUTES.toMillis(1), 5 * SECOND, 0, 0);
+        assertEquals(0, log.size());
+    }
+
+    @Test
+    public void longTickEndsBurst() {
+        detector.seedBaseline(null);
+        run(TimeUnit.MINUTES.toMillis(10), KB, KB);
+        long burstStart = now;
+        run(3 * SECOND, 5 * MB, KB);
+        run(TimeUnit.MINUTES.toMillis(2), TimeUnit.MINUTES.toMillis(1), 5 * MB, KB);
+
+        List<TrafficEventLog.Event> events = log.getEvents(START, now);
+        assertEquals(1, events.size());
+        assertEquals(burstStart, events.get(0).start);
+        assertEquals(burstStart + 3 * SECOND, events.get(0).end);
+    }
+
+    @Test
+    public void sustainedTrafficAboveBaseline() {
+        detector.seedBaseline(hourlyBaseline(20 * KB));
+        run(TimeUnit.MINUTES.toMillis(10), 20 * KB, 20 * KB);
+        long elevatedStart = now;
+        run(TimeUnit.MINUTES.toMillis(4), 20 * KB, 400 * KB);
+        assertTrue(sustainedEvents().isEmpty()); // Noch nicht lange genug
+        run(TimeUnit.MINUTES.toMillis(6), 20 * KB, 400 * KB);
+
+        List<TrafficEventLog.Event> sustained = sustainedEvents();
+        assertEquals(1, sustained.size());
+        TrafficEventLog.Event event = sustained.get(0);
+        assertEquals(TrafficEventLog.DIRECTION_DOWN, event.direction);
+        assertTrue(event.isOngoing());
+        assertTrue(event.start >= elevatedStart && event.start < elevatedStart + TimeUnit.MINUTES.toMillis(1));
+
+        run(TimeUnit.MINUTES.toMillis(10), 20 * KB, 20 * KB);
+        event = sustainedEvents().get(0);
+        assertFalse(event.isOngoing());
+        assertTrue(event.end > elevatedStart + TimeUnit.MINUTES.toMillis(10));
+        assertTrue(event.bytes >= 400 * KB * 600 * 9 / 10);
+    }
+
+    /**
+     * Stunden-Buckets der letzten 28 Tage mit leicht schwankender Rate um {@code rate}.
+     */
+    private TrafficSeries hourlyBaseline(long rate) {
+        int hours = 28 * 24;
+        TrafficRingBuffer buffer = new TrafficRingBuffer(hours, 1);
+        long firstHour = START / HOUR_MS * HOUR_MS - hours * HOUR_MS;
+        for (int i = 0; i < hours; i++) {
+            long bytes = noisy(rate) * 3600;
+            TrafficBucket bucket = new TrafficBucket();
+            bucket.set(firstHour + i * HOUR_MS, bytes, bytes, 0, 0, 0, 0, 0, 0);
+            buffer.add(bucket);
+        }
+        return buffer.snapshot(Long.MIN_VALUE, HOUR_MS);
+    }
+
+    /**
+     * Ticks im Sekundentakt über {@code durationMs} mit leicht schwankenden Raten.
+     */
+    private void run(long durationMs, long txRate, long rxRate) {
+        run(durationMs, SECOND, txRate, rxRate);
+    }
+
+    /**
+     * Ticks im Abstand {@code tickMs} über {@code durationMs}; Raten in Bytes pro Sekunde.
+     */
+    private void run(long durationMs, long tickMs, long txRate, long rxRate) {
+        for (long elapsed = 0; elapsed < durationMs; elapsed += tickMs) {
+            now += tickMs;
+            detector.update(now, tickMs, noisy(txRate) * tickMs / SECOND, noisy(rxRate) * tickMs / SECOND);
+        }
+    }
+
+    private long noisy(long rate) {
+        return rate + (long) (rate * 0.1 * (random.nextDouble() - 0.5));
+    }
+
+    private List<TrafficEventLog.Event> sustainedEvents() {
+        List<TrafficEventLog.Event> events = log.getEvents(START, Long.MAX_VALUE);
+        events.removeIf(event -> event.type != TrafficEventLog.TYPE_SUSTAINED);
+        return events;
+    }
+}
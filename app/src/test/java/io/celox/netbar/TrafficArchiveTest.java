@@ -0,0 +1,138 @@
+/*
+ * Copyright (C) 2025 Martin Pfeffer
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.celox.netbar;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+/**
+ * Laden des {@link TrafficArchive} mit unvollständigem oder beschädigtem Dateiende.
+ */
+public class TrafficArchiveTest {
+    private static final long START = 1_760_000_000_000L;
+    private static final long RETENTION_MS = TimeUnit.DAYS.toMillis(3650);
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void appendedBlocksAreReadAgain() throws IOException {
+        File file = new File(folder.getRoot(), "archive.bin");
+        writeBlocks(file, 3);
+
+        TrafficArchive archive = new TrafficArchive(file, RETENTION_MS);
+        archive.load();
+        assertEquals(30, readAll(archive).size());
+        assertEquals(START + 29 * 60_000L, archive.getLastTimestamp());
+        archive.close();
+    }
+
+    @Test
+    public void incompleteBlockIsTruncated() throws IOException {
+        File file = new File(folder.getRoot(), "archive.bin");
+        writeBlocks(file, 2);
+        long validLength = file.length();
+        try (RandomAccessFile out = new RandomAccessFile(file, "rw")) {
+            out.seek(validLength);
+            out.writeInt(1000); // Länge der Nutzdaten, die fehlen
+            out.write(new byte[TrafficBlockCodec.HEADER_SIZE]);
+        }
+
+        assertTruncatedTo(file, validLength, 20);
+    }
+
+    @Test
+    public void zeroFilledTailIsTruncated() throws IOException {
+        File file = new File(folder.getRoot(), "archive.bin");
+        writeBlocks(file, 2);
+        long validLength = file.length();
+        try (RandomAccessFile out = new RandomAccessFile(file, "rw")) {
+            out.setLength(validLength + 4096);
+        }
+
+        assertTruncatedTo(file, validLength, 20);
+    }
+
+    @Test
+    public void negativeBlockLengthIsTruncated() throws IOException {
+        File file = new File(folder.getRoot(), "archive.bin");
+        writeBlocks(file, 1);
+        long validLength = file.length();
+        try (RandomAccessFile out = new RandomAccessFile(file, "rw")) {
+            out.seek(validLength);
+            out.writeInt(-TrafficBlockCodec.HEADER_SIZE);
+            out.write(new byte[100]);
+        }
+
+        assertTruncatedTo(file, validLength, 10);
+    }
+
+    private void assertTruncatedTo(File file, long validLength, int records) throws IOException {
+        TrafficArchive archive = new TrafficArchive(file, RETENTION_MS);
+        archive.load();
+        assertEquals(validLength, file.length());
+        assertEquals(validLength, archive.getSize());
+        assertEquals(records, readAll(archive).size());
+
+        // Weitere Blöcke schließen an den letzten gültigen an
+        archive.append(new TrafficBlockCodec().encode(buffer(records, 10), 0, 10), false);
+        archive.close();
+        TrafficArchive reloaded = new TrafficArchive(file, RETENTION_MS);
+        reloaded.load();
+        assertEquals(records + 10, readAll(reloaded).size());
+        reloaded.close();
+    }
+
+    private static void writeBlocks(File file, int blocks) throws IOException {
+        TrafficArchive archive = new TrafficArchive(file, RETENTION_MS);
+        archive.load();
+        TrafficBlockCodec codec = new TrafficBlockCodec();
+        for (int i = 0; i < blocks; i++) {
+            archive.append(codec.encode(buffer(i * 10, 10), 0, 10), false);
+        }
+        archive.close();
+    }
+
+    private static TrafficRingBuffer buffer(int first, int count) {
+        TrafficRingBuffer buffer = new TrafficRingBuffer(count, 1);
+        for (int i = first; i < first + count; i++) {
+            TrafficBucket bucket = new TrafficBucket();
+            bucket.set(START + i * 60_000L, i, i, i, i, i, i, i, i);
+            buffer.add(bucket);
+        }
+        return buffer;
+    }
+
+    private static List<Long> readAll(TrafficArchive archive) throws IOException {
+        List<Long> timestamps = new ArrayList<>();
+        archive.read(Long.MIN_VALUE, Long.MAX_VALUE, record -> timestamps.add(record.start));
+        for (int i = 1; i < timestamps.size(); i++) {
+            assertTrue(timestamps.get(i) > timestamps.get(i - 1));
+        }
+        return timestamps;
+    }
+}
@@ -0,0 +1,158 @@
+/*
+ * Copyright (C) 2025 Martin Pfeffer
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.celox.netbar;
+
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/**
+ * Kodieren und Dekodieren von Archivblöcken mit dem {@link TrafficBlockCodec}.
+ */
+public class TrafficBlockCodecTest {
+    private static final long START = 1_760_000_000_000L;
+
+    @Test
+    public void roundTripWithNegativeDeltas() {
+        Random random = new Random(42);
+        TrafficRingBuffer buffer = new TrafficRingBuffer(500, 1);
+        List<long[]> expected = new ArrayList<>();
+        long timestamp = START;
+        for (int i = 0; i < 500; i++) {
+            // Unregelmäßige Abstände ergeben auch negative Differenzen der Differenzen
+            timestamp += 60_000 + (random.nextInt(5) == 0 ? random.nextInt(3_600_000) : 0);
+            TrafficBucket bucket = new TrafficBucket();
+            bucket.set(timestamp, random.nextInt(1 << 20), random.nextInt(1 << 30),
+                    random.nextInt(100), random.nextInt(100_000), random.nextInt(100), random.nextInt(100_000),
+                    random.nextInt(1000), random.nextInt(1000));
+            buffer.add(bucket);
+            expected.add(TrafficHistoryLogTest.fields(bucket));
+        }
+
+        assertRecords(expected, decodeAll(new TrafficBlockCodec().encode(buffer, 0, 500)));
+    }
+
+    @Test
+    public void roundTripWithLongExtremes() {
+        long[] values = {Long.MIN_VALUE, Long.MAX_VALUE, 0, -1, Long.MAX_VALUE, Long.MIN_VALUE, 1, Long.MIN_VALUE + 1};
+        TrafficRingBuffer buffer = new TrafficRingBuffer(values.length, 1);
+        List<long[]> expected = new ArrayList<>();
+        for (int i = 0; i < values.length; i++) {
+            long value = values[i];
+            long other = values[values.length - 1 - i];
+            TrafficBucket bucket = new TrafficBucket();
+            bucket.set(START + i * 60_000L, value, other, value, other, value, other, value, other);
+            buffer.add(bucket);
+            expected.add(TrafficHistoryLogTest.fields(bucket));
+        }
+
+        assertRecords(expected, decodeAll(new TrafficBlockCodec().encode(buffer, 0, values.length)));
+    }
+
+    @Test
+    public void roundTripWithExtremeTimestampJumps() {
+        long[] timestamps = {Long.MIN_VALUE + 1, -1, 0, Long.MAX_VALUE / 2, Long.MAX_VALUE - 1};
+        TrafficRingBuffer buffer = new TrafficRingBuffer(timestamps.length, 1);
+        List<long[]> expected = new ArrayList<>();
+        for (long timestamp : timestamps) {
+            TrafficBucket bucket = new TrafficBucket();
+            bucket.set(timestamp, 1, 2, 3, 4, 5, 6, 7, 8);
+            buffer.add(bucket);
+            expected.add(TrafficHistoryLogTest.fields(bucket));
+        }
+
+        assertRecords(expected, decodeAll(new TrafficBlockCodec().encode(buffer, 0, timestamps.length)));
+    }
+
+    @Test
+    public void headerDescribesBlock() {
+        TrafficRingBuffer buffer = filledBuffer(100);
+        byte[] block = new TrafficBlockCodec().encode(buffer, 10, 20);
+
+        ByteBuffer header = ByteBuffer.wrap(block);
+        assertEquals(block.length - TrafficBlockCodec.HEADER_SIZE, header.getInt());
+        assertEquals(20, header.getInt());
+        assertEquals(buffer.getTimestamp(10), header.getLong());
+        assertEquals(buffer.getTimestamp(29), header.getLong());
+    }
+
+    @Test
+    public void codecIsReusableAndBlocksAreIndependent() {
+        TrafficRingBuffer buffer = filledBuffer(300);
+        TrafficBlockCodec codec = new TrafficBlockCodec();
+        byte[] first = codec.encode(buffer, 0, 256);
+        byte[] second = codec.encode(buffer, 256, 44);
+
+        List<long[]> expected = new ArrayList<>();
+        TrafficBucket record = new TrafficBucket();
+        for (int i = 0; i < 300; i++) {
+            buffer.get(i, record);
+            expected.add(TrafficHistoryLogTest.fields(record));
+        }
+        assertRecords(expected.subList(0, 256), decodeAll(first));
+        assertRecords(expected.subList(256, 300), decodeAll(second));
+    }
+
+    @Test
+    public void decodeFiltersTimeRange() {
+        TrafficRingBuffer buffer = filledBuffer(50);
+        byte[] block = new TrafficBlockCodec().encode(buffer, 0, 50);
+
+        List<long[]> records = decode(block, buffer.getTimestamp(10), buffer.getTimestamp(20));
+        assertEquals(10, records.size());
+        assertEquals(buffer.getTimestamp(10), records.get(0)[0]);
+        assertEquals(buffer.getTimestamp(19), records.get(9)[0]);
+    }
+
+    private static TrafficRingBuffer filledBuffer(int count) {
+        TrafficRingBuffer buffer = new TrafficRingBuffer(count, 1);
+        for (int i = 0; i < count; i++) {
+            TrafficBucket bucket = new TrafficBucket();
+            bucket.set(START + i * 60_000L, i * 7L, i * 13L, i, i * 2L, i * 3L, i * 4L, i, i);
+            buffer.add(bucket);
+        }
+        return buffer;
+    }
+
+    private static List<long[]> decodeAll(byte[] block) {
+        return decode(block, Long.MIN_VALUE, Long.MAX_VALUE);
+    }
+
+    private static List<long[]> decode(byte[] block, long fromTime, long toTime) {
+        ByteBuffer buffer = ByteBuffer.wrap(block);
+        buffer.getInt(); // Länge der Nutzdaten
+        int count = buffer.getInt();
+        long firstTimestamp = buffer.getLong();
+        buffer.getLong(); // Letzter Zeitstempel
+        List<long[]> records = new ArrayList<>();
+        TrafficBlockCodec.decode(buffer, count, firstTimestamp, fromTime, toTime, new TrafficBucket(),
+                record -> records.add(TrafficHistoryLogTest.fields(record)));
+        return records;
+    }
+
+    private static void assertRecords(List<long[]> expected, List<long[]> actual) {
+        assertEquals(expected.size(), actual.size());
+        for (int i = 0; i < expected.size(); i++) {
+            assertArrayEquals("record " + i, expected.get(i), actual.get(i));
+        }
+    }
+}
@@ -0,0 +1,217 @@
+/*
+ * Copyright (C) 2025 Martin Pfeffer
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.celox.netbar;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * Zeiträume, Alarmstufen und gespeicherter Zustand der {@link TrafficBudgetEngine}.
+ */
+public class TrafficBudgetEngineTest {
+    private final List<long[]> alerts = new ArrayList<>(); // Regel, Stufe, Wert
+    private final TrafficBudgetEngine.AlertListener listener =
+            (ruleIndex, rule, level, value) -> alerts.add(new long[] {ruleIndex, level, value});
+
+    @Test
+    public void dailyQuotaWarnsThenExceeds() {
+        TrafficBudgetEngine engine = engine("daily all both 1000");
+        long now = localTime(2026, Calendar.MARCH, 10, 10);
+        engine.update(now, 1000, 300, 400, 0, 0);
+        assertTrue(alerts.isEmpty());
+        engine.update(now + 1000, 1000, 100, 0, 0, 0);
+        assertAlert(0, TrafficBudgetEngine.LEVEL_WARNING, 800);
+        engine.update(now + 2000, 1000, 0, 100, 0, 0);
+        assertTrue(alerts.isEmpty());
+        engine.update(now + 3000, 1000, 0, 100, 0, 0);
+        assertAlert(0, TrafficBudgetEngine.LEVEL_EXCEEDED, 1000);
+        engine.update(now + 4000, 1000, 500, 0, 0, 0);
+        assertTrue(alerts.isEmpty());
+    }
+
+    @Test
+    public void dailyPeriodRollsOverAtMidnight() {
+        TrafficBudgetEngine engine = engine("daily all up 1000");
+        long lateEvening = localTime(2026, Calendar.MARCH, 10, 23);
+        engine.update(lateEvening, 1000, 900, 0, 0, 0);
+        assertAlert(0, TrafficBudgetEngine.LEVEL_WARNING, 900);
+
+        // Neuer Tag: Verbrauch und Alarmstufe beginnen von vorn
+        long nextMorning = localTime(2026, Calendar.MARCH, 11, 0) + 1000;
+        engine.update(nextMorning, 1000, 500, 0, 0, 0);
+        assertTrue(alerts.isEmpty());
+        engine.update(nextMorning + 1000, 1000, 400, 0, 0, 0);
+        assertAlert(0, TrafficBudgetEngine.LEVEL_WARNING, 900);
+    }
+
+    @Test
+    public void monthlyPeriodRollsOverOnFirstDay() {
+        TrafficBudgetEngine engine = engine("monthly mobile both 1000");
+        engine.update(localTime(2026, Calendar.JANUARY, 31, 12), 1000, 800, 800, 600, 500);
+        assertAlert(0, TrafficBudgetEngine.LEVEL_EXCEEDED, 1100);
+        engine.update(localTime(2026, Calendar.JANUARY, 31, 23), 1000, 100, 0, 100, 0);
+        assertTrue(alerts.isEmpty());
+
+        engine.update(localTime(2026, Calendar.FEBRUARY, 1, 0) + 1000, 1000, 800, 0, 800, 0);
+        assertAlert(0, TrafficBudgetEngine.LEVEL_WARNING, 800);
+    }
+
+    @Test
+    public void rollingWindowForgetsOldSlots() {
+        TrafficBudgetEngine engine = engine("rolling 60s all down 1000");
+        long now = localTime(2026, Calendar.MARCH, 10, 10);
+        engine.update(now, 1000, 0, 900, 0, 0);
+        assertAlert(0, TrafficBudgetEngine.LEVEL_WARNING, 900);
+        engine.update(now + 30_000, 1000, 0, 50, 0, 0);
+        assertTrue(alerts.isEmpty());
+
+        // Die ersten 900 Bytes sind aus dem Fenster gefallen, es bleiben 50
+        engine.update(now + 61_000, 1000, 0, 700, 0, 0);
+        assertTrue(alerts.isEmpty());
+        engine.update(now + 62_000, 1000, 0, 100, 0, 0);
+        assertAlert(0, TrafficBudgetEngine.LEVEL_WARNING, 850);
+    }
+
+    @Test
+    public void rollingWindowShorterThanOneMinuteIsRejected() {
+        try {
+            TrafficBudgetRule.parse("rolling 10s all down 1000");
+            fail();
+        } catch (IllegalArgumentException e) {
+            assertTrue(e.getMessage().contains("at least 60s"));
+        }
+
+        List<String> invalidLines = new ArrayList<>();
+        List<TrafficBudgetRule> rules = TrafficBudgetRule.parseAll(
+                "rolling 10s all down 1000\nrolling 1m all down 1000", invalidLines);
+        assertEquals(Collections.singletonList("rolling 10s all down 1000"), invalidLines);
+        assertEquals(1, rules.size());
+        assertEquals(60_000, rules.get(0).windowMs);
+    }
+
+    @Test
+    public void rateAlertNeedsSustainedRate() {
+        TrafficBudgetEngine engine = engine("rate all both 1000 5s");
+        long now = localTime(2026, Calendar.MARCH, 10, 10);
+        for (int i = 0; i < 4; i++) {
+            engine.update(now + i * 1000, 1000, 1000, 500, 0, 0);
+        }
+        assertTrue(alerts.isEmpty());
+        engine.update(now + 4000, 1000, 1000, 500, 0, 0);
+        assertAlert(0, TrafficBudgetEngine.LEVEL_EXCEEDED, 1500);
+        engine.update(now + 5000, 1000, 1000, 500, 0, 0);
+        assertTrue(alerts.isEmpty());
+
+        // Erst nach dem Absinken unter die Hysterese erneut scharf
+        engine.update(now + 6000, 1000, 950, 0, 0, 0);
+        for (int i = 7; i < 12; i++) {
+            engine.update(now + i * 1000, 1000, 2000, 0, 0, 0);
+        }
+        assertTrue(alerts.isEmpty());
+        engine.update(now + 12_000, 1000, 100, 0, 0, 0);
+        for (int i = 13; i < 18; i++) {
+            engine.update(now + i * 1000, 1000, 2000, 0, 0, 0);
+        }
+        assertAlert(0, TrafficBudgetEngine.LEVEL_EXCEEDED, 2000);
+    }
+
+    @Test
+    public void restoredStateContinuesPeriod() {
+        long now = localTime(2026, Calendar.MARCH, 10, 10);
+        TrafficBudgetEngine engine = engine("daily all both 1000\nrolling 1h wifi both 1000");
+        engine.update(now, 1000, 850, 0, 0, 0);
+        assertEquals(2, alerts.size());
+        alerts.clear();
+        assertTrue(engine.isDirty());
+        byte[] state = engine.saveState();
+        assertFalse(engine.isDirty());
+
+        TrafficBudgetEngine restored = engine("daily all both 1000\nrolling 1h wifi both 1000");
+        restored.restoreState(state);
+        // Warnung wurde schon gemeldet, erst die Überschreitung folgt
+        restored.update(now + 1000, 1000, 100, 0, 0, 0);
+        assertTrue(alerts.isEmpty());
+        restored.update(now + 2000, 1000, 50, 0, 0, 0);
+        assertEquals(2, alerts.size());
+        assertEquals(TrafficBudgetEngine.LEVEL_EXCEEDED, alerts.get(0)[1]);
+        assertEquals(1000, alerts.get(0)[2]);
+        assertEquals(TrafficBudgetEngine.LEVEL_EXCEEDED, alerts.get(1)[1]);
+    }
+
+    @Test
+    public void restoredStateFromPreviousDayIsDiscarded() {
+        long yesterday = localTime(2026, Calendar.MARCH, 9, 22);
+        TrafficBudgetEngine engine = engine("daily all both 1000");
+        engine.update(yesterday, 1000, 900, 0, 0, 0);
+        byte[] state = engine.saveState();
+        alerts.clear();
+
+        TrafficBudgetEngine restored = engine("daily all both 1000");
+        restored.restoreState(state);
+        restored.update(localTime(2026, Calendar.MARCH, 10, 8), 1000, 850, 0, 0, 0);
+        assertAlert(0, TrafficBudgetEngine.LEVEL_WARNING, 850);
+    }
+
+    @Test
+    public void changedRulesKeepStateOfUnchangedOnes() {
+        long now = localTime(2026, Calendar.MARCH, 10, 10);
+        TrafficBudgetEngine engine = engine("daily all both 1000");
+        engine.update(now, 1000, 900, 0, 0, 0);
+        alerts.clear();
+
+        // Neue Regel davor, die bestehende behält ihren Verbrauch; geändertes Limit zählt neu
+        engine.setRules(TrafficBudgetRule.parseAll(
+                "daily all up 2000\ndaily all both 1000\ndaily all down 500", null));
+        assertEquals(3, engine.getRuleCount());
+        engine.update(now + 1000, 1000, 100, 0, 0, 0);
+        assertAlert(1, TrafficBudgetEngine.LEVEL_EXCEEDED, 1000);
+    }
+
+    @Test
+    public void invalidStateIsIgnored() {
+        TrafficBudgetEngine engine = engine("daily all both 1000");
+        engine.restoreState(new byte[] {1, 2, 3});
+        engine.restoreState(new byte[0]);
+        engine.update(localTime(2026, Calendar.MARCH, 10, 10), 1000, 500, 0, 0, 0);
+        assertTrue(alerts.isEmpty());
+    }
+
+    private TrafficBudgetEngine engine(String rules) {
+        TrafficBudgetEngine engine = new TrafficBudgetEngine(listener);
+        engine.setRules(TrafficBudgetRule.parseAll(rules, null));
+        return engine;
+    }
+
+    private void assertAlert(int ruleIndex, int level, long value) {
+        assertEquals("alerts", 1, alerts.size());
+        assertArrayEquals(new long[] {ruleIndex, level, value}, alerts.get(0));
+        alerts.clear();
+    }
+
+    private static long localTime(int year, int month, int day, int hour) {
+        Calendar calendar = Calendar.getInstance();
+        calendar.clear();
+        calendar.set(year, month, day, hour, 0);
+        return calendar.getTimeInMillis();
+    }
+}
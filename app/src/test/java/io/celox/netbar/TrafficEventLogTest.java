@@ -0,0 +1,105 @@
+/*
+ * Copyright (C) 2025 Martin Pfeffer
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.celox.netbar;
+
+import org.junit.Test;
+
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * Speichern und Wiederherstellen des {@link TrafficEventLog}.
+ */
+public class TrafficEventLogTest {
+    private static final long START = 1_760_000_000_000L;
+
+    @Test
+    public void savedEventsAreRestored() {
+        TrafficEventLog log = new TrafficEventLog();
+        long burst = log.begin(START, TrafficEventLog.TYPE_BURST, TrafficEventLog.DIRECTION_UP);
+        log.finish(burst, START + 5000, 8_000_000, 20_000_000);
+        long sustained = log.begin(START + 60_000, TrafficEventLog.TYPE_SUSTAINED,
+                TrafficEventLog.DIRECTION_DOWN);
+        log.finish(sustained, START + 600_000, 1_000_000, 300_000_000);
+        log.begin(START + 900_000, TrafficEventLog.TYPE_BURST, TrafficEventLog.DIRECTION_DOWN);
+
+        TrafficEventLog restored = new TrafficEventLog();
+        restored.restore(log.save());
+
+        List<TrafficEventLog.Event> events = restored.getEvents(Long.MIN_VALUE, Long.MAX_VALUE);
+        assertEquals(3, events.size());
+        assertEvent(events.get(0), START, START + 5000, TrafficEventLog.TYPE_BURST,
+                TrafficEventLog.DIRECTION_UP, 8_000_000, 20_000_000);
+        assertEvent(events.get(1), START + 60_000, START + 600_000, TrafficEventLog.TYPE_SUSTAINED,
+                TrafficEventLog.DIRECTION_DOWN, 1_000_000, 300_000_000);
+        // Das laufende Ereignis gilt nach dem Neustart als beendet
+        assertFalse(events.get(2).isOngoing());
+        assertEvent(events.get(2), START + 900_000, START + 900_000, TrafficEventLog.TYPE_BURST,
+                TrafficEventLog.DIRECTION_DOWN, 0, 0);
+    }
+
+    @Test
+    public void onlyLatestEventsAreSaved() {
+        TrafficEventLog log = new TrafficEventLog();
+        int total = TrafficEventLog.CAPACITY + 5;
+        for (int i = 0; i < total; i++) {
+            long id = log.begin(START + i * 1000L, TrafficEventLog.TYPE_BURST,
+                    TrafficEventLog.DIRECTION_UP);
+            log.finish(id, START + i * 1000L + 500, i, i);
+        }
+
+        TrafficEventLog restored = new TrafficEventLog();
+        restored.restore(log.save());
+
+        assertEquals(TrafficEventLog.CAPACITY, restored.size());
+        List<TrafficEventLog.Event> events = restored.getEvents(Long.MIN_VALUE, Long.MAX_VALUE);
+        assertEquals(START + 5000, events.get(0).start);
+        assertEquals(total - 1, events.get(events.size() - 1).peakRate);
+
+        // Weitere Ereignisse überschreiben wieder das älteste
+        restored.begin(START + total * 1000L, TrafficEventLog.TYPE_SUSTAINED,
+                TrafficEventLog.DIRECTION_UP);
+        events = restored.getEvents(Long.MIN_VALUE, Long.MAX_VALUE);
+        assertEquals(TrafficEventLog.CAPACITY, events.size());
+        assertEquals(START + 6000, events.get(0).start);
+        assertTrue(events.get(events.size() - 1).isOngoing());
+    }
+
+    @Test
+    public void invalidStateIsIgnored() {
+        TrafficEventLog log = new TrafficEventLog();
+        long id = log.begin(START, TrafficEventLog.TYPE_BURST, TrafficEventLog.DIRECTION_UP);
+        log.finish(id, START + 1000, 1, 1);
+
+        log.restore(new byte[] {1, 2, 3, 4, 5, 6, 7, 8, 0, 0, 0, 1});
+        log.restore(new byte[0]);
+
+        assertEquals(1, log.size());
+        assertEquals(START, log.getEvents(Long.MIN_VALUE, Long.MAX_VALUE).get(0).start);
+    }
+
+    private static void assertEvent(TrafficEventLog.Event event, long start, long end, int type,
+                                    int direction, long peakRate, long bytes) {
+        assertEquals(start, event.start);
+        assertEquals(end, event.end);
+        assertEquals(type, event.type);
+        assertEquals(direction, event.direction);
+        assertEquals(peakRate, event.peakRate);
+        assertEquals(bytes, event.bytes);
+    }
+}
@@ -0,0 +1,121 @@
+/*
+ * Copyright (C) 2025 Martin Pfeffer
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.celox.netbar;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/**
+ * Der {@link TrafficFormatter} muss genau den Text der früheren Formatierung über
+ * {@link String#format} liefern.
+ */
+public class TrafficFormatterTest {
+    private static final long KB = 1024;
+    private static final long MB = KB * 1024;
+    private static final long GB = MB * 1024;
+
+    @Test
+    public void matchesStringFormatForSmallValues() {
+        TrafficFormatter formatter = new TrafficFormatter();
+        for (long bytes = 0; bytes < 2 * MB; bytes++) {
+            formatter.render(bytes, bytes, true, false);
+            assertEquals(legacyFormat(bytes, bytes, true, false), formatter.toString());
+        }
+    }
+
+    @Test
+    public void matchesStringFormatAtUnitBoundaries() {
+        TrafficFormatter formatter = new TrafficFormatter();
+        for (long unit : new long[] {KB, MB, GB}) {
+            for (long multiple = 1; multiple <= 1024; multiple++) {
+                for (long offset = -3; offset <= 3; offset++) {
+                    long bytes = multiple * unit + offset;
+                    // Genau auf und neben der Rundungsgrenze einer Nachkommastelle
+                    long half = (multiple * 20 + 1) * unit / 20 + offset;
+                    formatter.render(bytes, half, true, true);
+                    assertEquals(legacyFormat(bytes, half, true, true), formatter.toString());
+                }
+            }
+        }
+    }
+
+    @Test
+    public void matchesStringFormatForLargeValues() {
+        TrafficFormatter formatter = new TrafficFormatter();
+        Random random = new Random(5);
+        for (int n = 0; n < 200_000; n++) {
+            long tx = random.nextLong() >>> (20 + random.nextInt(44));
+            long rx = random.nextLong() >>> (20 + random.nextInt(44));
+            formatter.render(tx, rx, true, true);
+            assertEquals(legacyFormat(tx, rx, true, true), formatter.toString());
+        }
+    }
+
+    @Test
+    public void respectsDirections() {
+        TrafficFormatter formatter = new TrafficFormatter();
+        for (int flags = 0; flags < 4; flags++) {
+            boolean showUp = (flags & 1) != 0;
+            boolean showDown = (flags & 2) != 0;
+            formatter.render(1536, 5 * MB, showUp, showDown);
+            assertEquals(legacyFormat(1536, 5 * MB, showUp, showDown), formatter.toString());
+        }
+    }
+
+    @Test
+    public void reportsUnchangedText() {
+        TrafficFormatter formatter = new TrafficFormatter();
+        assertTrue(formatter.render(100, 200, true, true));
+        assertFalse(formatter.render(100, 200, true, true));
+        // Gleicher Text trotz anderer Bytezahl
+        assertTrue(formatter.render(2000, 200, true, true));
+        assertFalse(formatter.render(2001, 200, true, true));
+        assertTrue(formatter.render(2001, 200, true, false));
+    }
+
+    /**
+     * Die Formatierung vor der Umstellung auf den wiederverwendeten Puffer.
+     */
+    private static String legacyFormat(long txBytes, long rxBytes, boolean showUp, boolean showDown) {
+        StringBuilder sb = new StringBuilder();
+        if (showUp) {
+            sb.append("↑ ").append(legacyFormatBytes(txBytes)).append("/s");
+        }
+        if (showUp && showDown) {
+            sb.append(" | ");
+        }
+        if (showDown) {
+            sb.append("↓ ").append(legacyFormatBytes(rxBytes)).append("/s");
+        }
+        return sb.toString();
+    }
+
+    private static String legacyFormatBytes(long bytes) {
+        if (bytes < 1024) {
+            return bytes + " B";
+        } else if (bytes < 1024 * 1024) {
+            return String.format("%.1f KB", bytes / 1024.0);
+        } else if (bytes < 1024 * 1024 * 1024) {
+            return String.format("%.1f MB", bytes / (1024.0 * 1024));
+        } else {
+            return String.format("%.1f GB", bytes / (1024.0 * 1024 * 1024));
+        }
+    }
+}
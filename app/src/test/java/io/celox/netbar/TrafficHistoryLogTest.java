@@ -0,0 +1,142 @@
+/*
+ * Copyright (C) 2025 Martin Pfeffer
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.celox.netbar;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * Laden und Kompaktierung des {@link TrafficHistoryLog}.
+ */
+public class TrafficHistoryLogTest {
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void appendedRecordsAreLoadedAgain() throws IOException {
+        File file = folder.newFile("log.bin");
+        TrafficHistoryLog log = new TrafficHistoryLog(file);
+        log.load(record -> fail("new log must be empty"));
+        log.appendAll(Arrays.asList(record(1), record(2), record(3)), false);
+        log.close();
+
+        List<long[]> loaded = load(new TrafficHistoryLog(file));
+        assertEquals(3, loaded.size());
+        for (int i = 0; i < 3; i++) {
+            assertArrayEquals(fields(record(i + 1)), loaded.get(i));
+        }
+    }
+
+    @Test
+    public void tornTailIsTruncated() throws IOException {
+        File file = folder.newFile("log.bin");
+        TrafficHistoryLog log = new TrafficHistoryLog(file);
+        log.load(record -> { });
+        log.appendAll(Arrays.asList(record(1), record(2)), false);
+        log.close();
+        try (FileOutputStream out = new FileOutputStream(file, true)) {
+            out.write(new byte[TrafficHistoryLog.RECORD_SIZE - 5]);
+        }
+
+        TrafficHistoryLog reloaded = new TrafficHistoryLog(file);
+        assertEquals(2, load(reloaded).size());
+        assertEquals(2, reloaded.getRecordCount());
+        assertEquals(TrafficHistoryLog.HEADER_SIZE + 2 * TrafficHistoryLog.RECORD_SIZE, file.length());
+
+        // Neue Datensätze schließen direkt an den letzten vollständigen an
+        reloaded.appendAll(Arrays.asList(record(3)), false);
+        reloaded.close();
+        List<long[]> loaded = load(new TrafficHistoryLog(file));
+        assertEquals(3, loaded.size());
+        assertArrayEquals(fields(record(3)), loaded.get(2));
+    }
+
+    @Test
+    public void invalidHeaderStartsEmptyLog() throws IOException {
+        File file = folder.newFile("log.bin");
+        try (FileOutputStream out = new FileOutputStream(file)) {
+            out.write(new byte[100]);
+        }
+        TrafficHistoryLog log = new TrafficHistoryLog(file);
+        assertTrue(load(log).isEmpty());
+        assertEquals(TrafficHistoryLog.HEADER_SIZE, file.length());
+    }
+
+    @Test
+    public void rewriteReplacesContent() throws IOException {
+        File file = folder.newFile("log.bin");
+        TrafficHistoryLog log = new TrafficHistoryLog(file);
+        log.load(record -> { });
+        log.appendAll(Arrays.asList(record(1), record(2), record(3), record(4)), false);
+
+        TrafficRingBuffer buffer = new TrafficRingBuffer(2, 1);
+        for (int i = 1; i <= 4; i++) {
+            buffer.add(record(i));
+        }
+        log.rewrite(buffer);
+        assertEquals(2, log.getRecordCount());
+        log.appendAll(Arrays.asList(record(5)), false);
+        log.close();
+
+        List<long[]> loaded = load(new TrafficHistoryLog(file));
+        assertEquals(3, loaded.size());
+        assertArrayEquals(fields(record(3)), loaded.get(0));
+        assertArrayEquals(fields(record(4)), loaded.get(1));
+        assertArrayEquals(fields(record(5)), loaded.get(2));
+        assertFalse(new File(file.getPath() + ".tmp").exists());
+    }
+
+    @Test
+    public void clearDropsAllRecords() throws IOException {
+        File file = folder.newFile("log.bin");
+        TrafficHistoryLog log = new TrafficHistoryLog(file);
+        log.load(record -> { });
+        log.appendAll(Arrays.asList(record(1), record(2)), false);
+        log.clear();
+        assertEquals(0, log.getRecordCount());
+        log.close();
+        assertTrue(load(new TrafficHistoryLog(file)).isEmpty());
+    }
+
+    private static List<long[]> load(TrafficHistoryLog log) throws IOException {
+        List<long[]> records = new ArrayList<>();
+        log.load(record -> records.add(fields(record)));
+        return records;
+    }
+
+    static TrafficBucket record(int i) {
+        TrafficBucket bucket = new TrafficBucket();
+        bucket.set(i * 60_000L, i * 1000L, i * 2000L, i, i * 10L, i * 2L, i * 20L, i * 100L, i * 200L);
+        return bucket;
+    }
+
+    static long[] fields(TrafficBucket record) {
+        return new long[] {record.start, record.txBytes, record.rxBytes,
+                record.txMinRate, record.txMaxRate, record.rxMinRate, record.rxMaxRate,
+                record.mobileTxBytes, record.mobileRxBytes};
+    }
+}
@@ -0,0 +1,125 @@
+/*
+ * Copyright (C) 2025 Martin Pfeffer
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.celox.netbar;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Differenzen und Raten der {@link TrafficRateEngine} bei Überlauf, Zurücksetzen und Lücken.
+ */
+public class TrafficRateEngineTest {
+    private static final long SECOND = 1_000_000_000L;
+    private static final long UNSUPPORTED = -1; // TrafficStats.UNSUPPORTED
+
+    @Test
+    public void firstUpdateOnlySetsBaseline() {
+        TrafficRateEngine engine = new TrafficRateEngine();
+        assertFalse(engine.update(SECOND, 1000, 2000, 0, 0));
+        assertTrue(engine.update(2 * SECOND, 1500, 4000, 0, 0));
+        assertEquals(500, engine.getTxBytes());
+        assertEquals(2000, engine.getRxBytes());
+        assertEquals(500, engine.getTxRate());
+        assertEquals(2000, engine.getRxRate());
+        assertEquals(1000, engine.getElapsedMillis());
+    }
+
+    @Test
+    public void rateUsesActualElapsedTime() {
+        TrafficRateEngine engine = new TrafficRateEngine();
+        engine.update(SECOND, 0, 0, 0, 0);
+        // Verspäteter Tick: 2,5 s statt 1 s
+        assertTrue(engine.update(SECOND + 2_500_000_000L, 5000, 10_000, 0, 0));
+        assertEquals(2000, engine.getTxRate());
+        assertEquals(4000, engine.getRxRate());
+        assertEquals(2500, engine.getElapsedMillis());
+    }
+
+    @Test
+    public void wrapOf32BitCounterIsBridged() {
+        TrafficRateEngine engine = new TrafficRateEngine();
+        long wrap = 1L << 32;
+        engine.update(SECOND, wrap - 100, 1000, 0, 0);
+        assertTrue(engine.update(2 * SECOND, 50, 2000, 0, 0));
+        assertEquals(150, engine.getTxBytes());
+        assertEquals(1000, engine.getRxBytes());
+        assertEquals(1, engine.getWrapCount());
+        assertEquals(0, engine.getResetCount());
+    }
+
+    @Test
+    public void counterResetCountsAsZero() {
+        TrafficRateEngine engine = new TrafficRateEngine();
+        engine.update(SECOND, 10_000_000_000L, 5000, 0, 0);
+        // 64-Bit-Zähler springt zurück: kein Überlauf möglich
+        assertTrue(engine.update(2 * SECOND, 100, 4000, 0, 0));
+        assertEquals(0, engine.getTxBytes());
+        // Kleiner Rücksprung eines 32-Bit-Werts: ebenfalls Zurücksetzen
+        assertEquals(0, engine.getRxBytes());
+        assertEquals(2, engine.getResetCount());
+        assertEquals(0, engine.getWrapCount());
+
+        // Danach wird vom neuen Stand aus weitergezählt
+        assertTrue(engine.update(3 * SECOND, 300, 4500, 0, 0));
+        assertEquals(200, engine.getTxBytes());
+        assertEquals(500, engine.getRxBytes());
+    }
+
+    @Test
+    public void unsupportedCountersStartNewBaseline() {
+        TrafficRateEngine engine = new TrafficRateEngine();
+        engine.update(SECOND, 1000, 1000, 0, 0);
+        assertFalse(engine.update(2 * SECOND, UNSUPPORTED, UNSUPPORTED, 0, 0));
+        // Der erste gültige Stand nach der Lücke ist nur Basis
+        assertFalse(engine.update(3 * SECOND, 50_000, 60_000, 0, 0));
+        assertTrue(engine.update(4 * SECOND, 51_000, 61_000, 0, 0));
+        assertEquals(1000, engine.getTxBytes());
+        assertEquals(1000, engine.getRxBytes());
+        assertEquals(0, engine.getResetCount());
+    }
+
+    @Test
+    public void clockNotAdvancingStartsNewBaseline() {
+        TrafficRateEngine engine = new TrafficRateEngine();
+        engine.update(5 * SECOND, 1000, 1000, 0, 0);
+        assertFalse(engine.update(5 * SECOND, 2000, 2000, 0, 0));
+        assertFalse(engine.update(4 * SECOND, 3000, 3000, 0, 0));
+        assertTrue(engine.update(5 * SECOND, 3500, 3100, 0, 0));
+        assertEquals(500, engine.getTxBytes());
+        assertEquals(100, engine.getRxBytes());
+    }
+
+    @Test
+    public void mobileCountersAreOptionalAndCapped() {
+        TrafficRateEngine engine = new TrafficRateEngine();
+        engine.update(SECOND, 1000, 1000, UNSUPPORTED, UNSUPPORTED);
+        assertTrue(engine.update(2 * SECOND, 2000, 2000, UNSUPPORTED, UNSUPPORTED));
+        assertEquals(0, engine.getMobileTxBytes());
+        assertEquals(0, engine.getMobileRxBytes());
+
+        // Mobilfunk taucht auf: erst ab dem nächsten Stand gezählt
+        assertTrue(engine.update(3 * SECOND, 3000, 3000, 500, 700));
+        assertEquals(0, engine.getMobileTxBytes());
+        assertEquals(0, engine.getMobileRxBytes());
+
+        // Der Anteil kann nicht größer als der Gesamtverkehr sein
+        assertTrue(engine.update(4 * SECOND, 3100, 3200, 900, 800));
+        assertEquals(100, engine.getMobileTxBytes());
+        assertEquals(100, engine.getMobileRxBytes());
+    }
+}
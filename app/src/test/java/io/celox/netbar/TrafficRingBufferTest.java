@@ -0,0 +1,158 @@
+/*
+ * Copyright (C) 2025 Martin Pfeffer
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.celox.netbar;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Überlauf, Ablauf und Gültigkeit der Sichten des {@link TrafficRingBuffer}.
+ */
+public class TrafficRingBufferTest {
+    private static final long RESOLUTION_MS = 1000;
+
+    @Test
+    public void wrapDropsOldest() {
+        TrafficRingBuffer buffer = new TrafficRingBuffer(5, 2);
+        for (int i = 0; i < 12; i++) {
+            buffer.add(bucket(i));
+        }
+        assertEquals(5, buffer.size());
+        TrafficBucket record = new TrafficBucket();
+        for (int i = 0; i < 5; i++) {
+            assertEquals(timestamp(7 + i), buffer.getTimestamp(i));
+            buffer.get(i, record);
+            assertEquals(7 + i, record.txBytes);
+        }
+
+        TrafficSeries series = buffer.snapshot(Long.MIN_VALUE, RESOLUTION_MS);
+        assertEquals(5, series.size());
+        for (int i = 0; i < 5; i++) {
+            assertEquals(timestamp(7 + i), series.getTimestamp(i));
+            assertEquals(7 + i, series.getTxBytes(i));
+            assertEquals(2 * (7 + i), series.getRxBytes(i));
+        }
+    }
+
+    @Test(expected = IndexOutOfBoundsException.class)
+    public void indexBeyondSizeThrows() {
+        TrafficRingBuffer buffer = new TrafficRingBuffer(5, 1);
+        buffer.add(bucket(0));
+        buffer.getTimestamp(1);
+    }
+
+    @Test
+    public void removeOlderThanDropsPrefix() {
+        TrafficRingBuffer buffer = new TrafficRingBuffer(10, 1);
+        for (int i = 0; i < 8; i++) {
+            buffer.add(bucket(i));
+        }
+        buffer.removeOlderThan(timestamp(3));
+        assertEquals(5, buffer.size());
+        assertEquals(timestamp(3), buffer.getTimestamp(0));
+
+        buffer.removeOlderThan(timestamp(3));
+        assertEquals(5, buffer.size());
+
+        buffer.removeOlderThan(Long.MAX_VALUE);
+        assertTrue(buffer.isEmpty());
+        assertTrue(buffer.snapshot(Long.MIN_VALUE, RESOLUTION_MS).isEmpty());
+    }
+
+    @Test
+    public void snapshotStartsAtTimestamp() {
+        TrafficRingBuffer buffer = new TrafficRingBuffer(10, 1);
+        for (int i = 0; i < 10; i++) {
+            buffer.add(bucket(i));
+        }
+        TrafficSeries series = buffer.snapshot(timestamp(4) - 1, RESOLUTION_MS);
+        assertEquals(6, series.size());
+        assertEquals(timestamp(4), series.getTimestamp(0));
+        assertTrue(buffer.snapshot(timestamp(10), RESOLUTION_MS).isEmpty());
+    }
+
+    @Test
+    public void snapshotStaysValidWithinSlack() {
+        int capacity = 10;
+        int slack = 4;
+        TrafficRingBuffer buffer = new TrafficRingBuffer(capacity, slack);
+        for (int i = 0; i < capacity; i++) {
+            buffer.add(bucket(i));
+        }
+        TrafficSeries series = buffer.snapshot(Long.MIN_VALUE, RESOLUTION_MS);
+        long version = series.getVersion();
+
+        for (int added = 1; added < slack; added++) {
+            buffer.add(bucket(capacity + added - 1));
+            assertTrue(series.isValid());
+            // Verworfene Datenpunkte sind in der Sicht unverändert lesbar
+            for (int i = 0; i < capacity; i++) {
+                assertEquals(timestamp(i), series.getTimestamp(i));
+                assertEquals(i, series.getTxBytes(i));
+            }
+        }
+        assertEquals(capacity, series.size());
+
+        buffer.add(bucket(capacity + slack - 1));
+        assertFalse(series.isValid());
+        assertTrue(buffer.snapshot(Long.MIN_VALUE, RESOLUTION_MS).getVersion() > version);
+    }
+
+    @Test
+    public void clearKeepsSequence() {
+        TrafficRingBuffer buffer = new TrafficRingBuffer(4, 2);
+        for (int i = 0; i < 4; i++) {
+            buffer.add(bucket(i));
+        }
+        TrafficSeries before = buffer.snapshot(Long.MIN_VALUE, RESOLUTION_MS);
+        buffer.clear();
+        assertTrue(buffer.isEmpty());
+        assertTrue(before.isValid());
+        assertEquals(timestamp(0), before.getTimestamp(0));
+
+        buffer.add(bucket(10));
+        TrafficSeries after = buffer.snapshot(Long.MIN_VALUE, RESOLUTION_MS);
+        assertEquals(1, after.size());
+        assertEquals(timestamp(10), after.getTimestamp(0));
+        assertTrue(after.getVersion() > before.getVersion());
+        assertEquals(before.getFirstSequence() + 4, after.getFirstSequence());
+    }
+
+    @Test
+    public void copyIsIndependent() {
+        TrafficRingBuffer buffer = new TrafficRingBuffer(3, 1);
+        for (int i = 0; i < 5; i++) {
+            buffer.add(bucket(i));
+        }
+        TrafficRingBuffer copy = buffer.copy();
+        buffer.add(bucket(5));
+        assertEquals(3, copy.size());
+        assertEquals(timestamp(2), copy.getTimestamp(0));
+        assertEquals(timestamp(4), copy.getTimestamp(2));
+    }
+
+    private static long timestamp(int i) {
+        return 1_760_000_000_000L + i * RESOLUTION_MS;
+    }
+
+    private static TrafficBucket bucket(int i) {
+        TrafficBucket bucket = new TrafficBucket();
+        bucket.set(timestamp(i), i, 2L * i, i, i, 2L * i, 2L * i, 0, 0);
+        return bucket;
+    }
+}
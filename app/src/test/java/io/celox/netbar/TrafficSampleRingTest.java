@@ -0,0 +1,129 @@
+/*
+ * Copyright (C) 2025 Martin Pfeffer
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.celox.netbar;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * Schreib- und Leseprotokoll des {@link TrafficSampleRing} in einem Thread; halb geschriebene
+ * Slots werden über ihren Stempel nachgestellt.
+ */
+public class TrafficSampleRingTest {
+    private static final long START = 1_760_000_000_000L;
+
+    private ByteBuffer memory;
+    private TrafficSampleRing ring;
+
+    @Before
+    public void setUp() {
+        memory = ByteBuffer.allocate(TrafficSampleRing.SIZE);
+        ring = new TrafficSampleRing(memory);
+    }
+
+    @Test
+    public void appendedSamplesAreReadInOrder() {
+        for (int i = 0; i < 5; i++) {
+            append(i);
+        }
+        List<long[]> samples = new ArrayList<>();
+        long next = read(0, samples);
+
+        assertEquals(5, next);
+        assertEquals(5, samples.size());
+        for (int i = 0; i < 5; i++) {
+            assertArrayEquals(new long[] {i, START + i * 1000L, i, 2 * i, 3 * i, 4 * i},
+                    samples.get(i));
+        }
+
+        // Ab der zurückgegebenen Sequenz gibt es erst nach dem nächsten Wert etwas Neues
+        samples.clear();
+        assertEquals(5, read(next, samples));
+        assertTrue(samples.isEmpty());
+        append(5);
+        assertEquals(6, read(next, samples));
+        assertEquals(1, samples.size());
+        assertEquals(5, samples.get(0)[0]);
+    }
+
+    @Test
+    public void overwrittenSamplesAreSkipped() {
+        int count = TrafficSampleRing.CAPACITY + 10;
+        for (int i = 0; i < count; i++) {
+            append(i);
+        }
+        List<long[]> samples = new ArrayList<>();
+        assertEquals(count, read(3, samples));
+
+        assertEquals(TrafficSampleRing.CAPACITY, samples.size());
+        assertEquals(10, samples.get(0)[0]);
+        assertEquals(count - 1, samples.get(samples.size() - 1)[0]);
+    }
+
+    @Test
+    public void slotWithoutMatchingStampIsSkipped() {
+        for (int i = 0; i < 4; i++) {
+            append(i);
+        }
+        // Schreiber mitten in Slot 1 (Stempel 0), Slot 2 mit dem Stempel eines anderen Werts
+        memory.putLong(slotOffset(1), 0);
+        memory.putLong(slotOffset(2), 2);
+
+        List<long[]> samples = new ArrayList<>();
+        assertEquals(4, read(0, samples));
+        assertEquals(2, samples.size());
+        assertEquals(0, samples.get(0)[0]);
+        assertEquals(3, samples.get(1)[0]);
+    }
+
+    @Test
+    public void readOnlyMappingCanBeRead() {
+        append(0);
+        List<long[]> samples = new ArrayList<>();
+        TrafficSampleRing.read(memory.asReadOnlyBuffer(), 0,
+                (sequence, timestamp, tx, rx, mobileTx, mobileRx) ->
+                        samples.add(new long[] {sequence}));
+        assertEquals(1, samples.size());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void foreignMemoryIsRejected() {
+        TrafficSampleRing.read(ByteBuffer.allocate(TrafficSampleRing.SIZE), 0,
+                (sequence, timestamp, tx, rx, mobileTx, mobileRx) -> fail());
+    }
+
+    private void append(int i) {
+        ring.append(START + i * 1000L, i, 2 * i, 3 * i, 4 * i);
+    }
+
+    private long read(long fromSequence, List<long[]> samples) {
+        return TrafficSampleRing.read(memory, fromSequence,
+                (sequence, timestamp, tx, rx, mobileTx, mobileRx) ->
+                        samples.add(new long[] {sequence, timestamp, tx, rx, mobileTx, mobileRx}));
+    }
+
+    private static int slotOffset(long sequence) {
+        return TrafficSampleRing.HEADER_SIZE
+                + (int) (sequence % TrafficSampleRing.CAPACITY) * TrafficSampleRing.SLOT_SIZE;
+    }
+}
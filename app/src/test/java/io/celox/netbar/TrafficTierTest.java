@@ -0,0 +1,208 @@
+/*
+ * Copyright (C) 2025 Martin Pfeffer
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.celox.netbar;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Calendar;
+import java.util.TimeZone;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+/**
+ * Ausrichtung und Weitergabe der Buckets einer {@link TrafficTier}, auch an Tagen mit
+ * Zeitumstellung.
+ */
+public class TrafficTierTest {
+    private static final long MINUTE_MS = TimeUnit.MINUTES.toMillis(1);
+    private static final long HOUR_MS = TimeUnit.HOURS.toMillis(1);
+    private static final long DAY_MS = TimeUnit.DAYS.toMillis(1);
+
+    private TimeZone defaultTimeZone;
+    private TrafficWriter writer;
+
+    @Before
+    public void setUp() {
+        defaultTimeZone = TimeZone.getDefault();
+        TimeZone.setDefault(TimeZone.getTimeZone("Europe/Berlin"));
+        writer = new TrafficWriter(new TrafficWriter.FlushPolicy(1000, 16, false),
+                new TrafficDiagnostics());
+    }
+
+    @After
+    public void tearDown() {
+        TimeZone.setDefault(defaultTimeZone);
+    }
+
+    @Test
+    public void hourBucketsFollowTheClock() {
+        TrafficTier hours = new TrafficTier(HOUR_MS, DAY_MS, null, null, null, writer);
+        long dayStart = localTime(2026, Calendar.OCTOBER, 20);
+        for (int hour = 0; hour < 3; hour++) {
+            // Mehrere Datenpunkte innerhalb der Stunde, der letzte kurz vor ihrem Ende
+            for (long offset = 0; offset < HOUR_MS; offset += 20 * MINUTE_MS) {
+                hours.addSample(dayStart + hour * HOUR_MS + offset, 10, 20, 0, 0);
+            }
+            hours.addSample(dayStart + (hour + 1) * HOUR_MS - 1, 1, 2, 0, 0);
+        }
+        hours.addSample(dayStart + 3 * HOUR_MS, 1, 1, 0, 0);
+
+        TrafficRingBuffer completed = hours.getBuffer();
+        assertEquals(3, completed.size());
+        TrafficBucket bucket = new TrafficBucket();
+        for (int hour = 0; hour < 3; hour++) {
+            completed.get(hour, bucket);
+            assertEquals(dayStart + hour * HOUR_MS, bucket.start);
+            assertEquals(31, bucket.txBytes);
+            assertEquals(62, bucket.rxBytes);
+            assertEquals(1, bucket.txMinRate);
+            assertEquals(10, bucket.txMaxRate);
+            assertEquals(2, bucket.rxMinRate);
+            assertEquals(20, bucket.rxMaxRate);
+        }
+    }
+
+    @Test
+    public void hoursRollUpIntoLocalDay() {
+        TrafficTier days = new TrafficTier(DAY_MS, 365 * DAY_MS, null, null, null, writer);
+        TrafficTier hours = new TrafficTier(HOUR_MS, 7 * DAY_MS, null, null, days, writer);
+        long dayStart = localTime(2026, Calendar.OCTOBER, 20);
+        long nextDay = localTime(2026, Calendar.OCTOBER, 21);
+        for (long time = dayStart; time < nextDay; time += HOUR_MS) {
+            hours.addSample(time, 100, 200, 10, 20);
+        }
+        hours.addSample(nextDay, 1, 1, 0, 0);
+        hours.addSample(nextDay + HOUR_MS, 1, 1, 0, 0);
+
+        TrafficRingBuffer completed = days.getBuffer();
+        assertEquals(1, completed.size());
+        TrafficBucket day = new TrafficBucket();
+        completed.get(0, day);
+        assertEquals(dayStart, day.start);
+        assertEquals(24 * 100, day.txBytes);
+        assertEquals(24 * 200, day.rxBytes);
+        assertEquals(24 * 10, day.mobileTxBytes);
+        assertEquals(24 * 20, day.mobileRxBytes);
+    }
+
+    @Test
+    public void dayBucketsStartAtLocalMidnightAcrossDstChanges() {
+        TrafficTier days = new TrafficTier(DAY_MS, 365 * DAY_MS, null, null, null, writer);
+        // Umstellung auf Sommerzeit (23 Stunden) und zurück (25 Stunden)
+        assertOneBucketPerDay(days, localTime(2026, Calendar.MARCH, 28), 3);
+        assertOneBucketPerDay(days, localTime(2026, Calendar.OCTOBER, 24), 3);
+    }
+
+    @Test
+    public void hourBucketsFollowTheClockOnDstChange() {
+        TrafficTier hours = new TrafficTier(HOUR_MS, DAY_MS, null, null, null, writer);
+        long dayStart = localTime(2026, Calendar.OCTOBER, 25);
+        for (long time = dayStart; time < dayStart + 25 * HOUR_MS; time += HOUR_MS) {
+            assertEquals(time, hours.bucketStartOf(time));
+            assertEquals(time, hours.bucketStartOf(time + HOUR_MS - 1));
+        }
+    }
+
+    @Test
+    public void hoursRollUpIntoOneDayOnDstChange() {
+        TrafficTier days = new TrafficTier(DAY_MS, 365 * DAY_MS, null, null, null, writer);
+        TrafficTier hours = new TrafficTier(HOUR_MS, 7 * DAY_MS, null, null, days, writer);
+        long dayStart = localTime(2026, Calendar.OCTOBER, 25);
+        long nextDay = localTime(2026, Calendar.OCTOBER, 26);
+        assertEquals(25 * HOUR_MS, nextDay - dayStart);
+        for (long time = dayStart; time < nextDay; time += HOUR_MS) {
+            hours.addSample(time, 100, 200, 0, 0);
+        }
+        hours.addSample(nextDay, 1, 1, 0, 0);
+        hours.addSample(nextDay + HOUR_MS, 1, 1, 0, 0);
+
+        // Der 25. Oktober ist ein einziger Tages-Bucket mit allen 25 Stunden
+        TrafficRingBuffer completed = days.getBuffer();
+        assertEquals(1, completed.size());
+        TrafficBucket day = new TrafficBucket();
+        completed.get(0, day);
+        assertEquals(dayStart, day.start);
+        assertEquals(25 * 100, day.txBytes);
+        assertEquals(25 * 200, day.rxBytes);
+        assertEquals(nextDay, days.getOpenBucket().start);
+    }
+
+    @Test
+    public void ratesComeFromFinestTier() {
+        TrafficTier hours = new TrafficTier(HOUR_MS, DAY_MS, null, null, null, writer);
+        TrafficTier minutes = new TrafficTier(MINUTE_MS, HOUR_MS, null, null, hours, writer);
+        long start = localTime(2026, Calendar.OCTOBER, 20);
+        minutes.addSample(start, 100, 200, 0, 0);
+        minutes.addSample(start + 1000, 500, 0, 0, 0);
+        minutes.addSample(start + MINUTE_MS, 300, 300, 0, 0);
+        minutes.addSample(start + HOUR_MS, 1, 1, 0, 0);
+        minutes.addSample(start + HOUR_MS + MINUTE_MS, 1, 1, 0, 0);
+
+        // Die Stunde kennt die Spitze der Sekundenwerte, nicht nur die Minutensummen
+        TrafficRingBuffer completed = hours.getBuffer();
+        assertEquals(1, completed.size());
+        TrafficBucket hour = new TrafficBucket();
+        completed.get(0, hour);
+        assertEquals(900, hour.txBytes);
+        assertEquals(100, hour.txMinRate);
+        assertEquals(500, hour.txMaxRate);
+        assertEquals(0, hour.rxMinRate);
+        assertEquals(300, hour.rxMaxRate);
+    }
+
+    @Test
+    public void lateSampleStaysInOpenBucket() {
+        TrafficTier minutes = new TrafficTier(MINUTE_MS, HOUR_MS, null, null, null, writer);
+        long start = localTime(2026, Calendar.OCTOBER, 20);
+        minutes.addSample(start + MINUTE_MS, 5, 5, 0, 0);
+        // Die Uhr läuft zurück: der Datenpunkt zählt zur offenen Minute
+        minutes.addSample(start, 7, 7, 0, 0);
+        minutes.addSample(start + 2 * MINUTE_MS, 1, 1, 0, 0);
+
+        TrafficRingBuffer completed = minutes.getBuffer();
+        assertEquals(1, completed.size());
+        TrafficBucket minute = new TrafficBucket();
+        completed.get(0, minute);
+        assertEquals(start + MINUTE_MS, minute.start);
+        assertEquals(12, minute.txBytes);
+    }
+
+    private static void assertOneBucketPerDay(TrafficTier tier, long firstDay, int dayCount) {
+        Calendar calendar = Calendar.getInstance();
+        calendar.setTimeInMillis(firstDay);
+        for (int day = 0; day < dayCount; day++) {
+            long start = calendar.getTimeInMillis();
+            calendar.add(Calendar.DAY_OF_MONTH, 1);
+            long end = calendar.getTimeInMillis();
+            for (long time = start; time < end; time += 15 * 60_000) {
+                assertEquals(start, tier.bucketStartOf(time));
+            }
+            assertEquals(start, tier.bucketStartOf(end - 1));
+            assertEquals(end, tier.bucketStartOf(end));
+        }
+    }
+
+    private static long localTime(int year, int month, int day) {
+        Calendar calendar = Calendar.getInstance();
+        calendar.clear();
+        calendar.set(year, month, day);
+        return calendar.getTimeInMillis();
+    }
+}
@@ -0,0 +1,232 @@
+/*
+ * Copyright (C) 2025 Martin Pfeffer
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.celox.netbar;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+/**
+ * Bündelung, Gegendruck und blockierendes Schreiben des {@link TrafficWriter}.
+ */
+public class TrafficWriterTest {
+    private static final long HOUR_MS = TimeUnit.HOURS.toMillis(1);
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void appendsAreWrittenInBatches() throws Exception {
+        TrafficWriter writer = new TrafficWriter(new TrafficWriter.FlushPolicy(HOUR_MS, 4, false),
+                new TrafficDiagnostics());
+        File file = folder.newFile("log.bin");
+        RecordingLog log = new RecordingLog(file, null);
+        log.load(record -> { });
+
+        for (int i = 1; i <= 3; i++) {
+            writer.append(log, TrafficHistoryLogTest.record(i));
+        }
+        awaitIdle(writer);
+        assertTrue(log.batches.isEmpty());
+
+        writer.append(log, TrafficHistoryLogTest.record(4));
+        assertEquals(4, nextBatch(log));
+
+        writer.append(log, TrafficHistoryLogTest.record(5));
+        writer.append(log, TrafficHistoryLogTest.record(6));
+        writer.flush();
+        assertEquals(2, nextBatch(log));
+        awaitIdle(writer);
+
+        List<TrafficBucket> loaded = load(file);
+        assertEquals(6, loaded.size());
+        assertEquals(6 * 60_000L, loaded.get(5).start);
+    }
+
+    @Test
+    public void rewriteDiscardsPendingAppends() throws Exception {
+        TrafficWriter writer = new TrafficWriter(new TrafficWriter.FlushPolicy(HOUR_MS, 16, false),
+                new TrafficDiagnostics());
+        File file = folder.newFile("log.bin");
+        RecordingLog log = new RecordingLog(file, null);
+        log.load(record -> { });
+
+        TrafficRingBuffer snapshot = new TrafficRingBuffer(8, 1);
+        for (int i = 1; i <= 3; i++) {
+            TrafficBucket record = TrafficHistoryLogTest.record(i);
+            writer.append(log, record);
+            snapshot.add(record);
+        }
+        // Die neue Datei enthält die gesammelten Datensätze bereits
+        writer.rewrite(log, snapshot);
+        writer.flush();
+        awaitIdle(writer);
+
+        assertTrue(log.batches.isEmpty());
+        assertEquals(3, load(file).size());
+    }
+
+    @Test
+    public void flushAndWaitReturnsOnceEverythingIsWritten() throws Exception {
+        TrafficWriter writer = new TrafficWriter(new TrafficWriter.FlushPolicy(HOUR_MS, 16, false),
+                new TrafficDiagnostics());
+        File file = folder.newFile("log.bin");
+        File stateFile = new File(folder.getRoot(), "state.bin");
+        TrafficHistoryLog log = new TrafficHistoryLog(file);
+        log.load(record -> { });
+
+        for (int i = 1; i <= 3; i++) {
+            writer.append(log, TrafficHistoryLogTest.record(i));
+        }
+        // Auch Aufträge nach den gesammelten Datensätzen sind danach erledigt
+        writer.replaceFile(stateFile, new byte[] {1, 2, 3});
+        assertTrue(writer.flushAndWait(5000));
+
+        assertEquals(3, load(file).size());
+        assertEquals(3, stateFile.length());
+    }
+
+    @Test
+    public void flushAndWaitGivesUpAfterTimeout() throws Exception {
+        TrafficWriter writer = new TrafficWriter(new TrafficWriter.FlushPolicy(HOUR_MS, 16, false),
+                new TrafficDiagnostics());
+        CountDownLatch release = new CountDownLatch(1);
+        RecordingLog log = new RecordingLog(folder.newFile("log.bin"), release);
+        log.load(record -> { });
+
+        writer.append(log, TrafficHistoryLogTest.record(1));
+        assertFalse(writer.flushAndWait(50));
+
+        release.countDown();
+        assertTrue(writer.flushAndWait(5000));
+        assertEquals(1, nextBatch(log));
+    }
+
+    @Test
+    public void fullQueueBlocksProducerWithoutLosingRecords() throws Exception {
+        TrafficWriter writer = new TrafficWriter(new TrafficWriter.FlushPolicy(HOUR_MS, 1, false),
+                new TrafficDiagnostics());
+        CountDownLatch release = new CountDownLatch(1);
+        File file = folder.newFile("log.bin");
+        RecordingLog log = new RecordingLog(file, release);
+        log.load(record -> { });
+
+        int total = 1000; // Deutlich mehr, als die Warteschlange fasst
+        Thread producer = new Thread(() -> {
+            for (int i = 0; i < total; i++) {
+                writer.append(log, TrafficHistoryLogTest.record(i));
+            }
+        });
+        producer.start();
+
+        // Der Schreib-Thread hängt im ersten Schreiben fest, bis die Warteschlange voll ist
+        long deadline = System.currentTimeMillis() + 5000;
+        while (producer.getState() != Thread.State.WAITING && System.currentTimeMillis() < deadline) {
+            Thread.sleep(1);
+        }
+        assertEquals(Thread.State.WAITING, producer.getState());
+
+        release.countDown();
+        producer.join(5000);
+        assertFalse(producer.isAlive());
+        writer.flush();
+        awaitIdle(writer);
+
+        int written = 0;
+        Integer batch;
+        while ((batch = log.batches.poll()) != null) {
+            written += batch;
+        }
+        assertEquals(total, written);
+        assertEquals(total, load(file).size());
+    }
+
+    /**
+     * Wartet, bis der Schreib-Thread alle bisher eingereihten Aufträge abgearbeitet hat.
+     */
+    private void awaitIdle(TrafficWriter writer) throws Exception {
+        CountDownLatch done = new CountDownLatch(1);
+        TrafficHistoryLog marker = new TrafficHistoryLog(folder.newFile()) {
+            @Override
+            int rewrite(TrafficRingBuffer data) {
+                done.countDown();
+                return 0;
+            }
+        };
+        writer.rewrite(marker, new TrafficRingBuffer(1, 1));
+        assertTrue(done.await(5, TimeUnit.SECONDS));
+    }
+
+    private static int nextBatch(RecordingLog log) throws InterruptedException {
+        Integer size = log.batches.poll(5, TimeUnit.SECONDS);
+        assertNotNull(size);
+        return size;
+    }
+
+    private static List<TrafficBucket> load(File file) throws IOException {
+        List<TrafficBucket> records = new ArrayList<>();
+        TrafficHistoryLog log = new TrafficHistoryLog(file);
+        log.load(record -> {
+            TrafficBucket copy = new TrafficBucket();
+            copy.set(record.start, record.txBytes, record.rxBytes,
+                    record.txMinRate, record.txMaxRate, record.rxMinRate, record.rxMaxRate,
+                    record.mobileTxBytes, record.mobileRxBytes);
+            records.add(copy);
+        });
+        log.close();
+        return records;
+    }
+
+    /**
+     * Log, das die Größe jedes geschriebenen Bündels meldet und auf Wunsch bis zur Freigabe
+     * blockiert.
+     */
+    private static final class RecordingLog extends TrafficHistoryLog {
+        final BlockingQueue<Integer> batches = new LinkedBlockingQueue<>();
+        private final CountDownLatch release;
+
+        RecordingLog(File file, CountDownLatch release) {
+            super(file);
+            this.release = release;
+        }
+
+        @Override
+        int appendAll(List<TrafficBucket> records, boolean fsync) throws IOException {
+            if (release != null) {
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    throw new IOException(e);
+                }
+            }
+            int bytes = super.appendAll(records, fsync);
+            batches.add(records.size());
+            return bytes;
+        }
+    }
+}
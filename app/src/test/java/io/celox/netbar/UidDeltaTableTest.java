@@ -0,0 +1,102 @@
+/*
+ * Copyright (C) 2025 Martin Pfeffer
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.celox.netbar;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Anhängen, Auslesen und Entfernen von Intervallen der {@link UidDeltaTable}.
+ */
+public class UidDeltaTableTest {
+    @Test
+    public void onlyUidsWithTrafficAreStored() {
+        UidDeltaTable table = new UidDeltaTable(4, 8);
+        UidCounters deltas = new UidCounters();
+        deltas.add(10_001, 100, 0);
+        deltas.add(10_002, 0, 0);
+        deltas.add(10_003, 0, 50);
+        table.addInterval(1000, deltas);
+
+        assertFalse(table.isEmpty());
+        assertEquals(1000, table.getOldestStart());
+        assertEquals(2, table.getOldestEntryCount());
+        assertEquals(10_001, table.getOldestUid(0));
+        assertEquals(100, table.getOldestTxBytes(0));
+        assertEquals(10_003, table.getOldestUid(1));
+        assertEquals(50, table.getOldestRxBytes(1));
+    }
+
+    @Test
+    public void oldestIntervalsAreRemovedInOrder() {
+        UidDeltaTable table = new UidDeltaTable(3, 6);
+        UidCounters deltas = new UidCounters();
+        long start = 0;
+        // Mehrere Umläufe beider Ringpuffer
+        for (int round = 0; round < 20; round++) {
+            deltas.clear();
+            int entries = 1 + round % 3;
+            for (int i = 0; i < entries; i++) {
+                deltas.add(round * 10 + i, round, i);
+            }
+            while (!table.hasRoomFor(entries)) {
+                table.removeOldest();
+            }
+            table.addInterval(start, deltas);
+            start += 1000;
+        }
+
+        // Übrig sind die jüngsten Intervalle, die zusammen in beide Puffer passen
+        int round = 17;
+        while (!table.isEmpty()) {
+            assertEquals(round * 1000L, table.getOldestStart());
+            int entries = 1 + round % 3;
+            assertEquals(entries, table.getOldestEntryCount());
+            for (int i = 0; i < entries; i++) {
+                assertEquals(round * 10 + i, table.getOldestUid(i));
+                assertEquals(round, table.getOldestTxBytes(i));
+                assertEquals(i, table.getOldestRxBytes(i));
+            }
+            table.removeOldest();
+            round++;
+        }
+        assertEquals(20, round);
+    }
+
+    @Test
+    public void hasRoomForChecksBothCapacities() {
+        UidDeltaTable table = new UidDeltaTable(2, 4);
+        UidCounters deltas = new UidCounters();
+        deltas.add(1, 1, 1);
+        deltas.add(2, 1, 1);
+        deltas.add(3, 1, 1);
+        assertTrue(table.hasRoomFor(3));
+        table.addInterval(0, deltas);
+        assertFalse(table.hasRoomFor(2)); // Nur noch ein Eintrag frei
+        assertTrue(table.hasRoomFor(1));
+
+        deltas.clear();
+        deltas.add(4, 1, 1);
+        table.addInterval(1000, deltas);
+        assertFalse(table.hasRoomFor(0)); // Keine Intervalle mehr frei
+
+        table.clear();
+        assertTrue(table.isEmpty());
+        assertTrue(table.hasRoomFor(4));
+    }
+}
@@ -0,0 +1,76 @@
+/*
+ * Copyright (C) 2025 Martin Pfeffer
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+plugins {
+    `java-library`
+    alias(libs.plugins.jmh)
+}
+
+// Die gemessenen Klassen werden direkt aus den App-Quellen übersetzt. Sie sind bis auf wenige
+// Android-Typen reines Java; für diese liegen Stubs in src/stubs/java.
+val benchmarkedSources = listOf(
+    "LiveTrafficSnapshot",
+    "LttbDownsampler",
+    "MetricHistogram",
+    "NetworkTrafficManager",
+    "TrafficAggregates",
+    "TrafficArchive",
+    "TrafficBlockCodec",
+    "TrafficBucket",
+    "TrafficChartData",
+    "TrafficDiagnostics",
+    "TrafficEventLog",
+    "TrafficFormatter",
+    "TrafficHistoryLog",
+    "TrafficRingBuffer",
+    "TrafficSeries",
+    "TrafficSummary",
+    "TrafficTier",
+    "TrafficWriter",
+    "UidCounters",
+    "UidDeltaTable",
+    "UidTrafficAccounting",
+    "UidTrafficRanking",
+    "UidTrafficReader",
+    "UidUsage"
+).map { "io/celox/netbar/$it.java" }
+
+sourceSets {
+    main {
+        java {
+            setSrcDirs(listOf("../app/src/main/java", "src/stubs/java"))
+            include(benchmarkedSources)
+            include("android/**", "com/github/**")
+        }
+    }
+}
+
+java {
+    sourceCompatibility = JavaVersion.VERSION_11
+    targetCompatibility = JavaVersion.VERSION_11
+}
+
+dependencies {
+    implementation(libs.annotation)
+}
+
+jmh {
+    jmhVersion.set(libs.versions.jmh)
+    // Allokationsrate (gc.alloc.rate, gc.alloc.rate.norm) neben dem Durchsatz ausgeben
+    profilers.set(listOf("gc"))
+    resultFormat.set("JSON")
+}
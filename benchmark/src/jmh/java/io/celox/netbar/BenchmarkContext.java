@@ -0,0 +1,70 @@
+/*
+ * Copyright (C) 2025 Martin Pfeffer
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.celox.netbar;
+
+import android.content.Context;
+
+import java.io.File;
+
+/**
+ * Minimaler {@link Context} für Benchmarks, dessen Dateiverzeichnis ein temporärer Ordner ist.
+ */
+final class BenchmarkContext extends Context {
+    private final File filesDir;
+
+    BenchmarkContext(File filesDir) {
+        this.filesDir = filesDir;
+    }
+
+    @Override
+    public Context getApplicationContext() {
+        return this;
+    }
+
+    @Override
+    public File getFilesDir() {
+        return filesDir;
+    }
+
+    @Override
+    public boolean deleteFile(String name) {
+        return new File(filesDir, name).delete();
+    }
+
+    @Override
+    public Object getSystemService(String name) {
+        return null;
+    }
+
+    @Override
+    public String getPackageName() {
+        return "io.celox.netbar";
+    }
+
+    /**
+     * Löscht ein Verzeichnis samt Inhalt.
+     */
+    static void deleteRecursively(File file) {
+        File[] children = file.listFiles();
+        if (children != null) {
+            for (File child : children) {
+                deleteRecursively(child);
+            }
+        }
+        file.delete();
+    }
+}
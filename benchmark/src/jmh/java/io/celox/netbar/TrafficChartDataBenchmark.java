@@ -0,0 +1,90 @@
+/*
+ * Copyright (C) 2025 Martin Pfeffer
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.celox.netbar;
+
+import com.github.mikephil.charting.data.Entry;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Aufbereitung der Chartdaten für eine Reihe mit {@code samples} Datenpunkten, reduziert auf
+ * die Breite eines typischen Displays.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+@State(Scope.Benchmark)
+public class TrafficChartDataBenchmark {
+    private static final int CHART_WIDTH = 1080;
+
+    @Param({"1000", "100000", "10000000"})
+    public int samples;
+
+    private TrafficSeries series;
+    private final TrafficChartData chartData = new TrafficChartData();
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        TrafficRingBuffer buffer = new TrafficRingBuffer(samples, 1);
+        SplittableRandom random = new SplittableRandom(42);
+        TrafficBucket bucket = new TrafficBucket();
+        for (int i = 0; i < samples; i++) {
+            long tx = random.nextInt(1 << 20);
+            long rx = random.nextInt(1 << 24);
+            bucket.set(i * 1000L, tx, rx, tx, tx, rx, rx, 0, 0);
+            buffer.add(bucket);
+        }
+        series = buffer.snapshot(Long.MIN_VALUE, 1000);
+    }
+
+    /**
+     * Umrechnung und LTTB-Reduktion ohne Chart-Objekte.
+     */
+    @Benchmark
+    public TrafficChartData prepare() {
+        chartData.prepare(series, CHART_WIDTH);
+        return chartData;
+    }
+
+    /**
+     * Vollständige Aufbereitung inklusive der Einträge für beide Reihen.
+     */
+    @Benchmark
+    public List<Entry> prepareAndCreateEntries() {
+        chartData.prepare(series, CHART_WIDTH);
+        List<Entry> upload = chartData.createUploadEntries();
+        List<Entry> download = chartData.createDownloadEntries();
+        return upload.size() > download.size() ? upload : download;
+    }
+}
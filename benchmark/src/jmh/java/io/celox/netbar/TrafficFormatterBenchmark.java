@@ -0,0 +1,77 @@
+/*
+ * Copyright (C) 2025 Martin Pfeffer
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.celox.netbar;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Formatieren der Notification-Zeile. Die Kosten hängen nur vom einzelnen Wert ab, nicht von
+ * der Größe der Historie; die Werte decken daher alle Einheiten von B bis GB ab.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class TrafficFormatterBenchmark {
+    private static final int VALUE_COUNT = 1024;
+
+    private final TrafficFormatter formatter = new TrafficFormatter();
+    private final long[] values = new long[VALUE_COUNT];
+    private int index;
+
+    @Setup
+    public void setUp() {
+        SplittableRandom random = new SplittableRandom(42);
+        for (int i = 0; i < VALUE_COUNT; i++) {
+            // Gleichverteilt über die Größenordnungen
+            values[i] = random.nextLong(1L << random.nextInt(1, 34));
+        }
+    }
+
+    /**
+     * Nur Rendern und Vergleichen, wie im Service bei unverändertem Text.
+     */
+    @Benchmark
+    public boolean render() {
+        int i = index++ & (VALUE_COUNT - 1);
+        return formatter.render(values[i], values[VALUE_COUNT - 1 - i], true, true);
+    }
+
+    /**
+     * Rendern und String erzeugen, wie im Service bei geändertem Text.
+     */
+    @Benchmark
+    public String renderToString() {
+        int i = index++ & (VALUE_COUNT - 1);
+        formatter.render(values[i], values[VALUE_COUNT - 1 - i], true, true);
+        return formatter.toString();
+    }
+}
@@ -0,0 +1,118 @@
+/*
+ * Copyright (C) 2025 Martin Pfeffer
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.celox.netbar;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Laden, Anhängen und Kompaktieren des {@link TrafficHistoryLog} mit {@code records}
+ * Datensätzen. Bei 10M Datensätzen ist die Datei rund 720 MB groß.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 2, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+@State(Scope.Benchmark)
+public class TrafficHistoryLogBenchmark {
+    private static final int BATCH_SIZE = 16; // Wie TrafficWriter.FlushPolicy.DEFAULT
+
+    @Param({"1000", "100000", "10000000"})
+    public int records;
+
+    private File dir;
+    private TrafficHistoryLog log;
+    private TrafficRingBuffer buffer;
+    private final List<TrafficBucket> batch = new ArrayList<>();
+    private long time;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        dir = Files.createTempDirectory("netbar-log").toFile();
+        log = new TrafficHistoryLog(new File(dir, "history.bin"));
+        buffer = new TrafficRingBuffer(records, 1);
+
+        List<TrafficBucket> chunk = new ArrayList<>();
+        for (int i = 0; i < records; i++) {
+            TrafficBucket record = createRecord();
+            buffer.add(record);
+            chunk.add(record);
+            if (chunk.size() == 4096) {
+                log.appendAll(chunk, false);
+                chunk.clear();
+            }
+        }
+        log.appendAll(chunk, false);
+
+        for (int i = 0; i < BATCH_SIZE; i++) {
+            batch.add(createRecord());
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        log.close();
+        BenchmarkContext.deleteRecursively(dir);
+    }
+
+    @Benchmark
+    public void load(Blackhole blackhole) throws IOException {
+        log.load(record -> blackhole.consume(record.txBytes));
+    }
+
+    /**
+     * Ein gebündelter Schreibvorgang des Writer-Threads, ohne fsync.
+     */
+    @Benchmark
+    public void appendBatch() throws IOException {
+        log.appendAll(batch, false);
+    }
+
+    @Benchmark
+    public void rewrite() throws IOException {
+        log.rewrite(buffer);
+    }
+
+    private TrafficBucket createRecord() {
+        TrafficBucket record = new TrafficBucket();
+        long tx = (time * 31) & 0xFFFFF;
+        long rx = (time * 17) & 0xFFFFFF;
+        record.set(time, tx, rx, tx / 60, tx, rx / 60, rx, tx / 4, rx / 4);
+        time += 60_000;
+        return record;
+    }
+}
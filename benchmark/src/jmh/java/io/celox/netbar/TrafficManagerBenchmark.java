@@ -0,0 +1,130 @@
+/*
+ * Copyright (C) 2025 Martin Pfeffer
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.celox.netbar;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Erfassen und Abfragen über den {@link NetworkTrafficManager}, nachdem {@code samples}
+ * Sekunden Verkehr eingespielt wurden. Das Einspielen läuft wie im Service über
+ * {@code addTrafficData}, also inklusive Rollups und Schreib-Thread.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+@State(Scope.Benchmark)
+public class TrafficManagerBenchmark {
+    @Param({"1000", "100000", "10000000"})
+    public int samples;
+
+    private File dir;
+    private NetworkTrafficManager manager;
+    private final SplittableRandom random = new SplittableRandom(42);
+    private long time;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        dir = Files.createTempDirectory("netbar-manager").toFile();
+        manager = NetworkTrafficManager.getInstance(new BenchmarkContext(dir));
+        manager.awaitHistoryLoaded();
+
+        time = (System.currentTimeMillis() / 1000 - samples) * 1000;
+        for (int i = 0; i < samples; i++) {
+            addSecond();
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        manager.flush();
+        BenchmarkContext.deleteRecursively(dir);
+    }
+
+    @Benchmark
+    public void addTrafficData() {
+        addSecond();
+    }
+
+    /**
+     * Ein Aufruf nach einer Minute Pause, wie bei ausgeschaltetem Display.
+     */
+    @Benchmark
+    public void addTrafficDataScreenOff() {
+        manager.addTrafficData(time, 60_000, 60 * 4096, 60 * 65536, 0, 0);
+        time += 60_000;
+    }
+
+    @Benchmark
+    public TrafficSeries getTrafficData15Minutes() {
+        return manager.getTrafficData(TimeUnit.MINUTES.toMillis(15));
+    }
+
+    @Benchmark
+    public TrafficSeries getTrafficData24Hours() {
+        return manager.getTrafficData(TimeUnit.HOURS.toMillis(24));
+    }
+
+    /**
+     * Abfrage inklusive Lesen aller Datenpunkte, wie es der Chart tut.
+     */
+    @Benchmark
+    public long scanTrafficData90Days() {
+        TrafficSeries series = manager.getTrafficData(TimeUnit.DAYS.toMillis(90));
+        long sum = 0;
+        for (int i = 0; i < series.size(); i++) {
+            sum += series.getTxBytes(i) + series.getRxBytes(i);
+        }
+        return sum;
+    }
+
+    /**
+     * Kennzahlen desselben Bereichs aus den mitgeführten Aggregaten.
+     */
+    @Benchmark
+    public TrafficSummary summarizeTrafficData90Days() {
+        return manager.getTrafficSummary(manager.getTrafficData(TimeUnit.DAYS.toMillis(90)));
+    }
+
+    private void addSecond() {
+        // Überwiegend wenig Verkehr mit gelegentlichen Spitzen
+        long tx = random.nextInt(16) == 0 ? random.nextInt(4 << 20) : random.nextInt(8192);
+        long rx = random.nextInt(16) == 0 ? random.nextInt(32 << 20) : random.nextInt(65536);
+        long mobile = random.nextInt(4) == 0 ? tx / 2 : 0;
+        manager.addTrafficData(time, 1000, tx, rx, mobile, mobile);
+        time += 1000;
+    }
+}
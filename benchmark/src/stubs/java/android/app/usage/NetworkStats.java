@@ -0,0 +1,50 @@
+/*
+ * Copyright (C) 2025 Martin Pfeffer
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package android.app.usage;
+
+/**
+ * Stub für Benchmarks auf der JVM.
+ */
+public final class NetworkStats implements AutoCloseable {
+
+    public boolean hasNextBucket() {
+        return false;
+    }
+
+    public boolean getNextBucket(Bucket bucket) {
+        return false;
+    }
+
+    @Override
+    public void close() {
+    }
+
+    public static class Bucket {
+
+        public int getUid() {
+            return 0;
+        }
+
+        public long getTxBytes() {
+            return 0;
+        }
+
+        public long getRxBytes() {
+            return 0;
+        }
+    }
+}
@@ -0,0 +1,30 @@
+/*
+ * Copyright (C) 2025 Martin Pfeffer
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package android.app.usage;
+
+import android.os.RemoteException;
+
+/**
+ * Stub für Benchmarks auf der JVM.
+ */
+public class NetworkStatsManager {
+
+    public NetworkStats querySummary(int networkType, String subscriberId, long startTime, long endTime)
+            throws SecurityException, RemoteException {
+        return new NetworkStats();
+    }
+}
@@ -0,0 +1,37 @@
+/*
+ * Copyright (C) 2025 Martin Pfeffer
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package android.content;
+
+import java.io.File;
+
+/**
+ * Stub für Benchmarks auf der JVM; enthält nur, was der Manager benötigt.
+ */
+public abstract class Context {
+    public static final String APP_OPS_SERVICE = "appops";
+    public static final String NETWORK_STATS_SERVICE = "netstats";
+
+    public abstract Context getApplicationContext();
+
+    public abstract File getFilesDir();
+
+    public abstract boolean deleteFile(String name);
+
+    public abstract Object getSystemService(String name);
+
+    public abstract String getPackageName();
+}
@@ -31,4 +31,5 @@ dependencyResolutionManagement {
 }
 
 rootProject.name = "NetBar"
-include(":app")
\ No newline at end of file
+include(":app")
+include(":benchmark")
\ No newline at end of file